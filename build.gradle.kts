@@ -20,6 +20,16 @@ application {
     mainClass.set("com.diskdesktop.MainApp")
 }
 
+sourceSets {
+    // Локальный mock backend для проверки клиента без настоящего сервера
+    create("mock")
+    // Бенчмарки пути передачи данных; используют package-private классы main
+    create("benchmark") {
+        compileClasspath += sourceSets["main"].output + sourceSets["main"].compileClasspath
+        runtimeClasspath += sourceSets["main"].output + sourceSets["main"].runtimeClasspath
+    }
+}
+
 javafx {
     // JavaFX 21 совместим с OpenJDK 17
     version = "21"
@@ -35,6 +45,8 @@ dependencies {
     implementation("com.fasterxml.jackson.core:jackson-databind:2.17.2")
     implementation("org.slf4j:slf4j-simple:2.0.13")
 
+    "mockImplementation"("com.fasterxml.jackson.core:jackson-databind:2.17.2")
+
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
@@ -43,3 +55,22 @@ dependencies {
 tasks.test {
     useJUnitPlatform()
 }
+
+tasks.named("check") {
+    dependsOn("mockClasses", "benchmarkClasses")
+}
+
+tasks.register<JavaExec>("runMockBackend") {
+    group = "application"
+    description = "Запускает mock backend на http://localhost:8080/api (хранилище в build/mock-storage)"
+    classpath = sourceSets["mock"].runtimeClasspath
+    mainClass.set("com.diskdesktop.mock.MockBackendServer")
+    args("8080", layout.buildDirectory.dir("mock-storage").get().asFile.path)
+}
+
+tasks.register<JavaExec>("runDownloadBenchmark") {
+    group = "verification"
+    description = "Сравнивает пути записи скачиваемых файлов: МБ/с и CPU на ГБ (аргументы: объём в МБ, каталог)"
+    classpath = sourceSets["benchmark"].runtimeClasspath
+    mainClass.set("com.diskdesktop.service.DownloadWriteBenchmark")
+}
@@ -0,0 +1,136 @@
+package com.diskdesktop.service;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Сравнение пути записи скачиваемого файла: прежний цикл (heap {@code byte[8 КБ]} + {@code FileOutputStream})
+ * против {@link ChannelTransfer} (пуловый direct-буфер, позиционная запись, предвыделение места).
+ * <pre>
+ * ./gradlew runDownloadBenchmark --args="1024 /mnt/fast"
+ * </pre>
+ * Аргументы: объём в МБ (по умолчанию 1024) и каталог для временных файлов (по умолчанию системный).
+ * Сеть не участвует: тело ответа имитирует источник okio, отдающий заранее сгенерированные данные
+ * сегментами, как сокет. Выводятся пропускная способность в МБ/с и процессорное время на ГБ.
+ */
+public final class DownloadWriteBenchmark {
+
+    private static final int ITERATIONS = 5;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int SOURCE_BLOCK = 1024 * 1024;
+
+    private DownloadWriteBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long sizeBytes = (args.length > 0 ? Long.parseLong(args[0]) : 1024) * 1024 * 1024;
+        File dir = args.length > 1 ? new File(args[1]) : Files.createTempDirectory("download-bench").toFile();
+        byte[] block = new byte[SOURCE_BLOCK];
+        new Random(42).nextBytes(block);
+        BufferPool pool = new BufferPool(256 * 1024, 4);
+        File target = new File(dir, "bench.bin");
+        target.deleteOnExit();
+
+        System.out.printf("Write %d MB to %s%n", sizeBytes >> 20, dir);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            legacy(new SyntheticSource(block, sizeBytes), target);
+            channel(new SyntheticSource(block, sizeBytes), target, sizeBytes, pool);
+        }
+        report("byte[8K] + FileOutputStream", sizeBytes, () -> legacy(new SyntheticSource(block, sizeBytes), target));
+        report("ChannelTransfer (direct 256K)", sizeBytes,
+                () -> channel(new SyntheticSource(block, sizeBytes), target, sizeBytes, pool));
+        Files.deleteIfExists(target.toPath());
+    }
+
+    private static void legacy(Source source, File target) throws IOException {
+        try (InputStream in = Okio.buffer(source).inputStream();
+             FileOutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private static void channel(Source source, File target, long size, BufferPool pool) throws IOException {
+        try (BufferedSource in = Okio.buffer(source);
+             RandomAccessFile file = new RandomAccessFile(target, "rw");
+             FileChannel channel = file.getChannel()) {
+            file.setLength(size);
+            long written = ChannelTransfer.transfer(in, channel, 0, pool, ChannelTransfer.NONE);
+            file.setLength(written);
+        }
+    }
+
+    private static void report(String name, long sizeBytes, Run run) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long bestNanos = Long.MAX_VALUE;
+        long cpuNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long cpuStart = threads.getCurrentThreadCpuTime();
+            long start = System.nanoTime();
+            run.run();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            cpuNanos += threads.getCurrentThreadCpuTime() - cpuStart;
+        }
+        double gigabytes = sizeBytes / (1024.0 * 1024 * 1024);
+        System.out.printf("%-32s %8.1f MB/s   %8.1f ms CPU per GB%n", name,
+                sizeBytes / (1024.0 * 1024) / (bestNanos / 1e9),
+                cpuNanos / 1e6 / ITERATIONS / gigabytes);
+    }
+
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /**
+     * Источник заданного объёма, повторяющий один блок данных; отдаёт не больше запрошенного, как сокет.
+     */
+    private static final class SyntheticSource implements Source {
+
+        private final byte[] block;
+        private long remaining;
+        private int offset;
+
+        SyntheticSource(byte[] block, long size) {
+            this.block = block;
+            this.remaining = size;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(Math.min(byteCount, remaining), block.length - offset);
+            sink.write(block, offset, count);
+            offset = (offset + count) % block.length;
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -3,7 +3,20 @@ package com.diskdesktop;
 import com.diskdesktop.config.ApiClientConfig;
 import com.diskdesktop.config.AppConfig;
 import com.diskdesktop.config.ConfigService;
+import com.diskdesktop.service.ApiException;
 import com.diskdesktop.service.BackendServiceImpl;
+import com.diskdesktop.service.CachingBackendService;
+import com.diskdesktop.service.ChangeFeed;
+import com.diskdesktop.service.DirectoryCrawler;
+import com.diskdesktop.service.DirectoryPrefetcher;
+import com.diskdesktop.service.FolderDownloader;
+import com.diskdesktop.service.FolderUploader;
+import com.diskdesktop.service.CancellationToken;
+import com.diskdesktop.service.MetadataSnapshot;
+import com.diskdesktop.service.PathIndex;
+import com.diskdesktop.service.SyncEngine;
+import com.diskdesktop.service.TaskScheduler;
+import com.diskdesktop.service.TransferManager;
 import com.diskdesktop.ui.LoginController;
 import com.diskdesktop.ui.MainController;
 import javafx.application.Application;
@@ -13,6 +26,7 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.time.Duration;
 
 /**
  * Главный класс JavaFX-приложения.
@@ -20,6 +34,13 @@ import java.io.IOException;
 public class MainApp extends Application {
 
     private final ConfigService configService = new ConfigService();
+    private CachingBackendService backendService;
+    private MetadataSnapshot snapshot;
+    private DirectoryCrawler crawler;
+    private ChangeFeed changeFeed;
+    private TransferManager transferManager;
+    private TaskScheduler taskScheduler;
+    private MainController mainController;
 
     @Override
     public void start(Stage primaryStage) throws IOException {
@@ -34,22 +55,37 @@ public class MainApp extends Application {
             initialBaseUrl = "http://localhost:8080/api";
         }
 
+        showLogin(primaryStage, initialBaseUrl, null);
+    }
+
+    /**
+     * @param username {@code null} — первый вход; иначе повторный вход того же пользователя после работы без связи
+     */
+    private void showLogin(Stage stage, String baseUrl, String username) throws IOException {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/ui/login_view.fxml"));
         Scene scene = new Scene(loader.load());
 
         LoginController loginController = loader.getController();
-        loginController.setInitialBaseUrl(initialBaseUrl);
-        loginController.setLoginListener((baseUrl, token) ->
-                Platform.runLater(() -> openMainWindow(primaryStage, baseUrl, token)));
-
-        primaryStage.setTitle("Disk Desktop Client - Вход");
-        primaryStage.setScene(scene);
-        primaryStage.setWidth(480);
-        primaryStage.setHeight(320);
-        primaryStage.show();
+        loginController.setInitialBaseUrl(baseUrl);
+        if (username != null) {
+            loginController.setInitialUsername(username, "Связь с backend-ом восстановлена, введите пароль");
+        }
+        loginController.setLoginListener((loggedInBaseUrl, loggedInUsername, token) ->
+                Platform.runLater(() -> openMainWindow(stage, loggedInBaseUrl, loggedInUsername, token)));
+
+        stage.setTitle("Disk Desktop Client - Вход");
+        stage.setScene(scene);
+        stage.setWidth(480);
+        stage.setHeight(320);
+        stage.show();
     }
 
-    private void openMainWindow(Stage stage, String baseUrl, String token) {
+    /**
+     * @param token {@code null} — backend недоступен: сохранённое дерево открывается только для просмотра,
+     *              без очереди передач, синхронизации, предзагрузки и ленты изменений
+     */
+    private void openMainWindow(Stage stage, String baseUrl, String username, String token) {
+        boolean offline = token == null;
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/ui/main_view.fxml"));
             Scene scene = new Scene(loader.load());
@@ -57,10 +93,45 @@ public class MainApp extends Application {
             MainController controller = loader.getController();
 
             ApiClientConfig config = new ApiClientConfig(baseUrl, token);
-            BackendServiceImpl backendService =
-                    new BackendServiceImpl(config.getFileApi(), config.getDirectoryApi());
+            AppConfig appConfig = configService.loadConfig();
+            PathIndex pathIndex = new PathIndex();
+            backendService = new CachingBackendService(new BackendServiceImpl(config, appConfig), appConfig, pathIndex);
+            // дерево прошлого запуска показывается сразу и перепроверяется в фоне
+            snapshot = MetadataSnapshot.forAccount(baseUrl, username);
+            backendService.restoreSnapshot(snapshot);
+            taskScheduler = new TaskScheduler(appConfig);
             controller.setBackendService(backendService);
+            controller.setTaskScheduler(taskScheduler);
+            if (offline) {
+                // без токена незавершённые передачи ждут повторного входа, а не падают с 401
+                BackendServiceImpl probe = new BackendServiceImpl(config, appConfig);
+                controller.setOffline(() -> isReachable(probe), () -> relogin(stage, baseUrl, username));
+            } else {
+                transferManager = new TransferManager(backendService,
+                        new FolderUploader(backendService, taskScheduler, appConfig),
+                        new FolderDownloader(backendService, taskScheduler, appConfig), taskScheduler,
+                        TransferManager.journalFileFor(baseUrl, username), appConfig.getTransfersParallelism());
+                controller.setTransferManager(transferManager);
+                controller.setSyncEngine(new SyncEngine(backendService, taskScheduler, appConfig));
+                if (appConfig.getPrefetchMaxRequestsPerMinute() > 0) {
+                    controller.setPrefetcher(new DirectoryPrefetcher(backendService, taskScheduler, appConfig));
+                }
+            }
+            // без связи обход не запускается, но размеры прошлых обходов показываются
+            crawler = new DirectoryCrawler(backendService, taskScheduler, baseUrl, username, appConfig);
+            controller.setCrawler(crawler);
+            if (!offline && appConfig.getChangesReadTimeoutSeconds() > 0) {
+                changeFeed = new ChangeFeed(
+                        config.createChangeApi(Duration.ofSeconds(appConfig.getChangesReadTimeoutSeconds())),
+                        backendService);
+                controller.setChangeFeed(changeFeed);
+            }
+            controller.setPathIndex(pathIndex);
+            controller.setSearchMaxResults(appConfig.getSearchMaxResults());
+            controller.setEntriesDepth(appConfig.getListingEntriesDepth());
+            controller.setSnapshotSavedAt(snapshot.getSavedAt());
             controller.init();
+            mainController = controller;
 
             stage.setTitle("Disk Desktop Client");
             stage.setScene(scene);
@@ -71,5 +142,67 @@ public class MainApp extends Application {
             throw new RuntimeException("Не удалось открыть главное окно", e);
         }
     }
+
+    /**
+     * Отвечает ли backend: любой ответ, даже 401 на запрос без токена, значит, что связь есть.
+     */
+    private static boolean isReachable(BackendServiceImpl probe) {
+        try {
+            probe.listDirectories(".", CancellationToken.NONE);
+            return true;
+        } catch (ApiException e) {
+            return e.getStatusCode() >= 0;
+        }
+    }
+
+    /**
+     * Закрывает сеанс без связи и возвращает к окну входа того же пользователя.
+     */
+    private void relogin(Stage stage, String baseUrl, String username) {
+        closeSession();
+        try {
+            showLogin(stage, baseUrl, username);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось открыть окно входа", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        closeSession();
+    }
+
+    private void closeSession() {
+        if (mainController != null) {
+            mainController.dispose();
+            mainController = null;
+        }
+        if (changeFeed != null) {
+            changeFeed.stop();
+            changeFeed = null;
+        }
+        if (transferManager != null) {
+            // незавершённые передачи продолжатся при следующем запуске
+            transferManager.shutdown();
+            transferManager = null;
+        }
+        if (crawler != null) {
+            // прерванный подсчёт размеров продолжится при следующем запуске
+            crawler.cancel();
+            crawler = null;
+        }
+        if (backendService != null) {
+            try {
+                backendService.saveSnapshot(snapshot);
+            } catch (IOException ignored) {
+                // без снимка следующий запуск просто загрузит дерево с backend-а
+            }
+            backendService = null;
+        }
+        if (taskScheduler != null) {
+            taskScheduler.shutdown();
+            taskScheduler = null;
+        }
+    }
 }
 
@@ -0,0 +1,20 @@
+package com.diskdesktop.api;
+
+import retrofit2.Call;
+import retrofit2.http.Body;
+import retrofit2.http.POST;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Retrofit-интерфейс для проверки, какое содержимое (по SHA-256) уже хранится на backend-е.
+ */
+public interface BlobApi {
+
+    /**
+     * Тело {@code {"hashes": [...]}}, ответ {@code {"known": [...]}} — подмножество переданных хешей.
+     */
+    @POST("blobs/lookup")
+    Call<Map<String, List<String>>> lookup(@Body Map<String, Object> body);
+}
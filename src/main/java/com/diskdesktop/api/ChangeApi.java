@@ -0,0 +1,22 @@
+package com.diskdesktop.api;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Streaming;
+
+/**
+ * Retrofit-интерфейс ленты изменений на backend-е.
+ */
+public interface ChangeApi {
+
+    /**
+     * Поток Server-Sent Events ({@code text/event-stream}) с изменениями после {@code lastEventId};
+     * {@code null} — только изменения с момента подключения. Соединение не закрывается, пока клиент
+     * его не отменит; в тишине сервер шлёт комментарии-пульс.
+     */
+    @Streaming
+    @GET("changes")
+    Call<ResponseBody> changes(@Header("Last-Event-ID") String lastEventId);
+}
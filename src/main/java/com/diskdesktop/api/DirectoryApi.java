@@ -1,11 +1,16 @@
 package com.diskdesktop.api;
 
+import com.diskdesktop.model.DirectoryEntries;
 import com.diskdesktop.model.DirectoryInfo;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 import java.util.List;
 import java.util.Map;
@@ -18,8 +23,39 @@ public interface DirectoryApi {
     @GET("directories/{directory}")
     Call<List<DirectoryInfo>> listDirectories(@Path("directory") String directory);
 
+    /**
+     * Условный листинг поддиректорий, см. {@link FileApi#listFiles(String, String)}.
+     */
+    @GET("directories/{directory}")
+    Call<List<DirectoryInfo>> listDirectories(@Path("directory") String directory,
+                                              @Header("If-None-Match") String ifNoneMatch);
+
+    /**
+     * Поддиректории нескольких директорий одним запросом. В ответе у каждого элемента заполнены только
+     * {@code path} и {@code directories}; несуществующих директорий в ответе нет.
+     */
+    @GET("directories")
+    Call<List<DirectoryEntries>> listDirectories(@Query("path") List<String> directories);
+
+    /**
+     * Файлы и поддиректории одним запросом; {@code depth > 1} добавляет поддиректории вложенных уровней.
+     * Тело — {@code DirectoryEntries}, разбирается потоково; {@code limit} ограничивает число файлов в ответе.
+     */
+    @Streaming
+    @GET("entries/{directory}")
+    Call<ResponseBody> listEntries(@Path("directory") String directory,
+                                   @Query("depth") Integer depth,
+                                   @Query("limit") Integer limit);
+
     @POST("directories/{directory}")
     Call<DirectoryInfo> createDirectory(@Path("directory") String directory,
                                         @Body Map<String, String> body);
+
+    /**
+     * Создаёт директории вместе с недостающими родителями ({@code mkdir -p}); тело {@code {"paths": [...]}}.
+     * Уже существующие директории ошибкой не считаются. Ответ — директории в порядке запроса.
+     */
+    @POST("directories")
+    Call<List<DirectoryInfo>> createDirectories(@Body Map<String, Object> body);
 }
 
@@ -1,16 +1,23 @@
 package com.diskdesktop.api;
 
 import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.FileInfoList;
 import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
+import retrofit2.http.Body;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Multipart;
 import retrofit2.http.POST;
 import retrofit2.http.Part;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Retrofit-интерфейс для работы с файлами.
@@ -18,15 +25,74 @@ import java.util.List;
 public interface FileApi {
 
     @GET("files/{directory}")
-    Call<List<FileInfo>> listFiles(@Path("directory") String directory);
+    Call<FileInfoList> listFiles(@Path("directory") String directory);
+
+    /**
+     * Условный листинг: при совпадении {@code ifNoneMatch} с текущим ETag backend отвечает 304 без тела.
+     * {@code null} — обычный запрос; ETag актуального листинга приходит в заголовке ответа.
+     */
+    @GET("files/{directory}")
+    Call<FileInfoList> listFiles(@Path("directory") String directory,
+                                 @Header("If-None-Match") String ifNoneMatch);
+
+    /**
+     * Страница листинга для потокового разбора: {@code FilePage} ({@code items}, {@code nextCursor}).
+     * Backend без пагинации отвечает обычным массивом — его тоже понимает потоковый разбор.
+     * ETag в ответе — всего листинга; {@code ifNoneMatch} проверяется только первой страницей (без курсора).
+     */
+    @Streaming
+    @GET("files/{directory}")
+    Call<ResponseBody> listFilesPage(@Path("directory") String directory,
+                                     @Query("cursor") String cursor,
+                                     @Query("limit") Integer limit,
+                                     @Header("If-None-Match") String ifNoneMatch);
 
     @Multipart
     @POST("files/{directory}")
     Call<FileInfo> uploadFile(@Path("directory") String directory,
                               @Part MultipartBody.Part file);
 
+    /**
+     * Загрузка нескольких файлов одним tar-архивом ({@code application/x-tar}); backend распаковывает его
+     * в директорию и возвращает созданные файлы.
+     */
+    @POST("files/{directory}/archive")
+    Call<List<FileInfo>> uploadArchive(@Path("directory") String directory,
+                                       @Body RequestBody archive);
+
+    /**
+     * Создание файла из содержимого, уже хранящегося на backend-е: тело {@code {"name", "sha256", "size"}}.
+     * 404 — содержимого с таким хешем нет.
+     */
+    @POST("files/{directory}/from-blob")
+    Call<FileInfo> createFromBlob(@Path("directory") String directory,
+                                  @Body Map<String, Object> body);
+
+    @Streaming
     @GET("files/{directory}/{filename}")
     Call<ResponseBody> downloadFile(@Path("directory") String directory,
                                     @Path("filename") String filename);
-}
 
+    /**
+     * Условное скачивание: 304 без тела, если файл не изменился относительно закэшированной версии
+     * ({@code ifNoneMatch} — её ETag, иначе {@code ifModifiedSince} — её Last-Modified), иначе 200 с файлом.
+     */
+    @Streaming
+    @GET("files/{directory}/{filename}")
+    Call<ResponseBody> downloadFileIfChanged(@Path("directory") String directory,
+                                             @Path("filename") String filename,
+                                             @Header("If-None-Match") String ifNoneMatch,
+                                             @Header("If-Modified-Since") String ifModifiedSince);
+
+    /**
+     * Скачивание диапазона байт файла (заголовок {@code Range: bytes=start-end}).
+     * Backend отвечает 206 с {@code Content-Range} либо 200 с полным телом, если Range не поддерживается
+     * или файл изменился относительно {@code ifRange} (ETag/Last-Modified; {@code null} — без проверки).
+     */
+    @Streaming
+    @GET("files/{directory}/{filename}")
+    Call<ResponseBody> downloadFileRange(@Path("directory") String directory,
+                                         @Path("filename") String filename,
+                                         @Header("Range") String range,
+                                         @Header("If-Range") String ifRange);
+}
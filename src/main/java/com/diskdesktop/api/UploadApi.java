@@ -0,0 +1,33 @@
+package com.diskdesktop.api;
+
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.UploadSession;
+import okhttp3.RequestBody;
+import retrofit2.Call;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+import retrofit2.http.Path;
+
+import java.util.Map;
+
+/**
+ * Retrofit-интерфейс для поблочной (возобновляемой) загрузки файлов.
+ */
+public interface UploadApi {
+
+    @POST("uploads")
+    Call<UploadSession> createUploadSession(@Body Map<String, Object> body);
+
+    @GET("uploads/{uploadId}")
+    Call<UploadSession> getUploadSession(@Path("uploadId") String uploadId);
+
+    @PUT("uploads/{uploadId}/chunks/{index}")
+    Call<Void> uploadChunk(@Path("uploadId") String uploadId,
+                           @Path("index") int index,
+                           @Body RequestBody chunk);
+
+    @POST("uploads/{uploadId}/commit")
+    Call<FileInfo> commitUpload(@Path("uploadId") String uploadId);
+}
@@ -1,8 +1,11 @@
 package com.diskdesktop.config;
 
 import com.diskdesktop.api.AuthApi;
+import com.diskdesktop.api.BlobApi;
+import com.diskdesktop.api.ChangeApi;
 import com.diskdesktop.api.DirectoryApi;
 import com.diskdesktop.api.FileApi;
+import com.diskdesktop.api.UploadApi;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -10,6 +13,8 @@ import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
+import java.time.Duration;
+
 /**
  * Конфигурация Retrofit-клиента для взаимодействия с backend API.
  */
@@ -18,6 +23,10 @@ public class ApiClientConfig {
     private final FileApi fileApi;
     private final DirectoryApi directoryApi;
     private final AuthApi authApi;
+    private final UploadApi uploadApi;
+    private final BlobApi blobApi;
+    private final OkHttpClient client;
+    private final Retrofit retrofit;
 
     public ApiClientConfig(String baseUrl, String token) {
         String resolvedBaseUrl = resolveBaseUrl(baseUrl);
@@ -34,12 +43,12 @@ public class ApiClientConfig {
             return chain.proceed(builder.build());
         };
 
-        OkHttpClient client = new OkHttpClient.Builder()
+        this.client = new OkHttpClient.Builder()
                 .addInterceptor(authInterceptor)
                 .addInterceptor(logging)
                 .build();
 
-        Retrofit retrofit = new Retrofit.Builder()
+        this.retrofit = new Retrofit.Builder()
                 .baseUrl(resolvedBaseUrl.endsWith("/") ? resolvedBaseUrl : resolvedBaseUrl + "/")
                 .client(client)
                 .addConverterFactory(JacksonConverterFactory.create())
@@ -48,6 +57,8 @@ public class ApiClientConfig {
         this.fileApi = retrofit.create(FileApi.class);
         this.directoryApi = retrofit.create(DirectoryApi.class);
         this.authApi = retrofit.create(AuthApi.class);
+        this.uploadApi = retrofit.create(UploadApi.class);
+        this.blobApi = retrofit.create(BlobApi.class);
     }
 
     /**
@@ -75,5 +86,24 @@ public class ApiClientConfig {
     public AuthApi getAuthApi() {
         return authApi;
     }
+
+    public UploadApi getUploadApi() {
+        return uploadApi;
+    }
+
+    public BlobApi getBlobApi() {
+        return blobApi;
+    }
+
+    /**
+     * Клиент ленты изменений. Соединение ленты долгое и молчит между событиями, поэтому у него свой
+     * таймаут чтения; пул соединений, авторизация и логирование общие с остальными API.
+     */
+    public ChangeApi createChangeApi(Duration readTimeout) {
+        return retrofit.newBuilder()
+                .client(client.newBuilder().readTimeout(readTimeout).build())
+                .build()
+                .create(ChangeApi.class);
+    }
 }
 
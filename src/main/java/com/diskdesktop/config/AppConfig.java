@@ -5,7 +5,165 @@ package com.diskdesktop.config;
  */
 public class AppConfig {
 
+    public static final int DEFAULT_DOWNLOAD_PARALLEL_RANGES = 4;
+    public static final long DEFAULT_DOWNLOAD_MIN_RANGE_SIZE = 8L * 1024 * 1024;
+    public static final long DEFAULT_UPLOAD_CHUNK_SIZE = 8L * 1024 * 1024;
+    public static final int DEFAULT_UPLOAD_PARALLEL_CHUNKS = 3;
+    public static final long DEFAULT_UPLOAD_CHUNKED_THRESHOLD = 64L * 1024 * 1024;
+    public static final int DEFAULT_SCHEDULER_INTERACTIVE_LIMIT = 4;
+    public static final int DEFAULT_SCHEDULER_UPLOAD_LIMIT = 2;
+    public static final int DEFAULT_SCHEDULER_DOWNLOAD_LIMIT = 2;
+    public static final int DEFAULT_SCHEDULER_MAX_CONCURRENT = 6;
+    public static final int DEFAULT_CACHE_MAX_ENTRIES = 2000;
+    public static final long DEFAULT_CACHE_MAX_BYTES = 32L * 1024 * 1024;
+    public static final long DEFAULT_CACHE_TTL_SECONDS = 30;
+    public static final int DEFAULT_LISTING_PAGE_SIZE = 5000;
+    public static final int DEFAULT_LISTING_ENTRIES_DEPTH = 2;
+    public static final int DEFAULT_SCHEDULER_PREFETCH_LIMIT = 1;
+    public static final int DEFAULT_SCHEDULER_NESTED_LIMIT = 8;
+    public static final int DEFAULT_PREFETCH_SUBDIRECTORIES = 5;
+    public static final int DEFAULT_PREFETCH_MAX_REQUESTS_PER_MINUTE = 60;
+    public static final long DEFAULT_PREFETCH_MAX_BYTES_PER_MINUTE = 8L * 1024 * 1024;
+    public static final int DEFAULT_FOLDER_UPLOAD_WORKERS = 4;
+    public static final int DEFAULT_FOLDER_UPLOAD_QUEUE_CAPACITY = 256;
+    public static final int DEFAULT_FOLDER_DOWNLOAD_WORKERS = 6;
+    public static final int DEFAULT_FOLDER_DOWNLOAD_LISTING_PARALLELISM = 4;
+    public static final int DEFAULT_FOLDER_DOWNLOAD_QUEUE_CAPACITY = 256;
+    public static final int DEFAULT_SYNC_PARALLELISM = 4;
+    public static final long DEFAULT_DEDUP_MIN_SIZE = 1024L * 1024;
+    public static final int DEFAULT_DOWNLOAD_BUFFER_SIZE = 256 * 1024;
+    public static final FsyncPolicy DEFAULT_DOWNLOAD_FSYNC = FsyncPolicy.CHECKPOINT;
+    public static final long DEFAULT_DOWNLOAD_CACHE_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+    public static final int DEFAULT_SEARCH_MAX_RESULTS = 1000;
+    public static final int DEFAULT_CRAWLER_PARALLELISM = 4;
+    public static final int DEFAULT_CRAWLER_MAX_REQUESTS_PER_MINUTE = 600;
+    public static final long DEFAULT_FOLDER_UPLOAD_BATCH_THRESHOLD = 64L * 1024;
+    public static final int DEFAULT_FOLDER_UPLOAD_BATCH_MAX_FILES = 256;
+    public static final long DEFAULT_FOLDER_UPLOAD_BATCH_MAX_BYTES = 8L * 1024 * 1024;
+    public static final long DEFAULT_CHANGES_READ_TIMEOUT_SECONDS = 60;
+    public static final int DEFAULT_TRANSFERS_PARALLELISM = 2;
+
     private String backendBaseUrl;
+    /**
+     * Сколько диапазонов одного файла скачивать одновременно; 1 — обычное скачивание одним потоком.
+     */
+    private int downloadParallelRanges = DEFAULT_DOWNLOAD_PARALLEL_RANGES;
+    /**
+     * Минимальный размер диапазона в байтах: файлы меньше него скачиваются одним запросом.
+     */
+    private long downloadMinRangeSize = DEFAULT_DOWNLOAD_MIN_RANGE_SIZE;
+    /**
+     * Размер блока при поблочной загрузке.
+     */
+    private long uploadChunkSize = DEFAULT_UPLOAD_CHUNK_SIZE;
+    /**
+     * Сколько блоков одного файла отправлять одновременно.
+     */
+    private int uploadParallelChunks = DEFAULT_UPLOAD_PARALLEL_CHUNKS;
+    /**
+     * Файлы от этого размера загружаются поблочно; 0 — всегда одним multipart-запросом.
+     */
+    private long uploadChunkedThreshold = DEFAULT_UPLOAD_CHUNKED_THRESHOLD;
+    /**
+     * Лимиты одновременно выполняемых фоновых задач по классам и общий лимит.
+     */
+    private int schedulerInteractiveLimit = DEFAULT_SCHEDULER_INTERACTIVE_LIMIT;
+    private int schedulerUploadLimit = DEFAULT_SCHEDULER_UPLOAD_LIMIT;
+    private int schedulerDownloadLimit = DEFAULT_SCHEDULER_DOWNLOAD_LIMIT;
+    private int schedulerMaxConcurrent = DEFAULT_SCHEDULER_MAX_CONCURRENT;
+    /**
+     * Кэш метаданных листингов: максимум записей, оценочный объём в байтах и время жизни записи без перепроверки.
+     */
+    private int cacheMaxEntries = DEFAULT_CACHE_MAX_ENTRIES;
+    private long cacheMaxBytes = DEFAULT_CACHE_MAX_BYTES;
+    private long cacheTtlSeconds = DEFAULT_CACHE_TTL_SECONDS;
+    /**
+     * Сколько файлов запрашивать у backend-а за одну страницу листинга.
+     */
+    private int listingPageSize = DEFAULT_LISTING_PAGE_SIZE;
+    /**
+     * Сколько уровней поддиректорий запрашивать вместе с содержимым директории (/entries): 2 — дерево раскрывается без запросов.
+     */
+    private int listingEntriesDepth = DEFAULT_LISTING_ENTRIES_DEPTH;
+    /**
+     * Сколько предзагрузок директорий выполнять одновременно (самый низкий приоритет).
+     */
+    private int schedulerPrefetchLimit = DEFAULT_SCHEDULER_PREFETCH_LIMIT;
+    /**
+     * Сколько вложенных запросов одного класса (файлы внутри передач папок и синхронизаций) выполнять
+     * одновременно на всё приложение.
+     */
+    private int schedulerNestedLimit = DEFAULT_SCHEDULER_NESTED_LIMIT;
+    /**
+     * Предзагрузка: сколько первых поддиректорий открытой папки загружать заранее (0 — только при наведении)
+     * и бюджет запросов и байт ответа за минуту (0 запросов — предзагрузка отключена).
+     */
+    private int prefetchSubdirectories = DEFAULT_PREFETCH_SUBDIRECTORIES;
+    private int prefetchMaxRequestsPerMinute = DEFAULT_PREFETCH_MAX_REQUESTS_PER_MINUTE;
+    private long prefetchMaxBytesPerMinute = DEFAULT_PREFETCH_MAX_BYTES_PER_MINUTE;
+    /**
+     * Загрузка папки: сколько файлов отправлять одновременно и сколько задач держать в очередях между этапами (ограничивает память при любом размере дерева).
+     */
+    private int folderUploadWorkers = DEFAULT_FOLDER_UPLOAD_WORKERS;
+    private int folderUploadQueueCapacity = DEFAULT_FOLDER_UPLOAD_QUEUE_CAPACITY;
+    /**
+     * Скачивание папки: сколько файлов скачивать одновременно, сколько директорий листать параллельно и размер очереди файлов.
+     */
+    private int folderDownloadWorkers = DEFAULT_FOLDER_DOWNLOAD_WORKERS;
+    private int folderDownloadListingParallelism = DEFAULT_FOLDER_DOWNLOAD_LISTING_PARALLELISM;
+    private int folderDownloadQueueCapacity = DEFAULT_FOLDER_DOWNLOAD_QUEUE_CAPACITY;
+    /**
+     * Синхронизация папок: сколько листингов и передач файлов выполнять одновременно.
+     */
+    private int syncParallelism = DEFAULT_SYNC_PARALLELISM;
+    /**
+     * Для файлов от этого размера перед загрузкой проверяется, нет ли их содержимого на backend-е; 0 — не проверять.
+     */
+    private long dedupMinSize = DEFAULT_DEDUP_MIN_SIZE;
+    /**
+     * Размер direct-буфера при записи скачиваемых файлов; буферы переиспользуются между скачиваниями.
+     */
+    private int downloadBufferSize = DEFAULT_DOWNLOAD_BUFFER_SIZE;
+    /**
+     * Когда сбрасывать скачанные данные на диск, см. {@link FsyncPolicy}.
+     */
+    private FsyncPolicy downloadFsync = DEFAULT_DOWNLOAD_FSYNC;
+    /**
+     * Предельный размер локального кэша скачанных файлов ({@code ~/.diskdesktop/cache}); 0 — кэш отключён.
+     */
+    private long downloadCacheMaxBytes = DEFAULT_DOWNLOAD_CACHE_MAX_BYTES;
+    /**
+     * Сколько результатов поиска по имени показывать.
+     */
+    private int searchMaxResults = DEFAULT_SEARCH_MAX_RESULTS;
+    /**
+     * Сколько листингов одновременно запрашивает обход дерева для подсчёта размеров.
+     */
+    private int crawlerParallelism = DEFAULT_CRAWLER_PARALLELISM;
+    /**
+     * Бюджет запросов обхода дерева за скользящую минуту; 0 — без ограничения.
+     */
+    private int crawlerMaxRequestsPerMinute = DEFAULT_CRAWLER_MAX_REQUESTS_PER_MINUTE;
+    /**
+     * Сколько передач из очереди выполняется одновременно.
+     */
+    private int transfersParallelism = DEFAULT_TRANSFERS_PARALLELISM;
+    /**
+     * Файлы меньше этого размера загружаются пачками одним архивом; 0 — по одному.
+     */
+    private long folderUploadBatchThreshold = DEFAULT_FOLDER_UPLOAD_BATCH_THRESHOLD;
+    /**
+     * Сколько файлов не больше в одном архиве.
+     */
+    private int folderUploadBatchMaxFiles = DEFAULT_FOLDER_UPLOAD_BATCH_MAX_FILES;
+    /**
+     * Суммарный размер файлов одного архива, после которого архив отправляется.
+     */
+    private long folderUploadBatchMaxBytes = DEFAULT_FOLDER_UPLOAD_BATCH_MAX_BYTES;
+    /**
+     * Сколько секунд лента изменений может молчать до переподключения (сервер шлёт пульс чаще); 0 отключает ленту.
+     */
+    private long changesReadTimeoutSeconds = DEFAULT_CHANGES_READ_TIMEOUT_SECONDS;
 
     public AppConfig() {
     }
@@ -21,5 +179,300 @@ public class AppConfig {
     public void setBackendBaseUrl(String backendBaseUrl) {
         this.backendBaseUrl = backendBaseUrl;
     }
-}
 
+    public int getDownloadParallelRanges() {
+        return downloadParallelRanges;
+    }
+
+    public void setDownloadParallelRanges(int downloadParallelRanges) {
+        this.downloadParallelRanges = downloadParallelRanges;
+    }
+
+    public long getDownloadMinRangeSize() {
+        return downloadMinRangeSize;
+    }
+
+    public void setDownloadMinRangeSize(long downloadMinRangeSize) {
+        this.downloadMinRangeSize = downloadMinRangeSize;
+    }
+
+    public long getUploadChunkSize() {
+        return uploadChunkSize;
+    }
+
+    public void setUploadChunkSize(long uploadChunkSize) {
+        this.uploadChunkSize = uploadChunkSize;
+    }
+
+    public int getUploadParallelChunks() {
+        return uploadParallelChunks;
+    }
+
+    public void setUploadParallelChunks(int uploadParallelChunks) {
+        this.uploadParallelChunks = uploadParallelChunks;
+    }
+
+    public long getUploadChunkedThreshold() {
+        return uploadChunkedThreshold;
+    }
+
+    public void setUploadChunkedThreshold(long uploadChunkedThreshold) {
+        this.uploadChunkedThreshold = uploadChunkedThreshold;
+    }
+
+    public int getSchedulerInteractiveLimit() {
+        return schedulerInteractiveLimit;
+    }
+
+    public void setSchedulerInteractiveLimit(int schedulerInteractiveLimit) {
+        this.schedulerInteractiveLimit = schedulerInteractiveLimit;
+    }
+
+    public int getSchedulerUploadLimit() {
+        return schedulerUploadLimit;
+    }
+
+    public void setSchedulerUploadLimit(int schedulerUploadLimit) {
+        this.schedulerUploadLimit = schedulerUploadLimit;
+    }
+
+    public int getSchedulerDownloadLimit() {
+        return schedulerDownloadLimit;
+    }
+
+    public void setSchedulerDownloadLimit(int schedulerDownloadLimit) {
+        this.schedulerDownloadLimit = schedulerDownloadLimit;
+    }
+
+    public int getSchedulerMaxConcurrent() {
+        return schedulerMaxConcurrent;
+    }
+
+    public void setSchedulerMaxConcurrent(int schedulerMaxConcurrent) {
+        this.schedulerMaxConcurrent = schedulerMaxConcurrent;
+    }
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    public long getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    public void setCacheTtlSeconds(long cacheTtlSeconds) {
+        this.cacheTtlSeconds = cacheTtlSeconds;
+    }
+
+    public int getListingPageSize() {
+        return listingPageSize;
+    }
+
+    public void setListingPageSize(int listingPageSize) {
+        this.listingPageSize = listingPageSize;
+    }
+
+    public int getListingEntriesDepth() {
+        return listingEntriesDepth;
+    }
+
+    public void setListingEntriesDepth(int listingEntriesDepth) {
+        this.listingEntriesDepth = listingEntriesDepth;
+    }
+
+    public int getSchedulerPrefetchLimit() {
+        return schedulerPrefetchLimit;
+    }
+
+    public void setSchedulerPrefetchLimit(int schedulerPrefetchLimit) {
+        this.schedulerPrefetchLimit = schedulerPrefetchLimit;
+    }
+
+    public int getSchedulerNestedLimit() {
+        return schedulerNestedLimit;
+    }
+
+    public void setSchedulerNestedLimit(int schedulerNestedLimit) {
+        this.schedulerNestedLimit = schedulerNestedLimit;
+    }
+
+    public int getPrefetchSubdirectories() {
+        return prefetchSubdirectories;
+    }
+
+    public void setPrefetchSubdirectories(int prefetchSubdirectories) {
+        this.prefetchSubdirectories = prefetchSubdirectories;
+    }
+
+    public int getPrefetchMaxRequestsPerMinute() {
+        return prefetchMaxRequestsPerMinute;
+    }
+
+    public void setPrefetchMaxRequestsPerMinute(int prefetchMaxRequestsPerMinute) {
+        this.prefetchMaxRequestsPerMinute = prefetchMaxRequestsPerMinute;
+    }
+
+    public long getPrefetchMaxBytesPerMinute() {
+        return prefetchMaxBytesPerMinute;
+    }
+
+    public void setPrefetchMaxBytesPerMinute(long prefetchMaxBytesPerMinute) {
+        this.prefetchMaxBytesPerMinute = prefetchMaxBytesPerMinute;
+    }
+
+    public int getFolderUploadWorkers() {
+        return folderUploadWorkers;
+    }
+
+    public void setFolderUploadWorkers(int folderUploadWorkers) {
+        this.folderUploadWorkers = folderUploadWorkers;
+    }
+
+    public int getFolderUploadQueueCapacity() {
+        return folderUploadQueueCapacity;
+    }
+
+    public void setFolderUploadQueueCapacity(int folderUploadQueueCapacity) {
+        this.folderUploadQueueCapacity = folderUploadQueueCapacity;
+    }
+
+    public int getFolderDownloadWorkers() {
+        return folderDownloadWorkers;
+    }
+
+    public void setFolderDownloadWorkers(int folderDownloadWorkers) {
+        this.folderDownloadWorkers = folderDownloadWorkers;
+    }
+
+    public int getFolderDownloadListingParallelism() {
+        return folderDownloadListingParallelism;
+    }
+
+    public void setFolderDownloadListingParallelism(int folderDownloadListingParallelism) {
+        this.folderDownloadListingParallelism = folderDownloadListingParallelism;
+    }
+
+    public int getFolderDownloadQueueCapacity() {
+        return folderDownloadQueueCapacity;
+    }
+
+    public void setFolderDownloadQueueCapacity(int folderDownloadQueueCapacity) {
+        this.folderDownloadQueueCapacity = folderDownloadQueueCapacity;
+    }
+
+    public int getSyncParallelism() {
+        return syncParallelism;
+    }
+
+    public void setSyncParallelism(int syncParallelism) {
+        this.syncParallelism = syncParallelism;
+    }
+
+    public long getDedupMinSize() {
+        return dedupMinSize;
+    }
+
+    public void setDedupMinSize(long dedupMinSize) {
+        this.dedupMinSize = dedupMinSize;
+    }
+
+    public int getDownloadBufferSize() {
+        return downloadBufferSize;
+    }
+
+    public void setDownloadBufferSize(int downloadBufferSize) {
+        this.downloadBufferSize = downloadBufferSize;
+    }
+
+    public FsyncPolicy getDownloadFsync() {
+        return downloadFsync;
+    }
+
+    public void setDownloadFsync(FsyncPolicy downloadFsync) {
+        this.downloadFsync = downloadFsync;
+    }
+
+    public long getDownloadCacheMaxBytes() {
+        return downloadCacheMaxBytes;
+    }
+
+    public void setDownloadCacheMaxBytes(long downloadCacheMaxBytes) {
+        this.downloadCacheMaxBytes = downloadCacheMaxBytes;
+    }
+
+    public int getSearchMaxResults() {
+        return searchMaxResults;
+    }
+
+    public void setSearchMaxResults(int searchMaxResults) {
+        this.searchMaxResults = searchMaxResults;
+    }
+
+    public int getCrawlerParallelism() {
+        return crawlerParallelism;
+    }
+
+    public void setCrawlerParallelism(int crawlerParallelism) {
+        this.crawlerParallelism = crawlerParallelism;
+    }
+
+    public int getCrawlerMaxRequestsPerMinute() {
+        return crawlerMaxRequestsPerMinute;
+    }
+
+    public void setCrawlerMaxRequestsPerMinute(int crawlerMaxRequestsPerMinute) {
+        this.crawlerMaxRequestsPerMinute = crawlerMaxRequestsPerMinute;
+    }
+
+    public int getTransfersParallelism() {
+        return transfersParallelism;
+    }
+
+    public void setTransfersParallelism(int transfersParallelism) {
+        this.transfersParallelism = transfersParallelism;
+    }
+
+    public long getFolderUploadBatchThreshold() {
+        return folderUploadBatchThreshold;
+    }
+
+    public void setFolderUploadBatchThreshold(long folderUploadBatchThreshold) {
+        this.folderUploadBatchThreshold = folderUploadBatchThreshold;
+    }
+
+    public int getFolderUploadBatchMaxFiles() {
+        return folderUploadBatchMaxFiles;
+    }
+
+    public void setFolderUploadBatchMaxFiles(int folderUploadBatchMaxFiles) {
+        this.folderUploadBatchMaxFiles = folderUploadBatchMaxFiles;
+    }
+
+    public long getFolderUploadBatchMaxBytes() {
+        return folderUploadBatchMaxBytes;
+    }
+
+    public void setFolderUploadBatchMaxBytes(long folderUploadBatchMaxBytes) {
+        this.folderUploadBatchMaxBytes = folderUploadBatchMaxBytes;
+    }
+
+    public long getChangesReadTimeoutSeconds() {
+        return changesReadTimeoutSeconds;
+    }
+
+    public void setChangesReadTimeoutSeconds(long changesReadTimeoutSeconds) {
+        this.changesReadTimeoutSeconds = changesReadTimeoutSeconds;
+    }
+}
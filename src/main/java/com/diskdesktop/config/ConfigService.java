@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Locale;
 import java.util.Properties;
 
 /**
@@ -14,6 +15,43 @@ public class ConfigService {
     private static final String CONFIG_DIR_NAME = ".diskdesktop";
     private static final String CONFIG_FILE_NAME = "config.properties";
     private static final String KEY_BACKEND_BASE_URL = "backend.baseUrl";
+    private static final String KEY_DOWNLOAD_PARALLEL_RANGES = "download.parallelRanges";
+    private static final String KEY_DOWNLOAD_MIN_RANGE_SIZE = "download.minRangeSizeBytes";
+    private static final String KEY_UPLOAD_CHUNK_SIZE = "upload.chunkSizeBytes";
+    private static final String KEY_UPLOAD_PARALLEL_CHUNKS = "upload.parallelChunks";
+    private static final String KEY_UPLOAD_CHUNKED_THRESHOLD = "upload.chunkedThresholdBytes";
+    private static final String KEY_SCHEDULER_INTERACTIVE_LIMIT = "scheduler.interactiveLimit";
+    private static final String KEY_SCHEDULER_UPLOAD_LIMIT = "scheduler.uploadLimit";
+    private static final String KEY_SCHEDULER_DOWNLOAD_LIMIT = "scheduler.downloadLimit";
+    private static final String KEY_SCHEDULER_MAX_CONCURRENT = "scheduler.maxConcurrent";
+    private static final String KEY_CACHE_MAX_ENTRIES = "cache.maxEntries";
+    private static final String KEY_CACHE_MAX_BYTES = "cache.maxBytes";
+    private static final String KEY_CACHE_TTL_SECONDS = "cache.ttlSeconds";
+    private static final String KEY_LISTING_PAGE_SIZE = "listing.pageSize";
+    private static final String KEY_LISTING_ENTRIES_DEPTH = "listing.entriesDepth";
+    private static final String KEY_SCHEDULER_PREFETCH_LIMIT = "scheduler.prefetchLimit";
+    private static final String KEY_SCHEDULER_NESTED_LIMIT = "scheduler.nestedLimit";
+    private static final String KEY_PREFETCH_SUBDIRECTORIES = "prefetch.subdirectories";
+    private static final String KEY_PREFETCH_MAX_REQUESTS_PER_MINUTE = "prefetch.maxRequestsPerMinute";
+    private static final String KEY_PREFETCH_MAX_BYTES_PER_MINUTE = "prefetch.maxBytesPerMinute";
+    private static final String KEY_FOLDER_UPLOAD_WORKERS = "folderUpload.workers";
+    private static final String KEY_FOLDER_UPLOAD_QUEUE_CAPACITY = "folderUpload.queueCapacity";
+    private static final String KEY_FOLDER_DOWNLOAD_WORKERS = "folderDownload.workers";
+    private static final String KEY_FOLDER_DOWNLOAD_LISTING_PARALLELISM = "folderDownload.listingParallelism";
+    private static final String KEY_FOLDER_DOWNLOAD_QUEUE_CAPACITY = "folderDownload.queueCapacity";
+    private static final String KEY_SYNC_PARALLELISM = "sync.parallelism";
+    private static final String KEY_DEDUP_MIN_SIZE = "dedup.minSize";
+    private static final String KEY_DOWNLOAD_BUFFER_SIZE = "download.bufferSize";
+    private static final String KEY_DOWNLOAD_FSYNC = "download.fsync";
+    private static final String KEY_DOWNLOAD_CACHE_MAX_BYTES = "downloadCache.maxBytes";
+    private static final String KEY_SEARCH_MAX_RESULTS = "search.maxResults";
+    private static final String KEY_CRAWLER_PARALLELISM = "crawler.parallelism";
+    private static final String KEY_CRAWLER_MAX_REQUESTS_PER_MINUTE = "crawler.maxRequestsPerMinute";
+    private static final String KEY_TRANSFERS_PARALLELISM = "transfers.parallelism";
+    private static final String KEY_FOLDER_UPLOAD_BATCH_THRESHOLD = "folderUpload.batchThresholdBytes";
+    private static final String KEY_FOLDER_UPLOAD_BATCH_MAX_FILES = "folderUpload.batchMaxFiles";
+    private static final String KEY_FOLDER_UPLOAD_BATCH_MAX_BYTES = "folderUpload.batchMaxBytes";
+    private static final String KEY_CHANGES_READ_TIMEOUT_SECONDS = "changes.readTimeoutSeconds";
 
     public AppConfig loadConfig() {
         File file = getConfigFile();
@@ -28,6 +66,80 @@ public class ConfigService {
         AppConfig config = new AppConfig();
         String backendUrl = properties.getProperty(KEY_BACKEND_BASE_URL);
         config.setBackendBaseUrl(backendUrl);
+        config.setDownloadParallelRanges((int) parseLong(
+                properties.getProperty(KEY_DOWNLOAD_PARALLEL_RANGES), AppConfig.DEFAULT_DOWNLOAD_PARALLEL_RANGES));
+        config.setDownloadMinRangeSize(parseLong(
+                properties.getProperty(KEY_DOWNLOAD_MIN_RANGE_SIZE), AppConfig.DEFAULT_DOWNLOAD_MIN_RANGE_SIZE));
+        config.setUploadChunkSize(parseLong(
+                properties.getProperty(KEY_UPLOAD_CHUNK_SIZE), AppConfig.DEFAULT_UPLOAD_CHUNK_SIZE));
+        config.setUploadParallelChunks((int) parseLong(
+                properties.getProperty(KEY_UPLOAD_PARALLEL_CHUNKS), AppConfig.DEFAULT_UPLOAD_PARALLEL_CHUNKS));
+        config.setUploadChunkedThreshold(parseLong(
+                properties.getProperty(KEY_UPLOAD_CHUNKED_THRESHOLD), AppConfig.DEFAULT_UPLOAD_CHUNKED_THRESHOLD));
+        config.setSchedulerInteractiveLimit((int) parseLong(
+                properties.getProperty(KEY_SCHEDULER_INTERACTIVE_LIMIT), AppConfig.DEFAULT_SCHEDULER_INTERACTIVE_LIMIT));
+        config.setSchedulerUploadLimit((int) parseLong(
+                properties.getProperty(KEY_SCHEDULER_UPLOAD_LIMIT), AppConfig.DEFAULT_SCHEDULER_UPLOAD_LIMIT));
+        config.setSchedulerDownloadLimit((int) parseLong(
+                properties.getProperty(KEY_SCHEDULER_DOWNLOAD_LIMIT), AppConfig.DEFAULT_SCHEDULER_DOWNLOAD_LIMIT));
+        config.setSchedulerMaxConcurrent((int) parseLong(
+                properties.getProperty(KEY_SCHEDULER_MAX_CONCURRENT), AppConfig.DEFAULT_SCHEDULER_MAX_CONCURRENT));
+        config.setCacheMaxEntries((int) parseLong(
+                properties.getProperty(KEY_CACHE_MAX_ENTRIES), AppConfig.DEFAULT_CACHE_MAX_ENTRIES));
+        config.setCacheMaxBytes(parseLong(
+                properties.getProperty(KEY_CACHE_MAX_BYTES), AppConfig.DEFAULT_CACHE_MAX_BYTES));
+        config.setCacheTtlSeconds(parseLong(
+                properties.getProperty(KEY_CACHE_TTL_SECONDS), AppConfig.DEFAULT_CACHE_TTL_SECONDS));
+        config.setListingPageSize((int) parseLong(
+                properties.getProperty(KEY_LISTING_PAGE_SIZE), AppConfig.DEFAULT_LISTING_PAGE_SIZE));
+        config.setListingEntriesDepth((int) parseLong(
+                properties.getProperty(KEY_LISTING_ENTRIES_DEPTH), AppConfig.DEFAULT_LISTING_ENTRIES_DEPTH));
+        config.setSchedulerPrefetchLimit((int) parseLong(
+                properties.getProperty(KEY_SCHEDULER_PREFETCH_LIMIT), AppConfig.DEFAULT_SCHEDULER_PREFETCH_LIMIT));
+        config.setSchedulerNestedLimit((int) parseLong(
+                properties.getProperty(KEY_SCHEDULER_NESTED_LIMIT), AppConfig.DEFAULT_SCHEDULER_NESTED_LIMIT));
+        config.setPrefetchSubdirectories((int) parseLong(
+                properties.getProperty(KEY_PREFETCH_SUBDIRECTORIES), AppConfig.DEFAULT_PREFETCH_SUBDIRECTORIES));
+        config.setPrefetchMaxRequestsPerMinute((int) parseLong(
+                properties.getProperty(KEY_PREFETCH_MAX_REQUESTS_PER_MINUTE), AppConfig.DEFAULT_PREFETCH_MAX_REQUESTS_PER_MINUTE));
+        config.setPrefetchMaxBytesPerMinute(parseLong(
+                properties.getProperty(KEY_PREFETCH_MAX_BYTES_PER_MINUTE), AppConfig.DEFAULT_PREFETCH_MAX_BYTES_PER_MINUTE));
+        config.setFolderUploadWorkers((int) parseLong(
+                properties.getProperty(KEY_FOLDER_UPLOAD_WORKERS), AppConfig.DEFAULT_FOLDER_UPLOAD_WORKERS));
+        config.setFolderUploadQueueCapacity((int) parseLong(
+                properties.getProperty(KEY_FOLDER_UPLOAD_QUEUE_CAPACITY), AppConfig.DEFAULT_FOLDER_UPLOAD_QUEUE_CAPACITY));
+        config.setFolderDownloadWorkers((int) parseLong(
+                properties.getProperty(KEY_FOLDER_DOWNLOAD_WORKERS), AppConfig.DEFAULT_FOLDER_DOWNLOAD_WORKERS));
+        config.setFolderDownloadListingParallelism((int) parseLong(
+                properties.getProperty(KEY_FOLDER_DOWNLOAD_LISTING_PARALLELISM), AppConfig.DEFAULT_FOLDER_DOWNLOAD_LISTING_PARALLELISM));
+        config.setFolderDownloadQueueCapacity((int) parseLong(
+                properties.getProperty(KEY_FOLDER_DOWNLOAD_QUEUE_CAPACITY), AppConfig.DEFAULT_FOLDER_DOWNLOAD_QUEUE_CAPACITY));
+        config.setSyncParallelism((int) parseLong(
+                properties.getProperty(KEY_SYNC_PARALLELISM), AppConfig.DEFAULT_SYNC_PARALLELISM));
+        config.setDedupMinSize(parseLong(
+                properties.getProperty(KEY_DEDUP_MIN_SIZE), AppConfig.DEFAULT_DEDUP_MIN_SIZE));
+        config.setDownloadBufferSize((int) parseLong(
+                properties.getProperty(KEY_DOWNLOAD_BUFFER_SIZE), AppConfig.DEFAULT_DOWNLOAD_BUFFER_SIZE));
+        config.setDownloadFsync(FsyncPolicy.parse(
+                properties.getProperty(KEY_DOWNLOAD_FSYNC), AppConfig.DEFAULT_DOWNLOAD_FSYNC));
+        config.setDownloadCacheMaxBytes(parseLong(
+                properties.getProperty(KEY_DOWNLOAD_CACHE_MAX_BYTES), AppConfig.DEFAULT_DOWNLOAD_CACHE_MAX_BYTES));
+        config.setSearchMaxResults((int) parseLong(
+                properties.getProperty(KEY_SEARCH_MAX_RESULTS), AppConfig.DEFAULT_SEARCH_MAX_RESULTS));
+        config.setCrawlerParallelism((int) parseLong(
+                properties.getProperty(KEY_CRAWLER_PARALLELISM), AppConfig.DEFAULT_CRAWLER_PARALLELISM));
+        config.setCrawlerMaxRequestsPerMinute((int) parseLong(
+                properties.getProperty(KEY_CRAWLER_MAX_REQUESTS_PER_MINUTE), AppConfig.DEFAULT_CRAWLER_MAX_REQUESTS_PER_MINUTE));
+        config.setTransfersParallelism((int) parseLong(
+                properties.getProperty(KEY_TRANSFERS_PARALLELISM), AppConfig.DEFAULT_TRANSFERS_PARALLELISM));
+        config.setFolderUploadBatchThreshold(parseLong(
+                properties.getProperty(KEY_FOLDER_UPLOAD_BATCH_THRESHOLD), AppConfig.DEFAULT_FOLDER_UPLOAD_BATCH_THRESHOLD));
+        config.setFolderUploadBatchMaxFiles((int) parseLong(
+                properties.getProperty(KEY_FOLDER_UPLOAD_BATCH_MAX_FILES), AppConfig.DEFAULT_FOLDER_UPLOAD_BATCH_MAX_FILES));
+        config.setFolderUploadBatchMaxBytes(parseLong(
+                properties.getProperty(KEY_FOLDER_UPLOAD_BATCH_MAX_BYTES), AppConfig.DEFAULT_FOLDER_UPLOAD_BATCH_MAX_BYTES));
+        config.setChangesReadTimeoutSeconds(parseLong(
+                properties.getProperty(KEY_CHANGES_READ_TIMEOUT_SECONDS), AppConfig.DEFAULT_CHANGES_READ_TIMEOUT_SECONDS));
         return config;
     }
 
@@ -42,6 +154,43 @@ public class ConfigService {
         if (config.getBackendBaseUrl() != null) {
             properties.setProperty(KEY_BACKEND_BASE_URL, config.getBackendBaseUrl());
         }
+        properties.setProperty(KEY_DOWNLOAD_PARALLEL_RANGES, String.valueOf(config.getDownloadParallelRanges()));
+        properties.setProperty(KEY_DOWNLOAD_MIN_RANGE_SIZE, String.valueOf(config.getDownloadMinRangeSize()));
+        properties.setProperty(KEY_UPLOAD_CHUNK_SIZE, String.valueOf(config.getUploadChunkSize()));
+        properties.setProperty(KEY_UPLOAD_PARALLEL_CHUNKS, String.valueOf(config.getUploadParallelChunks()));
+        properties.setProperty(KEY_UPLOAD_CHUNKED_THRESHOLD, String.valueOf(config.getUploadChunkedThreshold()));
+        properties.setProperty(KEY_SCHEDULER_INTERACTIVE_LIMIT, String.valueOf(config.getSchedulerInteractiveLimit()));
+        properties.setProperty(KEY_SCHEDULER_UPLOAD_LIMIT, String.valueOf(config.getSchedulerUploadLimit()));
+        properties.setProperty(KEY_SCHEDULER_DOWNLOAD_LIMIT, String.valueOf(config.getSchedulerDownloadLimit()));
+        properties.setProperty(KEY_SCHEDULER_MAX_CONCURRENT, String.valueOf(config.getSchedulerMaxConcurrent()));
+        properties.setProperty(KEY_CACHE_MAX_ENTRIES, String.valueOf(config.getCacheMaxEntries()));
+        properties.setProperty(KEY_CACHE_MAX_BYTES, String.valueOf(config.getCacheMaxBytes()));
+        properties.setProperty(KEY_CACHE_TTL_SECONDS, String.valueOf(config.getCacheTtlSeconds()));
+        properties.setProperty(KEY_LISTING_PAGE_SIZE, String.valueOf(config.getListingPageSize()));
+        properties.setProperty(KEY_LISTING_ENTRIES_DEPTH, String.valueOf(config.getListingEntriesDepth()));
+        properties.setProperty(KEY_SCHEDULER_PREFETCH_LIMIT, String.valueOf(config.getSchedulerPrefetchLimit()));
+        properties.setProperty(KEY_SCHEDULER_NESTED_LIMIT, String.valueOf(config.getSchedulerNestedLimit()));
+        properties.setProperty(KEY_PREFETCH_SUBDIRECTORIES, String.valueOf(config.getPrefetchSubdirectories()));
+        properties.setProperty(KEY_PREFETCH_MAX_REQUESTS_PER_MINUTE, String.valueOf(config.getPrefetchMaxRequestsPerMinute()));
+        properties.setProperty(KEY_PREFETCH_MAX_BYTES_PER_MINUTE, String.valueOf(config.getPrefetchMaxBytesPerMinute()));
+        properties.setProperty(KEY_FOLDER_UPLOAD_WORKERS, String.valueOf(config.getFolderUploadWorkers()));
+        properties.setProperty(KEY_FOLDER_UPLOAD_QUEUE_CAPACITY, String.valueOf(config.getFolderUploadQueueCapacity()));
+        properties.setProperty(KEY_FOLDER_DOWNLOAD_WORKERS, String.valueOf(config.getFolderDownloadWorkers()));
+        properties.setProperty(KEY_FOLDER_DOWNLOAD_LISTING_PARALLELISM, String.valueOf(config.getFolderDownloadListingParallelism()));
+        properties.setProperty(KEY_FOLDER_DOWNLOAD_QUEUE_CAPACITY, String.valueOf(config.getFolderDownloadQueueCapacity()));
+        properties.setProperty(KEY_SYNC_PARALLELISM, String.valueOf(config.getSyncParallelism()));
+        properties.setProperty(KEY_DEDUP_MIN_SIZE, String.valueOf(config.getDedupMinSize()));
+        properties.setProperty(KEY_DOWNLOAD_BUFFER_SIZE, String.valueOf(config.getDownloadBufferSize()));
+        properties.setProperty(KEY_DOWNLOAD_FSYNC, config.getDownloadFsync().name().toLowerCase(Locale.ROOT));
+        properties.setProperty(KEY_DOWNLOAD_CACHE_MAX_BYTES, String.valueOf(config.getDownloadCacheMaxBytes()));
+        properties.setProperty(KEY_SEARCH_MAX_RESULTS, String.valueOf(config.getSearchMaxResults()));
+        properties.setProperty(KEY_CRAWLER_PARALLELISM, String.valueOf(config.getCrawlerParallelism()));
+        properties.setProperty(KEY_CRAWLER_MAX_REQUESTS_PER_MINUTE, String.valueOf(config.getCrawlerMaxRequestsPerMinute()));
+        properties.setProperty(KEY_TRANSFERS_PARALLELISM, String.valueOf(config.getTransfersParallelism()));
+        properties.setProperty(KEY_FOLDER_UPLOAD_BATCH_THRESHOLD, String.valueOf(config.getFolderUploadBatchThreshold()));
+        properties.setProperty(KEY_FOLDER_UPLOAD_BATCH_MAX_FILES, String.valueOf(config.getFolderUploadBatchMaxFiles()));
+        properties.setProperty(KEY_FOLDER_UPLOAD_BATCH_MAX_BYTES, String.valueOf(config.getFolderUploadBatchMaxBytes()));
+        properties.setProperty(KEY_CHANGES_READ_TIMEOUT_SECONDS, String.valueOf(config.getChangesReadTimeoutSeconds()));
 
         try (FileOutputStream out = new FileOutputStream(file)) {
             properties.store(out, "Disk Desktop Client configuration");
@@ -49,9 +198,33 @@ public class ConfigService {
         }
     }
 
+    /**
+     * Ключ служебного состояния, которое принадлежит пользователю конкретного backend-а: снимка метаданных,
+     * журнала передач, состояния обхода. Пользователь не должен видеть дерево и очередь предыдущего.
+     */
+    public static String accountKey(String baseUrl, String username) {
+        return baseUrl + "\n" + username;
+    }
+
+    /**
+     * Каталог приложения {@code ~/.diskdesktop}: конфигурация и служебное состояние (незавершённые загрузки и т.п.).
+     */
+    public static File getAppDirectory() {
+        return new File(System.getProperty("user.home"), CONFIG_DIR_NAME);
+    }
+
     private File getConfigFile() {
-        String userHome = System.getProperty("user.home");
-        return new File(userHome, CONFIG_DIR_NAME + File.separator + CONFIG_FILE_NAME);
+        return new File(getAppDirectory(), CONFIG_FILE_NAME);
     }
-}
 
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.diskdesktop.config;
+
+import java.util.Locale;
+
+/**
+ * Когда сбрасывать скачанные данные на диск ({@code FileChannel.force}).
+ */
+public enum FsyncPolicy {
+
+    /**
+     * На каждой контрольной точке докачки и по завершении: докачка переживает и сбой ОС, и отключение питания.
+     */
+    CHECKPOINT,
+    /**
+     * Только по завершении файла: докачка переживает падение приложения, но не сбой ОС.
+     */
+    COMPLETE,
+    /**
+     * Никогда: запись на диск остаётся на усмотрение ОС.
+     */
+    NONE;
+
+    /**
+     * Значение из {@code config.properties} без учёта регистра; неизвестное — {@code defaultValue}.
+     */
+    public static FsyncPolicy parse(String value, FsyncPolicy defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.diskdesktop.config;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Properties;
+
+/**
+ * Последний успешный вход: адрес backend-а, имя пользователя и проверочный хэш пароля (PBKDF2 с солью,
+ * сам пароль не хранится). Без связи с backend-ом открыть сохранённое дерево может только этот
+ * пользователь и только с тем же паролем.
+ */
+public class OfflineLogin {
+
+    private static final String FILE_NAME = "offline-login.properties";
+    private static final String KEY_BACKEND = "backend";
+    private static final String KEY_USERNAME = "username";
+    private static final String KEY_SALT = "salt";
+    private static final String KEY_VERIFIER = "verifier";
+    private static final int SALT_BYTES = 16;
+    private static final int ITERATIONS = 120_000;
+    private static final int KEY_BITS = 256;
+
+    private final File file;
+
+    public OfflineLogin() {
+        this(new File(ConfigService.getAppDirectory(), FILE_NAME));
+    }
+
+    OfflineLogin(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Запоминает пользователя после входа, подтверждённого backend-ом; прежний пользователь забывается.
+     */
+    public void remember(String baseUrl, String username, String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        new SecureRandom().nextBytes(salt);
+        Properties properties = new Properties();
+        properties.setProperty(KEY_BACKEND, baseUrl);
+        properties.setProperty(KEY_USERNAME, username);
+        properties.setProperty(KEY_SALT, Base64.getEncoder().encodeToString(salt));
+        properties.setProperty(KEY_VERIFIER, Base64.getEncoder().encodeToString(verifier(password, salt)));
+
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "Last login for offline mode");
+        } catch (IOException ignored) {
+            // без записи офлайн-вход просто будет недоступен
+        }
+    }
+
+    /**
+     * Тот же ли это пользователь того же backend-а, что входил последним, и тот же ли пароль.
+     */
+    public boolean matches(String baseUrl, String username, String password) {
+        if (!file.isFile()) {
+            return false;
+        }
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return false;
+        }
+        if (!baseUrl.equals(properties.getProperty(KEY_BACKEND))
+                || !username.equals(properties.getProperty(KEY_USERNAME))) {
+            return false;
+        }
+        try {
+            byte[] salt = Base64.getDecoder().decode(properties.getProperty(KEY_SALT, ""));
+            byte[] expected = Base64.getDecoder().decode(properties.getProperty(KEY_VERIFIER, ""));
+            return salt.length > 0 && MessageDigest.isEqual(expected, verifier(password, salt));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] verifier(String password, byte[] salt) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
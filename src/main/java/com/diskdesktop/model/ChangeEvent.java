@@ -0,0 +1,77 @@
+package com.diskdesktop.model;
+
+/**
+ * Изменение на backend-е из ленты {@code /changes}: файл или поддиректория {@code name}
+ * директории {@code directory} созданы, изменены или удалены.
+ * <p>
+ * {@link #RESET} означает, что часть изменений пропущена (например, курсор устарел),
+ * и всё известное клиенту нужно перепроверить.
+ */
+public class ChangeEvent {
+
+    public static final String FILE_CREATED = "FILE_CREATED";
+    public static final String FILE_UPDATED = "FILE_UPDATED";
+    public static final String FILE_DELETED = "FILE_DELETED";
+    public static final String DIRECTORY_CREATED = "DIRECTORY_CREATED";
+    public static final String DIRECTORY_DELETED = "DIRECTORY_DELETED";
+    public static final String RESET = "RESET";
+
+    private String type;
+    private String directory;
+    private String name;
+    /**
+     * Новое состояние файла для {@link #FILE_CREATED} и {@link #FILE_UPDATED}.
+     */
+    private FileInfo file;
+    private String cursor;
+
+    public ChangeEvent() {
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public FileInfo getFile() {
+        return file;
+    }
+
+    public void setFile(FileInfo file) {
+        this.file = file;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Полный путь изменённого элемента.
+     */
+    public String getPath() {
+        return directory == null || directory.isEmpty() || ".".equals(directory) ? name : directory + "/" + name;
+    }
+}
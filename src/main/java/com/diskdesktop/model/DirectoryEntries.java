@@ -0,0 +1,88 @@
+package com.diskdesktop.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Содержимое директории одним ответом (/entries): файлы, поддиректории и, при {@code depth > 1},
+ * поддиректории вложенных уровней в {@code children}. У вложенных уровней {@code files} не заполняется.
+ */
+public class DirectoryEntries {
+
+    private String path;
+    private List<FileInfo> files;
+    private List<DirectoryInfo> directories = new ArrayList<>();
+    private List<DirectoryEntries> children = new ArrayList<>();
+    private String nextCursor;
+    private String filesEtag;
+    private String directoriesEtag;
+
+    public DirectoryEntries() {
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public List<FileInfo> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<FileInfo> files) {
+        this.files = files;
+    }
+
+    public List<DirectoryInfo> getDirectories() {
+        return directories;
+    }
+
+    public void setDirectories(List<DirectoryInfo> directories) {
+        this.directories = directories;
+    }
+
+    public List<DirectoryEntries> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<DirectoryEntries> children) {
+        this.children = children;
+    }
+
+    /**
+     * Курсор продолжения списка файлов через {@code GET /files/{directory}?cursor=...};
+     * {@code null}, если файлы переданы все.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * ETag списка файлов — тот же, что у {@code GET /files/{directory}}; {@code null}, если backend его не сообщает.
+     */
+    public String getFilesEtag() {
+        return filesEtag;
+    }
+
+    public void setFilesEtag(String filesEtag) {
+        this.filesEtag = filesEtag;
+    }
+
+    /**
+     * ETag списка поддиректорий — тот же, что у {@code GET /directories/{directory}}.
+     */
+    public String getDirectoriesEtag() {
+        return directoriesEtag;
+    }
+
+    public void setDirectoriesEtag(String directoriesEtag) {
+        this.directoriesEtag = directoriesEtag;
+    }
+}
@@ -1,15 +1,37 @@
 package com.diskdesktop.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.Objects;
+
+/**
+ * Файл на backend-е. Время изменения хранится числом (мс от эпохи): строка ISO-8601 из ответа разбирается
+ * один раз при чтении, а не при каждом показе или сравнении. Директория — общая для всех файлов листинга
+ * строка (см. {@link FileInfoList}).
+ */
+@JsonDeserialize(using = FileInfoDeserializer.class)
 public class FileInfo {
 
+    /**
+     * {@code lastModified}, если backend его не прислал.
+     */
+    public static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
     private String name;
     private long size;
-    private String lastModified;
+    private long lastModified = UNKNOWN_TIME;
     private String directory;
 
     public FileInfo() {
     }
 
+    public FileInfo(String name, long size, long lastModified, String directory) {
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.directory = directory;
+    }
+
     public String getName() {
         return name;
     }
@@ -26,11 +48,14 @@ public class FileInfo {
         this.size = size;
     }
 
-    public String getLastModified() {
+    /**
+     * Мс от эпохи или {@link #UNKNOWN_TIME}.
+     */
+    public long getLastModified() {
         return lastModified;
     }
 
-    public void setLastModified(String lastModified) {
+    public void setLastModified(long lastModified) {
         this.lastModified = lastModified;
     }
 
@@ -41,5 +66,25 @@ public class FileInfo {
     public void setDirectory(String directory) {
         this.directory = directory;
     }
-}
 
+    /**
+     * Файлы равны по значению: строки {@link FileInfoList} создаются заново при каждом обращении.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileInfo)) {
+            return false;
+        }
+        FileInfo other = (FileInfo) o;
+        return size == other.size && lastModified == other.lastModified
+                && Objects.equals(name, other.name) && Objects.equals(directory, other.directory);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, directory, size, lastModified);
+    }
+}
@@ -0,0 +1,166 @@
+package com.diskdesktop.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Чтение {@link FileInfo} из JSON без промежуточных объектов: поля разбираются прямо из потока токенов,
+ * {@code lastModified} сразу превращается в число, а элементы листинга записываются прямо в столбцы
+ * {@link FileInfoList} ({@link #readInto}).
+ */
+public class FileInfoDeserializer extends StdDeserializer<FileInfo> {
+
+    public FileInfoDeserializer() {
+        super(FileInfo.class);
+    }
+
+    @Override
+    public FileInfo deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        FileInfoList single = new FileInfoList(1);
+        readInto(parser, single);
+        return single.get(0);
+    }
+
+    /**
+     * Массив {@code FileInfo[]} целиком в {@link FileInfoList}.
+     */
+    public static class ListDeserializer extends StdDeserializer<FileInfoList> {
+
+        public ListDeserializer() {
+            super(FileInfoList.class);
+        }
+
+        @Override
+        public FileInfoList deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                throw context.wrongTokenException(parser, FileInfoList.class, JsonToken.START_ARRAY,
+                        "File listing must be an array");
+            }
+            FileInfoList files = new FileInfoList();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                readInto(parser, files);
+            }
+            return files;
+        }
+    }
+
+    /**
+     * Дописывает в {@code target} файл, с начала объекта которого стоит {@code parser};
+     * после вызова парсер стоит на конце объекта. Неизвестные поля пропускаются.
+     */
+    public static void readInto(JsonParser parser, FileInfoList target) throws IOException {
+        String name = null;
+        long size = 0;
+        long lastModified = FileInfo.UNKNOWN_TIME;
+        String directory = null;
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "name":
+                    name = parser.getValueAsString();
+                    break;
+                case "size":
+                    size = parser.getValueAsLong(0);
+                    break;
+                case "lastModified":
+                    lastModified = value == JsonToken.VALUE_NUMBER_INT
+                            ? parser.getLongValue()
+                            : parseTime(parser.getValueAsString());
+                    break;
+                case "directory":
+                    directory = parser.getValueAsString();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        target.add(name, size, lastModified, directory);
+    }
+
+    /**
+     * Время ISO-8601 в мс от эпохи; {@link FileInfo#UNKNOWN_TIME}, если строки нет или она не разбирается.
+     * Обычная для backend-а форма {@code 2024-05-01T10:15:30.123Z} разбирается без {@link DateTimeFormatter}.
+     */
+    public static long parseTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return FileInfo.UNKNOWN_TIME;
+        }
+        long millis = parseUtc(value);
+        if (millis != FileInfo.UNKNOWN_TIME) {
+            return millis;
+        }
+        try {
+            return DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(value, Instant::from).toEpochMilli();
+        } catch (DateTimeException e) {
+            return FileInfo.UNKNOWN_TIME;
+        }
+    }
+
+    /**
+     * {@code yyyy-MM-ddTHH:mm:ss[.дробь]Z}; иначе {@link FileInfo#UNKNOWN_TIME}.
+     */
+    private static long parseUtc(String value) {
+        int length = value.length();
+        if (length < 20 || value.charAt(length - 1) != 'Z' || value.charAt(4) != '-' || value.charAt(7) != '-'
+                || value.charAt(10) != 'T' || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return FileInfo.UNKNOWN_TIME;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) {
+            return FileInfo.UNKNOWN_TIME;
+        }
+        int millis = 0;
+        if (length > 20) {
+            int fraction = length - 21;
+            if (value.charAt(19) != '.' || fraction < 1 || fraction > 9 || digits(value, 20, fraction) < 0) {
+                return FileInfo.UNKNOWN_TIME;
+            }
+            // миллисекунды — первые три цифры дроби, более точные отбрасываются
+            millis = digits(value, 20, Math.min(3, fraction));
+            for (int i = fraction; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+        long epochDay;
+        try {
+            epochDay = LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return FileInfo.UNKNOWN_TIME;
+        }
+        return (((epochDay * 24 + hour) * 60 + minute) * 60 + second) * 1000 + millis;
+    }
+
+    /**
+     * Неотрицательное число из {@code count} десятичных цифр или {@code -1}.
+     */
+    private static int digits(String value, int from, int count) {
+        int result = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
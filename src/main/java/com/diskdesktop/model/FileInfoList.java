@@ -0,0 +1,194 @@
+package com.diskdesktop.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Список файлов, хранящий поля по столбцам: имена, размеры, время изменения и директории лежат
+ * в отдельных массивах, без объекта {@link FileInfo} на каждый элемент. На файл приходится около 24 байт
+ * сверх самой строки имени, поэтому в памяти помещаются листинги в миллионы файлов.
+ * <p>
+ * Директории кодируются словарём: одинаковые пути хранятся одной интернированной строкой, а подряд идущие
+ * файлы одной директории (обычный листинг) ссылаются на строку предыдущего элемента без поиска в словаре.
+ * <p>
+ * {@link #get(int)} каждый раз создаёт новую строку-представление {@link FileInfo}; изменения этого объекта
+ * в список не попадают — для этого есть {@link #set(int, FileInfo)}.
+ */
+@JsonDeserialize(using = FileInfoDeserializer.ListDeserializer.class)
+public class FileInfoList extends AbstractList<FileInfo> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String[] names;
+    private long[] sizes;
+    private long[] lastModified;
+    private String[] directories;
+    private int size;
+
+    public FileInfoList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FileInfoList(int capacity) {
+        int initial = Math.max(1, capacity);
+        names = new String[initial];
+        sizes = new long[initial];
+        lastModified = new long[initial];
+        directories = new String[initial];
+    }
+
+    public FileInfoList(Collection<? extends FileInfo> files) {
+        this(files.size());
+        addAll(files);
+    }
+
+    /**
+     * Добавляет файл в конец, не создавая {@link FileInfo}.
+     */
+    public void add(String name, long fileSize, long fileLastModified, String directory) {
+        ensureCapacity(size + 1);
+        store(size, name, fileSize, fileLastModified, directory);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public FileInfo get(int index) {
+        checkIndex(index, size);
+        return new FileInfo(names[index], sizes[index], lastModified[index], directories[index]);
+    }
+
+    public String getName(int index) {
+        checkIndex(index, size);
+        return names[index];
+    }
+
+    public long getSize(int index) {
+        checkIndex(index, size);
+        return sizes[index];
+    }
+
+    public long getLastModified(int index) {
+        checkIndex(index, size);
+        return lastModified[index];
+    }
+
+    public String getDirectory(int index) {
+        checkIndex(index, size);
+        return directories[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public FileInfo set(int index, FileInfo file) {
+        FileInfo previous = get(index);
+        store(index, file.getName(), file.getSize(), file.getLastModified(), file.getDirectory());
+        return previous;
+    }
+
+    @Override
+    public void add(int index, FileInfo file) {
+        checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        int moved = size - index;
+        if (moved > 0) {
+            System.arraycopy(names, index, names, index + 1, moved);
+            System.arraycopy(sizes, index, sizes, index + 1, moved);
+            System.arraycopy(lastModified, index, lastModified, index + 1, moved);
+            System.arraycopy(directories, index, directories, index + 1, moved);
+        }
+        store(index, file.getName(), file.getSize(), file.getLastModified(), file.getDirectory());
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public FileInfo remove(int index) {
+        FileInfo removed = get(index);
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(names, index + 1, names, index, moved);
+            System.arraycopy(sizes, index + 1, sizes, index, moved);
+            System.arraycopy(lastModified, index + 1, lastModified, index, moved);
+            System.arraycopy(directories, index + 1, directories, index, moved);
+        }
+        size--;
+        names[size] = null;
+        directories[size] = null;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Другой {@code FileInfoList} копируется столбцами, без создания строк-представлений.
+     */
+    @Override
+    public boolean addAll(Collection<? extends FileInfo> files) {
+        if (!(files instanceof FileInfoList)) {
+            return super.addAll(files);
+        }
+        FileInfoList other = (FileInfoList) files;
+        int count = other.size;
+        if (count == 0) {
+            return false;
+        }
+        ensureCapacity(size + count);
+        System.arraycopy(other.names, 0, names, size, count);
+        System.arraycopy(other.sizes, 0, sizes, size, count);
+        System.arraycopy(other.lastModified, 0, lastModified, size, count);
+        System.arraycopy(other.directories, 0, directories, size, count);
+        size += count;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(directories, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    private void store(int index, String name, long fileSize, long fileLastModified, String directory) {
+        names[index] = name;
+        sizes[index] = fileSize;
+        lastModified[index] = fileLastModified;
+        directories[index] = canonicalDirectory(index, directory);
+    }
+
+    private String canonicalDirectory(int index, String directory) {
+        if (directory == null) {
+            return null;
+        }
+        if (index > 0 && directory.equals(directories[index - 1])) {
+            return directories[index - 1];
+        }
+        return directory.intern();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= names.length) {
+            return;
+        }
+        int grown = Math.max(capacity, names.length + (names.length >> 1));
+        names = Arrays.copyOf(names, grown);
+        sizes = Arrays.copyOf(sizes, grown);
+        lastModified = Arrays.copyOf(lastModified, grown);
+        directories = Arrays.copyOf(directories, grown);
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+    }
+}
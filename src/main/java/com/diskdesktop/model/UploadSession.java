@@ -0,0 +1,68 @@
+package com.diskdesktop.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сессия поблочной загрузки файла (/uploads).
+ */
+public class UploadSession {
+
+    private String uploadId;
+    private String directory;
+    private String filename;
+    private long size;
+    private long chunkSize;
+    private List<Integer> receivedChunks = new ArrayList<>();
+
+    public UploadSession() {
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public List<Integer> getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(List<Integer> receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+}
@@ -1,24 +1,298 @@
 package com.diskdesktop.service;
 
+import com.diskdesktop.model.DirectoryEntries;
 import com.diskdesktop.model.DirectoryInfo;
 import com.diskdesktop.model.FileInfo;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Высокоуровневый сервис для работы с файловым backend-ом.
  */
 public interface BackendService {
 
-    List<FileInfo> listFiles(String directory) throws ApiException;
+    default List<FileInfo> listFiles(String directory) throws ApiException {
+        return listFiles(directory, CancellationToken.NONE);
+    }
 
-    List<DirectoryInfo> listDirectories(String directory) throws ApiException;
+    /**
+     * Список файлов с возможностью отменить запрос, если результат больше не нужен.
+     * Одинаковые одновременные запросы выполняются одним обращением к backend-у.
+     */
+    List<FileInfo> listFiles(String directory, CancellationToken token) throws ApiException;
 
-    FileInfo uploadFile(String directory, File localFile) throws ApiException;
+    /**
+     * Условный листинг файлов: если {@code etag} совпадает с текущим, возвращает
+     * {@link ListingResult#notModified} без повторной передачи списка.
+     * Реализация по умолчанию условные запросы не поддерживает и всегда отдаёт полный список.
+     */
+    default ListingResult<FileInfo> listFilesIfChanged(String directory, String etag, CancellationToken token)
+            throws ApiException {
+        return ListingResult.of(listFiles(directory, token), null);
+    }
 
-    void downloadFile(String directory, String filename, File targetFile) throws ApiException;
+    /**
+     * Список файлов пачками по {@code batchSize}: первая пачка приходит, не дожидаясь остальных.
+     * Пачки передаются в {@code batches} в потоке вызывающего; для пустой директории пачек нет.
+     * Реализация по умолчанию загружает список целиком и затем делит его.
+     */
+    default void streamFiles(String directory, int batchSize, Consumer<List<FileInfo>> batches,
+                             CancellationToken token) throws ApiException {
+        List<FileInfo> files = listFiles(directory, token);
+        for (int from = 0; from < files.size(); from += batchSize) {
+            token.throwIfCancelled();
+            batches.accept(files.subList(from, Math.min(files.size(), from + batchSize)));
+        }
+    }
+
+    /**
+     * Условный потоковый листинг: если {@code etag} совпадает с текущим, пачек нет и возвращается
+     * {@link ListingResult#notModified}; иначе файлы уходят в {@code batches}, как в {@link #streamFiles},
+     * а результат ({@link ListingResult#streamed}) несёт ETag листинга.
+     * Реализация по умолчанию условные запросы не поддерживает.
+     */
+    default ListingResult<FileInfo> streamFilesIfChanged(String directory, String etag, int batchSize,
+                                                         Consumer<List<FileInfo>> batches, CancellationToken token)
+            throws ApiException {
+        streamFiles(directory, batchSize, batches, token);
+        return ListingResult.streamed(null);
+    }
+
+    default List<DirectoryInfo> listDirectories(String directory) throws ApiException {
+        return listDirectories(directory, CancellationToken.NONE);
+    }
+
+    /**
+     * Список поддиректорий с возможностью отмены; одинаковые одновременные запросы объединяются.
+     */
+    List<DirectoryInfo> listDirectories(String directory, CancellationToken token) throws ApiException;
+
+    /**
+     * Поддиректории нескольких директорий сразу, ключ — путь директории. Директорий, которых нет
+     * на backend-е, в результате нет.
+     */
+    default Map<String, List<DirectoryInfo>> listDirectories(List<String> directories, CancellationToken token)
+            throws ApiException {
+        Map<String, List<DirectoryInfo>> listings = new LinkedHashMap<>();
+        for (Map.Entry<String, ListingResult<DirectoryInfo>> listing
+                : listDirectoryListings(directories, token).entrySet()) {
+            listings.put(listing.getKey(), listing.getValue().getItems());
+        }
+        return listings;
+    }
+
+    /**
+     * Как {@link #listDirectories(List, CancellationToken)}, но вместе с ETag каждого листинга для
+     * последующих условных запросов. Реализация по умолчанию запрашивает директории по одной.
+     */
+    default Map<String, ListingResult<DirectoryInfo>> listDirectoryListings(List<String> directories,
+                                                                            CancellationToken token)
+            throws ApiException {
+        Map<String, ListingResult<DirectoryInfo>> listings = new LinkedHashMap<>();
+        for (String directory : directories) {
+            token.throwIfCancelled();
+            try {
+                listings.put(directory, listDirectoriesIfChanged(directory, null, token));
+            } catch (ApiException e) {
+                if (e.getStatusCode() != 404) {
+                    throw e;
+                }
+            }
+        }
+        return listings;
+    }
+
+    /**
+     * Условный листинг поддиректорий, см. {@link #listFilesIfChanged}.
+     */
+    default ListingResult<DirectoryInfo> listDirectoriesIfChanged(String directory, String etag,
+                                                                  CancellationToken token) throws ApiException {
+        return ListingResult.of(listDirectories(directory, token), null);
+    }
+
+    /**
+     * Содержимое директории одним запросом: файлы передаются пачками, как в {@link #streamFiles},
+     * поддиректории (и при {@code depth > 1} — поддиректории вложенных уровней) возвращаются в результате.
+     * Реализация по умолчанию делает два отдельных запроса и вложенные уровни не заполняет.
+     */
+    default DirectoryEntries listEntries(String directory, int depth, int batchSize,
+                                         Consumer<List<FileInfo>> fileBatches, CancellationToken token)
+            throws ApiException {
+        DirectoryEntries entries = new DirectoryEntries();
+        entries.setPath(directory);
+        ListingResult<DirectoryInfo> directories = listDirectoriesIfChanged(directory, null, token);
+        entries.setDirectories(directories.getItems());
+        entries.setDirectoriesEtag(directories.getEtag());
+        entries.setFilesEtag(streamFilesIfChanged(directory, null, batchSize, fileBatches, token).getEtag());
+        return entries;
+    }
+
+    default FileInfo uploadFile(String directory, File localFile) throws ApiException {
+        return uploadFile(directory, localFile, TransferListener.NONE);
+    }
+
+    /**
+     * Загрузка файла с отчётом о прогрессе (байты, сглаженная скорость, оставшееся время).
+     */
+    default FileInfo uploadFile(String directory, File localFile, TransferListener listener) throws ApiException {
+        return uploadFile(directory, localFile, listener, CancellationToken.NONE);
+    }
+
+    /**
+     * Как {@link #uploadFile(String, File, TransferListener)}, но отмена {@code token} обрывает все запросы
+     * загрузки и завершает её {@link RequestCancelledException}.
+     */
+    FileInfo uploadFile(String directory, File localFile, TransferListener listener, CancellationToken token)
+            throws ApiException;
+
+    /**
+     * Загрузка нескольких файлов в одну директорию с общим прогрессом. Реализация по умолчанию загружает
+     * их по одному; реализации, умеющие передавать файлы одним запросом, переопределяют метод.
+     *
+     * @return созданные файлы
+     */
+    default List<FileInfo> uploadFiles(String directory, List<File> localFiles, TransferListener listener)
+            throws ApiException {
+        long totalBytes = 0;
+        for (File localFile : localFiles) {
+            totalBytes += localFile.length();
+        }
+        ProgressTracker tracker = new ProgressTracker(totalBytes, listener);
+        List<FileInfo> uploaded = new ArrayList<>(localFiles.size());
+        for (File localFile : localFiles) {
+            long[] reported = {0};
+            uploaded.add(uploadFile(directory, localFile, progress -> {
+                tracker.add(progress.getBytesDone() - reported[0]);
+                reported[0] = progress.getBytesDone();
+            }));
+        }
+        tracker.finish();
+        return uploaded;
+    }
+
+    default FileInfo uploadFileChunked(String directory, File localFile) throws ApiException {
+        return uploadFileChunked(directory, localFile, TransferListener.NONE);
+    }
+
+    /**
+     * Поблочная загрузка с возможностью продолжить после обрыва или перезапуска приложения.
+     */
+    default FileInfo uploadFileChunked(String directory, File localFile, TransferListener listener)
+            throws ApiException {
+        return uploadFileChunked(directory, localFile, listener, CancellationToken.NONE);
+    }
+
+    /**
+     * Как {@link #uploadFileChunked(String, File, TransferListener)}, но отмена {@code token} обрывает
+     * все запросы и завершает загрузку {@link RequestCancelledException}; сессия остаётся для продолжения.
+     */
+    FileInfo uploadFileChunked(String directory, File localFile, TransferListener listener, CancellationToken token)
+            throws ApiException;
+
+    default void downloadFile(String directory, String filename, File targetFile) throws ApiException {
+        downloadFile(directory, filename, targetFile, TransferListener.NONE);
+    }
+
+    /**
+     * Скачивание файла с отчётом о прогрессе (байты, сглаженная скорость, оставшееся время).
+     */
+    default void downloadFile(String directory, String filename, File targetFile, TransferListener listener)
+            throws ApiException {
+        downloadFile(directory, filename, targetFile, listener, CancellationToken.NONE);
+    }
+
+    /**
+     * Как {@link #downloadFile(String, String, File, TransferListener)}, но отмена {@code token} обрывает
+     * все запросы скачивания и завершает его {@link RequestCancelledException}; докачанная часть сохраняется
+     * для продолжения.
+     */
+    void downloadFile(String directory, String filename, File targetFile, TransferListener listener,
+                      CancellationToken token) throws ApiException;
 
     DirectoryInfo createDirectory(String parentDirectory, String name) throws ApiException;
-}
 
+    /**
+     * Создаёт директории по путям от корня вместе с недостающими родителями ({@code mkdir -p});
+     * существующие директории ошибкой не считаются. Реализация по умолчанию создаёт каждую директорию
+     * отдельным запросом, а её недостающих родителей — только если backend ответил, что их нет.
+     *
+     * @return директории в порядке {@code paths}
+     */
+    default List<DirectoryInfo> createDirectories(List<String> paths) throws ApiException {
+        List<DirectoryInfo> result = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            result.add(createDirectoryWithParents(path));
+        }
+        return result;
+    }
+
+    private DirectoryInfo createDirectoryWithParents(String path) throws ApiException {
+        String parent = ".";
+        String name = null;
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if (name != null) {
+                parent = ".".equals(parent) ? name : parent + "/" + name;
+            }
+            name = segment;
+        }
+        if (name == null) {
+            throw new IllegalArgumentException("Empty directory path: " + path);
+        }
+        try {
+            createDirectoryIfAbsent(parent, name);
+        } catch (ApiException e) {
+            if (e.getStatusCode() != 404 || ".".equals(parent)) {
+                throw e;
+            }
+            // нет родителя: создаём его и повторяем
+            createDirectoryWithParents(parent);
+            createDirectoryIfAbsent(parent, name);
+        }
+        DirectoryInfo directory = new DirectoryInfo();
+        directory.setName(name);
+        directory.setPath(".".equals(parent) ? name : parent + "/" + name);
+        return directory;
+    }
+
+    private void createDirectoryIfAbsent(String parent, String name) throws ApiException {
+        try {
+            createDirectory(parent, name);
+        } catch (ApiException e) {
+            if (e.getStatusCode() != 409) {
+                throw e;
+            }
+            // уже существует
+        }
+    }
+
+    /**
+     * Помечает закэшированные листинги директории устаревшими: следующий запрос перепроверит их на backend-е.
+     * Реализации без кэша ничего не делают.
+     */
+    default void invalidate(String directory) {
+    }
+
+    /**
+     * Содержимое директории, уже известное без обращения к backend-у (возможно, устаревшее):
+     * поддиректории на {@code depth} уровней и файлы, если они есть. {@code null} — ничего не известно.
+     * Реализации без кэша всегда возвращают {@code null}.
+     */
+    default DirectoryEntries peekEntries(String directory, int depth) {
+        return null;
+    }
+
+    /**
+     * {@code true}, если содержимое директории известно и не требует перепроверки на backend-е.
+     */
+    default boolean isFresh(String directory) {
+        return false;
+    }
+}
@@ -1,90 +1,534 @@
 package com.diskdesktop.service;
 
+import com.diskdesktop.api.BlobApi;
 import com.diskdesktop.api.DirectoryApi;
 import com.diskdesktop.api.FileApi;
+import com.diskdesktop.api.UploadApi;
+import com.diskdesktop.config.ApiClientConfig;
+import com.diskdesktop.config.AppConfig;
+import com.diskdesktop.config.FsyncPolicy;
+import com.diskdesktop.model.DirectoryEntries;
 import com.diskdesktop.model.DirectoryInfo;
 import com.diskdesktop.model.FileInfo;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
+import retrofit2.Call;
 import retrofit2.Response;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Реализация {@link BackendService} на основе Retrofit-клиентов.
  */
 public class BackendServiceImpl implements BackendService {
 
+    /**
+     * Свободных буферов храним с запасом на параллельные диапазоны и скачивание папок.
+     */
+    private static final int MAX_POOLED_BUFFERS = 16;
+    /**
+     * Путей в одном пакетном листинге: они передаются в строке запроса, а её длина ограничена.
+     */
+    private static final int MAX_PATHS_PER_LISTING = 100;
+
     private final FileApi fileApi;
     private final DirectoryApi directoryApi;
+    private final BlobApi blobApi;
+    private final RangeDownloader rangeDownloader;
+    private final BufferPool bufferPool;
+    private final FsyncPolicy fsyncPolicy;
+    /**
+     * {@code null}, если кэш скачанных файлов отключён.
+     */
+    private final DownloadCache downloadCache;
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final ChunkedUploader chunkedUploader;
+    private final FileListingParser listingParser = new FileListingParser();
+    private final ContentHasher contentHasher = new ContentHasher();
+    private final int listingPageSize;
+    private final long chunkedUploadThreshold;
+    private final long dedupMinSize;
+    /**
+     * Сбрасывается, если backend не знает /uploads: дальше большие файлы идут обычным multipart-запросом.
+     */
+    private volatile boolean chunkedUploadSupported = true;
+    /**
+     * Сбрасывается, если backend не знает /entries: содержимое директории запрашивается двумя запросами.
+     */
+    private volatile boolean entriesSupported = true;
+    /**
+     * Сбрасывается, если backend не знает /blobs/lookup: файлы загружаются без проверки содержимого.
+     */
+    private volatile boolean dedupSupported = true;
+    /**
+     * Сбрасывается, если backend не принимает архивы: несколько файлов загружаются по одному.
+     */
+    private volatile boolean archiveUploadSupported = true;
+    /**
+     * Сбрасывается, если backend не знает пакетных операций с директориями: они выполняются по одной.
+     */
+    private volatile boolean directoryBatchSupported = true;
+
+    public BackendServiceImpl(ApiClientConfig apiClientConfig, AppConfig appConfig) {
+        this(apiClientConfig.getFileApi(), apiClientConfig.getDirectoryApi(), apiClientConfig.getUploadApi(),
+                apiClientConfig.getBlobApi(), appConfig);
+    }
 
-    public BackendServiceImpl(FileApi fileApi, DirectoryApi directoryApi) {
+    public BackendServiceImpl(FileApi fileApi, DirectoryApi directoryApi, UploadApi uploadApi, BlobApi blobApi,
+                              AppConfig appConfig) {
         this.fileApi = fileApi;
         this.directoryApi = directoryApi;
+        this.blobApi = blobApi;
+        this.bufferPool = new BufferPool(Math.max(8 * 1024, appConfig.getDownloadBufferSize()), MAX_POOLED_BUFFERS);
+        this.fsyncPolicy = appConfig.getDownloadFsync();
+        this.downloadCache = appConfig.getDownloadCacheMaxBytes() > 0
+                ? new DownloadCache(appConfig.getDownloadCacheMaxBytes())
+                : null;
+        this.rangeDownloader = new RangeDownloader(fileApi, appConfig.getDownloadParallelRanges(),
+                appConfig.getDownloadMinRangeSize(), bufferPool, fsyncPolicy);
+        this.chunkedUploader = new ChunkedUploader(
+                uploadApi, appConfig.getUploadChunkSize(), appConfig.getUploadParallelChunks());
+        this.chunkedUploadThreshold = appConfig.getUploadChunkedThreshold();
+        this.dedupMinSize = appConfig.getDedupMinSize();
+        this.listingPageSize = Math.max(1, appConfig.getListingPageSize());
+    }
+
+    @Override
+    public List<FileInfo> listFiles(String directory, CancellationToken token) throws ApiException {
+        return listFilesIfChanged(directory, null, token).getItems();
     }
 
     @Override
-    public List<FileInfo> listFiles(String directory) throws ApiException {
+    public ListingResult<FileInfo> listFilesIfChanged(String directory, String etag, CancellationToken token)
+            throws ApiException {
+        String path = encodePath(directory);
         try {
-            Response<List<FileInfo>> response = fileApi.listFiles(encodePath(directory)).execute();
-            return handleResponse(response);
+            return coalescer.execute("files:" + path + ":" + etag,
+                    () -> fileApi.listFiles(path, etag), BackendServiceImpl::handleListing, token);
         } catch (IOException e) {
             throw new ApiException("Network error while listing files", e);
         }
     }
 
     @Override
-    public List<DirectoryInfo> listDirectories(String directory) throws ApiException {
+    public void streamFiles(String directory, int batchSize, Consumer<List<FileInfo>> batches,
+                            CancellationToken token) throws ApiException {
+        streamFilesIfChanged(directory, null, batchSize, batches, token);
+    }
+
+    @Override
+    public ListingResult<FileInfo> streamFilesIfChanged(String directory, String etag, int batchSize,
+                                                        Consumer<List<FileInfo>> batches, CancellationToken token)
+            throws ApiException {
+        return streamFilesFrom(encodePath(directory), null, etag, batchSize, batches, token);
+    }
+
+    @Override
+    public DirectoryEntries listEntries(String directory, int depth, int batchSize,
+                                        Consumer<List<FileInfo>> fileBatches, CancellationToken token)
+            throws ApiException {
+        if (!entriesSupported) {
+            return BackendService.super.listEntries(directory, depth, batchSize, fileBatches, token);
+        }
+        String path = encodePath(directory);
+        DirectoryEntries entries;
+        Call<ResponseBody> call = directoryApi.listEntries(path, depth, listingPageSize);
+        Runnable unregister = token.onCancel(call::cancel);
         try {
-            Response<List<DirectoryInfo>> response = directoryApi.listDirectories(encodePath(directory)).execute();
-            return handleResponse(response);
+            ResponseBody body = handleResponse(call.execute());
+            try (InputStream in = body.byteStream()) {
+                entries = listingParser.parseEntries(in, batchSize, fileBatches, token);
+            }
+        } catch (ApiException e) {
+            if (e.getStatusCode() != 404 && e.getStatusCode() != 405 && e.getStatusCode() != 501) {
+                throw e;
+            }
+            // 404 бывает и у несуществующей директории: тогда ошибку вернёт и запасной путь
+            DirectoryEntries fallback =
+                    BackendService.super.listEntries(directory, depth, batchSize, fileBatches, token);
+            entriesSupported = false;
+            return fallback;
+        } catch (IOException e) {
+            token.throwIfCancelled();
+            throw new ApiException("Network error while listing entries", e);
+        } finally {
+            unregister.run();
+        }
+        if (entries.getPath() == null) {
+            entries.setPath(directory);
+        }
+        if (entries.getNextCursor() != null) {
+            // ETag листинга уже пришёл в самом ответе /entries
+            streamFilesFrom(path, entries.getNextCursor(), null, batchSize, fileBatches, token);
+            entries.setNextCursor(null);
+        }
+        return entries;
+    }
+
+    /**
+     * Читает страницы листинга, начиная с {@code cursor}. {@code etag} проверяется первым запросом,
+     * и ETag всего листинга берётся из ответа на него же.
+     */
+    private ListingResult<FileInfo> streamFilesFrom(String path, String cursor, String etag, int batchSize,
+                                                    Consumer<List<FileInfo>> batches, CancellationToken token)
+            throws ApiException {
+        String listingEtag = null;
+        boolean first = true;
+        do {
+            token.throwIfCancelled();
+            Call<ResponseBody> call = fileApi.listFilesPage(path, cursor, listingPageSize, first ? etag : null);
+            Runnable unregister = token.onCancel(call::cancel);
+            try {
+                Response<ResponseBody> response = call.execute();
+                if (first) {
+                    listingEtag = response.headers().get("ETag");
+                    if (response.code() == 304) {
+                        if (response.errorBody() != null) {
+                            response.errorBody().close();
+                        }
+                        return ListingResult.notModified(listingEtag != null ? listingEtag : etag);
+                    }
+                }
+                ResponseBody body = handleResponse(response);
+                try (InputStream in = body.byteStream()) {
+                    cursor = listingParser.parse(in, batchSize, batches, token);
+                }
+            } catch (IOException e) {
+                token.throwIfCancelled();
+                throw new ApiException("Network error while listing files", e);
+            } finally {
+                unregister.run();
+            }
+            first = false;
+        } while (cursor != null);
+        return ListingResult.streamed(listingEtag);
+    }
+
+    @Override
+    public List<DirectoryInfo> listDirectories(String directory, CancellationToken token) throws ApiException {
+        return listDirectoriesIfChanged(directory, null, token).getItems();
+    }
+
+    /**
+     * Листинги запрашиваются пачками по {@link #MAX_PATHS_PER_LISTING} путей в одном запросе.
+     */
+    @Override
+    public Map<String, ListingResult<DirectoryInfo>> listDirectoryListings(List<String> directories,
+                                                                           CancellationToken token)
+            throws ApiException {
+        if (!directoryBatchSupported || directories.size() < 2) {
+            return BackendService.super.listDirectoryListings(directories, token);
+        }
+        Map<String, ListingResult<DirectoryInfo>> listings = new LinkedHashMap<>();
+        for (int from = 0; from < directories.size(); from += MAX_PATHS_PER_LISTING) {
+            token.throwIfCancelled();
+            int to = Math.min(directories.size(), from + MAX_PATHS_PER_LISTING);
+            List<String> paths = new ArrayList<>(to - from);
+            for (String directory : directories.subList(from, to)) {
+                paths.add(encodePath(directory));
+            }
+            Call<List<DirectoryEntries>> call = directoryApi.listDirectories(paths);
+            Runnable unregister = token.onCancel(call::cancel);
+            List<DirectoryEntries> entries;
+            try {
+                entries = handleResponse(call.execute());
+            } catch (ApiException e) {
+                if (e.getStatusCode() != 404 && e.getStatusCode() != 405 && e.getStatusCode() != 501) {
+                    throw e;
+                }
+                directoryBatchSupported = false;
+                listings.putAll(BackendService.super.listDirectoryListings(
+                        directories.subList(from, directories.size()), token));
+                return listings;
+            } catch (IOException e) {
+                token.throwIfCancelled();
+                throw new ApiException("Network error while listing directories", e);
+            } finally {
+                unregister.run();
+            }
+            if (entries != null) {
+                for (DirectoryEntries entry : entries) {
+                    listings.put(entry.getPath(), ListingResult.of(
+                            entry.getDirectories() != null ? entry.getDirectories() : List.of(),
+                            entry.getDirectoriesEtag()));
+                }
+            }
+        }
+        return listings;
+    }
+
+    @Override
+    public ListingResult<DirectoryInfo> listDirectoriesIfChanged(String directory, String etag,
+                                                                 CancellationToken token) throws ApiException {
+        String path = encodePath(directory);
+        try {
+            return coalescer.execute("directories:" + path + ":" + etag,
+                    () -> directoryApi.listDirectories(path, etag), BackendServiceImpl::handleListing, token);
         } catch (IOException e) {
             throw new ApiException("Network error while listing directories", e);
         }
     }
 
     @Override
-    public FileInfo uploadFile(String directory, File localFile) throws ApiException {
+    public FileInfo uploadFile(String directory, File localFile, TransferListener listener, CancellationToken token)
+            throws ApiException {
+        token.throwIfCancelled();
+        FileInfo deduplicated = createFromKnownContent(directory, localFile, listener, token);
+        if (deduplicated != null) {
+            return deduplicated;
+        }
+        if (chunkedUploadSupported && chunkedUploadThreshold > 0 && localFile.length() >= chunkedUploadThreshold) {
+            try {
+                return uploadFileChunked(directory, localFile, listener, token);
+            } catch (ChunkedUploader.SessionRejectedException e) {
+                // 404 бывает и у несуществующей директории: тогда ошибку вернёт и обычная загрузка
+                FileInfo fileInfo = uploadMultipart(directory, localFile, listener, token);
+                chunkedUploadSupported = false;
+                return fileInfo;
+            }
+        }
+        return uploadMultipart(directory, localFile, listener, token);
+    }
+
+    private FileInfo uploadMultipart(String directory, File localFile, TransferListener listener,
+                                     CancellationToken token) throws ApiException {
         try {
-            RequestBody fileBody = RequestBody.create(localFile, MediaType.parse("application/octet-stream"));
+            ProgressTracker tracker = new ProgressTracker(localFile.length(), listener);
+            RequestBody fileBody = new CountingRequestBody(
+                    RequestBody.create(localFile, MediaType.parse("application/octet-stream")), tracker);
             MultipartBody.Part part = MultipartBody.Part.createFormData("file", localFile.getName(), fileBody);
 
-            Response<FileInfo> response = fileApi.uploadFile(encodePath(directory), part).execute();
-            return handleResponse(response);
+            Call<FileInfo> call = fileApi.uploadFile(encodePath(directory), part);
+            Runnable unregister = token.onCancel(call::cancel);
+            Response<FileInfo> response;
+            try {
+                response = call.execute();
+            } finally {
+                unregister.run();
+            }
+            FileInfo fileInfo = handleResponse(response);
+            tracker.finish();
+            return fileInfo;
+        } catch (IOException e) {
+            token.throwIfCancelled();
+            throw new ApiException("Network error while uploading file", e);
+        }
+    }
+
+    /**
+     * Файлы уходят одним tar-архивом, который собирается прямо при отправке: один запрос и один ответ
+     * вместо пары на каждый файл. Прогресс считается по байтам архива.
+     */
+    @Override
+    public List<FileInfo> uploadFiles(String directory, List<File> localFiles, TransferListener listener)
+            throws ApiException {
+        if (!archiveUploadSupported || localFiles.size() < 2) {
+            return BackendService.super.uploadFiles(directory, localFiles, listener);
+        }
+        try {
+            TarRequestBody archive = new TarRequestBody(localFiles);
+            ProgressTracker tracker = new ProgressTracker(archive.contentLength(), listener);
+            Response<List<FileInfo>> response =
+                    fileApi.uploadArchive(encodePath(directory), new CountingRequestBody(archive, tracker)).execute();
+            if (response.code() == 404 || response.code() == 405 || response.code() == 415
+                    || response.code() == 501) {
+                archiveUploadSupported = false;
+                if (response.errorBody() != null) {
+                    response.errorBody().close();
+                }
+                return BackendService.super.uploadFiles(directory, localFiles, listener);
+            }
+            List<FileInfo> uploaded = handleResponse(response);
+            tracker.finish();
+            return uploaded != null ? uploaded : List.of();
         } catch (IOException e) {
+            throw new ApiException("Network error while uploading files", e);
+        }
+    }
+
+    /**
+     * Создаёт файл из содержимого, которое уже хранится на backend-е, не передавая его байты.
+     * {@code null} — такого содержимого нет (или backend не поддерживает дедупликацию) и файл нужно загрузить.
+     */
+    private FileInfo createFromKnownContent(String directory, File localFile, TransferListener listener,
+                                            CancellationToken token) throws ApiException {
+        long size = localFile.length();
+        if (!dedupSupported || dedupMinSize <= 0 || size < dedupMinSize) {
+            return null;
+        }
+        String hash;
+        try {
+            hash = contentHasher.hash(localFile, token);
+        } catch (IOException e) {
+            return null; // ошибку чтения покажет обычная загрузка
+        }
+        try (CallGroup calls = new CallGroup(token)) {
+            Map<String, Object> lookup = new HashMap<>();
+            lookup.put("hashes", List.of(hash));
+            Map<String, List<String>> known;
+            try {
+                known = handleResponse(calls.execute(blobApi.lookup(lookup)));
+            } catch (ApiException e) {
+                if (e.getStatusCode() != 404 && e.getStatusCode() != 405 && e.getStatusCode() != 501) {
+                    throw e;
+                }
+                dedupSupported = false;
+                return null;
+            }
+            if (known == null || known.get("known") == null || !known.get("known").contains(hash)) {
+                return null;
+            }
+
+            Map<String, Object> body = new HashMap<>();
+            body.put("name", localFile.getName());
+            body.put("sha256", hash);
+            body.put("size", size);
+            Response<FileInfo> response = calls.execute(fileApi.createFromBlob(encodePath(directory), body));
+            if (response.code() == 404) {
+                return null; // содержимое удалили между проверкой и копированием
+            }
+            FileInfo fileInfo = handleResponse(response);
+            ProgressTracker tracker = new ProgressTracker(size, listener);
+            tracker.skip(size);
+            tracker.finish();
+            return fileInfo;
+        } catch (IOException e) {
+            token.throwIfCancelled();
+            throw new ApiException("Network error while uploading file", e);
+        }
+    }
+
+    @Override
+    public FileInfo uploadFileChunked(String directory, File localFile, TransferListener listener,
+                                      CancellationToken token) throws ApiException {
+        try {
+            return chunkedUploader.upload(encodePath(directory), localFile, listener, token);
+        } catch (IOException e) {
+            token.throwIfCancelled();
             throw new ApiException("Network error while uploading file", e);
         }
     }
 
     @Override
-    public void downloadFile(String directory, String filename, File targetFile) throws ApiException {
+    public void downloadFile(String directory, String filename, File targetFile, TransferListener listener,
+                             CancellationToken token) throws ApiException {
+        String path = encodePath(directory);
         try {
-            Response<ResponseBody> response =
-                    fileApi.downloadFile(encodePath(directory), filename).execute();
-            ResponseBody body = handleResponse(response);
-
-            try (ResponseBody ignored = body;
-                 InputStream in = body.byteStream();
-                 FileOutputStream out = new FileOutputStream(targetFile)) {
-                byte[] buffer = new byte[8 * 1024];
-                int read;
-                while ((read = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, read);
+            token.throwIfCancelled();
+            if (downloadCache != null && downloadFromCache(path, filename, targetFile, listener, token)) {
+                return;
+            }
+            RangeDownloader.Downloaded downloaded =
+                    rangeDownloader.download(path, filename, targetFile, listener, token);
+            if (downloaded == null) {
+                Call<ResponseBody> call = fileApi.downloadFile(path, filename);
+                Runnable unregister = token.onCancel(call::cancel);
+                try {
+                    Response<ResponseBody> response = call.execute();
+                    downloaded = new RangeDownloader.Downloaded(RangeDownloader.validatorOf(response));
+                    writeBody(handleResponse(response), targetFile, listener);
+                } finally {
+                    unregister.run();
                 }
             }
+            remember(path, filename, downloaded.validator, targetFile);
         } catch (IOException e) {
+            token.throwIfCancelled();
             throw new ApiException("Network error while downloading file", e);
         }
     }
 
+    /**
+     * Повторное скачивание закэшированного файла: один условный запрос, при 304 — локальная копия.
+     * Если файл изменился, тело ответа не читается: новая версия скачивается обычным путём — через
+     * {@code .part} с диапазонами и продолжением после обрыва — и заменяет закэшированную.
+     *
+     * @return {@code false}, если файла нет в кэше или он изменился и его нужно скачать обычным путём
+     */
+    private boolean downloadFromCache(String path, String filename, File targetFile, TransferListener listener,
+                                      CancellationToken token) throws IOException, ApiException {
+        String validator = downloadCache.validatorOf(path, filename);
+        if (validator == null) {
+            return false;
+        }
+        boolean etag = validator.startsWith("\"");
+        Call<ResponseBody> call = fileApi.downloadFileIfChanged(
+                path, filename, etag ? validator : null, etag ? null : validator);
+        Runnable unregister = token.onCancel(call::cancel);
+        Response<ResponseBody> response;
+        try {
+            response = call.execute();
+        } finally {
+            unregister.run();
+        }
+        if (response.code() == 304) {
+            if (response.errorBody() != null) {
+                response.errorBody().close();
+            }
+            if (!downloadCache.copyTo(path, filename, validator, targetFile)) {
+                return false; // вытеснен между проверкой и копированием
+            }
+            ProgressTracker tracker = new ProgressTracker(targetFile.length(), listener);
+            tracker.skip(targetFile.length());
+            tracker.finish();
+            return true;
+        }
+        // запись тела прямо в targetFile не продолжилась бы после обрыва, а оборванный файл выглядел бы целым
+        ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+        if (body != null) {
+            body.close();
+        }
+        return false;
+    }
+
+    private void remember(String path, String filename, String validator, File targetFile) {
+        if (downloadCache == null || validator == null) {
+            return;
+        }
+        try {
+            downloadCache.put(path, filename, validator, targetFile);
+        } catch (IOException ignored) {
+            // кэш — только ускорение: файл уже скачан
+        }
+    }
+
+    /**
+     * Записывает тело ответа целиком в {@code targetFile}, заранее заняв место под известный размер.
+     */
+    private void writeBody(ResponseBody body, File targetFile, TransferListener listener) throws IOException {
+        long contentLength = body.contentLength();
+        ProgressTracker tracker = new ProgressTracker(contentLength, listener);
+        try (ResponseBody ignored = body;
+             BufferedSource in = Okio.buffer(new CountingSource(body.source(), tracker));
+             RandomAccessFile file = new RandomAccessFile(targetFile, "rw");
+             FileChannel channel = file.getChannel()) {
+            if (contentLength > 0) {
+                file.setLength(contentLength);
+            }
+            long written = ChannelTransfer.transfer(in, channel, 0, bufferPool, ChannelTransfer.NONE);
+            // размер мог быть неизвестен или отличаться от заявленного
+            file.setLength(written);
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                channel.force(false);
+            }
+        }
+        tracker.finish();
+    }
+
     @Override
     public DirectoryInfo createDirectory(String parentDirectory, String name) throws ApiException {
         try {
@@ -98,6 +542,30 @@ public class BackendServiceImpl implements BackendService {
         }
     }
 
+    @Override
+    public List<DirectoryInfo> createDirectories(List<String> paths) throws ApiException {
+        if (!directoryBatchSupported) {
+            return BackendService.super.createDirectories(paths);
+        }
+        List<String> encoded = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            encoded.add(encodePath(path));
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("paths", encoded);
+        try {
+            return handleResponse(directoryApi.createDirectories(body).execute());
+        } catch (ApiException e) {
+            if (e.getStatusCode() != 404 && e.getStatusCode() != 405 && e.getStatusCode() != 501) {
+                throw e;
+            }
+            directoryBatchSupported = false;
+            return BackendService.super.createDirectories(paths);
+        } catch (IOException e) {
+            throw new ApiException("Network error while creating directories", e);
+        }
+    }
+
     private String encodePath(String path) {
         if (path == null || path.isEmpty() || ".".equals(path)) {
             return ".";
@@ -106,7 +574,18 @@ public class BackendServiceImpl implements BackendService {
         return path;
     }
 
-    private static <T> T handleResponse(Response<T> response) throws ApiException {
+    /**
+     * Ответ условного листинга: 304 — список не изменился, иначе список и его ETag.
+     */
+    static <T> ListingResult<T> handleListing(Response<? extends List<T>> response) throws ApiException {
+        String etag = response.headers().get("ETag");
+        if (response.code() == 304) {
+            return ListingResult.notModified(etag);
+        }
+        return ListingResult.of(handleResponse(response), etag);
+    }
+
+    static <T> T handleResponse(Response<T> response) throws ApiException {
         if (response.isSuccessful()) {
             return response.body();
         }
@@ -0,0 +1,47 @@
+package com.diskdesktop.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул direct-буферов одного размера для записи скачиваемых файлов.
+ * <p>
+ * Direct-буфер пишется в {@code FileChannel} без промежуточного копирования (heap-буфер JDK сначала копирует
+ * во временный direct), а переиспользование избавляет от дорогого выделения такой памяти на каждое скачивание.
+ * Пул хранит не больше {@code maxRetained} свободных буферов; сверх этого возвращённые отдаются сборщику мусора.
+ */
+class BufferPool {
+
+    private final int bufferSize;
+    private final int maxRetained;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retained = new AtomicInteger();
+
+    BufferPool(int bufferSize, int maxRetained) {
+        this.bufferSize = bufferSize;
+        this.maxRetained = maxRetained;
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        retained.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        if (retained.incrementAndGet() <= maxRetained) {
+            free.offer(buffer);
+        } else {
+            retained.decrementAndGet();
+        }
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+}
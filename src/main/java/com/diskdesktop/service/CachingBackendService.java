@@ -0,0 +1,516 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.AppConfig;
+import com.diskdesktop.model.ChangeEvent;
+import com.diskdesktop.model.DirectoryEntries;
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.FileInfoList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Кэширует листинги файлов и поддиректорий поверх другого {@link BackendService}.
+ * <p>
+ * Пока запись моложе TTL, она отдаётся без обращения к backend-у. Устаревшая запись перепроверяется
+ * условным запросом с её ETag: на 304 список не передаётся заново. Собственные загрузки и создание
+ * директорий сразу помечают затронутые листинги устаревшими.
+ * <p>
+ * Каждый полученный листинг заодно обновляет {@link PathIndex}, если он задан, — в том числе листинги,
+ * не уложившиеся в бюджет кэша.
+ * <p>
+ * События ленты изменений ({@link ChangeFeed}) применяются к закэшированным листингам на месте,
+ * а пока лента подключена, полученные после подключения листинги не устаревают по TTL.
+ */
+public class CachingBackendService extends ForwardingBackendService {
+
+    private static final String FILES_PREFIX = "files:";
+    private static final String DIRECTORIES_PREFIX = "directories:";
+
+    private final MetadataCache cache;
+    private final PathIndex pathIndex;
+
+    public CachingBackendService(BackendService delegate, AppConfig appConfig) {
+        this(delegate, appConfig, null);
+    }
+
+    /**
+     * @param pathIndex индекс путей для поиска; {@code null} — не вести
+     */
+    public CachingBackendService(BackendService delegate, AppConfig appConfig, PathIndex pathIndex) {
+        this(delegate, new MetadataCache(appConfig.getCacheMaxEntries(), appConfig.getCacheMaxBytes(),
+                appConfig.getCacheTtlSeconds() * 1000), pathIndex);
+    }
+
+    CachingBackendService(BackendService delegate, MetadataCache cache, PathIndex pathIndex) {
+        super(delegate);
+        this.cache = cache;
+        this.pathIndex = pathIndex;
+    }
+
+    @Override
+    public List<FileInfo> listFiles(String directory, CancellationToken token) throws ApiException {
+        return cached(filesKey(directory), CachingBackendService::fileSize,
+                etag -> delegate.listFilesIfChanged(directory, etag, token));
+    }
+
+    /**
+     * Свежий листинг отдаётся из кэша. Иначе листинг читается потоково — условным запросом с ETag
+     * закэшированного, если он есть: на 304 пачки отдаются из кэша. Прочитанный листинг попадает в кэш,
+     * только если уложился в {@link MetadataCache#maxEntryBytes()}.
+     */
+    @Override
+    public void streamFiles(String directory, int batchSize, Consumer<List<FileInfo>> batches,
+                            CancellationToken token) throws ApiException {
+        String key = filesKey(directory);
+        MetadataCache.Entry<FileInfo> entry = cache.get(key);
+        if (entry != null && cache.isFresh(entry)) {
+            emit(entry.items, batchSize, batches, token);
+            return;
+        }
+
+        long generation = cache.generation();
+        BudgetCollector collector = new BudgetCollector(directory, batches, cache.maxEntryBytes());
+        ListingResult<FileInfo> result = delegate.streamFilesIfChanged(
+                directory, entry != null ? entry.etag : null, batchSize, collector, token);
+        if (result.isNotModified()) {
+            if (entry != null) {
+                cache.revalidated(key, entry, generation);
+                emit(entry.items, batchSize, batches, token);
+                return;
+            }
+            // 304 на безусловный запрос backend прислать не должен; на всякий случай запрашиваем заново
+            result = delegate.streamFilesIfChanged(directory, null, batchSize, collector, token);
+        }
+        collector.store(key, result.getEtag(), generation);
+    }
+
+    /**
+     * Если и файлы, и поддиректории свежие в кэше, запрос не выполняется. Если они в кэше вместе с ETag,
+     * но устарели, каждый список перепроверяется условным запросом и на 304 заново не передаётся.
+     * Иначе все поддиректории из ответа (включая вложенные уровни) и помещающийся в бюджет список файлов
+     * сохраняются в кэш вместе с их ETag, так что последующее раскрытие дерева и переход в поддиректорию
+     * не требуют запросов, а по истечении TTL — только условных.
+     */
+    @Override
+    public DirectoryEntries listEntries(String directory, int depth, int batchSize,
+                                        Consumer<List<FileInfo>> fileBatches, CancellationToken token)
+            throws ApiException {
+        MetadataCache.Entry<FileInfo> files = cache.get(filesKey(directory));
+        MetadataCache.Entry<DirectoryInfo> directories = cache.get(directoriesKey(directory));
+        if (files != null && directories != null && cache.isFresh(files) && cache.isFresh(directories)) {
+            DirectoryEntries entries = cachedEntries(directory, directories.items, depth);
+            emit(files.items, batchSize, fileBatches, token);
+            return entries;
+        }
+        if (files != null && directories != null && (cache.isFresh(files) || files.etag != null)
+                && (cache.isFresh(directories) || directories.etag != null)) {
+            // файлы первыми: таблица начинает заполняться, пока проверяются поддиректории
+            streamFiles(directory, batchSize, fileBatches, token);
+            return cachedEntries(directory, listDirectories(directory, token), depth);
+        }
+
+        long generation = cache.generation();
+        BudgetCollector collector = new BudgetCollector(directory, fileBatches, cache.maxEntryBytes());
+        DirectoryEntries entries = super.listEntries(directory, depth, batchSize, collector, token);
+        collector.store(filesKey(directory), entries.getFilesEtag(), generation);
+        storeDirectories(entries, generation);
+        return entries;
+    }
+
+    @Override
+    public List<DirectoryInfo> listDirectories(String directory, CancellationToken token) throws ApiException {
+        return cached(directoriesKey(directory), CachingBackendService::directorySize,
+                etag -> delegate.listDirectoriesIfChanged(directory, etag, token));
+    }
+
+    /**
+     * Свежие листинги отдаются из кэша, остальные запрашиваются у обёрнутого сервиса одним вызовом.
+     */
+    @Override
+    public Map<String, List<DirectoryInfo>> listDirectories(List<String> directories, CancellationToken token)
+            throws ApiException {
+        Map<String, List<DirectoryInfo>> listings = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String directory : directories) {
+            MetadataCache.Entry<DirectoryInfo> entry = cache.get(directoriesKey(directory));
+            if (entry != null && cache.isFresh(entry)) {
+                listings.put(directory, entry.items);
+            } else {
+                missing.add(directory);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long generation = cache.generation();
+            for (Map.Entry<String, ListingResult<DirectoryInfo>> listing
+                    : delegate.listDirectoryListings(missing, token).entrySet()) {
+                String key = directoriesKey(listing.getKey());
+                List<DirectoryInfo> items = listing.getValue().getItems();
+                index(key, items);
+                listings.put(listing.getKey(), cache.put(key, items, listing.getValue().getEtag(), generation,
+                        CachingBackendService::directorySize).items);
+            }
+        }
+        return listings;
+    }
+
+    @Override
+    public FileInfo uploadFile(String directory, File localFile, TransferListener listener, CancellationToken token)
+            throws ApiException {
+        try {
+            return super.uploadFile(directory, localFile, listener, token);
+        } finally {
+            // даже неудачная загрузка могла оставить файл на backend-е
+            cache.invalidate(filesKey(directory));
+        }
+    }
+
+    @Override
+    public List<FileInfo> uploadFiles(String directory, List<File> localFiles, TransferListener listener)
+            throws ApiException {
+        try {
+            return super.uploadFiles(directory, localFiles, listener);
+        } finally {
+            cache.invalidate(filesKey(directory));
+        }
+    }
+
+    @Override
+    public FileInfo uploadFileChunked(String directory, File localFile, TransferListener listener,
+                                      CancellationToken token) throws ApiException {
+        try {
+            return super.uploadFileChunked(directory, localFile, listener, token);
+        } finally {
+            cache.invalidate(filesKey(directory));
+        }
+    }
+
+    @Override
+    public DirectoryInfo createDirectory(String parentDirectory, String name) throws ApiException {
+        try {
+            return super.createDirectory(parentDirectory, name);
+        } finally {
+            cache.invalidate(directoriesKey(parentDirectory));
+        }
+    }
+
+    @Override
+    public List<DirectoryInfo> createDirectories(List<String> paths) throws ApiException {
+        try {
+            return super.createDirectories(paths);
+        } finally {
+            // новыми могли оказаться любые уровни пути
+            for (String path : paths) {
+                String parent = normalize(path);
+                while (!".".equals(parent)) {
+                    int slash = parent.lastIndexOf('/');
+                    parent = slash > 0 ? parent.substring(0, slash) : ".";
+                    cache.invalidate(directoriesKey(parent));
+                }
+            }
+        }
+    }
+
+    /**
+     * {@code true}, если и файлы, и поддиректории директории есть в кэше и ещё не устарели.
+     */
+    @Override
+    public boolean isFresh(String directory) {
+        MetadataCache.Entry<FileInfo> files = cache.get(filesKey(directory));
+        MetadataCache.Entry<DirectoryInfo> directories = cache.get(directoriesKey(directory));
+        return files != null && directories != null && cache.isFresh(files) && cache.isFresh(directories);
+    }
+
+    /**
+     * Закэшированное содержимое директории независимо от его свежести; файлы — {@code null},
+     * если их листинга нет в кэше (например, он не уложился в бюджет).
+     */
+    @Override
+    public DirectoryEntries peekEntries(String directory, int depth) {
+        MetadataCache.Entry<DirectoryInfo> directories = cache.get(directoriesKey(directory));
+        MetadataCache.Entry<FileInfo> files = cache.get(filesKey(directory));
+        if (directories == null && files == null) {
+            return null;
+        }
+        DirectoryEntries entries = cachedEntries(directory, directories != null ? directories.items : List.of(), depth);
+        entries.setFiles(files != null ? files.items : null);
+        return entries;
+    }
+
+    /**
+     * Загружает в кэш листинги из снимка прошлого запуска; все они считаются устаревшими.
+     */
+    public void restoreSnapshot(MetadataSnapshot snapshot) {
+        snapshot.restore(cache);
+        for (Map.Entry<String, MetadataCache.Entry<?>> entry : cache.entries()) {
+            index(entry.getKey(), entry.getValue().items);
+        }
+    }
+
+    public void saveSnapshot(MetadataSnapshot snapshot) throws IOException {
+        snapshot.save(cache);
+    }
+
+    /**
+     * Применяет изменение из ленты к закэшированным листингам вместо их перезапроса; листингов, которых
+     * нет в кэше, это не касается. {@link ChangeEvent#RESET} помечает устаревшим весь кэш.
+     */
+    public void applyChange(ChangeEvent event) {
+        if (event.getType() == null) {
+            return;
+        }
+        String directory = normalize(event.getDirectory());
+        switch (event.getType()) {
+            case ChangeEvent.FILE_CREATED:
+            case ChangeEvent.FILE_UPDATED:
+                FileInfo file = event.getFile();
+                if (file == null) {
+                    cache.invalidate(filesKey(directory));
+                    break;
+                }
+                if (file.getDirectory() == null) {
+                    file.setDirectory(directory);
+                }
+                update(filesKey(directory), CachingBackendService::fileSize,
+                        files -> upsert(new FileInfoList(files), file, FileInfo::getName));
+                break;
+            case ChangeEvent.FILE_DELETED:
+                update(filesKey(directory), CachingBackendService::fileSize,
+                        files -> remove(new FileInfoList(files), event.getName(), FileInfo::getName));
+                break;
+            case ChangeEvent.DIRECTORY_CREATED:
+                DirectoryInfo created = new DirectoryInfo();
+                created.setName(event.getName());
+                created.setPath(event.getPath());
+                update(directoriesKey(directory), CachingBackendService::directorySize,
+                        directories -> upsert(new ArrayList<>(directories), created, DirectoryInfo::getName));
+                break;
+            case ChangeEvent.DIRECTORY_DELETED:
+                update(directoriesKey(directory), CachingBackendService::directorySize,
+                        directories -> remove(new ArrayList<>(directories), event.getName(), DirectoryInfo::getName));
+                cache.invalidate(filesKey(event.getPath()));
+                cache.invalidate(directoriesKey(event.getPath()));
+                break;
+            case ChangeEvent.RESET:
+                cache.invalidateAll();
+                break;
+            default:
+                // неизвестное изменение: перепроверяем директорию целиком
+                invalidate(directory);
+                break;
+        }
+    }
+
+    /**
+     * Лента изменений подключена или отключена, см. {@link MetadataCache#setLive}.
+     */
+    public void setChangeFeedConnected(boolean connected) {
+        cache.setLive(connected);
+    }
+
+    @Override
+    public void invalidate(String directory) {
+        cache.invalidate(filesKey(directory));
+        cache.invalidate(directoriesKey(directory));
+        super.invalidate(directory);
+    }
+
+    private <T> List<T> cached(String key, ToLongFunction<T> itemSize, ConditionalListing<T> listing)
+            throws ApiException {
+        MetadataCache.Entry<T> entry = cache.get(key);
+        if (entry != null && cache.isFresh(entry)) {
+            return entry.items;
+        }
+
+        long generation = cache.generation();
+        ListingResult<T> result = listing.list(entry != null ? entry.etag : null);
+        if (result.isNotModified()) {
+            if (entry != null) {
+                cache.revalidated(key, entry, generation);
+                return entry.items;
+            }
+            // 304 на безусловный запрос backend прислать не должен; на всякий случай запрашиваем заново
+            result = listing.list(null);
+        }
+        List<T> items = result.getItems() != null ? result.getItems() : List.of();
+        index(key, items);
+        return cache.put(key, items, result.getEtag(), generation, itemSize).items;
+    }
+
+    private DirectoryEntries cachedEntries(String directory, List<DirectoryInfo> directories, int depth) {
+        DirectoryEntries entries = new DirectoryEntries();
+        entries.setPath(directory);
+        entries.setDirectories(directories);
+        if (depth > 1) {
+            List<DirectoryEntries> children = new ArrayList<>();
+            for (DirectoryInfo child : directories) {
+                MetadataCache.Entry<DirectoryInfo> cached = cache.get(directoriesKey(child.getPath()));
+                if (cached != null) {
+                    children.add(cachedEntries(child.getPath(), cached.items, depth - 1));
+                }
+            }
+            entries.setChildren(children);
+        }
+        return entries;
+    }
+
+    private void storeDirectories(DirectoryEntries entries, long generation) {
+        if (entries.getPath() == null || entries.getDirectories() == null) {
+            return;
+        }
+        cache.put(directoriesKey(entries.getPath()), entries.getDirectories(), entries.getDirectoriesEtag(),
+                generation, CachingBackendService::directorySize);
+        if (pathIndex != null) {
+            pathIndex.replaceDirectories(entries.getPath(), entries.getDirectories());
+        }
+        if (entries.getChildren() != null) {
+            for (DirectoryEntries child : entries.getChildren()) {
+                storeDirectories(child, generation);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void index(String key, List<?> items) {
+        if (pathIndex == null) {
+            return;
+        }
+        if (isFilesKey(key)) {
+            pathIndex.replaceFiles(key.substring(FILES_PREFIX.length()), (List<FileInfo>) items);
+        } else if (isDirectoriesKey(key)) {
+            pathIndex.replaceDirectories(key.substring(DIRECTORIES_PREFIX.length()), (List<DirectoryInfo>) items);
+        }
+    }
+
+    private <T> void update(String key, ToLongFunction<T> itemSize, UnaryOperator<List<T>> change) {
+        MetadataCache.Entry<T> entry = cache.update(key, change, itemSize);
+        if (entry != null) {
+            index(key, entry.items);
+        }
+    }
+
+    /**
+     * Заменяет элемент с тем же именем или вставляет новый по порядку имён, как их сортирует backend.
+     */
+    private static <T> List<T> upsert(List<T> items, T item, Function<T, String> name) {
+        String itemName = name.apply(item);
+        int at = 0;
+        while (at < items.size() && name.apply(items.get(at)).compareTo(itemName) < 0) {
+            at++;
+        }
+        if (at < items.size() && name.apply(items.get(at)).equals(itemName)) {
+            items.set(at, item);
+        } else {
+            // в несортированном списке такой элемент мог остаться дальше
+            items.removeIf(existing -> name.apply(existing).equals(itemName));
+            items.add(at, item);
+        }
+        return items;
+    }
+
+    private static <T> List<T> remove(List<T> items, String itemName, Function<T, String> name) {
+        items.removeIf(existing -> name.apply(existing).equals(itemName));
+        return items;
+    }
+
+    private static <T> void emit(List<T> items, int batchSize, Consumer<List<T>> batches, CancellationToken token)
+            throws RequestCancelledException {
+        for (int from = 0; from < items.size(); from += batchSize) {
+            token.throwIfCancelled();
+            batches.accept(items.subList(from, Math.min(items.size(), from + batchSize)));
+        }
+    }
+
+    private static String filesKey(String directory) {
+        return FILES_PREFIX + normalize(directory);
+    }
+
+    private static String directoriesKey(String directory) {
+        return DIRECTORIES_PREFIX + normalize(directory);
+    }
+
+    static boolean isFilesKey(String key) {
+        return key.startsWith(FILES_PREFIX);
+    }
+
+    static boolean isDirectoriesKey(String key) {
+        return key.startsWith(DIRECTORIES_PREFIX);
+    }
+
+    private static String normalize(String directory) {
+        return directory == null || directory.isEmpty() ? "." : directory;
+    }
+
+    /**
+     * Файлы хранятся столбцами ({@link FileInfoList}): строка директории общая для листинга,
+     * а время изменения — число, поэтому сверх накладных расходов элемента считается только имя.
+     */
+    static long fileSize(FileInfo file) {
+        return MetadataCache.sizeOf(file.getName());
+    }
+
+    static long directorySize(DirectoryInfo directory) {
+        return MetadataCache.sizeOf(directory.getName()) + MetadataCache.sizeOf(directory.getPath());
+    }
+
+    /**
+     * Передаёт пачки файлов дальше и параллельно собирает их для кэша, пока список укладывается в бюджет.
+     * В индекс путей пачки попадают сразу, поэтому листинг больше бюджета в памяти не копится.
+     */
+    private final class BudgetCollector implements Consumer<List<FileInfo>> {
+
+        private final Consumer<List<FileInfo>> downstream;
+        private final long budget;
+        private final PathIndex.FileListing indexed;
+        private final FileInfoList collected = new FileInfoList();
+        private long collectedBytes;
+
+        BudgetCollector(String directory, Consumer<List<FileInfo>> downstream, long budget) {
+            this.downstream = downstream;
+            this.budget = budget;
+            this.indexed = pathIndex != null ? pathIndex.beginFiles(normalize(directory)) : null;
+        }
+
+        @Override
+        public void accept(List<FileInfo> batch) {
+            if (collectedBytes <= budget) {
+                for (FileInfo file : batch) {
+                    collectedBytes += MetadataCache.ITEM_OVERHEAD_BYTES + fileSize(file);
+                }
+                if (collectedBytes <= budget) {
+                    collected.addAll(batch);
+                } else {
+                    collected.clear();
+                }
+            }
+            if (indexed != null) {
+                indexed.add(batch);
+            }
+            downstream.accept(batch);
+        }
+
+        void store(String key, String etag, long generation) {
+            if (indexed != null) {
+                indexed.commit();
+            }
+            if (collectedBytes <= budget) {
+                // коллектор больше не пополняется: список отдаётся кэшу без копии
+                cache.put(key, collected, etag, generation, CachingBackendService::fileSize);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConditionalListing<T> {
+        ListingResult<T> list(String etag) throws ApiException;
+    }
+}
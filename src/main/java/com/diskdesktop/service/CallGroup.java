@@ -0,0 +1,83 @@
+package com.diskdesktop.service;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Запросы одной передачи, в том числе идущие параллельно в нескольких потоках: отмена токена
+ * или ошибка любого из них обрывает их все, включая уже читающие или пишущие тело.
+ * <p>
+ * Потоки передачи останавливаются только так, а не прерыванием: прерывание потока во время записи
+ * в {@link java.nio.channels.FileChannel} закрывает канал для всех, кто в него пишет
+ * ({@link java.nio.channels.ClosedByInterruptException}).
+ */
+final class CallGroup implements AutoCloseable {
+
+    private final Set<Call<?>> active = ConcurrentHashMap.newKeySet();
+    private final CancellationToken token;
+    private final Runnable unregister;
+
+    CallGroup(CancellationToken token) {
+        this.token = token;
+        this.unregister = token.onCancel(this::cancelAll);
+    }
+
+    <T> Response<T> execute(Call<T> call) throws IOException {
+        active.add(call);
+        if (token.isCancelled()) {
+            call.cancel();
+        }
+        return call.execute();
+    }
+
+    /**
+     * Бросает {@link RequestCancelledException}, если токен отменён; вызывается, чтобы ошибка оборванного
+     * запроса не выглядела как сетевая.
+     */
+    void throwIfCancelled() throws RequestCancelledException {
+        token.throwIfCancelled();
+    }
+
+    void cancelAll() {
+        for (Call<?> call : active) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * Обрывает запросы и дожидается задач, не реагируя на прерывание (флаг прерывания восстанавливается
+     * в конце). Ошибки задач уже не важны: передача и так завершается ошибкой.
+     */
+    void cancelAndAwait(List<Future<?>> futures) {
+        cancelAll();
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        unregister.run();
+    }
+}
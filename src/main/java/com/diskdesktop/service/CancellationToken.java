@@ -0,0 +1,72 @@
+package com.diskdesktop.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Признак отмены операции с backend-ом. Отмена прерывает выполняющийся HTTP-запрос
+ * (через зарегистрированные обработчики) и заставляет операцию завершиться {@link RequestCancelledException}.
+ */
+public final class CancellationToken {
+
+    /**
+     * Токен, который никогда не отменяется.
+     */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private boolean cancelled;
+
+    public void cancel() {
+        if (this == NONE) {
+            return;
+        }
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            callback.run();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() throws RequestCancelledException {
+        if (isCancelled()) {
+            throw new RequestCancelledException();
+        }
+    }
+
+    /**
+     * Регистрирует обработчик отмены; если токен уже отменён, обработчик вызывается сразу.
+     *
+     * @return функция снятия регистрации
+     */
+    public Runnable onCancel(Runnable callback) {
+        if (this == NONE) {
+            return () -> {
+            };
+        }
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (CancellationToken.this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return () -> {
+        };
+    }
+}
@@ -0,0 +1,182 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.api.ChangeApi;
+import com.diskdesktop.model.ChangeEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import retrofit2.Call;
+
+import java.io.IOException;
+
+/**
+ * Подписка на ленту изменений backend-а ({@code GET /changes}, Server-Sent Events).
+ * <p>
+ * Каждое событие сначала применяется к кэшу листингов ({@link CachingBackendService#applyChange}), затем
+ * передаётся слушателю, который точечно обновляет открытую таблицу и дерево, — без опроса и без повторной
+ * загрузки листингов. Лента читается в отдельном потоке. После обрыва она переподключается с нарастающей паузой
+ * и продолжает с последнего полученного события ({@code Last-Event-ID}), так что изменения за время обрыва
+ * не теряются; если сервер такой позиции уже не помнит, он присылает {@link ChangeEvent#RESET}.
+ * Если backend ленту не поддерживает, подписка останавливается и остаётся ручное обновление.
+ */
+public class ChangeFeed {
+
+    /**
+     * Получатель изменений; вызывается из потока ленты, когда событие уже применено к кэшу.
+     */
+    public interface Listener {
+
+        void onChange(ChangeEvent event);
+    }
+
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 60_000;
+
+    private final ChangeApi changeApi;
+    private final CachingBackendService backendService;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private volatile boolean stopped;
+    private volatile Call<ResponseBody> currentCall;
+    private Thread thread;
+    /**
+     * Позиция последнего полученного события; только поток ленты.
+     */
+    private String lastEventId;
+    private long reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+
+    public ChangeFeed(ChangeApi changeApi, CachingBackendService backendService) {
+        this.changeApi = changeApi;
+        this.backendService = backendService;
+    }
+
+    /**
+     * Подключается к ленте в фоновом потоке.
+     *
+     * @throws IllegalStateException если подписка уже запущена
+     */
+    public synchronized void start(Listener listener) {
+        if (thread != null) {
+            throw new IllegalStateException("Change feed is already started");
+        }
+        thread = new Thread(() -> run(listener), "change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Отключается от ленты; повторно подписку не запустить.
+     */
+    public void stop() {
+        stopped = true;
+        Call<ResponseBody> call = currentCall;
+        if (call != null) {
+            call.cancel();
+        }
+        Thread running;
+        synchronized (this) {
+            running = thread;
+        }
+        if (running != null) {
+            running.interrupt();
+        }
+    }
+
+    private void run(Listener listener) {
+        while (!stopped) {
+            try {
+                read(listener);
+            } catch (ApiException e) {
+                if (e.getStatusCode() == 401 || e.getStatusCode() == 404 || e.getStatusCode() == 405
+                        || e.getStatusCode() == 501) {
+                    // ленты нет или токен больше не действует: переподключение не поможет
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                // обрыв соединения или молчание дольше таймаута чтения — переподключаемся
+            } finally {
+                backendService.setChangeFeedConnected(false);
+            }
+            if (stopped) {
+                return;
+            }
+            try {
+                Thread.sleep(reconnectDelayMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            reconnectDelayMillis = Math.min(MAX_RECONNECT_DELAY_MILLIS, reconnectDelayMillis * 2);
+        }
+    }
+
+    /**
+     * Читает поток событий до его конца или обрыва.
+     */
+    private void read(Listener listener) throws IOException, ApiException {
+        Call<ResponseBody> call = changeApi.changes(lastEventId);
+        currentCall = call;
+        if (stopped) {
+            return;
+        }
+        ResponseBody body = BackendServiceImpl.handleResponse(call.execute());
+        if (body == null) {
+            return;
+        }
+        backendService.setChangeFeedConnected(true);
+        reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+        try (BufferedSource source = body.source()) {
+            String id = null;
+            StringBuilder data = new StringBuilder();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (line.isEmpty()) {
+                    dispatch(id, data, listener);
+                    id = null;
+                    data.setLength(0);
+                    continue;
+                }
+                if (line.startsWith(":")) {
+                    continue; // комментарий — пульс соединения
+                }
+                int colon = line.indexOf(':');
+                String field = colon < 0 ? line : line.substring(0, colon);
+                String value = colon < 0 ? "" : line.substring(colon + 1);
+                if (value.startsWith(" ")) {
+                    value = value.substring(1);
+                }
+                if ("id".equals(field)) {
+                    id = value;
+                } else if ("data".equals(field)) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                }
+                // остальные поля (event, retry) не используются
+            }
+        }
+    }
+
+    private void dispatch(String id, StringBuilder data, Listener listener) {
+        if (data.length() > 0) {
+            ChangeEvent event;
+            try {
+                event = mapper.readValue(data.toString(), ChangeEvent.class);
+            } catch (JsonProcessingException e) {
+                // событие не разобрать и после переподключения — пропускаем его, но что оно меняло,
+                // неизвестно, поэтому всё известное перепроверяется, как при RESET
+                event = new ChangeEvent();
+                event.setType(ChangeEvent.RESET);
+            }
+            backendService.applyChange(event);
+            listener.onChange(event);
+        }
+        // позиция запоминается после применения: при обрыве посередине событие придёт снова
+        if (id != null) {
+            lastEventId = id;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.diskdesktop.service;
+
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Запись тела ответа в файл по заданному смещению через буфер из {@link BufferPool}.
+ * <p>
+ * {@code FileChannel.transferFrom} из сетевого источника JDK всё равно выполняет копированием через
+ * временный буфер в 8 КБ, поэтому данные читаются сразу в пуловый direct-буфер и пишутся позиционной
+ * записью: одно копирование из буферов okio и никаких выделений памяти на блок.
+ */
+final class ChannelTransfer {
+
+    /**
+     * Вызывается после записи очередного блока; {@code written} — сколько байт записано с начала передачи.
+     */
+    interface WriteListener {
+        void onWritten(long written) throws IOException;
+    }
+
+    static final WriteListener NONE = written -> {
+    };
+
+    private ChannelTransfer() {
+    }
+
+    /**
+     * Копирует {@code source} до конца в {@code channel} начиная с {@code position}.
+     *
+     * @return число записанных байт
+     */
+    static long transfer(BufferedSource source, FileChannel channel, long position, BufferPool pool,
+                         WriteListener listener) throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        long written = 0;
+        try {
+            int read;
+            do {
+                read = source.read(buffer);
+                // пишем заполненный буфер целиком: меньше системных вызовов, чем на каждый сегмент okio
+                if (!buffer.hasRemaining() || (read == -1 && buffer.position() > 0)) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer, position + written);
+                    }
+                    buffer.clear();
+                    listener.onWritten(written);
+                }
+            } while (read != -1);
+        } finally {
+            pool.release(buffer);
+        }
+        return written;
+    }
+}
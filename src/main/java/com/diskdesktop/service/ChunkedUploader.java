@@ -0,0 +1,218 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.api.UploadApi;
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.UploadSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import retrofit2.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поблочная загрузка файла: создание сессии, параллельная отправка блоков фиксированного размера, commit.
+ * <p>
+ * {@code uploadId} сохраняется в {@code ~/.diskdesktop/uploads/}, поэтому после обрыва связи
+ * или падения приложения загрузка того же файла в ту же директорию продолжается:
+ * список уже принятых блоков запрашивается у backend-а, отправляются только недостающие.
+ * Отмена {@link CancellationToken} обрывает все запросы загрузки ({@link CallGroup}); сессия остаётся
+ * для продолжения.
+ */
+class ChunkedUploader {
+
+    private static final String UPLOADS_DIR_NAME = "uploads";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final UploadApi uploadApi;
+    private final long chunkSize;
+    private final int parallelChunks;
+    private final ExecutorService executor;
+
+    ChunkedUploader(UploadApi uploadApi, long chunkSize, int parallelChunks) {
+        this.uploadApi = uploadApi;
+        this.chunkSize = Math.max(64 * 1024, chunkSize);
+        this.parallelChunks = Math.max(1, parallelChunks);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "chunk-upload-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    FileInfo upload(String directory, File localFile, TransferListener listener, CancellationToken token)
+            throws IOException, ApiException {
+        try (CallGroup calls = new CallGroup(token)) {
+            return upload(directory, localFile, listener, calls);
+        }
+    }
+
+    private FileInfo upload(String directory, File localFile, TransferListener listener, CallGroup calls)
+            throws IOException, ApiException {
+        File stateFile = stateFileFor(directory, localFile);
+        UploadSession session = resumeSession(stateFile, directory, localFile, calls);
+        if (session == null) {
+            session = createSession(directory, localFile, calls);
+            saveState(stateFile, new UploadState(session.getUploadId(), directory,
+                    localFile.getAbsolutePath(), localFile.length(), localFile.lastModified()));
+        }
+
+        ProgressTracker tracker = new ProgressTracker(session.getSize(), listener);
+        sendMissingChunks(session, localFile, tracker, calls);
+
+        FileInfo fileInfo = BackendServiceImpl.handleResponse(
+                calls.execute(uploadApi.commitUpload(session.getUploadId())));
+        Files.deleteIfExists(stateFile.toPath());
+        tracker.finish();
+        return fileInfo;
+    }
+
+    private UploadSession resumeSession(File stateFile, String directory, File localFile, CallGroup calls)
+            throws IOException {
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        UploadState state;
+        try {
+            state = MAPPER.readValue(stateFile, UploadState.class);
+        } catch (IOException e) {
+            Files.deleteIfExists(stateFile.toPath());
+            return null;
+        }
+        if (!directory.equals(state.getDirectory())
+                || state.getSize() != localFile.length()
+                || state.getLastModified() != localFile.lastModified()) {
+            // локальный файл изменился — старые блоки не годятся
+            Files.deleteIfExists(stateFile.toPath());
+            return null;
+        }
+        Response<UploadSession> response = calls.execute(uploadApi.getUploadSession(state.getUploadId()));
+        if (!response.isSuccessful() || response.body() == null) {
+            // сессия истекла или неизвестна backend-у
+            Files.deleteIfExists(stateFile.toPath());
+            return null;
+        }
+        return response.body();
+    }
+
+    private UploadSession createSession(String directory, File localFile, CallGroup calls)
+            throws IOException, ApiException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("directory", directory);
+        body.put("filename", localFile.getName());
+        body.put("size", localFile.length());
+        body.put("chunkSize", chunkSize);
+        try {
+            return BackendServiceImpl.handleResponse(calls.execute(uploadApi.createUploadSession(body)));
+        } catch (ApiException e) {
+            if (e.getStatusCode() != 404 && e.getStatusCode() != 405 && e.getStatusCode() != 501) {
+                throw e;
+            }
+            throw new SessionRejectedException(e);
+        }
+    }
+
+    private void sendMissingChunks(UploadSession session, File localFile, ProgressTracker tracker,
+                                   CallGroup calls) throws IOException, ApiException {
+        long size = session.getSize();
+        long sessionChunkSize = session.getChunkSize() > 0 ? session.getChunkSize() : chunkSize;
+        int chunkCount = (int) ((size + sessionChunkSize - 1) / sessionChunkSize);
+        Set<Integer> received = new HashSet<>(session.getReceivedChunks());
+        for (int index : received) {
+            tracker.skip(Math.min(sessionChunkSize, size - index * sessionChunkSize));
+        }
+
+        Semaphore inFlight = new Semaphore(parallelChunks);
+        List<Future<?>> futures = new ArrayList<>();
+        boolean completed = false;
+        try {
+            for (int index = 0; index < chunkCount; index++) {
+                if (received.contains(index)) {
+                    continue;
+                }
+                inFlight.acquire();
+                failFast(futures);
+                calls.throwIfCancelled();
+
+                int chunkIndex = index;
+                long offset = index * sessionChunkSize;
+                long length = Math.min(sessionChunkSize, size - offset);
+                futures.add(executor.submit(() -> {
+                    try {
+                        CountingRequestBody chunk = new CountingRequestBody(
+                                new FileRegionRequestBody(localFile, offset, length), tracker);
+                        BackendServiceImpl.handleResponse(
+                                calls.execute(uploadApi.uploadChunk(session.getUploadId(), chunkIndex, chunk)));
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ApiException) {
+                throw (ApiException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Chunk upload failed", cause);
+        } finally {
+            if (!completed) {
+                calls.cancelAndAwait(futures);
+            }
+        }
+    }
+
+    /**
+     * Прекращает отправку новых блоков, как только один из уже отправленных завершился ошибкой.
+     */
+    private static void failFast(List<Future<?>> futures) throws ExecutionException, InterruptedException {
+        for (Future<?> future : futures) {
+            if (future.isDone()) {
+                future.get();
+            }
+        }
+    }
+
+    private static File stateFileFor(String directory, File localFile) {
+        return StateFiles.forKey(UPLOADS_DIR_NAME, directory + "\n" + localFile.getAbsolutePath(), ".json");
+    }
+
+    private static void saveState(File stateFile, UploadState state) throws IOException {
+        StateFiles.write(stateFile, tmp -> MAPPER.writeValue(tmp, state));
+    }
+
+    /**
+     * Backend отказался создать сессию с 404, 405 или 501: он не знает {@code /uploads}
+     * или (при 404) нет целевой директории. Остальные ошибки поблочной загрузки этим не считаются.
+     */
+    static final class SessionRejectedException extends ApiException {
+
+        SessionRejectedException(ApiException cause) {
+            super(cause.getMessage(), cause.getStatusCode(), cause.getRawBody());
+            initCause(cause);
+        }
+    }
+}
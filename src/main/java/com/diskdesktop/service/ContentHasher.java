@@ -0,0 +1,104 @@
+package com.diskdesktop.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SHA-256 содержимого локальных файлов для дедупликации загрузок.
+ * <p>
+ * Файл читается отображением в память окнами по {@link #WINDOW_SIZE}: без копирования в промежуточный
+ * буфер и без ограничения в 2 ГБ на одно отображение. Результат запоминается по пути, размеру и времени
+ * изменения, поэтому повторная загрузка того же файла не перечитывает его. Потокобезопасен: файлы,
+ * загружаемые параллельно, хешируются параллельно.
+ */
+class ContentHasher {
+
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final int MAX_CACHED = 4096;
+
+    private final Map<String, Cached> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * SHA-256 файла в виде 64 шестнадцатеричных символов в нижнем регистре. Отмена {@code token}
+     * останавливает чтение на границе очередного окна.
+     */
+    String hash(File file, CancellationToken token) throws IOException, RequestCancelledException {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long mtime = file.lastModified();
+        synchronized (cache) {
+            Cached cached = cache.get(key);
+            if (cached != null && cached.size == size && cached.mtime == mtime) {
+                return cached.hash;
+            }
+        }
+        byte[] digest = digest(file, token);
+        if (digest == null) {
+            throw new RequestCancelledException();
+        }
+        String hash = toHex(digest);
+        synchronized (cache) {
+            cache.put(key, new Cached(size, mtime, hash));
+        }
+        return hash;
+    }
+
+    static byte[] digest(File file) throws IOException {
+        return digest(file, CancellationToken.NONE);
+    }
+
+    /**
+     * @return {@code null}, если {@code token} отменён до конца чтения
+     */
+    private static byte[] digest(File file, CancellationToken token) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW_SIZE) {
+                if (token.isCancelled()) {
+                    return null;
+                }
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(WINDOW_SIZE, size - position)));
+            }
+        }
+        return digest.digest();
+    }
+
+    static String toHex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Cached {
+
+        final long size;
+        final long mtime;
+        final String hash;
+
+        Cached(long size, long mtime, String hash) {
+            this.size = size;
+            this.mtime = mtime;
+            this.hash = hash;
+        }
+    }
+}
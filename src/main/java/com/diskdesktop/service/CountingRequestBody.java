@@ -0,0 +1,48 @@
+package com.diskdesktop.service;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * Обёртка над {@link RequestBody}, сообщающая {@link ProgressTracker}-у о каждом отправленном блоке байт.
+ */
+class CountingRequestBody extends RequestBody {
+
+    private final RequestBody delegate;
+    private final ProgressTracker tracker;
+
+    CountingRequestBody(RequestBody delegate, ProgressTracker tracker) {
+        this.delegate = delegate;
+        this.tracker = tracker;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        ForwardingSink counting = new ForwardingSink(sink) {
+            @Override
+            public void write(Buffer source, long byteCount) throws IOException {
+                super.write(source, byteCount);
+                tracker.add(byteCount);
+            }
+        };
+        BufferedSink buffered = Okio.buffer(counting);
+        delegate.writeTo(buffered);
+        buffered.flush();
+    }
+}
@@ -0,0 +1,29 @@
+package com.diskdesktop.service;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Source;
+
+import java.io.IOException;
+
+/**
+ * Источник байт ответа, сообщающий {@link ProgressTracker}-у о каждом прочитанном блоке.
+ */
+class CountingSource extends ForwardingSource {
+
+    private final ProgressTracker tracker;
+
+    CountingSource(Source delegate, ProgressTracker tracker) {
+        super(delegate);
+        this.tracker = tracker;
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+        long read = super.read(sink, byteCount);
+        if (read > 0) {
+            tracker.add(read);
+        }
+        return read;
+    }
+}
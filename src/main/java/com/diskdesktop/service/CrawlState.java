@@ -0,0 +1,97 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.ConfigService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Сохранённые итоги обхода дерева одного backend-а: размеры полностью обойдённых поддеревьев
+ * и признак того, что обход дошёл до конца.
+ * <p>
+ * Хранится в {@code ~/.diskdesktop/crawl/} в двоичном виде, запись атомарная. Незаконченный обход
+ * продолжается со следующего запуска: обойдённые поддеревья повторно не запрашиваются.
+ */
+class CrawlState {
+
+    private static final String CRAWL_DIR_NAME = "crawl";
+    private static final int MAGIC = 0x44534352; // "DSCR"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final String root;
+    private final boolean finished;
+    private final Map<String, DirectorySize> sizes;
+
+    private CrawlState(File file, String root, boolean finished, Map<String, DirectorySize> sizes) {
+        this.file = file;
+        this.root = root;
+        this.finished = finished;
+        this.sizes = sizes;
+    }
+
+    static CrawlState load(String baseUrl, String username) {
+        File file = StateFiles.forKey(CRAWL_DIR_NAME, ConfigService.accountKey(baseUrl, username), ".state");
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Unsupported crawl state format");
+                }
+                String root = in.readUTF();
+                boolean finished = in.readBoolean();
+                int count = in.readInt();
+                Map<String, DirectorySize> sizes = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    sizes.put(path, new DirectorySize(path, in.readLong(), in.readLong(), in.readLong()));
+                }
+                return new CrawlState(file, root, finished, sizes);
+            } catch (IOException e) {
+                // повреждённое состояние — обход начнётся заново
+            }
+        }
+        return new CrawlState(file, null, false, new HashMap<>());
+    }
+
+    /**
+     * Корень последнего обхода или {@code null}, если обходов не было.
+     */
+    String root() {
+        return root;
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    Map<String, DirectorySize> sizes() {
+        return sizes;
+    }
+
+    void save(String root, boolean finished, Collection<DirectorySize> sizes) throws IOException {
+        StateFiles.write(file, tmp -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(root);
+                out.writeBoolean(finished);
+                out.writeInt(sizes.size());
+                for (DirectorySize size : sizes) {
+                    out.writeUTF(size.getPath());
+                    out.writeLong(size.getFileCount());
+                    out.writeLong(size.getTotalBytes());
+                    out.writeLong(size.getDirectoryCount());
+                }
+            }
+        });
+    }
+}
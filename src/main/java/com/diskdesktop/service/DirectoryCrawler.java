@@ -0,0 +1,385 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.AppConfig;
+import com.diskdesktop.model.DirectoryEntries;
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.service.TaskScheduler.TaskClass;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновый обход всего дерева backend-а с подсчётом размеров: для каждой директории — число файлов,
+ * их суммарный размер и число поддиректорий на всех уровнях.
+ * <p>
+ * Листинги запрашиваются задачами класса {@link TaskClass#PREFETCH}, поэтому обход уступает интерактивным
+ * действиям пользователя. Одновременно выполняется не больше {@code crawler.parallelism} листингов,
+ * а за скользящую минуту — не больше {@code crawler.maxRequestsPerMinute} запросов (при исчерпании бюджета
+ * обход ждёт, а не пропускает директории). Дерево обходится в глубину, так что итоги поддеревьев появляются
+ * сразу по мере их завершения, а не в конце обхода.
+ * <p>
+ * Итоги сохраняются ({@link CrawlState}) раз в {@link #CHECKPOINT_INTERVAL_NANOS}, при отмене и по окончании.
+ * Прерванный обход того же корня продолжается: поддеревья, обойдённые в прошлый раз, не запрашиваются снова.
+ */
+public class DirectoryCrawler {
+
+    /**
+     * Уведомления обхода; вызываются из фоновых потоков.
+     */
+    public interface Listener {
+
+        /**
+         * Поддерево {@code size.getPath()} обойдено целиком.
+         */
+        void onSubtreeCompleted(DirectorySize size);
+
+        /**
+         * Обход завершён: {@code completed} — дошёл до конца; иначе отменён или прерван ошибкой {@code failure}.
+         */
+        void onFinished(boolean completed, Throwable failure);
+    }
+
+    private static final int LISTING_BATCH_SIZE = 1000;
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long CHECKPOINT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final BackendService backendService;
+    private final TaskScheduler scheduler;
+    private final CrawlState state;
+    private final int parallelism;
+    private final int maxRequestsPerMinute;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "directory-crawler-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Crawl current;
+    private String lastRoot;
+    private boolean lastFinished;
+    private Map<String, DirectorySize> lastSizes;
+
+    public DirectoryCrawler(BackendService backendService, TaskScheduler scheduler, String baseUrl,
+                            String username, AppConfig appConfig) {
+        this.backendService = backendService;
+        this.scheduler = scheduler;
+        this.state = CrawlState.load(baseUrl, username);
+        this.parallelism = Math.max(1, appConfig.getCrawlerParallelism());
+        this.maxRequestsPerMinute = Math.max(0, appConfig.getCrawlerMaxRequestsPerMinute());
+        this.lastRoot = state.root();
+        this.lastFinished = state.isFinished();
+        this.lastSizes = state.sizes();
+    }
+
+    /**
+     * Размеры поддеревьев, известные на сейчас: из идущего обхода и из сохранённых прошлых.
+     */
+    public synchronized Map<String, DirectorySize> knownSizes() {
+        return current != null ? current.merged() : new HashMap<>(lastSizes);
+    }
+
+    public synchronized boolean isRunning() {
+        return current != null;
+    }
+
+    /**
+     * Начинает обход {@code root} или продолжает прерванный обход того же корня.
+     *
+     * @throws IllegalStateException если обход уже идёт
+     */
+    public synchronized void start(String root, Listener listener) {
+        if (current != null) {
+            throw new IllegalStateException("Crawl is already running");
+        }
+        boolean resume = !lastFinished && root.equals(lastRoot);
+        current = new Crawl(root, listener, resume ? new HashMap<>(lastSizes) : Map.of());
+        current.begin();
+    }
+
+    /**
+     * Останавливает обход и сохраняет его итоги для продолжения; без идущего обхода ничего не делает.
+     */
+    public void cancel() {
+        Crawl crawl;
+        synchronized (this) {
+            crawl = current;
+        }
+        if (crawl != null) {
+            crawl.stop(null);
+        }
+    }
+
+    private synchronized void finished(Crawl crawl, boolean completed, Map<String, DirectorySize> sizes) {
+        if (current == crawl) {
+            current = null;
+        }
+        lastRoot = crawl.root;
+        lastFinished = completed;
+        lastSizes = sizes;
+    }
+
+    /**
+     * Директория, ожидающая листинга или завершения поддиректорий.
+     */
+    private static final class Node {
+
+        final String path;
+        final Node parent;
+        long files;
+        long bytes;
+        long directories;
+        /**
+         * Сколько поддиректорий ещё не обойдено.
+         */
+        int pending;
+
+        Node(String path, Node parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+    }
+
+    private final class Crawl {
+
+        final String root;
+        final Listener listener;
+        /**
+         * Итоги прерванного обхода того же корня.
+         */
+        final Map<String, DirectorySize> reused;
+        final Map<String, DirectorySize> completed = new HashMap<>();
+        final CancellationToken token = new CancellationToken();
+        final ArrayDeque<Node> pending = new ArrayDeque<>();
+        final ArrayDeque<Long> requestTimes = new ArrayDeque<>();
+        int inFlight;
+        boolean pumpScheduled;
+        boolean done;
+        long lastCheckpoint = System.nanoTime();
+
+        Crawl(String root, Listener listener, Map<String, DirectorySize> reused) {
+            this.root = root;
+            this.listener = listener;
+            this.reused = reused;
+        }
+
+        void begin() {
+            synchronized (this) {
+                pending.addLast(new Node(root, null));
+            }
+            pump();
+        }
+
+        /**
+         * Запускает листинги ожидающих директорий, пока позволяют параллелизм и бюджет запросов.
+         */
+        void pump() {
+            List<Node> toList = new ArrayList<>();
+            synchronized (this) {
+                while (!done && inFlight < parallelism && !pending.isEmpty()) {
+                    Node node = pending.peekLast();
+                    if (!backendService.isFresh(node.path)) {
+                        long delay = reserveRequest();
+                        if (delay > 0) {
+                            if (!pumpScheduled) {
+                                pumpScheduled = true;
+                                timer.schedule(() -> {
+                                    synchronized (this) {
+                                        pumpScheduled = false;
+                                    }
+                                    pump();
+                                }, delay, TimeUnit.NANOSECONDS);
+                            }
+                            break;
+                        }
+                    }
+                    // в глубину: поддеревья завершаются и показываются по одному, очередь остаётся короткой
+                    pending.pollLast();
+                    inFlight++;
+                    toList.add(node);
+                }
+            }
+            for (Node node : toList) {
+                scheduler.submit(TaskClass.PREFETCH, () -> list(node));
+            }
+        }
+
+        /**
+         * Учитывает запрос в бюджете.
+         *
+         * @return 0, если запрос можно выполнять сейчас, иначе сколько наносекунд ждать
+         */
+        private long reserveRequest() {
+            if (maxRequestsPerMinute == 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            while (!requestTimes.isEmpty() && now - requestTimes.peekFirst() > WINDOW_NANOS) {
+                requestTimes.pollFirst();
+            }
+            if (requestTimes.size() >= maxRequestsPerMinute) {
+                return Math.max(1, requestTimes.peekFirst() + WINDOW_NANOS - now);
+            }
+            requestTimes.addLast(now);
+            return 0;
+        }
+
+        private void list(Node node) {
+            try {
+                if (token.isCancelled()) {
+                    return;
+                }
+                long[] files = {0, 0};
+                DirectoryEntries entries = backendService.listEntries(node.path, 1, LISTING_BATCH_SIZE, batch -> {
+                    for (FileInfo file : batch) {
+                        files[0]++;
+                        files[1] += Math.max(0, file.getSize());
+                    }
+                }, token);
+                listed(node, files[0], files[1], entries.getDirectories());
+            } catch (RequestCancelledException e) {
+                // обход остановлен
+            } catch (ApiException e) {
+                if (e.getStatusCode() == 404) {
+                    // директорию удалили во время обхода
+                    listed(node, 0, 0, null);
+                } else {
+                    stop(e);
+                }
+            } catch (RuntimeException e) {
+                stop(e);
+            } finally {
+                synchronized (this) {
+                    inFlight--;
+                }
+                pump();
+            }
+        }
+
+        private void listed(Node node, long files, long bytes, List<DirectoryInfo> directories) {
+            List<DirectorySize> finishedSubtrees = new ArrayList<>();
+            boolean checkpoint;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                node.files += files;
+                node.bytes += bytes;
+                if (directories != null) {
+                    for (DirectoryInfo directory : directories) {
+                        String path = directory.getPath();
+                        DirectorySize known = reused.get(path);
+                        if (known != null) {
+                            // обойдено прошлым, прерванным обходом
+                            completed.put(path, known);
+                            addChild(node, known);
+                        } else {
+                            node.pending++;
+                            pending.addLast(new Node(path, node));
+                        }
+                    }
+                }
+                if (node.pending == 0) {
+                    complete(node, finishedSubtrees);
+                }
+                long now = System.nanoTime();
+                checkpoint = now - lastCheckpoint > CHECKPOINT_INTERVAL_NANOS;
+                if (checkpoint) {
+                    lastCheckpoint = now;
+                }
+            }
+            for (DirectorySize size : finishedSubtrees) {
+                listener.onSubtreeCompleted(size);
+            }
+            if (completed(root)) {
+                finish(true, null);
+            } else if (checkpoint) {
+                save(false, null);
+            }
+        }
+
+        /**
+         * Фиксирует итоги узла и поднимается к родителям, у которых это было последнее незавершённое поддерево.
+         */
+        private void complete(Node node, List<DirectorySize> finishedSubtrees) {
+            for (Node current = node; current != null; current = current.parent) {
+                DirectorySize size = new DirectorySize(current.path, current.files, current.bytes, current.directories);
+                completed.put(current.path, size);
+                finishedSubtrees.add(size);
+                if (current.parent == null) {
+                    return;
+                }
+                addChild(current.parent, size);
+                if (--current.parent.pending > 0) {
+                    return;
+                }
+            }
+        }
+
+        private void addChild(Node parent, DirectorySize child) {
+            parent.files += child.getFileCount();
+            parent.bytes += child.getTotalBytes();
+            parent.directories += child.getDirectoryCount() + 1;
+        }
+
+        private synchronized boolean completed(String path) {
+            return completed.containsKey(path);
+        }
+
+        synchronized Map<String, DirectorySize> merged() {
+            Map<String, DirectorySize> merged = new HashMap<>(reused);
+            merged.putAll(completed);
+            return merged;
+        }
+
+        void stop(Throwable failure) {
+            token.cancel();
+            finish(false, failure);
+        }
+
+        private void finish(boolean success, Throwable failure) {
+            Map<String, DirectorySize> sizes;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                pending.clear();
+                // итоги вложенных директорий поддеревьев, взятых из прошлого обхода, есть только в reused
+                sizes = merged();
+            }
+            save(success, sizes);
+            finished(this, success, sizes);
+            listener.onFinished(success, failure);
+        }
+
+        /**
+         * Сохраняет итоги; {@code sizes == null} — промежуточное сохранение текущих итогов,
+         * которое пропускается, если обход уже завершён и записал окончательные.
+         */
+        private void save(boolean success, Map<String, DirectorySize> sizes) {
+            synchronized (state) {
+                if (sizes == null) {
+                    synchronized (this) {
+                        if (done) {
+                            return;
+                        }
+                    }
+                    sizes = merged();
+                }
+                try {
+                    state.save(root, success, sizes.values());
+                } catch (IOException e) {
+                    // без сохранённых итогов следующий обход просто начнётся с начала
+                }
+            }
+        }
+    }
+}
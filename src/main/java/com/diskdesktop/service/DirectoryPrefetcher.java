@@ -0,0 +1,173 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.AppConfig;
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.service.TaskScheduler.TaskClass;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заранее загружает в кэш содержимое директорий, которые пользователь, вероятно, откроет следующими:
+ * первые поддиректории только что открытой папки и директорию под указателем мыши.
+ * <p>
+ * Задачи идут классом {@link TaskClass#PREFETCH} и укладываются в бюджет запросов и байт ответа
+ * за скользящую минуту; листинг, не уложившийся в бюджет, прерывается. Уже свежие в кэше директории
+ * не запрашиваются.
+ */
+public class DirectoryPrefetcher {
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int BATCH_SIZE = 1000;
+    /**
+     * Примерный размер элемента листинга в JSON без учёта строковых полей.
+     */
+    private static final long ITEM_JSON_OVERHEAD = 80;
+    /**
+     * Длина {@code lastModified} в JSON ({@code 2024-05-01T10:15:30.123Z}).
+     */
+    private static final long TIME_JSON_LENGTH = 24;
+
+    private final CachingBackendService backendService;
+    private final TaskScheduler scheduler;
+    private final int subdirectories;
+    private final int maxRequestsPerMinute;
+    private final long maxBytesPerMinute;
+    /**
+     * Запросы за последнюю минуту.
+     */
+    private final ArrayDeque<Request> window = new ArrayDeque<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private CancellationToken followUpToken = new CancellationToken();
+
+    public DirectoryPrefetcher(CachingBackendService backendService, TaskScheduler scheduler, AppConfig appConfig) {
+        this.backendService = backendService;
+        this.scheduler = scheduler;
+        this.subdirectories = Math.max(0, appConfig.getPrefetchSubdirectories());
+        this.maxRequestsPerMinute = Math.max(0, appConfig.getPrefetchMaxRequestsPerMinute());
+        this.maxBytesPerMinute = Math.max(0, appConfig.getPrefetchMaxBytesPerMinute());
+    }
+
+    /**
+     * Папка открыта: предзагружаем её первые поддиректории. Ещё не начатые предзагрузки
+     * для предыдущей папки отменяются.
+     */
+    public void onDirectoryLoaded(List<DirectoryInfo> directories) {
+        CancellationToken token;
+        synchronized (this) {
+            followUpToken.cancel();
+            followUpToken = new CancellationToken();
+            token = followUpToken;
+        }
+        if (directories == null) {
+            return;
+        }
+        for (int i = 0; i < Math.min(subdirectories, directories.size()); i++) {
+            prefetch(directories.get(i).getPath(), token);
+        }
+    }
+
+    /**
+     * Указатель мыши над директорией в дереве.
+     */
+    public void onHover(String directory) {
+        prefetch(directory, CancellationToken.NONE);
+    }
+
+    private void prefetch(String directory, CancellationToken token) {
+        if (directory == null || backendService.isFresh(directory)) {
+            return;
+        }
+        synchronized (this) {
+            if (!inFlight.add(directory)) {
+                return;
+            }
+        }
+        scheduler.submit(TaskClass.PREFETCH, () -> {
+            try {
+                run(directory, token);
+            } finally {
+                synchronized (this) {
+                    inFlight.remove(directory);
+                }
+            }
+        });
+    }
+
+    private void run(String directory, CancellationToken outer) {
+        if (outer.isCancelled() || backendService.isFresh(directory)) {
+            return;
+        }
+        Request request = reserveRequest();
+        if (request == null) {
+            return;
+        }
+
+        // собственный токен, чтобы прервать листинг при исчерпании бюджета, не трогая чужие
+        CancellationToken token = new CancellationToken();
+        Runnable unregister = outer.onCancel(token::cancel);
+        long[] bytes = {0};
+        try {
+            backendService.listEntries(directory, 1, BATCH_SIZE, batch -> {
+                for (FileInfo file : batch) {
+                    bytes[0] += ITEM_JSON_OVERHEAD + length(file.getName()) + length(file.getDirectory())
+                            + TIME_JSON_LENGTH;
+                }
+                if (bytes[0] > request.byteBudget) {
+                    token.cancel();
+                }
+            }, token);
+        } catch (ApiException e) {
+            // предзагрузка необязательна: ошибку увидит пользователь, если сам откроет директорию
+        } finally {
+            unregister.run();
+            recordBytes(request, bytes[0]);
+        }
+    }
+
+    /**
+     * Учитывает запрос в бюджете.
+     *
+     * @return учтённый запрос или {@code null}, если бюджет на текущую минуту исчерпан
+     */
+    private synchronized Request reserveRequest() {
+        long now = System.nanoTime();
+        while (!window.isEmpty() && now - window.peekFirst().startedAt > WINDOW_NANOS) {
+            window.pollFirst();
+        }
+        long usedBytes = 0;
+        for (Request request : window) {
+            usedBytes += request.bytes;
+        }
+        if (window.size() >= maxRequestsPerMinute || usedBytes >= maxBytesPerMinute) {
+            return null;
+        }
+        Request request = new Request(now, maxBytesPerMinute - usedBytes);
+        window.addLast(request);
+        return request;
+    }
+
+    private synchronized void recordBytes(Request request, long bytes) {
+        request.bytes = bytes;
+    }
+
+    private static long length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static final class Request {
+
+        final long startedAt;
+        final long byteBudget;
+        long bytes;
+
+        Request(long startedAt, long byteBudget) {
+            this.startedAt = startedAt;
+            this.byteBudget = byteBudget;
+        }
+    }
+}
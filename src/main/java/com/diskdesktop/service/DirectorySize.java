@@ -0,0 +1,36 @@
+package com.diskdesktop.service;
+
+/**
+ * Итоги по поддереву директории на backend-е: число файлов, их суммарный размер и число поддиректорий
+ * на всех уровнях вложенности.
+ */
+public final class DirectorySize {
+
+    private final String path;
+    private final long fileCount;
+    private final long totalBytes;
+    private final long directoryCount;
+
+    public DirectorySize(String path, long fileCount, long totalBytes, long directoryCount) {
+        this.path = path;
+        this.fileCount = fileCount;
+        this.totalBytes = totalBytes;
+        this.directoryCount = directoryCount;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getDirectoryCount() {
+        return directoryCount;
+    }
+}
@@ -0,0 +1,304 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.ConfigService;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Локальный кэш скачанных файлов в {@code ~/.diskdesktop/cache}, ограниченный суммарным размером (LRU).
+ * <p>
+ * Запись — пара {@code <ключ>.bin} (содержимое) и {@code <ключ>.meta} (директория, имя, валидатор, размер),
+ * где ключ — SHA-256 от директории, имени и валидатора (strong ETag или Last-Modified) скачанной версии.
+ * Файлы записи появляются атомарным переименованием из временных, поэтому прерванное заполнение
+ * не оставляет испорченных записей. Копирование из кэша, заполнение и вытеснение одной записи
+ * сериализуются блокировкой по пути файла: параллельные скачивания безопасны.
+ * Время последнего обращения хранится во времени изменения {@code .bin} и переживает перезапуск.
+ */
+class DownloadCache {
+
+    private static final String CACHE_DIR_NAME = "cache";
+    private static final String DATA_SUFFIX = ".bin";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int LOCK_STRIPES = 64;
+
+    private final File dir;
+    private final long maxBytes;
+    /**
+     * Путь файла на backend-е ({@code directory + "\n" + filename}) → запись; порядок — по давности обращения.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private long totalBytes;
+
+    DownloadCache(long maxBytes) {
+        this(new File(ConfigService.getAppDirectory(), CACHE_DIR_NAME), maxBytes);
+    }
+
+    DownloadCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        load();
+    }
+
+    /**
+     * Файлы больше четверти кэша не кэшируются: один такой файл вытеснил бы почти всё остальное.
+     */
+    boolean accepts(long size) {
+        return size >= 0 && size <= maxBytes / 4;
+    }
+
+    /**
+     * Валидатор закэшированной версии файла или {@code null}, если его в кэше нет.
+     */
+    String validatorOf(String directory, String filename) {
+        synchronized (entries) {
+            Entry entry = entries.get(pathKey(directory, filename));
+            return entry != null ? entry.validator : null;
+        }
+    }
+
+    /**
+     * Копирует закэшированную версию с валидатором {@code validator} в {@code target}.
+     *
+     * @return {@code false}, если такой версии уже нет в кэше (вытеснена или заменена)
+     */
+    boolean copyTo(String directory, String filename, String validator, File target) throws IOException {
+        String pathKey = pathKey(directory, filename);
+        synchronized (lockFor(pathKey)) {
+            Entry entry;
+            synchronized (entries) {
+                entry = entries.get(pathKey);
+            }
+            if (entry == null || !entry.validator.equals(validator)) {
+                return false;
+            }
+            File data = dataFile(entry.name);
+            if (data.length() != entry.size) {
+                remove(pathKey, entry);
+                return false;
+            }
+            copyAtomically(data, target);
+            data.setLastModified(System.currentTimeMillis());
+            return true;
+        }
+    }
+
+    /**
+     * Кладёт в кэш копию скачанного файла; прежняя версия того же файла удаляется.
+     */
+    void put(String directory, String filename, String validator, File source) throws IOException {
+        long size = source.length();
+        if (!accepts(size)) {
+            return;
+        }
+        String pathKey = pathKey(directory, filename);
+        synchronized (lockFor(pathKey)) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create directory " + dir);
+            }
+            Entry entry = new Entry(directory, filename, validator, size,
+                    StateFiles.sha256Hex(pathKey + "\n" + validator));
+            copyAtomically(source, dataFile(entry.name));
+            writeMeta(entry);
+
+            Entry previous;
+            synchronized (entries) {
+                previous = entries.put(pathKey, entry);
+                totalBytes += size - (previous != null ? previous.size : 0);
+            }
+            if (previous != null && !previous.name.equals(entry.name)) {
+                deleteFiles(previous);
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Вытесняет давно не использованные записи, пока кэш больше {@code maxBytes}.
+     * Файлы удаляются вне общей блокировки, под блокировкой своей записи.
+     */
+    private void evict() {
+        List<Map.Entry<String, Entry>> victims = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            long bytes = totalBytes;
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                victims.add(Map.entry(eldest.getKey(), eldest.getValue()));
+                bytes -= eldest.getValue().size;
+            }
+        }
+        for (Map.Entry<String, Entry> victim : victims) {
+            synchronized (lockFor(victim.getKey())) {
+                remove(victim.getKey(), victim.getValue());
+            }
+        }
+    }
+
+    private void remove(String pathKey, Entry entry) {
+        synchronized (entries) {
+            if (!entries.remove(pathKey, entry)) {
+                return; // запись уже заменена новой версией
+            }
+            totalBytes -= entry.size;
+        }
+        deleteFiles(entry);
+    }
+
+    private void load() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<Entry> loaded = new ArrayList<>();
+        for (File file : files) {
+            String fileName = file.getName();
+            if (fileName.endsWith(TMP_SUFFIX)) {
+                file.delete(); // остаток прерванного заполнения
+            } else if (fileName.endsWith(META_SUFFIX)) {
+                Entry entry = readMeta(file);
+                File data = entry != null ? dataFile(entry.name) : null;
+                if (entry == null || data.length() != entry.size) {
+                    file.delete();
+                    if (data != null) {
+                        data.delete();
+                    }
+                    continue;
+                }
+                entry.lastAccess = data.lastModified();
+                loaded.add(entry);
+            }
+        }
+        loaded.sort(Comparator.comparingLong(e -> e.lastAccess));
+        synchronized (entries) {
+            for (Entry entry : loaded) {
+                Entry previous = entries.put(pathKey(entry.directory, entry.filename), entry);
+                totalBytes += entry.size;
+                if (previous != null) {
+                    // две версии одного файла — оставляем более свежую по обращению
+                    totalBytes -= previous.size;
+                    deleteFiles(previous);
+                }
+            }
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(DATA_SUFFIX) && !new File(dir, metaName(file)).isFile()) {
+                file.delete();
+            }
+        }
+        evict();
+    }
+
+    private Entry readMeta(File file) {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            String name = file.getName().substring(0, file.getName().length() - META_SUFFIX.length());
+            String directory = properties.getProperty("directory");
+            String filename = properties.getProperty("filename");
+            String validator = properties.getProperty("validator");
+            String size = properties.getProperty("size");
+            if (directory == null || filename == null || validator == null || size == null) {
+                return null;
+            }
+            return new Entry(directory, filename, validator, Long.parseLong(size), name);
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("directory", entry.directory);
+        properties.setProperty("filename", entry.filename);
+        properties.setProperty("validator", entry.validator);
+        properties.setProperty("size", String.valueOf(entry.size));
+        File tmp = tmpFile(entry.name);
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            properties.store(out, null);
+        }
+        StateFiles.move(tmp, new File(dir, entry.name + META_SUFFIX));
+    }
+
+    private void deleteFiles(Entry entry) {
+        // сначала meta: запись без неё при следующем запуске считается мусором
+        new File(dir, entry.name + META_SUFFIX).delete();
+        dataFile(entry.name).delete();
+    }
+
+    /**
+     * Копия через временный файл рядом с целью: читатель никогда не видит недописанный файл.
+     */
+    private void copyAtomically(File source, File target) throws IOException {
+        File tmp = target.getParentFile().equals(dir)
+                ? tmpFile(target.getName())
+                : new File(target.getPath() + "." + UUID.randomUUID() + TMP_SUFFIX);
+        try {
+            Files.copy(source.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            StateFiles.move(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private File tmpFile(String name) {
+        return new File(dir, name + "." + UUID.randomUUID() + TMP_SUFFIX);
+    }
+
+    private File dataFile(String name) {
+        return new File(dir, name + DATA_SUFFIX);
+    }
+
+    private static String metaName(File dataFile) {
+        String name = dataFile.getName();
+        return name.substring(0, name.length() - DATA_SUFFIX.length()) + META_SUFFIX;
+    }
+
+    private Object lockFor(String pathKey) {
+        return locks[Math.floorMod(pathKey.hashCode(), locks.length)];
+    }
+
+    private static String pathKey(String directory, String filename) {
+        return directory + "\n" + filename;
+    }
+
+    private static final class Entry {
+
+        final String directory;
+        final String filename;
+        final String validator;
+        final long size;
+        /**
+         * Имя файлов записи без расширения.
+         */
+        final String name;
+        long lastAccess;
+
+        Entry(String directory, String filename, String validator, long size, String name) {
+            this.directory = directory;
+            this.filename = filename;
+            this.validator = validator;
+            this.size = size;
+            this.name = name;
+        }
+    }
+}
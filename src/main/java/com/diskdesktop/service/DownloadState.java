@@ -0,0 +1,136 @@
+package com.diskdesktop.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Состояние незавершённого скачивания, хранится рядом с частичным файлом ({@code <target>.part.state}).
+ * <p>
+ * {@code done} каждого диапазона учитывает только байты, которые уже сброшены на диск,
+ * поэтому после обрыва или перезапуска приложения докачка продолжается с проверенного смещения.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DownloadState {
+
+    private String directory;
+    private String filename;
+    private long expectedSize;
+    /**
+     * ETag или Last-Modified файла на момент начала скачивания; отправляется в {@code If-Range}.
+     */
+    private String validator;
+    private List<Segment> segments = new ArrayList<>();
+
+    public DownloadState() {
+    }
+
+    public DownloadState(String directory, String filename, long expectedSize, String validator) {
+        this.directory = directory;
+        this.filename = filename;
+        this.expectedSize = expectedSize;
+        this.validator = validator;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public long getExpectedSize() {
+        return expectedSize;
+    }
+
+    public void setExpectedSize(long expectedSize) {
+        this.expectedSize = expectedSize;
+    }
+
+    public String getValidator() {
+        return validator;
+    }
+
+    public void setValidator(String validator) {
+        this.validator = validator;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public void setSegments(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    public long bytesDone() {
+        long done = 0;
+        for (Segment segment : segments) {
+            done += segment.getDone();
+        }
+        return done;
+    }
+
+    /**
+     * Диапазон байт [start, end] и количество уже записанных с его начала байт.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Segment {
+
+        private long start;
+        private long end;
+        private long done;
+
+        public Segment() {
+        }
+
+        public Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public void setStart(long start) {
+            this.start = start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public void setEnd(long end) {
+            this.end = end;
+        }
+
+        public long getDone() {
+            return done;
+        }
+
+        public void setDone(long done) {
+            this.done = done;
+        }
+
+        public long length() {
+            return end - start + 1;
+        }
+
+        @JsonIgnore
+        public boolean isComplete() {
+            return done >= length();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.model.DirectoryEntries;
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.FileInfoDeserializer;
+import com.diskdesktop.model.FileInfoList;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый разбор листинга файлов: элементы читаются по одному и отдаются пачками,
+ * не дожидаясь конца ответа и не держа в памяти весь список.
+ * <p>
+ * Понимает и страницу {@code {"items": [...], "nextCursor": "..."}}, и обычный массив {@code FileInfo[]},
+ * а также ответ {@code /entries}, у которого потоково читается только список файлов.
+ * Пачки — {@link FileInfoList}: элементы пишутся прямо в столбцы, без объекта на каждый файл.
+ */
+class FileListingParser {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * @return курсор следующей страницы или {@code null}, если страница последняя
+     */
+    String parse(InputStream in, int batchSize, Consumer<List<FileInfo>> batches, CancellationToken token)
+            throws IOException, RequestCancelledException {
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            JsonToken first = parser.nextToken();
+            if (first == JsonToken.START_ARRAY) {
+                readItems(parser, batchSize, batches, token);
+                return null;
+            }
+            if (first != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected listing format: " + first);
+            }
+
+            String nextCursor = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+                    readItems(parser, batchSize, batches, token);
+                } else if ("nextCursor".equals(field)) {
+                    nextCursor = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return nextCursor == null || nextCursor.isEmpty() ? null : nextCursor;
+        }
+    }
+
+    /**
+     * Разбирает {@link DirectoryEntries}: файлы уходят в {@code batches}, остальное возвращается
+     * (поле {@code files} результата не заполняется).
+     */
+    DirectoryEntries parseEntries(InputStream in, int batchSize, Consumer<List<FileInfo>> batches,
+                                  CancellationToken token) throws IOException, RequestCancelledException {
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected entries format");
+            }
+            DirectoryEntries entries = new DirectoryEntries();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "path":
+                        entries.setPath(parser.getValueAsString());
+                        break;
+                    case "files":
+                        readItems(parser, batchSize, batches, token);
+                        break;
+                    case "directories":
+                        entries.setDirectories(readList(parser, DirectoryInfo.class));
+                        break;
+                    case "children":
+                        entries.setChildren(readList(parser, DirectoryEntries.class));
+                        break;
+                    case "nextCursor":
+                        String cursor = parser.getValueAsString();
+                        entries.setNextCursor(cursor == null || cursor.isEmpty() ? null : cursor);
+                        break;
+                    case "filesEtag":
+                        entries.setFilesEtag(parser.getValueAsString());
+                        break;
+                    case "directoriesEtag":
+                        entries.setDirectoriesEtag(parser.getValueAsString());
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return entries;
+        }
+    }
+
+    private <T> List<T> readList(JsonParser parser, Class<T> type) throws IOException {
+        List<T> items = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            items.add(mapper.readValue(parser, type));
+        }
+        return items;
+    }
+
+    private void readItems(JsonParser parser, int batchSize, Consumer<List<FileInfo>> batches,
+                           CancellationToken token) throws IOException, RequestCancelledException {
+        FileInfoList batch = new FileInfoList(batchSize);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            FileInfoDeserializer.readInto(parser, batch);
+            if (batch.size() >= batchSize) {
+                token.throwIfCancelled();
+                batches.accept(batch);
+                batch = new FileInfoList(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            token.throwIfCancelled();
+            batches.accept(batch);
+        }
+    }
+}
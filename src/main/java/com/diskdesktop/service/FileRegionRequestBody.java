@@ -0,0 +1,55 @@
+package com.diskdesktop.service;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Тело запроса из фрагмента локального файла; читается с диска по мере отправки, без копии в памяти.
+ */
+class FileRegionRequestBody extends RequestBody {
+
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final long offset;
+    private final long length;
+
+    FileRegionRequestBody(File file, long offset, long length) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return OCTET_STREAM;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offset);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("File " + file + " is shorter than expected");
+                }
+                sink.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+}
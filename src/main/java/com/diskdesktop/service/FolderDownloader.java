@@ -0,0 +1,306 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.AppConfig;
+import com.diskdesktop.model.DirectoryEntries;
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.service.TaskScheduler.TaskClass;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Рекурсивное скачивание удалённой директории с повторением её структуры на диске.
+ * <p>
+ * Дерево обходится {@code listingParallelism} потоками (листинг каждой директории — один запрос
+ * {@link BackendService#listEntries}), найденные файлы через ограниченную очередь уходят {@code workers}
+ * потокам скачивания. Много мелких файлов так скачиваются одновременно, а крупные
+ * {@link BackendService#downloadFile} сам делит на параллельные диапазоны. Файлы, которые уже лежат
+ * на диске с тем же размером и временем изменения, пропускаются; скачанным выставляется время изменения
+ * с backend-а, чтобы повторное скачивание их тоже пропустило.
+ * <p>
+ * Потоки обхода и скачивания берутся у {@link TaskScheduler}; листинг ждёт его разрешения класса
+ * {@code INTERACTIVE}, файл — {@code DOWNLOAD}, поэтому одновременные скачивания папок вместе не превышают
+ * {@code scheduler.nestedLimit}. Листинг не должен делить разрешения с файлами: он ждёт места в очереди файлов,
+ * пока их скачивание не продвинется.
+ */
+public class FolderDownloader {
+
+    private static final Object END = new Object();
+    private static final int LISTING_BATCH_SIZE = 500;
+    /**
+     * Допуск при сравнении времени изменения: многие файловые системы хранят его с точностью до секунды.
+     */
+    private static final long MTIME_TOLERANCE_MILLIS = 1000;
+
+    private final BackendService backendService;
+    private final TaskScheduler scheduler;
+    private final int workers;
+    private final int listingParallelism;
+    private final int queueCapacity;
+
+    public FolderDownloader(BackendService backendService, TaskScheduler scheduler, AppConfig appConfig) {
+        this(backendService, scheduler, appConfig.getFolderDownloadWorkers(),
+                appConfig.getFolderDownloadListingParallelism(), appConfig.getFolderDownloadQueueCapacity());
+    }
+
+    public FolderDownloader(BackendService backendService, TaskScheduler scheduler, int workers,
+                            int listingParallelism, int queueCapacity) {
+        this.backendService = backendService;
+        this.scheduler = scheduler;
+        this.workers = Math.max(1, workers);
+        this.listingParallelism = Math.max(1, listingParallelism);
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Скачивает содержимое {@code remoteDirectory} в {@code localDirectory} (создаётся при необходимости).
+     * Прогресс суммарный; общий объём известен после окончания обхода.
+     *
+     * @return число скачанных файлов (без пропущенных)
+     */
+    public int download(String remoteDirectory, File localDirectory, TransferListener listener,
+                        CancellationToken outer) throws ApiException {
+        if (!localDirectory.isDirectory() && !localDirectory.mkdirs()) {
+            throw new ApiException("Failed to create local directory " + localDirectory, null);
+        }
+        // собственный токен: прерывание потока обхода тоже должно остановить скачивание
+        CancellationToken token = new CancellationToken();
+        Runnable unregister = outer.onCancel(token::cancel);
+
+        Traversal traversal = new Traversal(new ProgressTracker(-1, listener), token);
+        List<Future<?>> stages = new ArrayList<>();
+        traversal.addDirectory(remoteDirectory, localDirectory);
+        for (int i = 0; i < listingParallelism; i++) {
+            stages.add(scheduler.fork(() -> {
+                traversal.listDirectories();
+                return null;
+            }));
+        }
+        for (int i = 0; i < workers; i++) {
+            stages.add(scheduler.fork(() -> {
+                traversal.downloadFiles();
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> stage : stages) {
+                stage.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            token.cancel();
+            stages.forEach(stage -> stage.cancel(true));
+            throw new ApiException("Folder download interrupted", e);
+        } catch (ExecutionException e) {
+            token.cancel();
+            stages.forEach(stage -> stage.cancel(true));
+            throw new ApiException("Folder download failed", e.getCause());
+        } finally {
+            unregister.run();
+        }
+        traversal.tracker.finish();
+
+        outer.throwIfCancelled();
+        if (traversal.failed.get() > 0) {
+            throw new ApiException("Failed to download " + traversal.failed.get() + " of "
+                    + traversal.fileCount.get() + " files", traversal.firstFailure.get());
+        }
+        return traversal.downloaded.get();
+    }
+
+    private static boolean isUpToDate(File local, FileInfo remote) {
+        long remoteMillis = remoteLastModified(remote);
+        return remoteMillis >= 0
+                && local.isFile()
+                && local.length() == remote.getSize()
+                && Math.abs(local.lastModified() - remoteMillis) < MTIME_TOLERANCE_MILLIS;
+    }
+
+    private static long remoteLastModified(FileInfo remote) {
+        return remote.getLastModified() == FileInfo.UNKNOWN_TIME ? -1 : remote.getLastModified();
+    }
+
+    /**
+     * Имя из ответа backend-а становится частью локального пути, поэтому разделители и {@code ..} недопустимы.
+     */
+    static boolean isSafeName(String name) {
+        return name != null && !name.isEmpty() && !".".equals(name) && !"..".equals(name)
+                && name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+    }
+
+    /**
+     * Состояние одного скачивания папки.
+     */
+    private final class Traversal {
+
+        final ProgressTracker tracker;
+        final CancellationToken token;
+        final BlockingQueue<Object> directoryQueue = new LinkedBlockingQueue<>();
+        final BlockingQueue<Object> fileQueue = new ArrayBlockingQueue<>(queueCapacity);
+        /**
+         * Директории в очереди и в обработке; ноль означает, что обход закончен.
+         */
+        final AtomicInteger pendingDirectories = new AtomicInteger();
+        final AtomicInteger fileCount = new AtomicInteger();
+        final AtomicInteger downloaded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        final AtomicLong totalBytes = new AtomicLong();
+
+        Traversal(ProgressTracker tracker, CancellationToken token) {
+            this.tracker = tracker;
+            this.token = token;
+        }
+
+        void addDirectory(String remotePath, File localDirectory) {
+            pendingDirectories.incrementAndGet();
+            directoryQueue.add(new DirectoryTask(remotePath, localDirectory));
+        }
+
+        void listDirectories() throws InterruptedException {
+            Object next;
+            while ((next = directoryQueue.take()) != END) {
+                DirectoryTask task = (DirectoryTask) next;
+                try {
+                    if (!token.isCancelled()) {
+                        list(task);
+                    }
+                } catch (ApiException | RuntimeException e) {
+                    if (!token.isCancelled()) {
+                        fail(e);
+                    }
+                } finally {
+                    if (pendingDirectories.decrementAndGet() == 0) {
+                        finishTraversal();
+                    }
+                }
+            }
+        }
+
+        private void list(DirectoryTask task) throws ApiException, InterruptedException {
+            DirectoryEntries entries = scheduler.runNested(TaskClass.INTERACTIVE, () ->
+                    backendService.listEntries(task.remotePath, 1, LISTING_BATCH_SIZE, batch -> {
+                        for (FileInfo file : batch) {
+                            addFile(task, file);
+                        }
+                    }, token));
+            for (DirectoryInfo child : entries.getDirectories()) {
+                if (!isSafeName(child.getName())) {
+                    fail(new ApiException("Unsafe directory name from backend: " + child.getName(), null));
+                    continue;
+                }
+                File localChild = new File(task.localDirectory, child.getName());
+                if (!localChild.isDirectory() && !localChild.mkdirs()) {
+                    fail(new ApiException("Failed to create local directory " + localChild, null));
+                    continue;
+                }
+                addDirectory(child.getPath(), localChild);
+            }
+        }
+
+        private void addFile(DirectoryTask directory, FileInfo file) {
+            fileCount.incrementAndGet();
+            if (!isSafeName(file.getName())) {
+                fail(new ApiException("Unsafe file name from backend: " + file.getName(), null));
+                return;
+            }
+            totalBytes.addAndGet(file.getSize());
+            File localFile = new File(directory.localDirectory, file.getName());
+            if (isUpToDate(localFile, file)) {
+                tracker.skip(file.getSize());
+                return;
+            }
+            putFile(new FileTask(directory.remotePath, file, localFile));
+        }
+
+        private void finishTraversal() {
+            tracker.setTotalBytes(totalBytes.get());
+            for (int i = 0; i < listingParallelism; i++) {
+                directoryQueue.add(END);
+            }
+            for (int i = 0; i < workers; i++) {
+                putFile(END);
+            }
+        }
+
+        private void putFile(Object task) {
+            try {
+                fileQueue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                token.cancel();
+            }
+        }
+
+        void downloadFiles() throws InterruptedException {
+            Object next;
+            while ((next = fileQueue.take()) != END) {
+                FileTask task = (FileTask) next;
+                if (token.isCancelled()) {
+                    continue;
+                }
+                long[] reported = {0};
+                try {
+                    scheduler.runNested(TaskClass.DOWNLOAD, () -> {
+                        backendService.downloadFile(task.remoteDirectory, task.file.getName(), task.localFile,
+                                progress -> {
+                                    tracker.add(progress.getBytesDone() - reported[0]);
+                                    reported[0] = progress.getBytesDone();
+                                }, token);
+                        return null;
+                    });
+                    tracker.add(Math.max(0, task.file.getSize() - reported[0]));
+                    long remoteMillis = remoteLastModified(task.file);
+                    if (remoteMillis >= 0) {
+                        task.localFile.setLastModified(remoteMillis);
+                    }
+                    downloaded.incrementAndGet();
+                } catch (ApiException | RuntimeException e) {
+                    if (!token.isCancelled()) {
+                        fail(e);
+                    }
+                }
+            }
+        }
+
+        private void fail(Throwable e) {
+            failed.incrementAndGet();
+            firstFailure.compareAndSet(null, e);
+        }
+    }
+
+    private static final class DirectoryTask {
+
+        final String remotePath;
+        final File localDirectory;
+
+        DirectoryTask(String remotePath, File localDirectory) {
+            this.remotePath = remotePath;
+            this.localDirectory = localDirectory;
+        }
+    }
+
+    private static final class FileTask {
+
+        final String remoteDirectory;
+        final FileInfo file;
+        final File localFile;
+
+        FileTask(String remoteDirectory, FileInfo file, File localFile) {
+            this.remoteDirectory = remoteDirectory;
+            this.file = file;
+            this.localFile = localFile;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.AppConfig;
+import com.diskdesktop.service.TaskScheduler.TaskClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Рекурсивная загрузка локальной папки конвейером из трёх этапов, работающих одновременно:
+ * <ol>
+ *     <li>обход дерева (в вызывающем потоке) — ставит задачи создания директорий и загрузки файлов;</li>
+ *     <li>создание директорий одним потоком в порядке обхода, то есть родитель всегда раньше детей;
+ *     накопившиеся в очереди директории создаются одним запросом {@link BackendService#createDirectories};</li>
+ *     <li>{@code workers} потоков загрузки: файл ждёт только создания своей директории.</li>
+ * </ol>
+ * Очереди между этапами ограничены, поэтому память не зависит от размера дерева: обход
+ * приостанавливается, пока загрузка не догонит. Ошибка одного файла не останавливает остальные —
+ * итог сообщается в конце.
+ * <p>
+ * Файлы меньше {@code batchThreshold} собираются в пачки по директориям (до {@code batchMaxFiles} файлов
+ * и {@code batchMaxBytes} байт) и уходят одним запросом {@link BackendService#uploadFiles}: для мелких файлов
+ * время запроса намного больше времени передачи их байт.
+ * <p>
+ * Потоки этапов берутся у {@link TaskScheduler}; создание директорий ждёт его разрешения класса
+ * {@code INTERACTIVE}, загрузка файлов — {@code UPLOAD}, поэтому одновременные загрузки папок вместе не превышают
+ * {@code scheduler.nestedLimit}.
+ */
+public class FolderUploader {
+
+    private static final Object END = new Object();
+    private static final int MAX_DIRECTORIES_PER_REQUEST = 100;
+
+    private final BackendService backendService;
+    private final TaskScheduler scheduler;
+    private final int workers;
+    private final int queueCapacity;
+    private final long batchThreshold;
+    private final int batchMaxFiles;
+    private final long batchMaxBytes;
+
+    public FolderUploader(BackendService backendService, TaskScheduler scheduler, AppConfig appConfig) {
+        this(backendService, scheduler, appConfig.getFolderUploadWorkers(), appConfig.getFolderUploadQueueCapacity(),
+                appConfig.getFolderUploadBatchThreshold(), appConfig.getFolderUploadBatchMaxFiles(),
+                appConfig.getFolderUploadBatchMaxBytes());
+    }
+
+    public FolderUploader(BackendService backendService, TaskScheduler scheduler, int workers, int queueCapacity) {
+        this(backendService, scheduler, workers, queueCapacity, 0, 1, 0);
+    }
+
+    public FolderUploader(BackendService backendService, TaskScheduler scheduler, int workers, int queueCapacity,
+                          long batchThreshold, int batchMaxFiles, long batchMaxBytes) {
+        this.backendService = backendService;
+        this.scheduler = scheduler;
+        this.workers = Math.max(1, workers);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.batchThreshold = Math.max(0, batchThreshold);
+        this.batchMaxFiles = Math.max(1, batchMaxFiles);
+        this.batchMaxBytes = Math.max(0, batchMaxBytes);
+    }
+
+    /**
+     * Загружает папку {@code localRoot} вместе с содержимым в директорию {@code remoteParent}.
+     * Прогресс суммарный по всем файлам; общий объём известен после окончания обхода.
+     *
+     * @return число загруженных файлов
+     */
+    public int upload(File localRoot, String remoteParent, TransferListener listener, CancellationToken token)
+            throws ApiException {
+        ProgressTracker tracker = new ProgressTracker(-1, listener);
+        BlockingQueue<Object> directories = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> files = new ArrayBlockingQueue<>(queueCapacity);
+        Stats stats = new Stats();
+
+        List<Future<?>> stages = new ArrayList<>();
+        stages.add(scheduler.fork(() -> {
+            createDirectories(directories, token);
+            return null;
+        }));
+        for (int i = 0; i < workers; i++) {
+            stages.add(scheduler.fork(() -> {
+                uploadFiles(files, tracker, stats, token);
+                return null;
+            }));
+        }
+
+        try {
+            long totalBytes = walk(localRoot.toPath(), remoteParent, directories, files, stats, token);
+            tracker.setTotalBytes(totalBytes);
+            directories.put(END);
+            for (int i = 0; i < workers; i++) {
+                files.put(END);
+            }
+            for (Future<?> stage : stages) {
+                stage.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stages.forEach(stage -> stage.cancel(true));
+            throw new ApiException("Folder upload interrupted", e);
+        } catch (ExecutionException e) {
+            stages.forEach(stage -> stage.cancel(true));
+            throw new ApiException("Folder upload failed", e.getCause());
+        } catch (IOException e) {
+            stages.forEach(stage -> stage.cancel(true));
+            throw new ApiException("Failed to read local folder " + localRoot, e);
+        }
+        tracker.finish();
+
+        token.throwIfCancelled();
+        if (stats.failed.get() > 0) {
+            throw new ApiException("Failed to upload " + stats.failed.get() + " of " + stats.files.get() + " files",
+                    stats.firstFailure.get());
+        }
+        return stats.files.get();
+    }
+
+    private long walk(Path root, String remoteParent, BlockingQueue<Object> directories, BlockingQueue<Object> files,
+                      Stats stats, CancellationToken token) throws IOException, InterruptedException {
+        // удалённые пути директорий на текущем пути обхода: память пропорциональна глубине, а не размеру дерева
+        Deque<CompletableFuture<String>> path = new ArrayDeque<>();
+        path.push(CompletableFuture.completedFuture(remoteParent));
+        // незаполненные пачки мелких файлов директорий на текущем пути обхода
+        Deque<BatchTask> batches = new ArrayDeque<>();
+        long[] totalBytes = {0};
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (token.isCancelled()) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    CompletableFuture<String> created = new CompletableFuture<>();
+                    put(directories, new DirectoryTask(path.peek(), dir.getFileName().toString(), created));
+                    path.push(created);
+                    batches.push(new BatchTask(created));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (token.isCancelled()) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (attrs.isRegularFile()) {
+                        totalBytes[0] += attrs.size();
+                        stats.files.incrementAndGet();
+                        BatchTask batch = batches.peek();
+                        if (batch == null || attrs.size() >= batchThreshold) {
+                            put(files, new FileTask(file.toFile(), attrs.size(), path.peek()));
+                        } else {
+                            batch.add(file.toFile(), attrs.size());
+                            if (batch.files.size() >= batchMaxFiles || batch.size >= batchMaxBytes) {
+                                put(files, batches.pop());
+                                batches.push(new BatchTask(batch.directory));
+                            }
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    stats.fail(e);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    path.pop();
+                    BatchTask batch = batches.pop();
+                    if (!batch.files.isEmpty()) {
+                        put(files, batch);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (InterruptedWalk e) {
+            throw e.cause;
+        }
+        return totalBytes[0];
+    }
+
+    private void createDirectories(BlockingQueue<Object> queue, CancellationToken token) throws InterruptedException {
+        List<Object> drained = new ArrayList<>();
+        boolean end = false;
+        while (!end) {
+            drained.clear();
+            drained.add(queue.take());
+            // пока шёл прошлый запрос, обход успел поставить ещё директории — создаём их все одним запросом
+            queue.drainTo(drained, MAX_DIRECTORIES_PER_REQUEST - 1);
+            List<DirectoryTask> batch = new ArrayList<>(drained.size());
+            for (Object next : drained) {
+                if (next == END) {
+                    end = true;
+                } else {
+                    batch.add((DirectoryTask) next);
+                }
+            }
+            createDirectories(batch, token);
+        }
+    }
+
+    private void createDirectories(List<DirectoryTask> batch, CancellationToken token) throws InterruptedException {
+        // путь родителя из той же пачки известен до его создания
+        Map<CompletableFuture<String>, String> paths = new IdentityHashMap<>();
+        List<DirectoryTask> pending = new ArrayList<>(batch.size());
+        for (DirectoryTask task : batch) {
+            if (token.isCancelled()) {
+                task.created.completeExceptionally(new RequestCancelledException());
+                continue;
+            }
+            String parent = paths.get(task.parent);
+            if (parent == null) {
+                try {
+                    // родитель стоял в очереди раньше и уже обработан этим же потоком: join не ждёт
+                    parent = task.parent.join();
+                } catch (CompletionException e) {
+                    task.created.completeExceptionally(e.getCause());
+                    continue;
+                }
+            }
+            paths.put(task.created, ".".equals(parent) || parent.isEmpty() ? task.name : parent + "/" + task.name);
+            pending.add(task);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<String> targets = new ArrayList<>(pending.size());
+        for (DirectoryTask task : pending) {
+            targets.add(paths.get(task.created));
+        }
+        try {
+            scheduler.runNested(TaskClass.INTERACTIVE, () -> backendService.createDirectories(targets));
+            for (DirectoryTask task : pending) {
+                task.created.complete(paths.get(task.created));
+            }
+            return;
+        } catch (ApiException | RuntimeException e) {
+            if (pending.size() == 1) {
+                pending.get(0).created.completeExceptionally(e);
+                return;
+            }
+            // по одной: ошибка достанется только своей директории и её поддиректориям
+        }
+        for (DirectoryTask task : pending) {
+            String parent;
+            try {
+                parent = task.parent.join();
+            } catch (CompletionException e) {
+                task.created.completeExceptionally(e.getCause());
+                continue;
+            }
+            try {
+                scheduler.runNested(TaskClass.INTERACTIVE, () -> backendService.createDirectory(parent, task.name));
+            } catch (ApiException e) {
+                if (e.getStatusCode() != 409) {
+                    task.created.completeExceptionally(e);
+                    continue;
+                }
+                // директория уже существует — загружаем в неё
+            } catch (RuntimeException e) {
+                task.created.completeExceptionally(e);
+                continue;
+            }
+            task.created.complete(paths.get(task.created));
+        }
+    }
+
+    private void uploadFiles(BlockingQueue<Object> queue, ProgressTracker tracker, Stats stats,
+                             CancellationToken token) throws InterruptedException {
+        Object next;
+        while ((next = queue.take()) != END) {
+            if (token.isCancelled()) {
+                continue;
+            }
+            if (next instanceof BatchTask) {
+                uploadBatch((BatchTask) next, tracker, stats);
+                continue;
+            }
+            FileTask task = (FileTask) next;
+            long[] reported = {0};
+            try {
+                String directory = task.directory.get();
+                scheduler.runNested(TaskClass.UPLOAD, () ->
+                        backendService.uploadFile(directory, task.file, progress -> {
+                            tracker.add(progress.getBytesDone() - reported[0]);
+                            reported[0] = progress.getBytesDone();
+                        }, token));
+                tracker.add(task.size - reported[0]);
+            } catch (ExecutionException e) {
+                stats.fail(e.getCause());
+            } catch (ApiException | RuntimeException e) {
+                stats.fail(e);
+            }
+        }
+    }
+
+    private void uploadBatch(BatchTask task, ProgressTracker tracker, Stats stats) throws InterruptedException {
+        long[] reported = {0};
+        try {
+            String directory = task.directory.get();
+            scheduler.runNested(TaskClass.UPLOAD, () -> backendService.uploadFiles(directory, task.files, progress -> {
+                // в байты архива входят заголовки, поэтому прогресс пачки ограничен размером её файлов
+                long done = Math.min(progress.getBytesDone(), task.size);
+                tracker.add(done - reported[0]);
+                reported[0] = done;
+            }));
+            tracker.add(task.size - reported[0]);
+        } catch (ExecutionException e) {
+            stats.fail(task.files.size(), e.getCause());
+        } catch (ApiException | RuntimeException e) {
+            stats.fail(task.files.size(), e);
+        }
+    }
+
+    private static void put(BlockingQueue<Object> queue, Object task) {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedWalk(e);
+        }
+    }
+
+    private static final class DirectoryTask {
+
+        final CompletableFuture<String> parent;
+        final String name;
+        final CompletableFuture<String> created;
+
+        DirectoryTask(CompletableFuture<String> parent, String name, CompletableFuture<String> created) {
+            this.parent = parent;
+            this.name = name;
+            this.created = created;
+        }
+    }
+
+    private static final class FileTask {
+
+        final File file;
+        final long size;
+        final CompletableFuture<String> directory;
+
+        FileTask(File file, long size, CompletableFuture<String> directory) {
+            this.file = file;
+            this.size = size;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * Пачка мелких файлов одной директории.
+     */
+    private static final class BatchTask {
+
+        final CompletableFuture<String> directory;
+        final List<File> files = new ArrayList<>();
+        long size;
+
+        BatchTask(CompletableFuture<String> directory) {
+            this.directory = directory;
+        }
+
+        void add(File file, long fileSize) {
+            files.add(file);
+            size += fileSize;
+        }
+    }
+
+    private static final class Stats {
+
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+        void fail(Throwable e) {
+            fail(1, e);
+        }
+
+        void fail(int count, Throwable e) {
+            failed.addAndGet(count);
+            firstFailure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Прерывание ожидания в очереди внутри {@link java.nio.file.FileVisitor}, который не может бросать
+     * {@link InterruptedException}.
+     */
+    private static final class InterruptedWalk extends RuntimeException {
+
+        final InterruptedException cause;
+
+        InterruptedWalk(InterruptedException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+}
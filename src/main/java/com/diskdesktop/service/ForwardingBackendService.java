@@ -0,0 +1,127 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.model.DirectoryEntries;
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Базовый декоратор {@link BackendService}: передаёт все вызовы обёрнутому сервису.
+ * Наследники переопределяют только то, что меняют (кэширование и т.п.).
+ */
+public abstract class ForwardingBackendService implements BackendService {
+
+    protected final BackendService delegate;
+
+    protected ForwardingBackendService(BackendService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<FileInfo> listFiles(String directory, CancellationToken token) throws ApiException {
+        return delegate.listFiles(directory, token);
+    }
+
+    @Override
+    public ListingResult<FileInfo> listFilesIfChanged(String directory, String etag, CancellationToken token)
+            throws ApiException {
+        return delegate.listFilesIfChanged(directory, etag, token);
+    }
+
+    @Override
+    public void streamFiles(String directory, int batchSize, Consumer<List<FileInfo>> batches,
+                            CancellationToken token) throws ApiException {
+        delegate.streamFiles(directory, batchSize, batches, token);
+    }
+
+    @Override
+    public ListingResult<FileInfo> streamFilesIfChanged(String directory, String etag, int batchSize,
+                                                        Consumer<List<FileInfo>> batches, CancellationToken token)
+            throws ApiException {
+        return delegate.streamFilesIfChanged(directory, etag, batchSize, batches, token);
+    }
+
+    @Override
+    public List<DirectoryInfo> listDirectories(String directory, CancellationToken token) throws ApiException {
+        return delegate.listDirectories(directory, token);
+    }
+
+    @Override
+    public Map<String, List<DirectoryInfo>> listDirectories(List<String> directories, CancellationToken token)
+            throws ApiException {
+        return delegate.listDirectories(directories, token);
+    }
+
+    @Override
+    public Map<String, ListingResult<DirectoryInfo>> listDirectoryListings(List<String> directories,
+                                                                           CancellationToken token)
+            throws ApiException {
+        return delegate.listDirectoryListings(directories, token);
+    }
+
+    @Override
+    public ListingResult<DirectoryInfo> listDirectoriesIfChanged(String directory, String etag,
+                                                                 CancellationToken token) throws ApiException {
+        return delegate.listDirectoriesIfChanged(directory, etag, token);
+    }
+
+    @Override
+    public DirectoryEntries listEntries(String directory, int depth, int batchSize,
+                                        Consumer<List<FileInfo>> fileBatches, CancellationToken token)
+            throws ApiException {
+        return delegate.listEntries(directory, depth, batchSize, fileBatches, token);
+    }
+
+    @Override
+    public FileInfo uploadFile(String directory, File localFile, TransferListener listener, CancellationToken token)
+            throws ApiException {
+        return delegate.uploadFile(directory, localFile, listener, token);
+    }
+
+    @Override
+    public List<FileInfo> uploadFiles(String directory, List<File> localFiles, TransferListener listener)
+            throws ApiException {
+        return delegate.uploadFiles(directory, localFiles, listener);
+    }
+
+    @Override
+    public FileInfo uploadFileChunked(String directory, File localFile, TransferListener listener,
+                                      CancellationToken token) throws ApiException {
+        return delegate.uploadFileChunked(directory, localFile, listener, token);
+    }
+
+    @Override
+    public void downloadFile(String directory, String filename, File targetFile, TransferListener listener,
+                             CancellationToken token) throws ApiException {
+        delegate.downloadFile(directory, filename, targetFile, listener, token);
+    }
+
+    @Override
+    public DirectoryInfo createDirectory(String parentDirectory, String name) throws ApiException {
+        return delegate.createDirectory(parentDirectory, name);
+    }
+
+    @Override
+    public List<DirectoryInfo> createDirectories(List<String> paths) throws ApiException {
+        return delegate.createDirectories(paths);
+    }
+
+    @Override
+    public void invalidate(String directory) {
+        delegate.invalidate(directory);
+    }
+
+    @Override
+    public DirectoryEntries peekEntries(String directory, int depth) {
+        return delegate.peekEntries(directory, depth);
+    }
+
+    @Override
+    public boolean isFresh(String directory) {
+        return delegate.isFresh(directory);
+    }
+}
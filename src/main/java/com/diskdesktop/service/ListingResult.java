@@ -0,0 +1,52 @@
+package com.diskdesktop.service;
+
+import java.util.List;
+
+/**
+ * Результат условного запроса листинга ({@code If-None-Match}).
+ */
+public final class ListingResult<T> {
+
+    private final List<T> items;
+    private final String etag;
+    private final boolean notModified;
+
+    private ListingResult(List<T> items, String etag, boolean notModified) {
+        this.items = items;
+        this.etag = etag;
+        this.notModified = notModified;
+    }
+
+    public static <T> ListingResult<T> of(List<T> items, String etag) {
+        return new ListingResult<>(items, etag, false);
+    }
+
+    /**
+     * Листинг передан пачками по ходу разбора, результат несёт только его ETag.
+     */
+    public static <T> ListingResult<T> streamed(String etag) {
+        return new ListingResult<>(null, etag, false);
+    }
+
+    /**
+     * Backend ответил 304: листинг с этим ETag не изменился.
+     */
+    public static <T> ListingResult<T> notModified(String etag) {
+        return new ListingResult<>(null, etag, true);
+    }
+
+    /**
+     * Элементы листинга; {@code null}, если {@link #isNotModified()} или листинг передан пачками.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+}
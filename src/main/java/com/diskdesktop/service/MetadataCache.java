@@ -0,0 +1,204 @@
+package com.diskdesktop.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * LRU-кэш листингов, ограниченный числом записей и оценочным объёмом в памяти.
+ * Запись старше TTL не удаляется, а считается устаревшей: её ETag используется для перепроверки (304).
+ * Пока подключена лента изменений, записи, полученные после подключения, свежие независимо от TTL.
+ */
+class MetadataCache {
+
+    /**
+     * Примерные накладные расходы на запись и на элемент списка (заголовки объектов, ссылки, поля).
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+    static final long ITEM_OVERHEAD_BYTES = 64;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry<?>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    /**
+     * Увеличивается при каждой инвалидации: ответ, запрошенный до неё, сохраняется уже устаревшим.
+     */
+    private long generation;
+    /**
+     * Подключена ли лента изменений и с какого момента: все изменения после него приходят событиями.
+     */
+    private volatile boolean live;
+    private volatile long liveSince;
+
+    MetadataCache(int maxEntries, long maxBytes, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.ttlNanos = Math.max(0, ttlMillis) * 1_000_000L;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized <T> Entry<T> get(String key) {
+        return (Entry<T>) entries.get(key);
+    }
+
+    /**
+     * Листинги крупнее этого объёма не кэшируются, чтобы одна огромная директория не вытеснила все остальные.
+     */
+    long maxEntryBytes() {
+        return maxBytes / 4;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Сохраняет листинг; {@code requestGeneration} — значение {@link #generation()} на момент отправки запроса.
+     */
+    synchronized <T> Entry<T> put(String key, List<T> items, String etag, long requestGeneration,
+                                  ToLongFunction<T> itemSize) {
+        long bytes = ENTRY_OVERHEAD_BYTES + sizeOf(key) + sizeOf(etag);
+        for (T item : items) {
+            bytes += ITEM_OVERHEAD_BYTES + itemSize.applyAsLong(item);
+        }
+        long fetchedAt = requestGeneration == generation ? System.nanoTime() : Long.MIN_VALUE;
+        Entry<T> entry = new Entry<>(Collections.unmodifiableList(items), etag, bytes, fetchedAt);
+        Entry<?> previous = entries.put(key, entry);
+        if (previous != null) {
+            totalBytes -= previous.bytes;
+        }
+        totalBytes += bytes;
+        evict();
+        return entry;
+    }
+
+    /**
+     * Сохраняет листинг сразу устаревшим (например, из снимка прошлого запуска): он отдаётся
+     * для показа, но при первом же запросе перепроверяется по ETag.
+     */
+    synchronized <T> void putStale(String key, List<T> items, String etag, ToLongFunction<T> itemSize) {
+        put(key, items, etag, generation, itemSize).fetchedAt = Long.MIN_VALUE;
+    }
+
+    /**
+     * Копия записей от давно не использованных к недавним.
+     */
+    synchronized List<Map.Entry<String, Entry<?>>> entries() {
+        List<Map.Entry<String, Entry<?>>> copy = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry<?>> entry : entries.entrySet()) {
+            copy.add(Map.entry(entry.getKey(), entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Изменяет закэшированный листинг по событию ленты изменений, не меняя его свежести. ETag сбрасывается:
+     * список больше не совпадает ни с одной версией на backend-е. Ответы на запросы, отправленные раньше,
+     * сохраняются устаревшими — изменения в них может не быть. {@code change} получает текущий неизменяемый
+     * список и возвращает новый.
+     *
+     * @return новая запись или {@code null}, если листинга нет в кэше
+     */
+    synchronized <T> Entry<T> update(String key, UnaryOperator<List<T>> change, ToLongFunction<T> itemSize) {
+        generation++;
+        Entry<T> entry = get(key);
+        if (entry == null) {
+            return null;
+        }
+        long fetchedAt = entry.fetchedAt;
+        Entry<T> updated = put(key, change.apply(entry.items), null, generation, itemSize);
+        updated.fetchedAt = fetchedAt;
+        return updated;
+    }
+
+    /**
+     * Лента изменений подключена или отключена. После подключения ответы на запросы, отправленные
+     * раньше, сохраняются устаревшими: изменения до подключения лента не присылает.
+     */
+    synchronized void setLive(boolean live) {
+        if (live && !this.live) {
+            generation++;
+            liveSince = System.nanoTime();
+        }
+        this.live = live;
+    }
+
+    /**
+     * Ответ 304: запись снова свежая.
+     */
+    synchronized void revalidated(String key, Entry<?> entry, long requestGeneration) {
+        if (entries.get(key) == entry && requestGeneration == generation) {
+            entry.fetchedAt = System.nanoTime();
+        }
+    }
+
+    boolean isFresh(Entry<?> entry) {
+        long fetchedAt = entry.fetchedAt;
+        if (fetchedAt == Long.MIN_VALUE) {
+            return false;
+        }
+        return System.nanoTime() - fetchedAt < ttlNanos || live && fetchedAt - liveSince >= 0;
+    }
+
+    /**
+     * Помечает запись устаревшей, сохраняя её ETag для условного запроса.
+     */
+    synchronized void invalidate(String key) {
+        generation++;
+        Entry<?> entry = entries.get(key);
+        if (entry != null) {
+            entry.fetchedAt = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Помечает устаревшими все записи.
+     */
+    synchronized void invalidateAll() {
+        generation++;
+        for (Entry<?> entry : entries.values()) {
+            entry.fetchedAt = Long.MIN_VALUE;
+        }
+    }
+
+    synchronized void clear() {
+        generation++;
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry<?>>> it = entries.entrySet().iterator();
+        // последнюю добавленную запись не вытесняем, даже если она одна больше лимита
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && entries.size() > 1 && it.hasNext()) {
+            totalBytes -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+
+    static long sizeOf(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    static final class Entry<T> {
+
+        final List<T> items;
+        final String etag;
+        final long bytes;
+        volatile long fetchedAt;
+
+        Entry(List<T> items, String etag, long bytes, long fetchedAt) {
+            this.items = items;
+            this.etag = etag;
+            this.bytes = bytes;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
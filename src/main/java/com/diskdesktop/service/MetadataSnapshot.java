@@ -0,0 +1,184 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.ConfigService;
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.FileInfoList;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Снимок закэшированных листингов на диске: дерево директорий и метаданные файлов, виденные в прошлый раз.
+ * <p>
+ * При старте снимок загружается в кэш устаревшими записями: UI показывает их сразу и перепроверяет
+ * по ETag в фоне, а без связи с backend-ом ими можно пользоваться для просмотра. Снимок свой у каждого
+ * пользователя backend-а. Формат двоичный ({@code ~/.diskdesktop/snapshots/<sha256 адреса и пользователя>.snap})
+ * и читается через отображение в память; размер ограничен самим кэшем ({@code cache.maxBytes}). Запись атомарная.
+ */
+public final class MetadataSnapshot {
+
+    private static final String SNAPSHOTS_DIR_NAME = "snapshots";
+    private static final int MAGIC = 0x44534d53; // "DSMS"
+    private static final int VERSION = 2;
+    private static final byte KIND_FILES = 1;
+    private static final byte KIND_DIRECTORIES = 2;
+
+    private final File file;
+    private volatile long savedAt = -1;
+
+    MetadataSnapshot(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Снимок пользователя {@code username} backend-а {@code baseUrl}: у разных backend-ов и пользователей
+     * разные деревья.
+     */
+    public static MetadataSnapshot forAccount(String baseUrl, String username) {
+        return new MetadataSnapshot(
+                StateFiles.forKey(SNAPSHOTS_DIR_NAME, ConfigService.accountKey(baseUrl, username), ".snap"));
+    }
+
+    /**
+     * Есть ли сохранённый снимок: по нему можно открыть дерево без связи с backend-ом.
+     */
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    /**
+     * Когда был сохранён прочитанный или записанный снимок (мс от эпохи); {@code -1} — снимка нет.
+     */
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    /**
+     * Загружает листинги снимка в кэш устаревшими записями. Повреждённый или чужой версии снимок пропускается.
+     */
+    void restore(MetadataCache cache) {
+        if (!file.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return;
+            }
+            long snapshotSavedAt = in.getLong();
+            int count = in.getInt();
+            List<Runnable> restores = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte kind = in.get();
+                String key = readString(in);
+                String etag = readString(in);
+                int size = in.getInt();
+                if (kind == KIND_FILES) {
+                    FileInfoList files = new FileInfoList(size);
+                    for (int j = 0; j < size; j++) {
+                        files.add(readString(in), in.getLong(), in.getLong(), readString(in));
+                    }
+                    restores.add(() -> cache.putStale(key, files, etag, CachingBackendService::fileSize));
+                } else if (kind == KIND_DIRECTORIES) {
+                    List<DirectoryInfo> directories = new ArrayList<>(size);
+                    for (int j = 0; j < size; j++) {
+                        DirectoryInfo info = new DirectoryInfo();
+                        info.setName(readString(in));
+                        info.setPath(readString(in));
+                        directories.add(info);
+                    }
+                    restores.add(() -> cache.putStale(key, directories, etag, CachingBackendService::directorySize));
+                } else {
+                    return;
+                }
+            }
+            // в кэш попадает только полностью прочитанный снимок
+            restores.forEach(Runnable::run);
+            savedAt = snapshotSavedAt;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // снимок — только ускорение старта: без него директории загрузятся с backend-а
+        }
+    }
+
+    /**
+     * Сохраняет текущее содержимое кэша, от давно не использованных записей к недавним.
+     */
+    void save(MetadataCache cache) throws IOException {
+        List<Map.Entry<String, MetadataCache.Entry<?>>> entries = cache.entries();
+        long now = System.currentTimeMillis();
+        StateFiles.write(file, tmp -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(now);
+                List<Map.Entry<String, MetadataCache.Entry<?>>> written = new ArrayList<>();
+                for (Map.Entry<String, MetadataCache.Entry<?>> entry : entries) {
+                    if (CachingBackendService.isFilesKey(entry.getKey())
+                            || CachingBackendService.isDirectoriesKey(entry.getKey())) {
+                        written.add(entry);
+                    }
+                }
+                out.writeInt(written.size());
+                for (Map.Entry<String, MetadataCache.Entry<?>> entry : written) {
+                    boolean files = CachingBackendService.isFilesKey(entry.getKey());
+                    out.writeByte(files ? KIND_FILES : KIND_DIRECTORIES);
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue().etag);
+                    out.writeInt(entry.getValue().items.size());
+                    for (Object item : entry.getValue().items) {
+                        if (files) {
+                            FileInfo info = (FileInfo) item;
+                            writeString(out, info.getName());
+                            out.writeLong(info.getSize());
+                            out.writeLong(info.getLastModified());
+                            writeString(out, info.getDirectory());
+                        } else {
+                            DirectoryInfo info = (DirectoryInfo) item;
+                            writeString(out, info.getName());
+                            writeString(out, info.getPath());
+                        }
+                    }
+                }
+            }
+        });
+        savedAt = now;
+    }
+
+    /**
+     * Строка как длина в байтах UTF-8 и сами байты; {@code -1} — {@code null}.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,604 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Индекс всех известных клиенту путей на backend-е для поиска по имени без обхода дерева.
+ * <p>
+ * Наполняется листингами, которые проходят через кэш, и обновляется по мере их изменения: новый листинг
+ * директории заменяет её прежних детей. Пути хранятся деревом узлов в параллельных массивах, а имена
+ * интернируются: одинаковые имена в разных директориях занимают память один раз. По именам построен
+ * инвертированный индекс триграмм (без учёта регистра), поэтому подстрока или литеральные куски
+ * шаблона сужают перебор до нескольких имён даже при миллионах путей.
+ * <p>
+ * Потокобезопасен: поиск идёт под блокировкой чтения, обновления — под блокировкой записи.
+ */
+public final class PathIndex {
+
+    private static final int ROOT = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte FILE = 2;
+    private static final byte REMOVED = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // узлы: корень — 0, у остальных родитель, имя (номер сегмента), вид и размер
+    private int[] parents = new int[1024];
+    private int[] nameOf = new int[1024];
+    private byte[] flags = new byte[1024];
+    private long[] sizes = new long[1024];
+    private IntList[] children = new IntList[1024];
+    /**
+     * Метка последнего листинга, в котором встретился узел: по ней находятся исчезнувшие дети.
+     */
+    private int[] seenIn = new int[1024];
+    private int nodeCount;
+    private int liveCount;
+    private int listingStamp;
+    private final LongIntMap childByName = new LongIntMap();
+
+    // сегменты: интернированные имена, их форма для сравнения и узлы с этим именем
+    private final Map<String, Integer> segmentIds = new HashMap<>();
+    private final List<String> segments = new ArrayList<>();
+    private final List<String> foldedSegments = new ArrayList<>();
+    private final List<IntList> nodesBySegment = new ArrayList<>();
+    private final Map<Long, IntList> trigrams = new HashMap<>();
+
+    public PathIndex() {
+        addNode(-1, intern("."), DIRECTORY); // ROOT
+    }
+
+    /**
+     * Запоминает поддиректории {@code directory}; бывшие поддиректории, которых нет в листинге, удаляются из индекса.
+     */
+    public void replaceDirectories(String directory, List<DirectoryInfo> directories) {
+        lock.writeLock().lock();
+        try {
+            int parent = ensureDirectory(directory);
+            int stamp = ++listingStamp;
+            for (DirectoryInfo info : directories) {
+                if (info.getName() != null && !info.getName().isEmpty()) {
+                    int node = upsert(parent, info.getName(), DIRECTORY, 0);
+                    seenIn[node] = stamp;
+                }
+            }
+            removeUnseen(parent, DIRECTORY, stamp);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Запоминает файлы {@code directory}; файлы, которых нет в листинге, удаляются из индекса.
+     */
+    public void replaceFiles(String directory, List<FileInfo> files) {
+        lock.writeLock().lock();
+        try {
+            int parent = ensureDirectory(directory);
+            int stamp = ++listingStamp;
+            addFiles(parent, stamp, files);
+            removeUnseen(parent, FILE, stamp);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Начинает листинг файлов {@code directory}, который приходит пачками: файлы попадают в индекс
+     * по мере прихода, а исчезнувшие удаляются только в {@link FileListing#commit()}. Весь листинг
+     * при этом держать в памяти не нужно.
+     */
+    public FileListing beginFiles(String directory) {
+        lock.writeLock().lock();
+        try {
+            return new FileListing(ensureDirectory(directory), ++listingStamp);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Число путей в индексе.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет пути по имени без учёта регистра.
+     * <p>
+     * Запрос без {@code *} и {@code ?} ищется как подстрока имени, с ними — как шаблон всего имени
+     * ({@code *} — любые символы, {@code ?} — один символ; {@code отчёт*} — поиск по префиксу).
+     * Часть запроса до последнего {@code /} ограничивает директорию: она должна встречаться в пути родителя
+     * ({@code docs/*.pdf}). Сначала идут точные совпадения имени, затем совпадения по префиксу, затем остальные.
+     *
+     * @param limit сколько результатов вернуть
+     */
+    public List<Match> search(String query, int limit) {
+        String folded = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        int slash = folded.lastIndexOf('/');
+        String namePart = folded.substring(slash + 1);
+        String directoryPart = slash > 0 ? folded.substring(0, slash) : null;
+        if (namePart.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        boolean glob = isGlob(namePart);
+        Pattern namePattern = glob ? Pattern.compile(globToRegex(namePart)) : null;
+        Pattern directoryPattern = directoryPart != null && isGlob(directoryPart)
+                ? Pattern.compile(globToRegex(directoryPart).replace("[^/]*", ".*")) : null;
+        String prefix = literalPrefix(namePart);
+        boolean betterRanksPossible = !glob || !prefix.isEmpty();
+
+        lock.readLock().lock();
+        try {
+            // 0 — имя совпало целиком, 1 — по префиксу, 2 — остальные
+            IntList[] ranked = {new IntList(), new IntList(), new IntList()};
+            IntList candidates = candidateSegments(glob ? literals(namePart) : List.of(namePart));
+            int count = candidates != null ? candidates.size : segments.size();
+            for (int i = 0; i < count; i++) {
+                int segment = candidates != null ? candidates.values[i] : i;
+                String name = foldedSegments.get(segment);
+                boolean matches = glob ? namePattern.matcher(name).matches() : name.contains(namePart);
+                if (!matches) {
+                    continue;
+                }
+                int rank = name.equals(namePart) ? 0 : !prefix.isEmpty() && name.startsWith(prefix) ? 1 : 2;
+                IntList nodes = nodesBySegment.get(segment);
+                for (int j = 0; j < nodes.size && ranked[rank].size < limit; j++) {
+                    int node = nodes.values[j];
+                    if (node != ROOT && isLive(node)
+                            && (directoryPart == null || directoryMatches(parents[node], directoryPart, directoryPattern))) {
+                        ranked[rank].add(node);
+                    }
+                }
+                // дальше искать незачем, если лучшие совпадения уже набраны или лучших не бывает (*.pdf)
+                if (ranked[0].size >= limit || (!betterRanksPossible && ranked[2].size >= limit)) {
+                    break;
+                }
+            }
+            List<Match> matches = new ArrayList<>(Math.min(limit, 256));
+            for (IntList nodes : ranked) {
+                for (int j = 0; j < nodes.size && matches.size() < limit; j++) {
+                    matches.add(toMatch(nodes.values[j]));
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addFiles(int parent, int stamp, List<FileInfo> files) {
+        for (FileInfo info : files) {
+            if (info.getName() != null && !info.getName().isEmpty()) {
+                int node = upsert(parent, info.getName(), FILE, info.getSize());
+                seenIn[node] = stamp;
+            }
+        }
+    }
+
+    private int ensureDirectory(String directory) {
+        int node = ROOT;
+        restore(node);
+        if (directory == null || directory.isEmpty() || ".".equals(directory)) {
+            return node;
+        }
+        for (String name : directory.split("/")) {
+            if (!name.isEmpty() && !".".equals(name)) {
+                node = upsert(node, name, DIRECTORY, 0);
+            }
+        }
+        return node;
+    }
+
+    private int upsert(int parent, String name, byte kind, long size) {
+        int segment = intern(name);
+        int node = childByName.get(childKey(parent, segment));
+        if (node < 0) {
+            node = addNode(parent, segment, kind);
+            childByName.put(childKey(parent, segment), node);
+            children(parent).add(node);
+        } else {
+            restore(node);
+            flags[node] = kind;
+        }
+        sizes[node] = size;
+        return node;
+    }
+
+    private int addNode(int parent, int segment, byte kind) {
+        if (nodeCount == parents.length) {
+            int capacity = parents.length * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            nameOf = Arrays.copyOf(nameOf, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            children = Arrays.copyOf(children, capacity);
+            seenIn = Arrays.copyOf(seenIn, capacity);
+        }
+        int node = nodeCount++;
+        parents[node] = parent;
+        nameOf[node] = segment;
+        flags[node] = kind;
+        nodesBySegment.get(segment).add(node);
+        liveCount++;
+        return node;
+    }
+
+    /**
+     * Узел снова есть на backend-е: снимаем пометку удаления (сам узел и его поддерево переиспользуются).
+     */
+    private void restore(int node) {
+        if ((flags[node] & REMOVED) != 0) {
+            flags[node] &= ~REMOVED;
+            liveCount++;
+        }
+    }
+
+    private void removeUnseen(int parent, byte kind, int stamp) {
+        IntList nodes = children[parent];
+        if (nodes == null) {
+            return;
+        }
+        for (int i = 0; i < nodes.size; i++) {
+            int node = nodes.values[i];
+            // узлы из листингов, начатых позже, тоже актуальны: их не удаляем
+            if (flags[node] == kind && seenIn[node] < stamp) {
+                // поддерево удалённой директории недостижимо через isLive и оживает вместе с ней
+                flags[node] |= REMOVED;
+                liveCount--;
+            }
+        }
+    }
+
+    private IntList children(int node) {
+        if (children[node] == null) {
+            children[node] = new IntList();
+        }
+        return children[node];
+    }
+
+    private boolean isLive(int node) {
+        for (int current = node; current >= 0; current = parents[current]) {
+            if ((flags[current] & REMOVED) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int intern(String name) {
+        Integer id = segmentIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        int segment = segments.size();
+        String folded = name.toLowerCase(Locale.ROOT);
+        segmentIds.put(name, segment);
+        segments.add(name);
+        // для имён в нижнем регистре (почти все) хранится одна строка
+        foldedSegments.add(folded.equals(name) ? name : folded);
+        nodesBySegment.add(new IntList());
+        long previous = Long.MIN_VALUE;
+        for (long trigram : sortedTrigrams(folded)) {
+            if (trigram != previous) {
+                trigrams.computeIfAbsent(trigram, t -> new IntList()).add(segment);
+                previous = trigram;
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Сегменты, в именах которых есть все триграммы литералов (по возрастанию номера);
+     * {@code null} — литералы слишком короткие и перебирать придётся все имена.
+     */
+    private IntList candidateSegments(List<String> literals) {
+        List<IntList> postings = new ArrayList<>();
+        for (String literal : literals) {
+            for (long trigram : sortedTrigrams(literal)) {
+                IntList posting = trigrams.get(trigram);
+                if (posting == null) {
+                    return new IntList();
+                }
+                postings.add(posting);
+            }
+        }
+        if (postings.isEmpty()) {
+            return null;
+        }
+        postings.sort((a, b) -> Integer.compare(a.size, b.size));
+        IntList result = postings.get(0).copy();
+        for (int i = 1; i < postings.size() && result.size > 0; i++) {
+            result.retainAll(postings.get(i));
+        }
+        return result;
+    }
+
+    private boolean directoryMatches(int directory, String part, Pattern pattern) {
+        String path = pathOf(directory).toLowerCase(Locale.ROOT);
+        return pattern != null ? pattern.matcher(path).find() : path.contains(part);
+    }
+
+    private Match toMatch(int node) {
+        String parent = pathOf(parents[node]);
+        return new Match(".".equals(parent) ? segments.get(nameOf[node]) : parent + "/" + segments.get(nameOf[node]),
+                parent, segments.get(nameOf[node]), flags[node] == DIRECTORY, sizes[node]);
+    }
+
+    private String pathOf(int node) {
+        if (node == ROOT) {
+            return ".";
+        }
+        StringBuilder path = new StringBuilder(segments.get(nameOf[node]));
+        for (int current = parents[node]; current != ROOT; current = parents[current]) {
+            path.insert(0, '/').insert(0, segments.get(nameOf[current]));
+        }
+        return path.toString();
+    }
+
+    private static long childKey(int parent, int segment) {
+        return ((long) parent << 32) | (segment & 0xFFFFFFFFL);
+    }
+
+    private static long[] sortedTrigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] result = new long[text.length() - 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static boolean isGlob(String text) {
+        return text.indexOf('*') >= 0 || text.indexOf('?') >= 0;
+    }
+
+    /**
+     * Куски шаблона без {@code *} и {@code ?}: они обязаны встретиться в имени.
+     */
+    private static List<String> literals(String glob) {
+        List<String> result = new ArrayList<>();
+        for (String literal : glob.split("[*?]")) {
+            if (!literal.isEmpty()) {
+                result.add(literal);
+            }
+        }
+        return result;
+    }
+
+    private static String literalPrefix(String query) {
+        int end = 0;
+        while (end < query.length() && query.charAt(end) != '*' && query.charAt(end) != '?') {
+            end++;
+        }
+        return query.substring(0, end);
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                regex.append(c == '*' ? "[^/]*" : "[^/]");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Листинг файлов директории, начатый {@link #beginFiles}. Если он не дошёл до {@link #commit()}
+     * (ошибка, отмена), в индексе остаются пришедшие файлы и прежние, а удалённые не удаляются.
+     */
+    public final class FileListing {
+
+        private final int parent;
+        private final int stamp;
+
+        private FileListing(int parent, int stamp) {
+            this.parent = parent;
+            this.stamp = stamp;
+        }
+
+        /**
+         * Добавляет очередную пачку файлов листинга.
+         */
+        public void add(List<FileInfo> files) {
+            lock.writeLock().lock();
+            try {
+                addFiles(parent, stamp, files);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Листинг получен целиком: файлы директории, которых в нём не было, удаляются из индекса.
+         */
+        public void commit() {
+            lock.writeLock().lock();
+            try {
+                removeUnseen(parent, FILE, stamp);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Найденный путь.
+     */
+    public static final class Match {
+
+        private final String path;
+        private final String directory;
+        private final String name;
+        private final boolean isDirectory;
+        private final long size;
+
+        Match(String path, String directory, String name, boolean isDirectory, long size) {
+            this.path = path;
+            this.directory = directory;
+            this.name = name;
+            this.isDirectory = isDirectory;
+            this.size = size;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Путь родительской директории ({@code "."} — корень).
+         */
+        public String getDirectory() {
+            return directory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return isDirectory;
+        }
+
+        /**
+         * Размер файла из последнего листинга; для директорий — 0.
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Растущий массив {@code int} без упаковки в {@link Integer}.
+     */
+    private static final class IntList {
+
+        int[] values = new int[2];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        IntList copy() {
+            IntList copy = new IntList();
+            copy.values = Arrays.copyOf(values, Math.max(2, size));
+            copy.size = size;
+            return copy;
+        }
+
+        /**
+         * Пересечение двух списков, упорядоченных по возрастанию.
+         */
+        void retainAll(IntList other) {
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                while (j < other.size && other.values[j] < values[i]) {
+                    j++;
+                }
+                if (j < other.size && other.values[j] == values[i]) {
+                    values[kept++] = values[i];
+                }
+            }
+            size = kept;
+        }
+    }
+
+    /**
+     * Открытая адресация {@code long → int} для поиска ребёнка по (родитель, имя) без объектов на запись.
+     */
+    private static final class LongIntMap {
+
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys = newKeys(1 << 12);
+        private int[] values = new int[1 << 12];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == EMPTY) {
+                    return -1;
+                }
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.diskdesktop.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Считает переданные байты (в том числе из нескольких потоков), сглаживает скорость и
+ * с ограниченной частотой сообщает прогресс {@link TransferListener}-у.
+ */
+public class ProgressTracker {
+
+    public static final long REPORT_INTERVAL_MILLIS = 100;
+    /**
+     * Вес нового замера в экспоненциальном сглаживании скорости.
+     */
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final TransferListener listener;
+    private final AtomicLong bytesDone = new AtomicLong();
+    private volatile long totalBytes;
+    private volatile long nextReportAt;
+
+    private long lastSampleAt;
+    private long lastSampleBytes;
+    private double smoothedRate = -1;
+
+    public ProgressTracker(long totalBytes, TransferListener listener) {
+        this.totalBytes = totalBytes;
+        this.listener = listener != null ? listener : TransferListener.NONE;
+        this.lastSampleAt = System.nanoTime();
+        this.nextReportAt = lastSampleAt;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Учитывает байты, переданные в предыдущих попытках (докачка): в прогресс они входят, в скорость — нет.
+     */
+    public synchronized void skip(long bytes) {
+        bytesDone.addAndGet(bytes);
+        lastSampleBytes += bytes;
+    }
+
+    public void add(long bytes) {
+        bytesDone.addAndGet(bytes);
+        if (System.nanoTime() - nextReportAt >= 0) {
+            report(false);
+        }
+    }
+
+    public long getBytesDone() {
+        return bytesDone.get();
+    }
+
+    /**
+     * Сообщает итоговый прогресс независимо от ограничения частоты.
+     */
+    public void finish() {
+        report(true);
+    }
+
+    private void report(boolean force) {
+        TransferProgress progress;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (!force && now - nextReportAt < 0) {
+                return;
+            }
+            nextReportAt = now + REPORT_INTERVAL_MILLIS * 1_000_000;
+
+            long done = bytesDone.get();
+            long elapsed = now - lastSampleAt;
+            if (elapsed > 0) {
+                double rate = (done - lastSampleBytes) * 1e9 / elapsed;
+                smoothedRate = smoothedRate < 0 ? rate : RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * smoothedRate;
+                lastSampleAt = now;
+                lastSampleBytes = done;
+            }
+            long total = totalBytes;
+            long eta = total >= 0 && smoothedRate > 0 ? (long) Math.ceil((total - done) / smoothedRate) : -1;
+            progress = new TransferProgress(done, total, Math.max(0, smoothedRate), eta);
+        }
+        listener.onProgress(progress);
+    }
+}
@@ -0,0 +1,462 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.api.FileApi;
+import com.diskdesktop.config.FsyncPolicy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
+import retrofit2.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Возобновляемое скачивание файла HTTP Range-запросами, при необходимости в несколько параллельных диапазонов.
+ * <p>
+ * Данные пишутся в {@code <target>.part}, рядом хранится {@link DownloadState} ({@code <target>.part.state}).
+ * Первый запрос забирает начальный диапазон и по {@code Content-Range} узнаёт полный размер файла;
+ * остаток делится на равные диапазоны, которые качаются одновременно и пишутся сразу по своему смещению.
+ * При повторном скачивании в тот же файл (в том числе после перезапуска приложения) незавершённые
+ * диапазоны дозапрашиваются с {@code If-Range}: если файл на backend-е изменился, он отвечает 200
+ * и скачивание начинается заново. Если backend игнорирует {@code Range}, файл дочитывается
+ * из того же ответа одним потоком.
+ * <p>
+ * Скачивание останавливается через {@link CancellationToken}: отмена обрывает все запросы диапазонов
+ * ({@link CallGroup}), потоки диапазонов не прерываются.
+ */
+class RangeDownloader {
+
+    private static final int MIN_RANGE_SIZE = 64 * 1024;
+    /**
+     * Как часто (в байтах на диапазон) сбрасывать данные на диск и сохранять состояние.
+     */
+    private static final long CHECKPOINT_BYTES = 4L * 1024 * 1024;
+    private static final String PART_SUFFIX = ".part";
+    private static final String STATE_SUFFIX = ".part.state";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final FileApi fileApi;
+    private final int parallelRanges;
+    private final long minRangeSize;
+    private final BufferPool bufferPool;
+    private final FsyncPolicy fsyncPolicy;
+    private final ExecutorService executor;
+
+    RangeDownloader(FileApi fileApi, int parallelRanges, long minRangeSize, BufferPool bufferPool,
+                    FsyncPolicy fsyncPolicy) {
+        this.fileApi = fileApi;
+        this.parallelRanges = Math.max(1, parallelRanges);
+        this.minRangeSize = Math.max(MIN_RANGE_SIZE, minRangeSize);
+        this.bufferPool = bufferPool;
+        this.fsyncPolicy = fsyncPolicy;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "range-download-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return скачанная версия; {@code null}, если backend не поддерживает Range для этого файла
+     * (например, 416 на пустом файле) и нужно скачать его обычным запросом.
+     */
+    Downloaded download(String directory, String filename, File targetFile, TransferListener listener,
+                        CancellationToken token) throws IOException, ApiException {
+        try (CallGroup calls = new CallGroup(token)) {
+            return download(directory, filename, targetFile, listener, calls);
+        }
+    }
+
+    private Downloaded download(String directory, String filename, File targetFile, TransferListener listener,
+                                CallGroup calls) throws IOException, ApiException {
+        File partFile = new File(targetFile.getPath() + PART_SUFFIX);
+        File stateFile = new File(targetFile.getPath() + STATE_SUFFIX);
+
+        DownloadState state = loadState(stateFile, partFile, directory, filename);
+        if (state != null) {
+            ProgressTracker tracker = new ProgressTracker(state.getExpectedSize(), listener);
+            tracker.skip(state.bytesDone());
+            if (resume(state, partFile, stateFile, tracker, calls)) {
+                tracker.finish();
+                complete(partFile, stateFile, targetFile);
+                return new Downloaded(state.getValidator());
+            }
+            // файл на backend-е изменился с момента прошлой попытки — начинаем заново
+            discard(partFile, stateFile);
+        }
+        return downloadFresh(directory, filename, partFile, stateFile, targetFile, listener, calls);
+    }
+
+    /**
+     * Читает сохранённое состояние, если оно относится к тому же файлу backend-а, частичный файл на месте
+     * и есть валидатор для {@code If-Range}.
+     */
+    static DownloadState loadState(File stateFile, File partFile, String directory, String filename) {
+        if (!stateFile.isFile() || !partFile.isFile()) {
+            return null;
+        }
+        try {
+            DownloadState state = MAPPER.readValue(stateFile, DownloadState.class);
+            if (!directory.equals(state.getDirectory())
+                    || !filename.equals(state.getFilename())
+                    || state.getValidator() == null
+                    || state.getSegments() == null
+                    || state.getSegments().isEmpty()
+                    || partFile.length() != state.getExpectedSize()) {
+                return null;
+            }
+            return state;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Downloaded downloadFresh(String directory, String filename, File partFile, File stateFile,
+                                  File targetFile, TransferListener listener, CallGroup calls)
+            throws IOException, ApiException {
+        long leadEnd = parallelRanges > 1 ? minRangeSize - 1 : -1;
+        Response<ResponseBody> first = calls.execute(
+                fileApi.downloadFileRange(directory, filename, rangeHeader(0, leadEnd), null));
+        if (first.code() == 416) {
+            closeQuietly(first);
+            return null;
+        }
+        ResponseBody firstBody = BackendServiceImpl.handleResponse(first);
+        ProgressTracker tracker = new ProgressTracker(firstBody.contentLength(), listener);
+
+        ContentRange contentRange = first.code() == 206
+                ? ContentRange.parse(first.headers().get("Content-Range"))
+                : null;
+        if (contentRange == null || contentRange.start != 0 || contentRange.total < 0) {
+            // Range проигнорирован: в ответе весь файл, докачка для него невозможна
+            try (RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+                 FileChannel channel = file.getChannel()) {
+                file.setLength(0);
+                copyWhole(firstBody, channel, tracker);
+                if (fsyncPolicy != FsyncPolicy.NONE) {
+                    channel.force(false);
+                }
+            }
+            complete(partFile, stateFile, targetFile);
+            tracker.finish();
+            return new Downloaded(validatorOf(first));
+        }
+
+        long total = contentRange.total;
+        tracker.setTotalBytes(total);
+        DownloadState state = new DownloadState(directory, filename, total, validatorOf(first));
+        DownloadState.Segment lead = new DownloadState.Segment(0, contentRange.end);
+        state.getSegments().add(lead);
+        long offset = contentRange.end + 1;
+        long remaining = total - offset;
+        if (remaining > 0) {
+            int count = (int) Math.min(parallelRanges, (remaining + minRangeSize - 1) / minRangeSize);
+            long rangeSize = (remaining + count - 1) / count;
+            for (long start = offset; start < total; start += rangeSize) {
+                state.getSegments().add(new DownloadState.Segment(start, Math.min(total, start + rangeSize) - 1));
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+             FileChannel channel = file.getChannel()) {
+            // место под весь файл занимается сразу: меньше фрагментации и раннее ENOSPC
+            file.setLength(total);
+            saveState(state, stateFile);
+            runSegments(state, stateFile, channel, lead, firstBody, tracker, calls);
+        }
+        complete(partFile, stateFile, targetFile);
+        tracker.finish();
+        return new Downloaded(state.getValidator());
+    }
+
+    /**
+     * @return {@code false}, если backend отдал файл целиком вместо диапазона (сработал {@code If-Range})
+     * или размер файла изменился.
+     */
+    private boolean resume(DownloadState state, File partFile, File stateFile, ProgressTracker tracker,
+                           CallGroup calls) throws IOException, ApiException {
+        DownloadState.Segment lead = null;
+        for (DownloadState.Segment segment : state.getSegments()) {
+            if (!segment.isComplete()) {
+                lead = segment;
+                break;
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+             FileChannel channel = file.getChannel()) {
+            if (lead == null) {
+                return true;
+            }
+            ResponseBody leadBody;
+            try {
+                leadBody = requestSegment(state, lead, calls);
+            } catch (ValidatorMismatchException e) {
+                return false;
+            }
+            try {
+                runSegments(state, stateFile, channel, lead, leadBody, tracker, calls);
+            } catch (ValidatorMismatchException e) {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Качает в текущем потоке первый диапазон (ответ на него уже получен),
+     * остальные незавершённые диапазоны — параллельно в пуле. Метод не возвращается, пока работают
+     * потоки диапазонов: канал закрывается вызывающим только после них.
+     */
+    private void runSegments(DownloadState state, File stateFile, FileChannel channel,
+                             DownloadState.Segment lead, ResponseBody leadBody, ProgressTracker tracker,
+                             CallGroup calls) throws IOException, ApiException {
+        Checkpoint checkpoint = new Checkpoint(state, stateFile, channel, fsyncPolicy == FsyncPolicy.CHECKPOINT);
+        List<Future<?>> futures = new ArrayList<>();
+        for (DownloadState.Segment segment : state.getSegments()) {
+            if (segment != lead && !segment.isComplete()) {
+                futures.add(executor.submit(() -> {
+                    copy(requestSegment(state, segment, calls), channel, segment, checkpoint, tracker);
+                    return null;
+                }));
+            }
+        }
+
+        boolean completed = false;
+        try {
+            copy(leadBody, channel, lead, checkpoint, tracker);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            if (fsyncPolicy == FsyncPolicy.COMPLETE) {
+                channel.force(false);
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ApiException) {
+                throw (ApiException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Range download failed", cause);
+        } finally {
+            if (!completed) {
+                // оставшиеся диапазоны обрываются запросом, а не future.cancel(true):
+                // прерванный во время записи поток закрыл бы канал и для остальных
+                calls.cancelAndAwait(futures);
+            }
+        }
+    }
+
+    private ResponseBody requestSegment(DownloadState state, DownloadState.Segment segment, CallGroup calls)
+            throws IOException, ApiException {
+        long start = segment.getStart() + segment.getDone();
+        Response<ResponseBody> response = calls.execute(fileApi.downloadFileRange(
+                state.getDirectory(), state.getFilename(), rangeHeader(start, segment.getEnd()), state.getValidator()));
+        ResponseBody body = BackendServiceImpl.handleResponse(response);
+        ContentRange contentRange = response.code() == 206
+                ? ContentRange.parse(response.headers().get("Content-Range"))
+                : null;
+        if (contentRange == null || contentRange.total != state.getExpectedSize()) {
+            body.close();
+            throw new ValidatorMismatchException();
+        }
+        if (contentRange.start != start) {
+            body.close();
+            throw new IOException("Backend returned unexpected range for bytes " + start + "-" + segment.getEnd());
+        }
+        return body;
+    }
+
+    /**
+     * Копирует тело ответа в канал с позиции {@code segment.start + segment.done}, периодически
+     * фиксируя прогресс через {@link Checkpoint}.
+     */
+    private void copy(ResponseBody body, FileChannel channel, DownloadState.Segment segment,
+                      Checkpoint checkpoint, ProgressTracker tracker) throws IOException {
+        long base = segment.getStart() + segment.getDone();
+        long[] written = {0};
+        long[] checkpointAt = {CHECKPOINT_BYTES};
+        try (ResponseBody ignored = body;
+             BufferedSource in = countingSource(body, tracker)) {
+            ChannelTransfer.transfer(in, channel, base, bufferPool, total -> {
+                written[0] = total;
+                if (total >= checkpointAt[0]) {
+                    checkpoint.commit(segment, base - segment.getStart() + total);
+                    checkpointAt[0] = total + CHECKPOINT_BYTES;
+                }
+            });
+        } finally {
+            checkpoint.commit(segment, base - segment.getStart() + written[0]);
+        }
+        if (!segment.isComplete()) {
+            throw new IOException("Range at offset " + segment.getStart() + " is truncated: "
+                    + segment.getDone() + " of " + segment.length() + " bytes");
+        }
+    }
+
+    private void copyWhole(ResponseBody body, FileChannel channel, ProgressTracker tracker) throws IOException {
+        try (ResponseBody ignored = body;
+             BufferedSource in = countingSource(body, tracker)) {
+            ChannelTransfer.transfer(in, channel, 0, bufferPool, ChannelTransfer.NONE);
+        }
+    }
+
+    private static BufferedSource countingSource(ResponseBody body, ProgressTracker tracker) {
+        return Okio.buffer(new CountingSource(body.source(), tracker));
+    }
+
+    private static void complete(File partFile, File stateFile, File targetFile) throws IOException {
+        StateFiles.move(partFile, targetFile);
+        Files.deleteIfExists(stateFile.toPath());
+    }
+
+    private static void discard(File partFile, File stateFile) throws IOException {
+        Files.deleteIfExists(stateFile.toPath());
+        Files.deleteIfExists(partFile.toPath());
+    }
+
+    /**
+     * Без валидатора состояние не сохраняется: докачка без {@code If-Range} не заметила бы, что файл
+     * на backend-е заменён другим того же размера, и склеила бы старые и новые байты. Такое скачивание
+     * после сбоя начинается заново.
+     */
+    private static synchronized void saveState(DownloadState state, File stateFile) throws IOException {
+        if (state.getValidator() == null) {
+            return;
+        }
+        StateFiles.write(stateFile, tmp -> MAPPER.writeValue(tmp, state));
+    }
+
+    /**
+     * Strong ETag, иначе Last-Modified — то, что backend примет в {@code If-Range}.
+     */
+    static String validatorOf(Response<?> response) {
+        String etag = response.headers().get("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.headers().get("Last-Modified");
+    }
+
+    private static String rangeHeader(long start, long end) {
+        return end < 0 ? "bytes=" + start + "-" : "bytes=" + start + "-" + end;
+    }
+
+    private static void closeQuietly(Response<ResponseBody> response) {
+        if (response.body() != null) {
+            response.body().close();
+        }
+        if (response.errorBody() != null) {
+            response.errorBody().close();
+        }
+    }
+
+    /**
+     * Сбрасывает записанные данные на диск (при {@link FsyncPolicy#CHECKPOINT}) и только после этого
+     * сдвигает {@code done} в состоянии.
+     */
+    private static final class Checkpoint {
+
+        private final DownloadState state;
+        private final File stateFile;
+        private final FileChannel channel;
+        private final boolean force;
+
+        Checkpoint(DownloadState state, File stateFile, FileChannel channel, boolean force) {
+            this.state = state;
+            this.stateFile = stateFile;
+            this.channel = channel;
+            this.force = force;
+        }
+
+        void commit(DownloadState.Segment segment, long done) throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            if (force) {
+                channel.force(false);
+            }
+            synchronized (state) {
+                segment.setDone(Math.min(done, segment.length()));
+                saveState(state, stateFile);
+            }
+        }
+    }
+
+    /**
+     * Результат скачивания: валидатор скачанной версии ({@code null}, если backend не прислал ни strong ETag,
+     * ни Last-Modified).
+     */
+    static final class Downloaded {
+
+        final String validator;
+
+        Downloaded(String validator) {
+            this.validator = validator;
+        }
+    }
+
+    /**
+     * Backend ответил полным файлом на запрос с {@code If-Range}: файл изменился, докачка невозможна.
+     */
+    private static final class ValidatorMismatchException extends IOException {
+        ValidatorMismatchException() {
+            super("Remote file changed since the partial download was started");
+        }
+    }
+
+    /**
+     * Разобранный заголовок {@code Content-Range: bytes start-end/total}.
+     */
+    static final class ContentRange {
+
+        final long start;
+        final long end;
+        final long total;
+
+        private ContentRange(long start, long end, long total) {
+            this.start = start;
+            this.end = end;
+            this.total = total;
+        }
+
+        static ContentRange parse(String header) {
+            if (header == null || !header.startsWith("bytes ")) {
+                return null;
+            }
+            try {
+                String value = header.substring("bytes ".length()).trim();
+                int dash = value.indexOf('-');
+                int slash = value.indexOf('/');
+                if (dash < 0 || slash < dash) {
+                    return null;
+                }
+                long start = Long.parseLong(value.substring(0, dash));
+                long end = Long.parseLong(value.substring(dash + 1, slash));
+                String totalPart = value.substring(slash + 1);
+                long total = "*".equals(totalPart) ? -1 : Long.parseLong(totalPart);
+                return new ContentRange(start, end, total);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
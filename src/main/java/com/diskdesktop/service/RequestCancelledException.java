@@ -0,0 +1,12 @@
+package com.diskdesktop.service;
+
+/**
+ * Операция прервана через {@link CancellationToken}, например потому что её результат
+ * уже не нужен (пользователь перешёл в другую директорию).
+ */
+public class RequestCancelledException extends ApiException {
+
+    public RequestCancelledException() {
+        super("Request cancelled", null);
+    }
+}
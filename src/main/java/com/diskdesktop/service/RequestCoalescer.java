@@ -0,0 +1,123 @@
+package com.diskdesktop.service;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Объединяет одинаковые одновременные запросы: пока запрос с данным ключом выполняется,
+ * остальные вызывающие ждут его результат, а не отправляют свой.
+ * <p>
+ * Каждый вызывающий передаёт свой {@link CancellationToken}; отмена освобождает только его,
+ * а сам HTTP-запрос отменяется, когда его не ждёт ни один вызывающий.
+ */
+class RequestCoalescer {
+
+    private final Map<String, Shared<?>> inFlight = new HashMap<>();
+
+    <R, T> T execute(String key, Supplier<Call<R>> callFactory, ResponseHandler<R, T> handler,
+                     CancellationToken token) throws IOException, ApiException {
+        token.throwIfCancelled();
+
+        Shared<T> shared;
+        boolean leader = false;
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Shared<T> existing = (Shared<T>) inFlight.get(key);
+            if (existing == null) {
+                existing = new Shared<>(callFactory.get());
+                inFlight.put(key, existing);
+                leader = true;
+            }
+            shared = existing;
+            shared.subscribers++;
+        }
+
+        CompletableFuture<T> mine = new CompletableFuture<>();
+        shared.result.whenComplete((value, error) -> {
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(value);
+            }
+        });
+        Runnable unregister = token.onCancel(() -> {
+            mine.completeExceptionally(new RequestCancelledException());
+            unsubscribe(key, shared);
+        });
+
+        try {
+            if (leader) {
+                try {
+                    @SuppressWarnings("unchecked")
+                    Call<R> call = (Call<R>) shared.call;
+                    shared.result.complete(handler.handle(call.execute()));
+                } catch (IOException | ApiException | RuntimeException e) {
+                    shared.result.completeExceptionally(e);
+                } finally {
+                    synchronized (this) {
+                        inFlight.remove(key, shared);
+                    }
+                }
+            }
+            return mine.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unsubscribe(key, shared);
+            throw new RequestCancelledException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (token.isCancelled() || cause instanceof RequestCancelledException) {
+                throw new RequestCancelledException();
+            }
+            if (cause instanceof ApiException) {
+                throw (ApiException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            unregister.run();
+        }
+    }
+
+    private void unsubscribe(String key, Shared<?> shared) {
+        boolean cancelCall;
+        synchronized (this) {
+            shared.subscribers--;
+            cancelCall = shared.subscribers == 0 && !shared.result.isDone();
+            if (cancelCall) {
+                inFlight.remove(key, shared);
+            }
+        }
+        if (cancelCall) {
+            shared.call.cancel();
+        }
+    }
+
+    /**
+     * Преобразует HTTP-ответ в результат; выполняется один раз на объединённый запрос.
+     */
+    @FunctionalInterface
+    interface ResponseHandler<R, T> {
+        T handle(Response<R> response) throws ApiException;
+    }
+
+    private static final class Shared<T> {
+
+        final Call<?> call;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        int subscribers;
+
+        Shared(Call<?> call) {
+            this.call = call;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.ConfigService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Файлы состояния клиента в {@code ~/.diskdesktop}: снимки, журналы, индексы синхронизации.
+ * <p>
+ * Имя файла — SHA-256 ключа (адреса, пути), чтобы оно было допустимым в любой файловой системе.
+ * Запись идёт во временный файл рядом и заменяет прежний переименованием, так что после сбоя
+ * на диске остаётся либо старая, либо новая версия целиком.
+ */
+final class StateFiles {
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private StateFiles() {
+    }
+
+    /**
+     * {@code ~/.diskdesktop/<subdirectory>/<sha256 ключа><extension>}.
+     */
+    static File forKey(String subdirectory, String key, String extension) {
+        File dir = new File(ConfigService.getAppDirectory(), subdirectory);
+        return new File(dir, sha256Hex(key) + extension);
+    }
+
+    /**
+     * SHA-256 строки в UTF-8 в виде 64 шестнадцатеричных символов в нижнем регистре.
+     */
+    static String sha256Hex(String value) {
+        try {
+            return ContentHasher.toHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Создаёт директорию файла, если её нет, отдаёт {@code writer} временный файл рядом с {@code file}
+     * и переименовывает его поверх {@code file}.
+     */
+    static void write(File file, Writer writer) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        File tmp = new File(file.getPath() + TMP_SUFFIX);
+        writer.writeTo(tmp);
+        move(tmp, file);
+    }
+
+    /**
+     * Переименовывает {@code source} поверх {@code target}: атомарно, если файловая система это умеет.
+     */
+    static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @FunctionalInterface
+    interface Writer {
+        void writeTo(File tmp) throws IOException;
+    }
+}
@@ -0,0 +1,584 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.AppConfig;
+import com.diskdesktop.model.DirectoryEntries;
+import com.diskdesktop.model.DirectoryInfo;
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.service.TaskScheduler.TaskClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Двусторонняя синхронизация локальной папки с удалённой директорией.
+ * <p>
+ * Каждый проход сравнивает текущее состояние обеих сторон с {@link SyncIndex} — состоянием после
+ * прошлого прохода — и переносит только изменения: локально изменённое загружается, изменённое на
+ * backend-е скачивается, изменённое с обеих сторон сохраняется как конфликтная копия. Неизменённые
+ * файлы не читаются: достаточно сравнить размер и время изменения с индексом. Если изменилось только
+ * время, файл перечитывается и сравнивается по SHA-256 — загрузки при этом не будет.
+ * <p>
+ * При первой синхронизации индекса ещё нет, а {@code lastModified} на backend-е — время загрузки, а не правки.
+ * Поэтому файл, который есть с обеих сторон с одинаковым размером, скачивается во временный файл и
+ * сравнивается по SHA-256: совпавший считается синхронизированным, и конфликтом становится только
+ * действительно разное содержимое.
+ * <p>
+ * Удалённое на backend-е удаляется локально (если локальная копия не менялась). Удалить файл
+ * на backend-е API не позволяет, поэтому локальное удаление только запоминается в индексе,
+ * чтобы файл не скачивался заново, пока его удалённая версия не изменится.
+ * <p>
+ * Обход и передачи выполняют {@code parallelism} потоков {@link TaskScheduler}; каждый запрос ждёт
+ * разрешения своего класса, поэтому вместе с передачами папок синхронизация не превышает
+ * {@code scheduler.nestedLimit}.
+ */
+public class SyncEngine {
+
+    private static final Object END = new Object();
+    private static final int LISTING_BATCH_SIZE = 1000;
+    /**
+     * Допуск при сравнении времени изменения: многие файловые системы хранят его с точностью до секунды.
+     */
+    private static final long MTIME_TOLERANCE_MILLIS = 1000;
+    private static final DateTimeFormatter CONFLICT_SUFFIX = DateTimeFormatter.ofPattern("yyyy-MM-dd HHmmss");
+
+    private final BackendService backendService;
+    private final TaskScheduler scheduler;
+    private final int parallelism;
+
+    public SyncEngine(BackendService backendService, TaskScheduler scheduler, AppConfig appConfig) {
+        this(backendService, scheduler, appConfig.getSyncParallelism());
+    }
+
+    public SyncEngine(BackendService backendService, TaskScheduler scheduler, int parallelism) {
+        this.backendService = backendService;
+        this.scheduler = scheduler;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public SyncResult sync(File localRoot, String remoteRoot, TransferListener listener, CancellationToken token)
+            throws ApiException {
+        if (!localRoot.isDirectory()) {
+            throw new ApiException("Local folder does not exist: " + localRoot, null);
+        }
+        SyncIndex index = SyncIndex.load(localRoot, remoteRoot);
+        Map<String, LocalFile> local = scanLocal(localRoot);
+        RemoteTree remote = scanRemote(remoteRoot, token);
+
+        Plan plan = plan(index.entries(), local, remote);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            createRemoteDirectories(plan, remote, remoteRoot);
+            ProgressTracker tracker = new ProgressTracker(plan.transferBytes, listener);
+            AtomicInteger next = new AtomicInteger();
+            for (int i = 0; i < parallelism; i++) {
+                workers.add(scheduler.fork(() -> {
+                    for (int n; (n = next.getAndIncrement()) < plan.actions.size() && !token.isCancelled(); ) {
+                        apply(plan.actions.get(n), localRoot, remote, plan, tracker, token);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            tracker.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(worker -> worker.cancel(true));
+            throw new ApiException("Sync interrupted", e);
+        } catch (ExecutionException e) {
+            workers.forEach(worker -> worker.cancel(true));
+            throw new ApiException("Sync failed", e.getCause());
+        } finally {
+            try {
+                // сохраняем и частичный результат: удавшееся не будет передаваться повторно
+                index.save(plan.newEntries);
+            } catch (IOException e) {
+                plan.fail(e);
+            }
+        }
+
+        token.throwIfCancelled();
+        if (plan.failed.get() > 0) {
+            throw new ApiException("Sync finished with " + plan.failed.get() + " failed files",
+                    plan.firstFailure.get());
+        }
+        return new SyncResult(plan.uploaded.get(), plan.downloaded.get(), plan.conflicts.get(),
+                plan.deletedLocally.get(), plan.unchanged.get());
+    }
+
+    // --- сканирование ---
+
+    private static Map<String, LocalFile> scanLocal(File localRoot) throws ApiException {
+        Map<String, LocalFile> files = new HashMap<>();
+        Path root = localRoot.toPath();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String name = file.getFileName().toString();
+                    // служебные файлы незавершённых скачиваний не синхронизируются
+                    if (attrs.isRegularFile() && !name.endsWith(".part") && !name.endsWith(".part.state")) {
+                        String relative = root.relativize(file).toString().replace(File.separatorChar, '/');
+                        files.put(relative, new LocalFile(attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new ApiException("Failed to scan local folder " + localRoot, e);
+        }
+        return files;
+    }
+
+    /**
+     * Полный обход удалённого дерева с ограниченным параллелизмом. Любая ошибка прерывает синхронизацию:
+     * по неполному листингу нельзя отличить удалённый файл от непрочитанного.
+     */
+    private RemoteTree scanRemote(String remoteRoot, CancellationToken token) throws ApiException {
+        RemoteTree tree = new RemoteTree();
+        Scan scan = new Scan(tree, token);
+        tree.directories.put("", remoteRoot);
+        scan.add("", remoteRoot);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                workers.add(scheduler.fork(() -> {
+                    scan.run();
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(worker -> worker.cancel(true));
+            throw new ApiException("Sync interrupted", e);
+        } catch (ExecutionException e) {
+            workers.forEach(worker -> worker.cancel(true));
+            throw new ApiException("Failed to list remote directory", e.getCause());
+        }
+        token.throwIfCancelled();
+        Throwable failure = scan.failure.get();
+        if (failure != null) {
+            throw failure instanceof ApiException
+                    ? (ApiException) failure
+                    : new ApiException("Failed to list remote directory", failure);
+        }
+        return tree;
+    }
+
+    // --- сравнение ---
+
+    static Plan plan(Map<String, SyncIndex.Entry> index, Map<String, LocalFile> local, RemoteTree remote) {
+        Plan plan = new Plan();
+        Set<String> paths = new HashSet<>(index.keySet());
+        paths.addAll(local.keySet());
+        paths.addAll(remote.files.keySet());
+
+        for (String path : paths) {
+            SyncIndex.Entry base = index.get(path);
+            LocalFile localFile = local.get(path);
+            FileInfo remoteFile = remote.files.get(path);
+
+            if (localFile == null && remoteFile == null) {
+                continue; // удалён с обеих сторон — из индекса уходит
+            }
+            boolean localChanged = localFile != null && (base == null || base.isDeletedLocally()
+                    || localFile.size != base.localSize || localFile.mtime != base.localMtime);
+            boolean remoteChanged = remoteFile != null && (base == null
+                    || remoteFile.getSize() != base.remoteSize
+                    || remoteFile.getLastModified() != base.remoteLastModified);
+
+            if (localFile != null && remoteFile != null) {
+                if (base == null) {
+                    // первая синхронизация: одинаковые по размеру и времени файлы считаем совпадающими,
+                    // одинаковые только по размеру сравниваем по содержимому
+                    if (localFile.size != remoteFile.getSize()) {
+                        plan.add(new Action(ActionType.CONFLICT, path, localFile, remoteFile, null));
+                    } else if (Math.abs(localFile.mtime - remoteMillis(remoteFile)) < MTIME_TOLERANCE_MILLIS) {
+                        plan.keep(path, new SyncIndex.Entry(localFile.size, localFile.mtime, null,
+                                remoteFile.getSize(), remoteFile.getLastModified()));
+                    } else {
+                        plan.add(new Action(ActionType.COMPARE, path, localFile, remoteFile, null));
+                    }
+                } else if (!localChanged && !remoteChanged) {
+                    plan.keep(path, base);
+                } else if (localChanged && !remoteChanged) {
+                    plan.add(new Action(ActionType.UPLOAD, path, localFile, remoteFile, base));
+                } else if (!localChanged) {
+                    plan.add(new Action(ActionType.DOWNLOAD, path, localFile, remoteFile, base));
+                } else {
+                    plan.add(new Action(ActionType.CONFLICT, path, localFile, remoteFile, base));
+                }
+            } else if (localFile != null) {
+                if (base == null || !localChanged) {
+                    // новый локальный файл — загружаем; не менявшийся, но удалённый на backend-е — удаляем
+                    plan.add(new Action(base == null ? ActionType.UPLOAD : ActionType.DELETE_LOCAL,
+                            path, localFile, null, base));
+                } else {
+                    // на backend-е удалён, но локально изменён: правка пользователя важнее удаления
+                    plan.add(new Action(ActionType.UPLOAD, path, localFile, null, base));
+                }
+            } else {
+                if (base == null || remoteChanged) {
+                    plan.add(new Action(ActionType.DOWNLOAD, path, null, remoteFile, base));
+                } else {
+                    // удалён локально: запоминаем, чтобы не скачивать снова, пока файл на backend-е не изменится
+                    plan.keep(path, new SyncIndex.Entry(-1, 0, null, base.remoteSize, base.remoteLastModified));
+                }
+            }
+        }
+        return plan;
+    }
+
+    // --- применение ---
+
+    /**
+     * Создаёт недостающие удалённые директории для загружаемых файлов, родителей раньше детей.
+     */
+    private void createRemoteDirectories(Plan plan, RemoteTree remote, String remoteRoot) throws ApiException {
+        Set<String> missing = new TreeSet<>(Comparator.comparingInt((String p) -> p.split("/").length)
+                .thenComparing(Comparator.naturalOrder()));
+        for (Action action : plan.actions) {
+            if (action.type == ActionType.UPLOAD || action.type == ActionType.CONFLICT) {
+                for (String dir = parentOf(action.path); !dir.isEmpty(); dir = parentOf(dir)) {
+                    if (!remote.directories.containsKey(dir)) {
+                        missing.add(dir);
+                    }
+                }
+            }
+        }
+        for (String dir : missing) {
+            String parentRemote = remote.directories.get(parentOf(dir));
+            String name = dir.substring(dir.lastIndexOf('/') + 1);
+            try {
+                backendService.createDirectory(parentRemote, name);
+            } catch (ApiException e) {
+                if (e.getStatusCode() != 409) {
+                    throw e;
+                }
+            }
+            remote.directories.put(dir, ".".equals(parentRemote) || parentRemote.isEmpty()
+                    ? name : parentRemote + "/" + name);
+        }
+    }
+
+    private void apply(Action action, File localRoot, RemoteTree remote, Plan plan, ProgressTracker tracker,
+                       CancellationToken token) throws InterruptedException {
+        File localFile = new File(localRoot, action.path.replace('/', File.separatorChar));
+        String remoteDirectory = remote.directories.get(parentOf(action.path));
+        String name = action.path.substring(action.path.lastIndexOf('/') + 1);
+        try {
+            switch (action.type) {
+                case UPLOAD:
+                    upload(action, localFile, remoteDirectory, plan, tracker, token);
+                    break;
+                case DOWNLOAD:
+                    download(action.remote, remoteDirectory, name, localFile, tracker, token);
+                    plan.newEntries.put(action.path, new SyncIndex.Entry(localFile.length(), localFile.lastModified(),
+                            ContentHasher.digest(localFile), action.remote.getSize(),
+                            action.remote.getLastModified()));
+                    plan.downloaded.incrementAndGet();
+                    break;
+                case CONFLICT:
+                    download(action.remote, remoteDirectory, name, conflictCopy(localFile), tracker, token);
+                    upload(action, localFile, remoteDirectory, plan, tracker, token);
+                    plan.conflicts.incrementAndGet();
+                    break;
+                case COMPARE:
+                    compare(action, localFile, remoteDirectory, name, plan, tracker, token);
+                    break;
+                case DELETE_LOCAL:
+                    Files.deleteIfExists(localFile.toPath());
+                    plan.newEntries.remove(action.path);
+                    plan.deletedLocally.incrementAndGet();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown action " + action.type);
+            }
+        } catch (ApiException | IOException | RuntimeException e) {
+            plan.fail(e);
+        }
+    }
+
+    private void upload(Action action, File localFile, String remoteDirectory, Plan plan, ProgressTracker tracker,
+                        CancellationToken token) throws ApiException, IOException, InterruptedException {
+        byte[] hash = ContentHasher.digest(localFile);
+        SyncIndex.Entry base = action.base;
+        if (action.type == ActionType.UPLOAD && base != null && action.remote != null
+                && Arrays.equals(hash, base.hash)) {
+            // изменилось только время: содержимое то же, загружать нечего
+            tracker.skip(action.local.size);
+            plan.keep(action.path, new SyncIndex.Entry(action.local.size, action.local.mtime, hash,
+                    base.remoteSize, base.remoteLastModified));
+            return;
+        }
+        long[] reported = {0};
+        FileInfo uploaded = scheduler.runNested(TaskClass.UPLOAD, () ->
+                backendService.uploadFile(remoteDirectory, localFile, progress -> {
+                    tracker.add(progress.getBytesDone() - reported[0]);
+                    reported[0] = progress.getBytesDone();
+                }, token));
+        tracker.add(Math.max(0, action.local.size - reported[0]));
+        plan.newEntries.put(action.path, new SyncIndex.Entry(action.local.size, action.local.mtime, hash,
+                uploaded.getSize(), uploaded.getLastModified()));
+        if (action.type == ActionType.UPLOAD) {
+            plan.uploaded.incrementAndGet();
+        }
+    }
+
+    /**
+     * Скачивает удалённую версию во временный файл рядом с локальным и сравнивает содержимое. Совпало —
+     * временный файл удаляется, и в индекс попадает общий хэш; нет — временный файл становится конфликтной
+     * копией (второй раз её скачивать не нужно), а локальная версия загружается.
+     */
+    private void compare(Action action, File localFile, String remoteDirectory, String name, Plan plan,
+                         ProgressTracker tracker, CancellationToken token)
+            throws ApiException, IOException, InterruptedException {
+        // окончание .part: прерванное сравнение не примет временный файл за новый локальный
+        File remoteCopy = new File(localFile.getPath() + ".remote.part");
+        try {
+            download(action.remote, remoteDirectory, name, remoteCopy, tracker, token);
+            byte[] hash = ContentHasher.digest(localFile);
+            if (Arrays.equals(hash, ContentHasher.digest(remoteCopy))) {
+                tracker.skip(action.local.size);
+                plan.keep(action.path, new SyncIndex.Entry(action.local.size, action.local.mtime, hash,
+                        action.remote.getSize(), action.remote.getLastModified()));
+                return;
+            }
+            Files.move(remoteCopy.toPath(), conflictCopy(localFile).toPath());
+        } finally {
+            Files.deleteIfExists(remoteCopy.toPath());
+        }
+        upload(action, localFile, remoteDirectory, plan, tracker, token);
+        plan.conflicts.incrementAndGet();
+    }
+
+    private void download(FileInfo remoteFile, String remoteDirectory, String name, File target,
+                          ProgressTracker tracker, CancellationToken token)
+            throws ApiException, IOException, InterruptedException {
+        File parent = target.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        long[] reported = {0};
+        scheduler.runNested(TaskClass.DOWNLOAD, () -> {
+            backendService.downloadFile(remoteDirectory, name, target, progress -> {
+                tracker.add(progress.getBytesDone() - reported[0]);
+                reported[0] = progress.getBytesDone();
+            }, token);
+            return null;
+        });
+        tracker.add(Math.max(0, remoteFile.getSize() - reported[0]));
+        long remoteMillis = remoteMillis(remoteFile);
+        if (remoteMillis >= 0) {
+            target.setLastModified(remoteMillis);
+        }
+    }
+
+    private static File conflictCopy(File localFile) {
+        String name = localFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        String suffix = " (conflict " + LocalDateTime.now().format(CONFLICT_SUFFIX) + ")";
+        return new File(localFile.getParentFile(), base + suffix + extension);
+    }
+
+    private static long remoteMillis(FileInfo remote) {
+        return remote.getLastModified() == FileInfo.UNKNOWN_TIME ? -1 : remote.getLastModified();
+    }
+
+    private static String join(String parent, String name) {
+        return parent.isEmpty() ? name : parent + "/" + name;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    enum ActionType {
+        UPLOAD,
+        DOWNLOAD,
+        CONFLICT,
+        /**
+         * Первая синхронизация, размеры совпадают: конфликт или нет, решает сравнение содержимого.
+         */
+        COMPARE,
+        DELETE_LOCAL
+    }
+
+    static final class Action {
+
+        final ActionType type;
+        final String path;
+        final LocalFile local;
+        final FileInfo remote;
+        final SyncIndex.Entry base;
+
+        Action(ActionType type, String path, LocalFile local, FileInfo remote, SyncIndex.Entry base) {
+            this.type = type;
+            this.path = path;
+            this.local = local;
+            this.remote = remote;
+            this.base = base;
+        }
+    }
+
+    static final class LocalFile {
+
+        final long size;
+        final long mtime;
+
+        LocalFile(long size, long mtime) {
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+
+    /**
+     * Удалённое дерево: файлы и директории по пути относительно корня синхронизации.
+     */
+    static final class RemoteTree {
+
+        final Map<String, FileInfo> files = new ConcurrentHashMap<>();
+        /**
+         * Относительный путь директории ({@code ""} — корень) → путь на backend-е.
+         */
+        final Map<String, String> directories = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Обход удалённого дерева: потоки берут директории из общей очереди и ставят в неё найденные поддиректории.
+     */
+    private final class Scan {
+
+        final RemoteTree tree;
+        final CancellationToken token;
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        /**
+         * Директории в очереди и в обработке; ноль означает, что обход закончен.
+         */
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Scan(RemoteTree tree, CancellationToken token) {
+            this.tree = tree;
+            this.token = token;
+        }
+
+        void add(String relative, String remotePath) {
+            pending.incrementAndGet();
+            queue.add(new String[]{relative, remotePath});
+        }
+
+        void run() throws InterruptedException {
+            Object next;
+            while ((next = queue.take()) != END) {
+                String[] directory = (String[]) next;
+                try {
+                    if (failure.get() == null && !token.isCancelled()) {
+                        list(directory[0], directory[1]);
+                    }
+                } catch (ApiException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        for (int i = 0; i < parallelism; i++) {
+                            queue.add(END);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void list(String relative, String remotePath) throws ApiException, InterruptedException {
+            DirectoryEntries entries = scheduler.runNested(TaskClass.INTERACTIVE, () ->
+                    backendService.listEntries(remotePath, 1, LISTING_BATCH_SIZE, batch -> {
+                        for (FileInfo file : batch) {
+                            if (FolderDownloader.isSafeName(file.getName())) {
+                                tree.files.put(join(relative, file.getName()), file);
+                            }
+                        }
+                    }, token));
+            for (DirectoryInfo child : entries.getDirectories()) {
+                if (FolderDownloader.isSafeName(child.getName())) {
+                    String childRelative = join(relative, child.getName());
+                    tree.directories.put(childRelative, child.getPath());
+                    add(childRelative, child.getPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Действия прохода, будущее содержимое индекса и счётчики итога.
+     */
+    static final class Plan {
+
+        final List<Action> actions = new ArrayList<>();
+        /**
+         * Индекс после прохода: для неудавшихся действий остаётся прежняя запись, и они повторятся.
+         */
+        final Map<String, SyncIndex.Entry> newEntries = new ConcurrentHashMap<>();
+        long transferBytes;
+        final AtomicInteger uploaded = new AtomicInteger();
+        final AtomicInteger downloaded = new AtomicInteger();
+        final AtomicInteger conflicts = new AtomicInteger();
+        final AtomicInteger deletedLocally = new AtomicInteger();
+        final AtomicInteger unchanged = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+        void keep(String path, SyncIndex.Entry entry) {
+            newEntries.put(path, entry);
+            unchanged.incrementAndGet();
+        }
+
+        void add(Action action) {
+            actions.add(action);
+            if (action.base != null) {
+                newEntries.put(action.path, action.base);
+            }
+            if (action.type != ActionType.DELETE_LOCAL && action.remote != null
+                    && action.type != ActionType.UPLOAD) {
+                transferBytes += action.remote.getSize();
+            }
+            if (action.type == ActionType.UPLOAD || action.type == ActionType.CONFLICT
+                    || action.type == ActionType.COMPARE) {
+                transferBytes += action.local.size;
+            }
+        }
+
+        void fail(Throwable e) {
+            failed.incrementAndGet();
+            firstFailure.compareAndSet(null, e);
+        }
+    }
+}
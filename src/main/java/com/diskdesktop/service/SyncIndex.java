@@ -0,0 +1,145 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.FileInfoDeserializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Состояние пары «локальная папка — удалённая директория» после последней синхронизации:
+ * для каждого файла (путь относительно корня, через {@code /}) — локальные размер, время изменения
+ * и SHA-256 содержимого, а также размер и {@code lastModified} на backend-е.
+ * <p>
+ * Хранится в {@code ~/.diskdesktop/sync/} в компактном двоичном виде: сотни тысяч записей читаются
+ * и пишутся за доли секунды. Запись атомарная — прерванная синхронизация не портит индекс.
+ */
+class SyncIndex {
+
+    private static final String SYNC_DIR_NAME = "sync";
+    private static final int MAGIC = 0x44534958; // "DSIX"
+    /**
+     * Версия 1 хранила {@code lastModified} backend-а строкой; такой индекс читается с разбором времени.
+     */
+    private static final int VERSION_STRING_TIME = 1;
+    private static final int VERSION = 2;
+
+    private final File file;
+    private final Map<String, Entry> entries;
+
+    private SyncIndex(File file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    static SyncIndex load(File localRoot, String remoteRoot) {
+        File file = indexFileFor(localRoot, remoteRoot);
+        Map<String, Entry> entries = new HashMap<>();
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Unsupported sync index format");
+                }
+                int version = in.readInt();
+                if (version != VERSION && version != VERSION_STRING_TIME) {
+                    throw new IOException("Unsupported sync index version " + version);
+                }
+                int count = in.readInt();
+                entries = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    long localSize = in.readLong();
+                    long localMtime = in.readLong();
+                    byte[] hash = null;
+                    int hashLength = in.readUnsignedByte();
+                    if (hashLength > 0) {
+                        hash = new byte[hashLength];
+                        in.readFully(hash);
+                    }
+                    long remoteSize = in.readLong();
+                    long remoteLastModified;
+                    if (version == VERSION_STRING_TIME) {
+                        remoteLastModified = in.readBoolean()
+                                ? FileInfoDeserializer.parseTime(in.readUTF())
+                                : FileInfo.UNKNOWN_TIME;
+                    } else {
+                        remoteLastModified = in.readLong();
+                    }
+                    entries.put(path, new Entry(localSize, localMtime, hash, remoteSize, remoteLastModified));
+                }
+            } catch (IOException e) {
+                // повреждённый индекс равносилен первой синхронизации: ничего не удаляется, совпадающее пропускается
+                entries = new HashMap<>();
+            }
+        }
+        return new SyncIndex(file, entries);
+    }
+
+    Map<String, Entry> entries() {
+        return entries;
+    }
+
+    void save(Map<String, Entry> newEntries) throws IOException {
+        StateFiles.write(file, tmp -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(newEntries.size());
+                for (Map.Entry<String, Entry> item : newEntries.entrySet()) {
+                    Entry entry = item.getValue();
+                    out.writeUTF(item.getKey());
+                    out.writeLong(entry.localSize);
+                    out.writeLong(entry.localMtime);
+                    if (entry.hash != null) {
+                        out.writeByte(entry.hash.length);
+                        out.write(entry.hash);
+                    } else {
+                        out.writeByte(0);
+                    }
+                    out.writeLong(entry.remoteSize);
+                    out.writeLong(entry.remoteLastModified);
+                }
+            }
+        });
+    }
+
+    private static File indexFileFor(File localRoot, String remoteRoot) {
+        return StateFiles.forKey(SYNC_DIR_NAME, localRoot.getAbsolutePath() + "\n" + remoteRoot, ".idx");
+    }
+
+    /**
+     * Неизменяемая запись индекса. {@code localSize < 0} — файл удалён локально, но остался на backend-е
+     * (удаления на backend-е API не поддерживает): пока удалённая версия не меняется, она не скачивается снова.
+     */
+    static final class Entry {
+
+        final long localSize;
+        final long localMtime;
+        final byte[] hash;
+        final long remoteSize;
+        /**
+         * Мс от эпохи или {@link FileInfo#UNKNOWN_TIME}.
+         */
+        final long remoteLastModified;
+
+        Entry(long localSize, long localMtime, byte[] hash, long remoteSize, long remoteLastModified) {
+            this.localSize = localSize;
+            this.localMtime = localMtime;
+            this.hash = hash;
+            this.remoteSize = remoteSize;
+            this.remoteLastModified = remoteLastModified;
+        }
+
+        boolean isDeletedLocally() {
+            return localSize < 0;
+        }
+    }
+}
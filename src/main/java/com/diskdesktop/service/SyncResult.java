@@ -0,0 +1,44 @@
+package com.diskdesktop.service;
+
+/**
+ * Итог одного прохода синхронизации.
+ */
+public class SyncResult {
+
+    private final int uploaded;
+    private final int downloaded;
+    private final int conflicts;
+    private final int deletedLocally;
+    private final int unchanged;
+
+    public SyncResult(int uploaded, int downloaded, int conflicts, int deletedLocally, int unchanged) {
+        this.uploaded = uploaded;
+        this.downloaded = downloaded;
+        this.conflicts = conflicts;
+        this.deletedLocally = deletedLocally;
+        this.unchanged = unchanged;
+    }
+
+    public int getUploaded() {
+        return uploaded;
+    }
+
+    public int getDownloaded() {
+        return downloaded;
+    }
+
+    /**
+     * Файлы, изменённые с обеих сторон: удалённая версия сохранена рядом с локальной как конфликтная копия.
+     */
+    public int getConflicts() {
+        return conflicts;
+    }
+
+    public int getDeletedLocally() {
+        return deletedLocally;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+}
@@ -0,0 +1,159 @@
+package com.diskdesktop.service;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Тело запроса — tar-архив (POSIX ustar) из файлов одной директории.
+ * <p>
+ * Архив пишется прямо в соединение по мере отправки, без временного файла и без чтения файлов в память.
+ * Размеры файлов фиксируются при создании тела, поэтому длина архива известна заранее и запрос уходит
+ * с {@code Content-Length}. Имена длиннее 100 байт или не из ASCII передаются PAX-заголовком {@code path}.
+ * Время изменения файлов сохраняется в заголовках.
+ */
+class TarRequestBody extends RequestBody {
+
+    static final MediaType TAR = MediaType.parse("application/x-tar");
+
+    private static final int BLOCK = 512;
+    private static final int NAME_LENGTH = 100;
+
+    private final List<File> files;
+    private final long[] sizes;
+    private final long contentLength;
+
+    TarRequestBody(List<File> files) {
+        this.files = files;
+        this.sizes = new long[files.size()];
+        long length = 2L * BLOCK; // два нулевых блока — конец архива
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = files.get(i).length();
+            String name = files.get(i).getName();
+            length += BLOCK + padded(sizes[i]);
+            if (needsPax(name)) {
+                length += BLOCK + padded(paxRecord(name).length);
+            }
+        }
+        this.contentLength = length;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return TAR;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        for (int i = 0; i < sizes.length; i++) {
+            File file = files.get(i);
+            String name = file.getName();
+            long mtime = file.lastModified() / 1000;
+            if (needsPax(name)) {
+                byte[] record = paxRecord(name);
+                sink.write(header("PaxHeader/" + asciiName(name), record.length, mtime, (byte) 'x'));
+                sink.write(record);
+                pad(sink, record.length);
+            }
+            sink.write(header(asciiName(name), sizes[i], mtime, (byte) '0'));
+            try (Source source = Okio.source(file)) {
+                sink.write(source, sizes[i]);
+            } catch (EOFException e) {
+                throw new IOException("File changed during upload: " + file, e);
+            }
+            pad(sink, sizes[i]);
+        }
+        sink.write(new byte[2 * BLOCK]);
+    }
+
+    private static byte[] header(String name, long size, long mtime, byte type) {
+        byte[] header = new byte[BLOCK];
+        put(header, 0, NAME_LENGTH, name.getBytes(StandardCharsets.US_ASCII));
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, mtime);
+        header[156] = type;
+        put(header, 257, 6, "ustar\0".getBytes(StandardCharsets.US_ASCII));
+        put(header, 263, 2, "00".getBytes(StandardCharsets.US_ASCII));
+        // контрольная сумма считается с пробелами на её месте
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /**
+     * Число восьмеричными цифрами на всю ширину поля, кроме завершающего нуля.
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        if (digits.length() > length - 1) {
+            throw new IllegalArgumentException("Value does not fit into tar header: " + value);
+        }
+        String padded = "0".repeat(length - 1 - digits.length()) + digits;
+        put(header, offset, length - 1, padded.getBytes(StandardCharsets.US_ASCII));
+        header[offset + length - 1] = 0;
+    }
+
+    private static void put(byte[] header, int offset, int length, byte[] value) {
+        System.arraycopy(value, 0, header, offset, Math.min(length, value.length));
+    }
+
+    private static boolean needsPax(String name) {
+        return name.getBytes(StandardCharsets.UTF_8).length > NAME_LENGTH || !asciiName(name).equals(name);
+    }
+
+    /**
+     * Имя для поля ustar: читатели без PAX получат его, остальные — полное имя из PAX-заголовка.
+     */
+    private static String asciiName(String name) {
+        StringBuilder ascii = new StringBuilder(Math.min(name.length(), NAME_LENGTH));
+        for (int i = 0; i < name.length() && ascii.length() < NAME_LENGTH; i++) {
+            char c = name.charAt(i);
+            ascii.append(c >= 0x20 && c < 0x7F ? c : '_');
+        }
+        return ascii.toString();
+    }
+
+    /**
+     * Запись PAX {@code "<длина> path=<имя>\n"}, где длина включает собственные цифры.
+     */
+    private static byte[] paxRecord(String name) {
+        int rest = (" path=" + name + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = rest + 1;
+        while (String.valueOf(length).length() + rest != length) {
+            length = String.valueOf(length).length() + rest;
+        }
+        return (length + " path=" + name + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void pad(BufferedSink sink, long size) throws IOException {
+        int remainder = (int) (size % BLOCK);
+        if (remainder != 0) {
+            sink.write(new byte[BLOCK - remainder]);
+        }
+    }
+
+    private static long padded(long size) {
+        return (size + BLOCK - 1) / BLOCK * BLOCK;
+    }
+}
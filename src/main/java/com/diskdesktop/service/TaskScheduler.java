@@ -0,0 +1,175 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.AppConfig;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Единый планировщик фоновой работы с backend-ом.
+ * <p>
+ * У каждого класса задач свой лимит одновременно выполняемых задач, плюс общий лимит.
+ * Когда освобождается слот, очередь просматривается в порядке приоритета классов, поэтому
+ * листинги директорий обгоняют стоящие в очереди массовые загрузки/скачивания.
+ * Если среда выполнения поддерживает виртуальные потоки (Java 21+), задачи запускаются на них,
+ * иначе — на пуле daemon-потоков; число потоков в любом случае ограничено лимитами.
+ * <p>
+ * Задача-координатор (передача папки, синхронизация) занимает один слот, а файлы внутри неё передают
+ * её собственные потоки из {@link #fork}. Слотов вложенные операции не занимают — иначе координаторы,
+ * занявшие все слоты класса, ждали бы вложенных операций, которым слотов не досталось, — но каждая
+ * выполняется через {@link #runNested} и ждёт разрешения своего класса. Разрешения общие для всех
+ * координаторов, поэтому, сколько бы папок ни передавалось, одновременно идёт не больше
+ * {@code nestedLimit} вложенных запросов каждого класса.
+ */
+public class TaskScheduler {
+
+    /**
+     * Классы задач в порядке убывания приоритета.
+     */
+    public enum TaskClass {
+        INTERACTIVE,
+        UPLOAD,
+        DOWNLOAD,
+        /**
+         * Спекулятивная предзагрузка листингов: запускается, только если нет ожидающих интерактивных задач,
+         * и никогда не занимает последний свободный слот.
+         */
+        PREFETCH
+    }
+
+    /**
+     * Вложенная операция задачи-координатора, обычно один запрос к backend-у.
+     */
+    @FunctionalInterface
+    public interface NestedOperation<T, E extends Exception> {
+
+        T run() throws E;
+    }
+
+    private final Map<TaskClass, Integer> limits = new EnumMap<>(TaskClass.class);
+    private final Map<TaskClass, Integer> running = new EnumMap<>(TaskClass.class);
+    private final Map<TaskClass, ArrayDeque<FutureTask<?>>> queues = new EnumMap<>(TaskClass.class);
+    private final Map<TaskClass, Semaphore> nestedPermits = new EnumMap<>(TaskClass.class);
+    private final int maxConcurrent;
+    private final ExecutorService executor;
+    private int runningTotal;
+
+    public TaskScheduler(AppConfig appConfig) {
+        limits.put(TaskClass.INTERACTIVE, Math.max(1, appConfig.getSchedulerInteractiveLimit()));
+        limits.put(TaskClass.UPLOAD, Math.max(1, appConfig.getSchedulerUploadLimit()));
+        limits.put(TaskClass.DOWNLOAD, Math.max(1, appConfig.getSchedulerDownloadLimit()));
+        limits.put(TaskClass.PREFETCH, Math.max(1, appConfig.getSchedulerPrefetchLimit()));
+        for (TaskClass taskClass : TaskClass.values()) {
+            running.put(taskClass, 0);
+            queues.put(taskClass, new ArrayDeque<>());
+            // честная очередь: крупная синхронизация не отнимает разрешения у начавшейся позже папки
+            nestedPermits.put(taskClass, new Semaphore(Math.max(1, appConfig.getSchedulerNestedLimit()), true));
+        }
+        this.maxConcurrent = Math.max(1, appConfig.getSchedulerMaxConcurrent());
+        this.executor = createExecutor();
+    }
+
+    /**
+     * Ставит задачу в очередь своего класса. Отмена возвращённого {@link Future} до старта
+     * снимает задачу с очереди.
+     */
+    public Future<?> submit(TaskClass taskClass, Runnable runnable) {
+        FutureTask<Void> task = new FutureTask<>(runnable, null);
+        synchronized (this) {
+            queues.get(taskClass).addLast(task);
+        }
+        drain();
+        return task;
+    }
+
+    /**
+     * Запускает вспомогательный поток задачи-координатора (этап конвейера, поток синхронизации) на потоках
+     * планировщика. Слота поток не занимает; его запросы к backend-у должны идти через {@link #runNested}.
+     */
+    public <T> Future<T> fork(Callable<T> callable) {
+        return executor.submit(callable);
+    }
+
+    /**
+     * Выполняет вложенную операцию в текущем потоке, дождавшись разрешения её класса. Разрешение держится
+     * до конца операции, поэтому внутри неё нельзя ждать других вложенных операций того же класса.
+     *
+     * @throws InterruptedException если поток прерван в ожидании разрешения
+     */
+    public <T, E extends Exception> T runNested(TaskClass taskClass, NestedOperation<T, E> operation)
+            throws E, InterruptedException {
+        Semaphore permits = nestedPermits.get(taskClass);
+        permits.acquire();
+        try {
+            return operation.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void drain() {
+        synchronized (this) {
+            for (TaskClass taskClass : TaskClass.values()) {
+                ArrayDeque<FutureTask<?>> queue = queues.get(taskClass);
+                int available = maxConcurrent;
+                if (taskClass == TaskClass.PREFETCH) {
+                    if (!queues.get(TaskClass.INTERACTIVE).isEmpty()) {
+                        continue;
+                    }
+                    available = maxConcurrent - 1;
+                }
+                while (runningTotal < available
+                        && running.get(taskClass) < limits.get(taskClass)
+                        && !queue.isEmpty()) {
+                    FutureTask<?> task = queue.pollFirst();
+                    if (task.isCancelled()) {
+                        continue;
+                    }
+                    running.merge(taskClass, 1, Integer::sum);
+                    runningTotal++;
+                    executor.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            release(taskClass);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private void release(TaskClass taskClass) {
+        synchronized (this) {
+            running.merge(taskClass, -1, Integer::sum);
+            runningTotal--;
+        }
+        drain();
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Java 21+: Executors.newVirtualThreadPerTaskExecutor(); проект собирается под Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "backend-task-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
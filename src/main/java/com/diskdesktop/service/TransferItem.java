@@ -0,0 +1,178 @@
+package com.diskdesktop.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Передача в очереди {@link TransferManager}; в таком виде она хранится в журнале передач.
+ * <p>
+ * Сам журнал хранит только что и куда передаётся: докачка после перезапуска идёт по состоянию,
+ * которое сохраняют поблочная загрузка ({@code ~/.diskdesktop/uploads/}) и скачивание
+ * ({@code <target>.part.state}), а прогресс и скорость передаются только для показа.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TransferItem {
+
+    public enum Kind {
+        UPLOAD_FILE,
+        UPLOAD_FOLDER,
+        DOWNLOAD_FILE,
+        DOWNLOAD_FOLDER
+    }
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        /**
+         * Оборвалась из-за связи и будет повторена сама.
+         */
+        WAITING,
+        PAUSED,
+        FAILED,
+        COMPLETED
+    }
+
+    private String id;
+    private Kind kind;
+    private String localPath;
+    private String remoteDirectory;
+    /**
+     * Имя скачиваемого файла; для остальных передач {@code null}.
+     */
+    private String remoteName;
+    private State state = State.QUEUED;
+    private String error;
+    private long bytesDone;
+    private long totalBytes = -1;
+    private double bytesPerSecond;
+    private long etaSeconds = -1;
+
+    public TransferItem() {
+    }
+
+    public TransferItem(String id, Kind kind, String localPath, String remoteDirectory, String remoteName) {
+        this.id = id;
+        this.kind = kind;
+        this.localPath = localPath;
+        this.remoteDirectory = remoteDirectory;
+        this.remoteName = remoteName;
+    }
+
+    /**
+     * Копия для показа: сам элемент меняют потоки передач.
+     */
+    TransferItem copy() {
+        TransferItem copy = new TransferItem(id, kind, localPath, remoteDirectory, remoteName);
+        copy.state = state;
+        copy.error = error;
+        copy.bytesDone = bytesDone;
+        copy.totalBytes = totalBytes;
+        copy.bytesPerSecond = bytesPerSecond;
+        copy.etaSeconds = etaSeconds;
+        return copy;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    @JsonIgnore
+    public boolean isUpload() {
+        return kind == Kind.UPLOAD_FILE || kind == Kind.UPLOAD_FOLDER;
+    }
+
+    public String getLocalPath() {
+        return localPath;
+    }
+
+    public void setLocalPath(String localPath) {
+        this.localPath = localPath;
+    }
+
+    public String getRemoteDirectory() {
+        return remoteDirectory;
+    }
+
+    public void setRemoteDirectory(String remoteDirectory) {
+        this.remoteDirectory = remoteDirectory;
+    }
+
+    public String getRemoteName() {
+        return remoteName;
+    }
+
+    public void setRemoteName(String remoteName) {
+        this.remoteName = remoteName;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    /**
+     * Причина последней неудачи; {@code null}, если передача не падала.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getBytesDone() {
+        return bytesDone;
+    }
+
+    public void setBytesDone(long bytesDone) {
+        this.bytesDone = bytesDone;
+    }
+
+    /**
+     * {@code -1}, если объём ещё неизвестен (папка не обойдена до конца).
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    @JsonIgnore
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    void setBytesPerSecond(double bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * {@code -1}, если оценить нельзя.
+     */
+    @JsonIgnore
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    void setEtaSeconds(long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+}
@@ -0,0 +1,14 @@
+package com.diskdesktop.service;
+
+/**
+ * Слушатель прогресса загрузки/скачивания.
+ * Вызывается из фонового потока передачи не чаще, чем раз в {@link ProgressTracker#REPORT_INTERVAL_MILLIS} мс.
+ */
+@FunctionalInterface
+public interface TransferListener {
+
+    TransferListener NONE = progress -> {
+    };
+
+    void onProgress(TransferProgress progress);
+}
@@ -0,0 +1,421 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.config.ConfigService;
+import com.diskdesktop.service.TaskScheduler.TaskClass;
+import com.diskdesktop.service.TransferItem.Kind;
+import com.diskdesktop.service.TransferItem.State;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Очередь загрузок и скачиваний с журналом в {@code ~/.diskdesktop/transfers/}.
+ * <p>
+ * Одновременно выполняются не больше {@code parallelism} передач, первыми — стоящие выше в очереди; сами передачи
+ * идут задачами {@link TaskScheduler} классов {@code UPLOAD} и {@code DOWNLOAD}. Передачу можно приостановить
+ * (запросы выполняющейся обрываются, переданное сохраняется), продолжить и передвинуть в очереди.
+ * После обрыва связи передача повторяется сама с нарастающей паузой.
+ * <p>
+ * Журнал перезаписывается при каждом изменении очереди или состояния передачи. При следующем запуске
+ * незавершённые передачи встают в очередь снова и продолжаются с сохранённого места: крупные файлы —
+ * по состоянию поблочной загрузки и частичного скачивания, папки — повторным проходом, в котором уже
+ * скачанные файлы пропускаются, а уже загруженные досоздаются по хэшу без передачи содержимого.
+ */
+public class TransferManager {
+
+    /**
+     * Вызывается из потоков передач при любом изменении очереди; актуальное состояние — {@link #items()}.
+     */
+    public interface Listener {
+
+        void onQueueChanged();
+    }
+
+    private static final String TRANSFERS_DIR_NAME = "transfers";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long MIN_RETRY_DELAY_MILLIS = 30_000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 10 * 60_000;
+    private static final int MAX_RETRIES = 10;
+
+    private final BackendService backendService;
+    private final FolderUploader folderUploader;
+    private final FolderDownloader folderDownloader;
+    private final TaskScheduler scheduler;
+    private final File journalFile;
+    private final int parallelism;
+    private final ScheduledExecutorService retryTimer;
+
+    /**
+     * Очередь в порядке приоритета.
+     */
+    private final List<TransferItem> items = new ArrayList<>();
+    private final Map<String, Running> running = new HashMap<>();
+    /**
+     * Сколько раз подряд передача оборвалась из-за связи; сбрасывается при успехе и при ручном продолжении.
+     */
+    private final Map<String, Integer> retries = new HashMap<>();
+    private Listener listener = () -> {
+    };
+    private boolean started;
+    private boolean stopped;
+
+    public TransferManager(BackendService backendService, FolderUploader folderUploader,
+                           FolderDownloader folderDownloader, TaskScheduler scheduler, File journalFile,
+                           int parallelism) {
+        this.backendService = backendService;
+        this.folderUploader = folderUploader;
+        this.folderDownloader = folderDownloader;
+        this.scheduler = scheduler;
+        this.journalFile = journalFile;
+        this.parallelism = Math.max(1, parallelism);
+        this.retryTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "transfer-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Журнал передач пользователя backend-а: пути в нём относятся к конкретному серверу, а передачи
+     * выполняются с правами того, кто их поставил.
+     */
+    public static File journalFileFor(String baseUrl, String username) {
+        return StateFiles.forKey(TRANSFERS_DIR_NAME, ConfigService.accountKey(baseUrl, username), ".json");
+    }
+
+    /**
+     * Читает журнал и запускает незавершённые передачи; приостановленные остаются приостановленными.
+     *
+     * @throws IllegalStateException если очередь уже запущена
+     */
+    public synchronized void start(Listener listener) {
+        if (started) {
+            throw new IllegalStateException("Transfer manager is already started");
+        }
+        started = true;
+        this.listener = listener;
+        for (TransferItem item : loadJournal()) {
+            if (item.getId() == null || item.getKind() == null || item.getState() == State.COMPLETED) {
+                continue;
+            }
+            if (item.getState() == State.RUNNING || item.getState() == State.WAITING) {
+                // приложение закрылось посреди передачи или в ожидании повтора
+                item.setState(State.QUEUED);
+            }
+            items.add(item);
+        }
+        changed();
+    }
+
+    /**
+     * Останавливает выполняющиеся передачи, не меняя их состояния в журнале: при следующем запуске
+     * они продолжатся.
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        retryTimer.shutdownNow();
+        for (Running transfer : running.values()) {
+            transfer.cancel();
+        }
+        saveJournal();
+    }
+
+    public TransferItem enqueueUpload(File localFile, String remoteDirectory) {
+        return enqueue(Kind.UPLOAD_FILE, localFile, remoteDirectory, null);
+    }
+
+    /**
+     * Папка {@code localFolder} загружается вместе с содержимым внутрь {@code remoteParent}.
+     */
+    public TransferItem enqueueUploadFolder(File localFolder, String remoteParent) {
+        return enqueue(Kind.UPLOAD_FOLDER, localFolder, remoteParent, null);
+    }
+
+    public TransferItem enqueueDownload(String remoteDirectory, String filename, File targetFile) {
+        return enqueue(Kind.DOWNLOAD_FILE, targetFile, remoteDirectory, filename);
+    }
+
+    /**
+     * Содержимое {@code remoteDirectory} скачивается в {@code localDirectory}.
+     */
+    public TransferItem enqueueDownloadFolder(String remoteDirectory, File localDirectory) {
+        return enqueue(Kind.DOWNLOAD_FOLDER, localDirectory, remoteDirectory, null);
+    }
+
+    private synchronized TransferItem enqueue(Kind kind, File local, String remoteDirectory, String remoteName) {
+        TransferItem item = new TransferItem(UUID.randomUUID().toString(), kind, local.getAbsolutePath(),
+                remoteDirectory, remoteName);
+        items.add(item);
+        changed();
+        return item.copy();
+    }
+
+    /**
+     * Приостанавливает передачу; запросы выполняющейся обрываются, уже переданное сохраняется для докачки.
+     */
+    public synchronized void pause(String id) {
+        TransferItem item = find(id);
+        if (item == null || (item.getState() != State.QUEUED && item.getState() != State.RUNNING
+                && item.getState() != State.WAITING)) {
+            return;
+        }
+        item.setState(State.PAUSED);
+        item.setBytesPerSecond(0);
+        item.setEtaSeconds(-1);
+        Running transfer = running.get(id);
+        if (transfer != null) {
+            transfer.cancel();
+        }
+        changed();
+    }
+
+    /**
+     * Возвращает приостановленную или упавшую передачу в очередь; ожидающая повтора повторяется сразу.
+     */
+    public synchronized void resume(String id) {
+        TransferItem item = find(id);
+        if (item == null || (item.getState() != State.PAUSED && item.getState() != State.FAILED
+                && item.getState() != State.WAITING)) {
+            return;
+        }
+        item.setState(State.QUEUED);
+        item.setError(null);
+        retries.remove(id);
+        changed();
+    }
+
+    /**
+     * Передвигает передачу на {@code offset} позиций к началу очереди (отрицательный — к концу).
+     */
+    public synchronized void move(String id, int offset) {
+        TransferItem item = find(id);
+        if (item == null) {
+            return;
+        }
+        int from = items.indexOf(item);
+        int to = Math.max(0, Math.min(items.size() - 1, from - offset));
+        if (from == to) {
+            return;
+        }
+        items.remove(from);
+        items.add(to, item);
+        changed();
+    }
+
+    /**
+     * Убирает передачу из очереди, прерывая её, если она выполняется. Частично переданное остаётся
+     * на месте и подхватится, если ту же передачу поставить снова.
+     */
+    public synchronized void remove(String id) {
+        TransferItem item = find(id);
+        if (item == null) {
+            return;
+        }
+        items.remove(item);
+        retries.remove(id);
+        Running transfer = running.get(id);
+        if (transfer != null) {
+            transfer.cancel();
+        }
+        changed();
+    }
+
+    public synchronized void clearCompleted() {
+        if (items.removeIf(item -> item.getState() == State.COMPLETED)) {
+            changed();
+        }
+    }
+
+    /**
+     * Копии передач в порядке очереди.
+     */
+    public synchronized List<TransferItem> items() {
+        List<TransferItem> copies = new ArrayList<>(items.size());
+        for (TransferItem item : items) {
+            copies.add(item.copy());
+        }
+        return copies;
+    }
+
+    /**
+     * Сохраняет журнал, запускает передачи на освободившиеся места и сообщает слушателю.
+     */
+    private void changed() {
+        saveJournal();
+        dispatch();
+        listener.onQueueChanged();
+    }
+
+    private void dispatch() {
+        if (!started || stopped) {
+            return;
+        }
+        for (TransferItem item : items) {
+            if (running.size() >= parallelism) {
+                return;
+            }
+            if (item.getState() == State.QUEUED && !running.containsKey(item.getId())) {
+                startTransfer(item);
+            }
+        }
+    }
+
+    private void startTransfer(TransferItem item) {
+        item.setState(State.RUNNING);
+        item.setError(null);
+        Running transfer = new Running();
+        running.put(item.getId(), transfer);
+        scheduler.submit(item.isUpload() ? TaskClass.UPLOAD : TaskClass.DOWNLOAD, () -> execute(item, transfer));
+    }
+
+    /**
+     * Выполняет передачу в потоке планировщика.
+     */
+    private void execute(TransferItem item, Running transfer) {
+        Throwable failure = null;
+        try {
+            transfer.token.throwIfCancelled();
+            TransferListener progress = p -> onProgress(item, transfer, p);
+            File local = new File(item.getLocalPath());
+            switch (item.getKind()) {
+                case UPLOAD_FILE:
+                    backendService.uploadFile(item.getRemoteDirectory(), local, progress, transfer.token);
+                    break;
+                case UPLOAD_FOLDER:
+                    folderUploader.upload(local, item.getRemoteDirectory(), progress, transfer.token);
+                    break;
+                case DOWNLOAD_FILE:
+                    backendService.downloadFile(item.getRemoteDirectory(), item.getRemoteName(), local, progress,
+                            transfer.token);
+                    break;
+                case DOWNLOAD_FOLDER:
+                    folderDownloader.download(item.getRemoteDirectory(), local, progress, transfer.token);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown transfer kind: " + item.getKind());
+            }
+        } catch (ApiException | RuntimeException e) {
+            failure = e;
+        }
+        finished(item, transfer, failure);
+    }
+
+    private synchronized void onProgress(TransferItem item, Running transfer, TransferProgress progress) {
+        if (running.get(item.getId()) != transfer || item.getState() != State.RUNNING) {
+            return;
+        }
+        item.setBytesDone(progress.getBytesDone());
+        item.setTotalBytes(progress.getTotalBytes());
+        item.setBytesPerSecond(progress.getBytesPerSecond());
+        item.setEtaSeconds(progress.getEtaSeconds());
+        listener.onQueueChanged();
+    }
+
+    private synchronized void finished(TransferItem item, Running transfer, Throwable failure) {
+        if (running.get(item.getId()) == transfer) {
+            running.remove(item.getId());
+        }
+        if (stopped) {
+            // приложение закрывается: передача остаётся в журнале незавершённой
+            return;
+        }
+        item.setBytesPerSecond(0);
+        item.setEtaSeconds(-1);
+        if (item.getState() == State.RUNNING && find(item.getId()) != null) {
+            if (failure == null) {
+                item.setState(State.COMPLETED);
+                if (item.getTotalBytes() >= 0) {
+                    item.setBytesDone(item.getTotalBytes());
+                }
+                retries.remove(item.getId());
+            } else if (isNetworkError(failure) && retries.getOrDefault(item.getId(), 0) < MAX_RETRIES) {
+                scheduleRetry(item, failure);
+            } else {
+                item.setState(State.FAILED);
+                item.setError(failure.getMessage());
+                retries.remove(item.getId());
+            }
+        }
+        changed();
+    }
+
+    /**
+     * После обрыва связи (сон ноутбука, смена сети) передача ждёт и повторяется; пауза растёт с каждой попыткой.
+     */
+    private void scheduleRetry(TransferItem item, Throwable failure) {
+        int attempt = retries.merge(item.getId(), 1, Integer::sum);
+        long delay = Math.min(MAX_RETRY_DELAY_MILLIS, MIN_RETRY_DELAY_MILLIS << Math.min(attempt - 1, 10));
+        item.setState(State.WAITING);
+        item.setError(failure.getMessage());
+        retryTimer.schedule(() -> {
+            synchronized (this) {
+                // за время ожидания передачу могли продолжить, приостановить вручную или убрать
+                if (find(item.getId()) == item && item.getState() == State.WAITING) {
+                    item.setState(State.QUEUED);
+                    changed();
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isNetworkError(Throwable failure) {
+        return failure instanceof ApiException && !(failure instanceof RequestCancelledException)
+                && ((ApiException) failure).getStatusCode() < 0;
+    }
+
+    private TransferItem find(String id) {
+        for (TransferItem item : items) {
+            if (item.getId().equals(id)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private List<TransferItem> loadJournal() {
+        if (!journalFile.isFile()) {
+            return List.of();
+        }
+        try {
+            return Arrays.asList(MAPPER.readValue(journalFile, TransferItem[].class));
+        } catch (IOException e) {
+            // повреждённый журнал: очередь начинается заново, частичные файлы остаются для докачки
+            return List.of();
+        }
+    }
+
+    private void saveJournal() {
+        if (!started) {
+            return;
+        }
+        try {
+            StateFiles.write(journalFile, tmp -> MAPPER.writeValue(tmp, items));
+        } catch (IOException ignored) {
+            // очередь продолжает работать; журнал догонит при следующем изменении
+        }
+    }
+
+    /**
+     * Выполняющаяся передача: отмена обрывает её запросы через токен. Поток передачи не прерывается —
+     * прерывание во время записи закрыло бы {@link java.nio.channels.FileChannel}, общий для параллельных
+     * диапазонов (см. {@link CallGroup}).
+     */
+    private static final class Running {
+
+        final CancellationToken token = new CancellationToken();
+
+        void cancel() {
+            token.cancel();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.diskdesktop.service;
+
+/**
+ * Снимок прогресса передачи.
+ */
+public final class TransferProgress {
+
+    private final long bytesDone;
+    private final long totalBytes;
+    private final double bytesPerSecond;
+    private final long etaSeconds;
+
+    public TransferProgress(long bytesDone, long totalBytes, double bytesPerSecond, long etaSeconds) {
+        this.bytesDone = bytesDone;
+        this.totalBytes = totalBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.etaSeconds = etaSeconds;
+    }
+
+    public long getBytesDone() {
+        return bytesDone;
+    }
+
+    /**
+     * Полный размер или -1, если он ещё неизвестен.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Сглаженная (экспоненциальное скользящее среднее) скорость передачи.
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Оценка оставшегося времени или -1, если её пока нельзя дать.
+     */
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+}
@@ -0,0 +1,70 @@
+package com.diskdesktop.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Состояние незавершённой поблочной загрузки, хранится в {@code ~/.diskdesktop/uploads/}.
+ * <p>
+ * Какие блоки уже приняты, после перезапуска узнаём у backend-а по {@code uploadId};
+ * размер и время изменения локального файла нужны, чтобы не продолжить загрузку изменившегося файла.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UploadState {
+
+    private String uploadId;
+    private String directory;
+    private String localPath;
+    private long size;
+    private long lastModified;
+
+    public UploadState() {
+    }
+
+    public UploadState(String uploadId, String directory, String localPath, long size, long lastModified) {
+        this.uploadId = uploadId;
+        this.directory = directory;
+        this.localPath = localPath;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getLocalPath() {
+        return localPath;
+    }
+
+    public void setLocalPath(String localPath) {
+        this.localPath = localPath;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+}
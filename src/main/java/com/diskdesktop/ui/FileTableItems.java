@@ -0,0 +1,529 @@
+package com.diskdesktop.ui;
+
+import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.FileInfoList;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Строки таблицы файлов: наблюдаемый список поверх {@link FileInfoList}, который сортируется и сверяется
+ * с новыми листингами вне FX-потока.
+ * <p>
+ * Для сортировки ключ каждой строки считается один раз — число для размера и времени, {@link CollationKey}
+ * для имени, — после чего упорядочиваются индексы строк через {@link Arrays#parallelSort}, который на больших
+ * списках работает на всех ядрах. Готовый порядок применяется одной перестановкой: выделение переезжает вместе
+ * со строками. Новый листинг той же директории сверяется с показанным по именам, и в таблицу уходят только
+ * вставки, удаления и изменения строк, поэтому выделение и позиция прокрутки сохраняются.
+ * <p>
+ * Все методы вызываются из FX-потока. Небольшие списки обрабатываются сразу, без фоновой задачи.
+ */
+final class FileTableItems extends ObservableListBase<FileInfo> {
+
+    /**
+     * Столбец, по которому сортируется таблица.
+     */
+    enum SortColumn {
+        NAME,
+        SIZE,
+        MODIFIED
+    }
+
+    static final class SortKey {
+
+        private final SortColumn column;
+        private final boolean descending;
+
+        SortKey(SortColumn column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+    }
+
+    /**
+     * С какого числа строк сортировка и сверка уходят с FX-потока.
+     */
+    private static final int BACKGROUND_THRESHOLD = 5000;
+    /**
+     * Сравнение имён как у столбцов {@code TableView} по умолчанию; {@link Collator} не потокобезопасен.
+     */
+    private static final ThreadLocal<Collator> COLLATOR = ThreadLocal.withInitial(Collator::getInstance);
+
+    private final Executor background;
+    private FileInfoList rows = new FileInfoList();
+    private List<SortKey> sortKeys = List.of();
+    /**
+     * Растёт при каждом изменении строк: фоновый результат, посчитанный по старым строкам, пересчитывается.
+     */
+    private long version;
+    /**
+     * Растёт при замене содержимого целиком: сверка с прежним содержимым отбрасывается.
+     */
+    private long generation;
+    private boolean busy;
+    private boolean sortPending;
+    /**
+     * Листинг, ожидающий сверки, и сверяемый сейчас.
+     */
+    private FileInfoList pendingContent;
+    private FileInfoList inFlightContent;
+
+    /**
+     * @param background где сортировать и сверять большие списки
+     */
+    FileTableItems(Executor background) {
+        this.background = background;
+    }
+
+    @Override
+    public FileInfo get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Заменяет содержимое целиком (другая директория, результаты поиска); незавершённая сверка отменяется.
+     */
+    void replace(List<FileInfo> files) {
+        FileInfoList previous = rows;
+        rows = new FileInfoList(files);
+        version++;
+        generation++;
+        pendingContent = null;
+        inFlightContent = null;
+        beginChange();
+        if (!previous.isEmpty()) {
+            nextRemove(0, previous);
+        }
+        if (!rows.isEmpty()) {
+            nextAdd(0, rows.size());
+        }
+        endChange();
+        requestSort();
+    }
+
+    /**
+     * Дописывает пачку строк при загрузке директории частями; при включённой сортировке порядок пересчитывается.
+     */
+    void append(List<FileInfo> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        int from = rows.size();
+        rows.addAll(files);
+        version++;
+        beginChange();
+        nextAdd(from, rows.size());
+        endChange();
+        requestSort();
+    }
+
+    /**
+     * Приводит строки к новому листингу той же директории минимальными изменениями.
+     */
+    void update(List<FileInfo> files) {
+        pendingContent = new FileInfoList(files);
+        schedule();
+    }
+
+    /**
+     * Применяет изменения отдельных файлов: имя → новое состояние, {@code null} — файл удалён.
+     * Изменения ложатся поверх ещё не показанного листинга, если он есть.
+     */
+    void applyChanges(Map<String, FileInfo> changes) {
+        FileInfoList base = pendingContent != null ? pendingContent
+                : inFlightContent != null ? inFlightContent : rows;
+        Map<String, FileInfo> remaining = new HashMap<>(changes);
+        FileInfoList updated = new FileInfoList(base.size() + changes.size());
+        for (int i = 0; i < base.size(); i++) {
+            String name = base.getName(i);
+            if (!remaining.containsKey(name)) {
+                updated.add(name, base.getSize(i), base.getLastModified(i), base.getDirectory(i));
+                continue;
+            }
+            FileInfo changed = remaining.remove(name);
+            if (changed != null) {
+                updated.add(changed);
+            }
+        }
+        for (FileInfo created : remaining.values()) {
+            if (created != null) {
+                updated.add(created);
+            }
+        }
+        pendingContent = updated;
+        schedule();
+    }
+
+    /**
+     * Сортирует строки по ключам в порядке их приоритета; без ключей текущий порядок сохраняется.
+     */
+    void sortBy(List<SortKey> keys) {
+        sortKeys = List.copyOf(keys);
+        requestSort();
+    }
+
+    private void requestSort() {
+        if (!sortKeys.isEmpty()) {
+            sortPending = true;
+            schedule();
+        }
+    }
+
+    /**
+     * Запускает следующую работу, если сейчас ничего не считается: сверку раньше сортировки,
+     * так как сверенный листинг всё равно приходит уже отсортированным.
+     */
+    private void schedule() {
+        if (busy) {
+            return;
+        }
+        if (pendingContent == null && !sortPending) {
+            return;
+        }
+        List<SortKey> keys = sortKeys;
+        long startVersion = version;
+        // столбцы копируются: append дописывает в строки, пока фон их читает
+        FileInfoList shown = new FileInfoList(rows);
+        if (pendingContent != null) {
+            FileInfoList target = pendingContent;
+            long startGeneration = generation;
+            pendingContent = null;
+            inFlightContent = target;
+            sortPending = false;
+            run(Math.max(shown.size(), target.size()), () -> {
+                FileInfoList sorted = reorder(target, sortedOrder(target, keys));
+                Diff diff = Diff.compute(shown, sorted);
+                return () -> {
+                    if (generation != startGeneration) {
+                        return;
+                    }
+                    inFlightContent = null;
+                    if (version != startVersion) {
+                        // строки изменились, пока шла сверка, — сверяем ещё раз с ними
+                        if (pendingContent == null) {
+                            pendingContent = target;
+                        }
+                        return;
+                    }
+                    applyDiff(shown, sorted, diff);
+                };
+            });
+        } else {
+            sortPending = false;
+            run(shown.size(), () -> {
+                int[] order = sortedOrder(shown, keys);
+                if (order == null) {
+                    return null;
+                }
+                FileInfoList sorted = reorder(shown, order);
+                int[] permutation = new int[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    permutation[order[i]] = i;
+                }
+                return () -> {
+                    if (version != startVersion) {
+                        sortPending = true;
+                        return;
+                    }
+                    rows = sorted;
+                    version++;
+                    beginChange();
+                    nextPermutation(0, sorted.size(), permutation);
+                    endChange();
+                };
+            });
+        }
+    }
+
+    /**
+     * Считает {@code work} (в фоне, если строк много); возвращённое им действие выполняется на FX-потоке.
+     */
+    private void run(int rowCount, Supplier<Runnable> work) {
+        busy = true;
+        if (rowCount < BACKGROUND_THRESHOLD) {
+            Runnable apply = null;
+            try {
+                apply = work.get();
+            } finally {
+                finish(apply);
+            }
+            return;
+        }
+        background.execute(() -> {
+            Runnable apply = null;
+            try {
+                apply = work.get();
+            } finally {
+                Runnable result = apply;
+                Platform.runLater(() -> finish(result));
+            }
+        });
+    }
+
+    private void finish(Runnable apply) {
+        busy = false;
+        if (apply != null) {
+            apply.run();
+        }
+        schedule();
+    }
+
+    /**
+     * Одно изменение списка из участков между строками, оставшимися на месте: перед каждой такой строкой
+     * удаляются выпавшие строки и вставляются новые, сама строка заменяется, только если её поля изменились.
+     */
+    private void applyDiff(FileInfoList shown, FileInfoList target, Diff diff) {
+        int kept = diff.keptShown.length;
+        int position = 0;
+        int shownFrom = 0;
+        int targetFrom = 0;
+        beginChange();
+        for (int at = 0; at <= kept; at++) {
+            int shownTo = at < kept ? diff.keptShown[at] : shown.size();
+            int targetTo = at < kept ? diff.keptTarget[at] : target.size();
+            if (shownTo > shownFrom) {
+                nextRemove(position, shown.subList(shownFrom, shownTo));
+            }
+            if (targetTo > targetFrom) {
+                nextAdd(position, position + targetTo - targetFrom);
+                position += targetTo - targetFrom;
+            }
+            if (at < kept) {
+                if (diff.changed.get(at)) {
+                    nextSet(position, shown.get(shownTo));
+                }
+                position++;
+            }
+            shownFrom = shownTo + 1;
+            targetFrom = targetTo + 1;
+        }
+        rows = target;
+        version++;
+        endChange();
+    }
+
+    /**
+     * Строки, которые при переходе к новому листингу остаются на месте: совпавшие по имени пары, образующие
+     * наибольшую возрастающую подпоследовательность позиций. Остальные совпавшие строки переезжают
+     * (удаляются и вставляются заново).
+     */
+    private static final class Diff {
+
+        final int[] keptShown;
+        final int[] keptTarget;
+        /**
+         * Поля строки изменились; индекс — номер пары.
+         */
+        final BitSet changed;
+
+        private Diff(int[] keptShown, int[] keptTarget, BitSet changed) {
+            this.keptShown = keptShown;
+            this.keptTarget = keptTarget;
+            this.changed = changed;
+        }
+
+        static Diff compute(FileInfoList shown, FileInfoList target) {
+            Map<String, Integer> positions = new HashMap<>(shown.size() * 4 / 3 + 1);
+            for (int i = 0; i < shown.size(); i++) {
+                positions.put(shown.getName(i), i);
+            }
+            int[] matchedShown = new int[target.size()];
+            int[] matchedTarget = new int[target.size()];
+            int matched = 0;
+            for (int j = 0; j < target.size(); j++) {
+                Integer i = positions.remove(target.getName(j));
+                if (i != null) {
+                    matchedShown[matched] = i;
+                    matchedTarget[matched] = j;
+                    matched++;
+                }
+            }
+            // tails[l] — пара, которой заканчивается лучшая из найденных подпоследовательностей длины l + 1
+            int[] tails = new int[matched];
+            int[] previous = new int[matched];
+            int length = 0;
+            for (int k = 0; k < matched; k++) {
+                int value = matchedShown[k];
+                int low = 0;
+                int high = length;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (matchedShown[tails[middle]] < value) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                previous[k] = low > 0 ? tails[low - 1] : -1;
+                tails[low] = k;
+                if (low == length) {
+                    length++;
+                }
+            }
+            int[] keptShown = new int[length];
+            int[] keptTarget = new int[length];
+            BitSet changed = new BitSet(length);
+            int at = length - 1;
+            for (int k = length > 0 ? tails[length - 1] : -1; k >= 0; k = previous[k], at--) {
+                keptShown[at] = matchedShown[k];
+                keptTarget[at] = matchedTarget[k];
+                if (shown.getSize(keptShown[at]) != target.getSize(keptTarget[at])
+                        || shown.getLastModified(keptShown[at]) != target.getLastModified(keptTarget[at])
+                        || !Objects.equals(shown.getDirectory(keptShown[at]), target.getDirectory(keptTarget[at]))) {
+                    changed.set(at);
+                }
+            }
+            return new Diff(keptShown, keptTarget, changed);
+        }
+    }
+
+    /**
+     * Порядок строк после сортировки: {@code order[i]} — прежний индекс строки, встающей на место {@code i};
+     * {@code null} — порядок не меняется. Сортировка устойчивая, как у {@code TableView}: равные строки
+     * сохраняют взаимный порядок.
+     */
+    static int[] sortedOrder(FileInfoList list, List<SortKey> keys) {
+        int count = list.size();
+        if (keys.isEmpty() || count < 2) {
+            return null;
+        }
+        int[] order = null;
+        if (keys.size() == 1 && keys.get(0).column != SortColumn.NAME) {
+            order = packedOrder(numericColumn(list, keys.get(0).column), keys.get(0).descending);
+        }
+        if (order == null) {
+            Integer[] indexes = new Integer[count];
+            Arrays.setAll(indexes, i -> i);
+            Arrays.parallelSort(indexes, comparator(list, keys));
+            order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = indexes[i];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (order[i] != i) {
+                return order;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Сортировка по одному числовому ключу без сравнений объектов: ключ, сдвинутый к нулю, и индекс строки
+     * упаковываются в один {@code long}, и сортируется обычный {@code long[]}. Индекс в младших битах делает
+     * её устойчивой. {@code null}, если разброс ключей не помещается рядом с индексом (например, у части
+     * файлов время неизвестно).
+     */
+    private static int[] packedOrder(long[] values, boolean descending) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        int indexBits = 32 - Integer.numberOfLeadingZeros(values.length);
+        long range = max - min;
+        if (range < 0 || (range >>> (63 - indexBits)) != 0) {
+            return null;
+        }
+        long[] packed = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            long key = descending ? max - values[i] : values[i] - min;
+            packed[i] = key << indexBits | i;
+        }
+        Arrays.parallelSort(packed);
+        long mask = (1L << indexBits) - 1;
+        int[] order = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            order[i] = (int) (packed[i] & mask);
+        }
+        return order;
+    }
+
+    private static Comparator<Integer> comparator(FileInfoList list, List<SortKey> keys) {
+        Comparator<Integer> result = null;
+        for (SortKey key : keys) {
+            Comparator<Integer> next;
+            if (key.column == SortColumn.NAME) {
+                CollationKey[] names = nameKeys(list);
+                next = (a, b) -> compare(names[a], names[b]);
+            } else {
+                long[] values = numericColumn(list, key.column);
+                // неизвестное время — Long.MIN_VALUE — встаёт первым, как пустая ячейка у TableView
+                next = (a, b) -> Long.compare(values[a], values[b]);
+            }
+            if (key.descending) {
+                next = next.reversed();
+            }
+            result = result == null ? next : result.thenComparing(next);
+        }
+        return result;
+    }
+
+    private static long[] numericColumn(FileInfoList list, SortColumn column) {
+        long[] values = new long[list.size()];
+        if (column == SortColumn.SIZE) {
+            Arrays.setAll(values, list::getSize);
+        } else {
+            Arrays.setAll(values, list::getLastModified);
+        }
+        return values;
+    }
+
+    /**
+     * Ключи сравнения имён. В результатах поиска строки из разных директорий, и таблица показывает
+     * путь целиком — тогда сравниваются пути.
+     */
+    private static CollationKey[] nameKeys(FileInfoList list) {
+        boolean sameDirectory = true;
+        for (int i = 1; i < list.size() && sameDirectory; i++) {
+            sameDirectory = Objects.equals(list.getDirectory(i), list.getDirectory(0));
+        }
+        boolean paths = !sameDirectory;
+        CollationKey[] keys = new CollationKey[list.size()];
+        Arrays.parallelSetAll(keys, i -> {
+            String name = list.getName(i);
+            String directory = list.getDirectory(i);
+            if (paths && name != null && directory != null && !".".equals(directory)) {
+                name = directory + "/" + name;
+            }
+            return name != null ? COLLATOR.get().getCollationKey(name) : null;
+        });
+        return keys;
+    }
+
+    private static int compare(CollationKey a, CollationKey b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : a == null ? -1 : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    private static FileInfoList reorder(FileInfoList list, int[] order) {
+        if (order == null) {
+            return list;
+        }
+        FileInfoList sorted = new FileInfoList(order.length);
+        for (int index : order) {
+            sorted.add(list.getName(index), list.getSize(index), list.getLastModified(index),
+                    list.getDirectory(index));
+        }
+        return sorted;
+    }
+}
@@ -4,8 +4,10 @@ import com.diskdesktop.api.AuthApi;
 import com.diskdesktop.config.ApiClientConfig;
 import com.diskdesktop.config.AppConfig;
 import com.diskdesktop.config.ConfigService;
+import com.diskdesktop.config.OfflineLogin;
 import com.diskdesktop.model.AuthRequest;
 import com.diskdesktop.model.AuthResponse;
+import com.diskdesktop.service.MetadataSnapshot;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
@@ -13,6 +15,11 @@ import javafx.scene.control.*;
 
 import retrofit2.Response;
 
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
 /**
  * Контроллер экрана логина.
  */
@@ -33,11 +40,21 @@ public class LoginController {
 
     private LoginListener loginListener;
     private final ConfigService configService = new ConfigService();
+    private final OfflineLogin offlineLogin = new OfflineLogin();
 
     public void setInitialBaseUrl(String baseUrl) {
         baseUrlField.setText(baseUrl);
     }
 
+    /**
+     * Повторный вход после работы без связи: пользователь уже известен, нужен только пароль.
+     */
+    public void setInitialUsername(String username, String message) {
+        usernameField.setText(username);
+        statusLabel.setText(message);
+        Platform.runLater(passwordField::requestFocus);
+    }
+
     public void setLoginListener(LoginListener loginListener) {
         this.loginListener = loginListener;
     }
@@ -61,29 +78,40 @@ public class LoginController {
         setControlsDisabled(true);
         statusLabel.setText("Выполняется вход...");
 
+        // null — backend недоступен, и открывается сохранённое дерево только для просмотра
         Task<String> loginTask = new Task<>() {
             @Override
             protected String call() throws Exception {
                 ApiClientConfig apiClientConfig = new ApiClientConfig(baseUrl, null);
                 AuthApi authApi = apiClientConfig.getAuthApi();
 
-                Response<AuthResponse> response =
-                        authApi.login(new AuthRequest(username, password)).execute();
+                Response<AuthResponse> response;
+                try {
+                    response = authApi.login(new AuthRequest(username, password)).execute();
+                } catch (IOException e) {
+                    if (isUnreachable(e) && offlineLogin.matches(baseUrl, username, password)
+                            && MetadataSnapshot.forAccount(baseUrl, username).exists()) {
+                        return null;
+                    }
+                    throw e;
+                }
                 if (!response.isSuccessful() || response.body() == null) {
                     throw new RuntimeException("Не удалось выполнить вход: " + response.code());
                 }
+                offlineLogin.remember(baseUrl, username, password);
                 return response.body().getToken();
             }
         };
 
         loginTask.setOnSucceeded(e -> {
             String token = loginTask.getValue();
-            if (rememberBaseUrlCheckBox.isSelected()) {
-                AppConfig appConfig = new AppConfig(baseUrl);
+            if (token != null && rememberBaseUrlCheckBox.isSelected()) {
+                AppConfig appConfig = configService.loadConfig();
+                appConfig.setBackendBaseUrl(baseUrl);
                 configService.saveConfig(appConfig);
             }
             if (loginListener != null) {
-                loginListener.onLoginSuccess(baseUrl, token);
+                loginListener.onLoginSuccess(baseUrl, username, token);
             }
         });
 
@@ -96,6 +124,14 @@ public class LoginController {
         new Thread(loginTask, "login-task").start();
     }
 
+    /**
+     * Нет соединения с backend-ом. Ответ, который не удалось разобрать, — не повод входить без проверки пароля.
+     */
+    private static boolean isUnreachable(IOException e) {
+        return e instanceof SocketException || e instanceof UnknownHostException
+                || e instanceof SocketTimeoutException;
+    }
+
     private void setControlsDisabled(boolean disabled) {
         baseUrlField.setDisable(disabled);
         usernameField.setDisable(disabled);
@@ -112,7 +148,11 @@ public class LoginController {
 
     @FunctionalInterface
     public interface LoginListener {
-        void onLoginSuccess(String baseUrl, String token);
+        /**
+         * @param token {@code null} — backend недоступен, и последнему вошедшему пользователю открывается
+         *              сохранённое дерево только для просмотра
+         */
+        void onLoginSuccess(String baseUrl, String username, String token);
     }
 }
 
@@ -1,20 +1,55 @@
 package com.diskdesktop.ui;
 
+import com.diskdesktop.model.ChangeEvent;
+import com.diskdesktop.model.DirectoryEntries;
 import com.diskdesktop.model.DirectoryInfo;
 import com.diskdesktop.model.FileInfo;
+import com.diskdesktop.model.FileInfoList;
 import com.diskdesktop.service.ApiException;
 import com.diskdesktop.service.BackendService;
+import com.diskdesktop.service.CancellationToken;
+import com.diskdesktop.service.ChangeFeed;
+import com.diskdesktop.service.DirectoryCrawler;
+import com.diskdesktop.service.DirectoryPrefetcher;
+import com.diskdesktop.service.DirectorySize;
+import com.diskdesktop.service.PathIndex;
+import com.diskdesktop.service.SyncEngine;
+import com.diskdesktop.service.RequestCancelledException;
+import com.diskdesktop.service.TaskScheduler;
+import com.diskdesktop.service.TaskScheduler.TaskClass;
+import com.diskdesktop.service.TransferItem;
+import com.diskdesktop.service.TransferListener;
+import com.diskdesktop.service.TransferManager;
+import com.diskdesktop.service.TransferProgress;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 
 import java.io.File;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 /**
@@ -23,9 +58,24 @@ import java.util.function.Consumer;
  */
 public class MainController {
 
+    /**
+     * Сколько строк добавлять в таблицу за одно обновление при загрузке большой директории.
+     */
+    private static final int LISTING_BATCH_SIZE = 1000;
+    /**
+     * Как часто без связи проверять, отвечает ли backend снова.
+     */
+    private static final long REACHABILITY_PROBE_SECONDS = 30;
+    private static final DateTimeFormatter STALE_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter MODIFIED_FORMAT =
+            DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
     @FXML
     private TextField pathField;
     @FXML
+    private TextField searchField;
+    @FXML
     private TreeView<DirectoryInfo> directoryTree;
     @FXML
     private TableView<FileInfo> fileTable;
@@ -34,38 +84,245 @@ public class MainController {
     @FXML
     private TableColumn<FileInfo, Number> sizeColumn;
     @FXML
-    private TableColumn<FileInfo, String> modifiedColumn;
+    private TableColumn<FileInfo, Number> modifiedColumn;
     @FXML
     private ProgressBar progressBar;
     @FXML
     private Label statusLabel;
+    /**
+     * Пометка, что показанное содержимое взято из кэша или снимка и ещё не подтверждено backend-ом.
+     */
+    @FXML
+    private Label staleLabel;
+    @FXML
+    private Button createDirButton;
+    @FXML
+    private Button uploadButton;
+    @FXML
+    private Button uploadFolderButton;
+    @FXML
+    private Button downloadFolderButton;
+    @FXML
+    private Button syncButton;
+    @FXML
+    private Button crawlButton;
+    /**
+     * Появляется, когда backend снова отвечает после входа без связи.
+     */
+    @FXML
+    private Button reloginButton;
+    @FXML
+    private TitledPane transfersPane;
+    @FXML
+    private TableView<TransferItem> transferTable;
+    @FXML
+    private TableColumn<TransferItem, String> transferNameColumn;
+    @FXML
+    private TableColumn<TransferItem, String> transferDirectionColumn;
+    @FXML
+    private TableColumn<TransferItem, String> transferStateColumn;
+    @FXML
+    private TableColumn<TransferItem, String> transferProgressColumn;
 
     private BackendService backendService;
+    private TaskScheduler taskScheduler;
+    private int entriesDepth = 1;
+    private DirectoryPrefetcher prefetcher;
+    private SyncEngine syncEngine;
+    private PathIndex pathIndex;
+    private DirectoryCrawler crawler;
+    private ChangeFeed changeFeed;
+    private TransferManager transferManager;
+    private final AtomicBoolean transfersRefreshScheduled = new AtomicBoolean();
+    /**
+     * Строки таблицы файлов; сортируются и сверяются с новыми листингами в фоне.
+     */
+    private FileTableItems fileItems;
+    /**
+     * Изменения с backend-а, ещё не применённые к таблице и дереву: применяются пачкой за один проход.
+     */
+    private final ConcurrentLinkedQueue<ChangeEvent> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean changesScheduled = new AtomicBoolean();
+    /**
+     * Размеры поддеревьев для подписей в дереве: из прошлых обходов и по мере идущего.
+     */
+    private final Map<String, DirectorySize> directorySizes = new HashMap<>();
+    /**
+     * Итоги, пришедшие от обхода и ещё не показанные: дерево перерисовывается один раз на пачку.
+     */
+    private final ConcurrentLinkedQueue<DirectorySize> pendingSizes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sizesRefreshScheduled = new AtomicBoolean();
+    private int searchMaxResults = 1000;
+    /**
+     * Строка таблицы → найденный путь, пока таблица показывает результаты поиска; {@code null} — не показывает.
+     * Строки сравниваются по значению: таблица хранит их столбцами и отдаёт каждый раз новыми объектами.
+     */
+    private Map<FileInfo, PathIndex.Match> searchHits;
+    private CancellationToken searchToken = CancellationToken.NONE;
+    /**
+     * Когда сохранён снимок метаданных, загруженный при старте; {@code -1} — снимка не было.
+     */
+    private long snapshotSavedAt = -1;
+    /**
+     * Вход без связи с backend-ом: только просмотр сохранённого дерева, пока не будет выполнен повторный вход.
+     */
+    private boolean offline;
+    private BooleanSupplier backendReachable;
+    private Runnable relogin;
+    private ScheduledExecutorService reachabilityProbe;
     private String currentDirectory = ".";
+    /**
+     * Токен последней загрузки содержимого директории: новая навигация отменяет предыдущую.
+     */
+    private CancellationToken directoryLoadToken = CancellationToken.NONE;
+    /**
+     * Токен идущей синхронизации; {@code null} — синхронизация не идёт.
+     */
+    private CancellationToken syncToken;
+    /**
+     * Задача, к которой сейчас привязаны прогресс-бар и статус.
+     */
+    private Task<?> boundTask;
 
     public void setBackendService(BackendService backendService) {
         this.backendService = backendService;
     }
 
+    public void setTaskScheduler(TaskScheduler taskScheduler) {
+        this.taskScheduler = taskScheduler;
+    }
+
+    public void setSyncEngine(SyncEngine syncEngine) {
+        this.syncEngine = syncEngine;
+    }
+
+    /**
+     * Необязательная предзагрузка вероятных следующих директорий; {@code null} — отключена.
+     */
+    public void setPrefetcher(DirectoryPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * Индекс путей для поиска по имени; {@code null} — поиск недоступен.
+     */
+    public void setPathIndex(PathIndex pathIndex) {
+        this.pathIndex = pathIndex;
+    }
+
+    /**
+     * Фоновый подсчёт размеров поддеревьев; {@code null} — недоступен.
+     */
+    public void setCrawler(DirectoryCrawler crawler) {
+        this.crawler = crawler;
+    }
+
+    /**
+     * Лента изменений backend-а; {@code null} — таблица и дерево обновляются только вручную.
+     */
+    public void setChangeFeed(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Очередь загрузок и скачиваний с журналом; запускается в {@link #init()}.
+     */
+    public void setTransferManager(TransferManager transferManager) {
+        this.transferManager = transferManager;
+    }
+
+    public void setSearchMaxResults(int searchMaxResults) {
+        this.searchMaxResults = Math.max(1, searchMaxResults);
+    }
+
+    public void setSnapshotSavedAt(long snapshotSavedAt) {
+        this.snapshotSavedAt = snapshotSavedAt;
+    }
+
+    /**
+     * Окно открыто без связи с backend-ом и без токена: всё, что меняет данные или ставит передачи,
+     * отключается. {@code backendReachable} периодически проверяется в фоне; когда backend снова
+     * отвечает, предлагается повторный вход через {@code relogin}.
+     */
+    public void setOffline(BooleanSupplier backendReachable, Runnable relogin) {
+        this.offline = true;
+        this.backendReachable = backendReachable;
+        this.relogin = relogin;
+    }
+
+    /**
+     * Сколько уровней поддиректорий запрашивать вместе с содержимым директории.
+     */
+    public void setEntriesDepth(int entriesDepth) {
+        this.entriesDepth = Math.max(1, entriesDepth);
+    }
+
     @FXML
     public void initialize() {
-        nameColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getName()));
-        sizeColumn.setCellValueFactory(data -> new SimpleLongProperty(data.getValue().getSize()));
-        modifiedColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getLastModified()));
+        nameColumn.setCellValueFactory(data -> {
+            PathIndex.Match hit = searchHit(data.getValue());
+            if (hit != null) {
+                return new SimpleStringProperty(hit.isDirectory() ? hit.getPath() + "/" : hit.getPath());
+            }
+            return new SimpleStringProperty(data.getValue().getName());
+        });
+        sizeColumn.setCellValueFactory(data -> {
+            PathIndex.Match hit = searchHit(data.getValue());
+            if (hit != null && hit.isDirectory()) {
+                return new ReadOnlyObjectWrapper<>(null);
+            }
+            return new SimpleLongProperty(data.getValue().getSize());
+        });
+        // время хранится числом, строка формируется только для видимых ячеек
+        modifiedColumn.setCellValueFactory(data -> {
+            long lastModified = data.getValue().getLastModified();
+            return lastModified == FileInfo.UNKNOWN_TIME
+                    ? new ReadOnlyObjectWrapper<>(null)
+                    : new SimpleLongProperty(lastModified);
+        });
+        modifiedColumn.setCellFactory(column -> new TableCell<>() {
+            @Override
+            protected void updateItem(Number item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : MODIFIED_FORMAT.format(Instant.ofEpochMilli(item.longValue())));
+            }
+        });
+        // строки таблицы — представления над столбцами, а не объект FileInfo на каждый файл
+        fileItems = new FileTableItems(work -> taskScheduler.submit(TaskClass.INTERACTIVE, work));
+        fileTable.setItems(fileItems);
+        // вместо сравнения свойств из фабрик ячеек на FX-потоке — сортировка по готовым ключам в фоне
+        fileTable.setSortPolicy(table -> {
+            List<FileTableItems.SortKey> keys = new ArrayList<>();
+            for (TableColumn<FileInfo, ?> column : table.getSortOrder()) {
+                keys.add(new FileTableItems.SortKey(sortColumn(column),
+                        column.getSortType() == TableColumn.SortType.DESCENDING));
+            }
+            fileItems.sortBy(keys);
+            return true;
+        });
 
         progressBar.setProgress(0);
 
         directoryTree.setShowRoot(true);
-        directoryTree.setCellFactory(tv -> new TreeCell<>() {
-            @Override
-            protected void updateItem(DirectoryInfo item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty || item == null) {
-                    setText(null);
-                } else {
-                    setText(item.getName());
+        directoryTree.setCellFactory(tv -> {
+            TreeCell<DirectoryInfo> cell = new TreeCell<>() {
+                @Override
+                protected void updateItem(DirectoryInfo item, boolean empty) {
+                    super.updateItem(item, empty);
+                    if (empty || item == null) {
+                        setText(null);
+                    } else {
+                        setText(item.getName() + formatDirectorySize(directorySizes.get(item.getPath())));
+                    }
                 }
-            }
+            };
+            // наведение — хороший признак того, что директорию сейчас откроют
+            cell.setOnMouseEntered(event -> {
+                if (prefetcher != null && cell.getItem() != null) {
+                    prefetcher.onHover(cell.getItem().getPath());
+                }
+            });
+            return cell;
         });
 
         directoryTree.getSelectionModel().selectedItemProperty().addListener((obs, oldItem, newItem) -> {
@@ -82,25 +339,197 @@ public class MainController {
             row.setOnMouseClicked(event -> {
                 if (event.getClickCount() == 2 && !row.isEmpty()) {
                     FileInfo file = row.getItem();
-                    onDownloadFile(file);
+                    PathIndex.Match hit = searchHit(file);
+                    if (hit == null) {
+                        onDownloadFile(currentDirectory, file);
+                    } else if (hit.isDirectory()) {
+                        closeSearch();
+                        loadDirectory(hit.getPath());
+                    } else {
+                        onDownloadFile(hit.getDirectory(), file);
+                    }
                 }
             });
             return row;
         });
+
+        searchField.textProperty().addListener((obs, oldText, newText) -> runSearch(newText));
+
+        transferNameColumn.setCellValueFactory(data -> new SimpleStringProperty(transferName(data.getValue())));
+        transferDirectionColumn.setCellValueFactory(data ->
+                new SimpleStringProperty(data.getValue().isUpload() ? "Загрузка" : "Скачивание"));
+        transferStateColumn.setCellValueFactory(data -> new SimpleStringProperty(transferState(data.getValue())));
+        transferProgressColumn.setCellValueFactory(data ->
+                new SimpleStringProperty(transferProgress(data.getValue())));
     }
 
     /**
      * Инициализация контроллера после установки BackendService.
      */
     public void init() {
+        if (crawler != null) {
+            directorySizes.putAll(crawler.knownSizes());
+        } else {
+            crawlButton.setDisable(true);
+        }
         DirectoryInfo rootInfo = new DirectoryInfo();
         rootInfo.setName("/");
         rootInfo.setPath(".");
         TreeItem<DirectoryInfo> rootItem = createDirectoryItem(rootInfo);
         directoryTree.setRoot(rootItem);
-        // лениво подгружаем детей корня при первом раскрытии
+        // содержимое корня заодно заполняет первые уровни дерева, остальные подгружаются при раскрытии
         loadDirectory(rootInfo.getPath());
-        loadChildren(rootItem);
+        if (offline) {
+            enterReadOnlyMode();
+        }
+        if (transferManager != null) {
+            // незавершённые передачи прошлого запуска продолжаются сразу
+            transferManager.start(() -> {
+                if (transfersRefreshScheduled.compareAndSet(false, true)) {
+                    Platform.runLater(this::refreshTransfers);
+                }
+            });
+        }
+        if (changeFeed != null) {
+            changeFeed.start(event -> {
+                pendingChanges.add(event);
+                if (changesScheduled.compareAndSet(false, true)) {
+                    Platform.runLater(this::applyRemoteChanges);
+                }
+            });
+        }
+    }
+
+    /**
+     * Без токена любой запрос, меняющий данные, получил бы 401, поэтому такие действия отключены,
+     * а очередь передач ждёт повторного входа.
+     */
+    private void enterReadOnlyMode() {
+        for (Button button : List.of(createDirButton, uploadButton, uploadFolderButton, downloadFolderButton,
+                syncButton, crawlButton)) {
+            button.setDisable(true);
+        }
+        transfersPane.setDisable(true);
+        reachabilityProbe = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "backend-reachability-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reachabilityProbe.scheduleWithFixedDelay(() -> {
+            if (backendReachable.getAsBoolean()) {
+                Platform.runLater(this::offerRelogin);
+            }
+        }, REACHABILITY_PROBE_SECONDS, REACHABILITY_PROBE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void offerRelogin() {
+        if (reachabilityProbe != null) {
+            reachabilityProbe.shutdownNow();
+        }
+        reloginButton.setVisible(true);
+        reloginButton.setManaged(true);
+    }
+
+    @FXML
+    private void onReloginClicked() {
+        relogin.run();
+    }
+
+    /**
+     * Останавливает фоновые проверки окна перед его закрытием.
+     */
+    public void dispose() {
+        if (reachabilityProbe != null) {
+            reachabilityProbe.shutdownNow();
+        }
+        if (syncToken != null) {
+            syncToken.cancel();
+        }
+    }
+
+    /**
+     * Применяет накопившиеся изменения с backend-а: файлы текущей директории заменяются в таблице на месте,
+     * поддиректории добавляются в уже загруженные узлы дерева и удаляются из них. Полная перезагрузка —
+     * только если изменение нельзя применить точечно (например, лента пропустила события).
+     */
+    private void applyRemoteChanges() {
+        changesScheduled.set(false);
+        // имя → новое состояние файла текущей директории; null — файл удалён
+        Map<String, FileInfo> fileChanges = new LinkedHashMap<>();
+        boolean reload = false;
+        boolean refreshTree = false;
+        String navigateTo = null;
+        for (ChangeEvent event; (event = pendingChanges.poll()) != null; ) {
+            String directory = event.getDirectory() == null || event.getDirectory().isEmpty()
+                    ? "." : event.getDirectory();
+            boolean current = directory.equals(currentDirectory);
+            switch (event.getType() == null ? "" : event.getType()) {
+                case ChangeEvent.FILE_CREATED:
+                case ChangeEvent.FILE_UPDATED:
+                    if (current) {
+                        if (event.getFile() != null) {
+                            fileChanges.put(event.getName(), event.getFile());
+                        } else {
+                            reload = true;
+                        }
+                    }
+                    break;
+                case ChangeEvent.FILE_DELETED:
+                    if (current) {
+                        fileChanges.put(event.getName(), null);
+                    }
+                    break;
+                case ChangeEvent.DIRECTORY_CREATED:
+                    TreeItem<DirectoryInfo> parent = findTreeItem(directory);
+                    if (parent != null && isChildrenLoaded(parent)) {
+                        DirectoryInfo created = new DirectoryInfo();
+                        created.setName(event.getName());
+                        created.setPath(event.getPath());
+                        addTreeChild(parent, created);
+                    }
+                    break;
+                case ChangeEvent.DIRECTORY_DELETED:
+                    TreeItem<DirectoryInfo> removed = findTreeItem(event.getPath());
+                    if (removed != null && removed.getParent() != null) {
+                        removed.getParent().getChildren().remove(removed);
+                    }
+                    if (currentDirectory.equals(event.getPath())
+                            || currentDirectory.startsWith(event.getPath() + "/")) {
+                        navigateTo = directory;
+                    }
+                    break;
+                case ChangeEvent.RESET:
+                    reload = true;
+                    refreshTree = true;
+                    break;
+                default:
+                    reload |= current;
+                    break;
+            }
+        }
+        if (navigateTo != null) {
+            // открытую директорию удалили
+            loadDirectory(navigateTo);
+        } else if (reload) {
+            loadDirectory(currentDirectory);
+        } else if (!fileChanges.isEmpty() && searchHits == null) {
+            fileItems.applyChanges(fileChanges);
+        }
+        if (refreshTree) {
+            refreshExpandedTree();
+        }
+    }
+
+    private void addTreeChild(TreeItem<DirectoryInfo> parent, DirectoryInfo directory) {
+        List<TreeItem<DirectoryInfo>> children = parent.getChildren();
+        int at = 0;
+        while (at < children.size() && children.get(at).getValue().getName().compareTo(directory.getName()) < 0) {
+            at++;
+        }
+        if (at < children.size() && children.get(at).getValue().getPath().equals(directory.getPath())) {
+            return;
+        }
+        children.add(at, createDirectoryItem(directory));
     }
 
     @FXML
@@ -117,11 +546,18 @@ public class MainController {
     private void onCreateDirClicked() {
         TextInputDialog dialog = new TextInputDialog();
         dialog.setHeaderText("Создать директорию");
-        dialog.setContentText("Имя директории:");
+        dialog.setContentText("Имя директории (вложенные — через /):");
         dialog.showAndWait().ifPresent(name -> runTask(
+                TaskClass.INTERACTIVE,
                 "Создание директории...",
                 () -> {
-                    backendService.createDirectory(currentDirectory, name);
+                    if (name.indexOf('/') < 0) {
+                        backendService.createDirectory(currentDirectory, name);
+                    } else {
+                        // вся цепочка одним запросом
+                        String prefix = ".".equals(currentDirectory) ? "" : currentDirectory + "/";
+                        backendService.createDirectories(List.of(prefix + name));
+                    }
                     return null;
                 },
                 r -> loadDirectory(currentDirectory)
@@ -135,50 +571,440 @@ public class MainController {
         if (file == null) {
             return;
         }
-        runTask(
-                "Загрузка файла...",
-                () -> {
-                    backendService.uploadFile(currentDirectory, file);
-                    return null;
+        transferManager.enqueueUpload(file, currentDirectory);
+        transfersPane.setExpanded(true);
+    }
+
+    @FXML
+    private void onUploadFolderClicked() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        File folder = chooser.showDialog(fileTable.getScene().getWindow());
+        if (folder == null) {
+            return;
+        }
+        transferManager.enqueueUploadFolder(folder, currentDirectory);
+        transfersPane.setExpanded(true);
+    }
+
+    @FXML
+    private void onDownloadFolderClicked() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        File parent = chooser.showDialog(fileTable.getScene().getWindow());
+        if (parent == null) {
+            return;
+        }
+        String sourceDirectory = currentDirectory;
+        // корень хранилища скачивается прямо в выбранную папку, остальные — в одноимённую подпапку
+        String name = sourceDirectory.substring(sourceDirectory.lastIndexOf('/') + 1);
+        File target = ".".equals(sourceDirectory) || name.isEmpty() ? parent : new File(parent, name);
+        transferManager.enqueueDownloadFolder(sourceDirectory, target);
+        transfersPane.setExpanded(true);
+    }
+
+    /**
+     * Запускает синхронизацию папки с текущей директорией; повторное нажатие останавливает её
+     * (уже перенесённые файлы остаются, следующий запуск продолжит по индексу).
+     */
+    @FXML
+    private void onSyncClicked() {
+        if (syncToken != null) {
+            syncToken.cancel();
+            return;
+        }
+        DirectoryChooser chooser = new DirectoryChooser();
+        File folder = chooser.showDialog(fileTable.getScene().getWindow());
+        if (folder == null) {
+            return;
+        }
+        String remoteDirectory = currentDirectory;
+        CancellationToken token = new CancellationToken();
+        syncToken = token;
+        syncButton.setText("Остановить синхронизацию");
+        runTransferTask(
+                TaskClass.UPLOAD,
+                "Синхронизация...",
+                listener -> {
+                    try {
+                        return syncEngine.sync(folder, remoteDirectory, listener, token);
+                    } finally {
+                        Platform.runLater(() -> syncFinished(token));
+                    }
                 },
                 r -> loadDirectory(currentDirectory)
         );
     }
 
+    private void syncFinished(CancellationToken token) {
+        if (syncToken == token) {
+            syncToken = null;
+            syncButton.setText("Синхронизировать");
+        }
+    }
+
+    /**
+     * Запускает (или продолжает прерванный) подсчёт размеров всего дерева; повторное нажатие останавливает его.
+     */
+    @FXML
+    private void onCrawlClicked() {
+        if (crawler.isRunning()) {
+            crawler.cancel();
+            return;
+        }
+        crawler.start(".", new DirectoryCrawler.Listener() {
+            @Override
+            public void onSubtreeCompleted(DirectorySize size) {
+                pendingSizes.add(size);
+                if (sizesRefreshScheduled.compareAndSet(false, true)) {
+                    Platform.runLater(() -> {
+                        sizesRefreshScheduled.set(false);
+                        for (DirectorySize pending; (pending = pendingSizes.poll()) != null; ) {
+                            directorySizes.put(pending.getPath(), pending);
+                        }
+                        directoryTree.refresh();
+                    });
+                }
+            }
+
+            @Override
+            public void onFinished(boolean completed, Throwable failure) {
+                Platform.runLater(() -> {
+                    crawlButton.setText("Подсчитать размеры");
+                    if (failure != null) {
+                        showErrorDialog("Ошибка подсчёта размеров", failure.getMessage()
+                                + "\nПодсчёт продолжится с того же места при следующем запуске.");
+                    } else if (boundTask == null) {
+                        statusLabel.setText(completed ? "Размеры подсчитаны" : "Подсчёт размеров остановлен");
+                    }
+                });
+            }
+        });
+        crawlButton.setText("Остановить подсчёт");
+    }
+
     @FXML
     private void onRefreshClicked() {
+        // явное обновление не доверяет TTL кэша, но перепроверка по ETag остаётся дешёвой
+        backendService.invalidate(currentDirectory);
         loadDirectory(currentDirectory);
+        if (!offline) {
+            refreshExpandedTree();
+        }
     }
 
-    private void onDownloadFile(FileInfo fileInfo) {
+    /**
+     * Перечитывает поддиректории всех раскрытых узлов дерева, кроме текущей директории
+     * (её обновляет {@link #loadDirectory}), одним пакетным запросом вместо запроса на узел.
+     */
+    private void refreshExpandedTree() {
+        List<String> paths = new ArrayList<>();
+        Deque<TreeItem<DirectoryInfo>> stack = new ArrayDeque<>();
+        if (directoryTree.getRoot() != null) {
+            stack.push(directoryTree.getRoot());
+        }
+        while (!stack.isEmpty()) {
+            TreeItem<DirectoryInfo> item = stack.pop();
+            if (item.getValue() == null || !item.isExpanded() || !isChildrenLoaded(item)) {
+                continue;
+            }
+            if (!item.getValue().getPath().equals(currentDirectory)) {
+                paths.add(item.getValue().getPath());
+            }
+            item.getChildren().forEach(stack::push);
+        }
+        if (paths.isEmpty()) {
+            return;
+        }
+        paths.forEach(backendService::invalidate);
+        runTask(
+                TaskClass.INTERACTIVE,
+                "Обновление дерева...",
+                () -> backendService.listDirectories(paths, CancellationToken.NONE),
+                listings -> {
+                    for (Map.Entry<String, List<DirectoryInfo>> listing : listings.entrySet()) {
+                        TreeItem<DirectoryInfo> item = findTreeItem(listing.getKey());
+                        if (item != null && isChildrenLoaded(item)) {
+                            DirectoryEntries entries = new DirectoryEntries();
+                            entries.setPath(listing.getKey());
+                            entries.setDirectories(listing.getValue());
+                            fillTree(item, entries);
+                        }
+                    }
+                }
+        );
+    }
+
+    private void onDownloadFile(String directory, FileInfo fileInfo) {
+        if (transferManager == null) {
+            showErrorDialog("Скачивание недоступно", "Нет связи с backend-ом: войдите снова, когда она появится.");
+            return;
+        }
         FileChooser chooser = new FileChooser();
         chooser.setInitialFileName(fileInfo.getName());
         File target = chooser.showSaveDialog(fileTable.getScene().getWindow());
         if (target == null) {
             return;
         }
+        transferManager.enqueueDownload(directory, fileInfo.getName(), target);
+        transfersPane.setExpanded(true);
+    }
 
-        runTask(
-                "Скачивание файла...",
-                () -> {
-                    backendService.downloadFile(currentDirectory, fileInfo.getName(), target);
-                    return null;
-                },
-                r -> {
-                    // можно обновить статус или показать уведомление
-                }
-        );
+    @FXML
+    private void onPauseTransferClicked() {
+        TransferItem item = transferTable.getSelectionModel().getSelectedItem();
+        if (item != null) {
+            transferManager.pause(item.getId());
+        }
+    }
+
+    @FXML
+    private void onResumeTransferClicked() {
+        TransferItem item = transferTable.getSelectionModel().getSelectedItem();
+        if (item != null) {
+            transferManager.resume(item.getId());
+        }
+    }
+
+    @FXML
+    private void onMoveTransferUpClicked() {
+        TransferItem item = transferTable.getSelectionModel().getSelectedItem();
+        if (item != null) {
+            transferManager.move(item.getId(), 1);
+        }
+    }
+
+    @FXML
+    private void onMoveTransferDownClicked() {
+        TransferItem item = transferTable.getSelectionModel().getSelectedItem();
+        if (item != null) {
+            transferManager.move(item.getId(), -1);
+        }
+    }
+
+    @FXML
+    private void onRemoveTransferClicked() {
+        TransferItem item = transferTable.getSelectionModel().getSelectedItem();
+        if (item != null) {
+            transferManager.remove(item.getId());
+        }
+    }
+
+    @FXML
+    private void onClearCompletedTransfersClicked() {
+        transferManager.clearCompleted();
+    }
+
+    /**
+     * Перерисовывает очередь передач по текущему состоянию менеджера, сохраняя выделение.
+     * Завершившаяся загрузка в открытую директорию перечитывает её.
+     */
+    private void refreshTransfers() {
+        transfersRefreshScheduled.set(false);
+        Map<String, TransferItem.State> previous = new HashMap<>();
+        for (TransferItem item : transferTable.getItems()) {
+            previous.put(item.getId(), item.getState());
+        }
+        TransferItem selected = transferTable.getSelectionModel().getSelectedItem();
+        List<TransferItem> items = transferManager.items();
+        transferTable.getItems().setAll(items);
+        boolean reload = false;
+        for (int i = 0; i < items.size(); i++) {
+            TransferItem item = items.get(i);
+            if (selected != null && item.getId().equals(selected.getId())) {
+                transferTable.getSelectionModel().select(i);
+            }
+            TransferItem.State was = previous.get(item.getId());
+            reload |= item.isUpload() && item.getState() == TransferItem.State.COMPLETED
+                    && was != null && was != TransferItem.State.COMPLETED
+                    && currentDirectory.equals(item.getRemoteDirectory());
+        }
+        if (reload && searchHits == null) {
+            loadDirectory(currentDirectory);
+        }
+    }
+
+    private static String transferName(TransferItem item) {
+        switch (item.getKind()) {
+            case DOWNLOAD_FILE:
+                return item.getRemoteName();
+            case DOWNLOAD_FOLDER:
+                String directory = item.getRemoteDirectory();
+                return ".".equals(directory) ? "/" : directory.substring(directory.lastIndexOf('/') + 1) + "/";
+            case UPLOAD_FOLDER:
+                return new File(item.getLocalPath()).getName() + "/";
+            default:
+                return new File(item.getLocalPath()).getName();
+        }
+    }
+
+    private static String transferState(TransferItem item) {
+        switch (item.getState()) {
+            case QUEUED:
+                return "В очереди";
+            case RUNNING:
+                return "Идёт";
+            case WAITING:
+                return "Нет связи, повтор позже";
+            case PAUSED:
+                return "Пауза";
+            case FAILED:
+                return "Ошибка: " + item.getError();
+            default:
+                return "Готово";
+        }
+    }
+
+    private static String transferProgress(TransferItem item) {
+        if (item.getState() == TransferItem.State.RUNNING) {
+            return formatProgress(item.getBytesDone(), item.getTotalBytes(), item.getBytesPerSecond(),
+                    item.getEtaSeconds());
+        }
+        if (item.getBytesDone() == 0 && item.getTotalBytes() < 0) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder(formatBytes(item.getBytesDone()));
+        if (item.getTotalBytes() >= 0) {
+            text.append(" из ").append(formatBytes(item.getTotalBytes()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Ищет по индексу путей при каждом изменении запроса; пустой запрос возвращает таблицу к текущей директории.
+     * Поиск идёт в фоне, результат устаревшего запроса отбрасывается.
+     */
+    private void runSearch(String query) {
+        searchToken.cancel();
+        if (pathIndex == null) {
+            return;
+        }
+        if (query == null || query.isBlank()) {
+            if (searchHits != null) {
+                searchHits = null;
+                loadDirectory(currentDirectory);
+            }
+            return;
+        }
+        CancellationToken token = new CancellationToken();
+        searchToken = token;
+        Task<List<PathIndex.Match>> task = new Task<>() {
+            @Override
+            protected List<PathIndex.Match> call() {
+                return pathIndex.search(query, searchMaxResults);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (!token.isCancelled()) {
+                showSearchResults(task.getValue());
+            }
+        });
+        taskScheduler.submit(TaskClass.INTERACTIVE, task);
+    }
+
+    private void showSearchResults(List<PathIndex.Match> matches) {
+        // результаты поиска не должны перетираться пачками ещё идущей загрузки директории
+        directoryLoadToken.cancel();
+        Map<FileInfo, PathIndex.Match> hits = new HashMap<>();
+        List<FileInfo> rows = new ArrayList<>(matches.size());
+        for (PathIndex.Match match : matches) {
+            FileInfo row = new FileInfo();
+            row.setName(match.getName());
+            row.setDirectory(match.getDirectory());
+            row.setSize(match.getSize());
+            hits.put(row, match);
+            rows.add(row);
+        }
+        searchHits = hits;
+        fileItems.replace(rows);
+        showStale(null);
+        if (boundTask == null) {
+            statusLabel.setText("Найдено: " + rows.size() + (rows.size() == searchMaxResults ? "+" : "")
+                    + " (в индексе " + pathIndex.size() + " путей)");
+        }
+    }
+
+    private FileTableItems.SortColumn sortColumn(TableColumn<FileInfo, ?> column) {
+        if (column == sizeColumn) {
+            return FileTableItems.SortColumn.SIZE;
+        }
+        return column == modifiedColumn ? FileTableItems.SortColumn.MODIFIED : FileTableItems.SortColumn.NAME;
+    }
+
+    private PathIndex.Match searchHit(FileInfo row) {
+        return searchHits != null ? searchHits.get(row) : null;
+    }
+
+    /**
+     * Выходит из режима поиска, не перезагружая текущую директорию.
+     */
+    private void closeSearch() {
+        searchHits = null;
+        searchField.setText("");
     }
 
     private void loadDirectory(String directory) {
+        directoryLoadToken.cancel();
+        CancellationToken token = new CancellationToken();
+        directoryLoadToken = token;
+        // известное, но неподтверждённое содержимое (в том числе из снимка прошлого запуска) показываем сразу
+        boolean showingCached = !backendService.isFresh(directory) && showCached(directory, token);
+        // таблица уже показывает эту директорию: новый листинг сверяется с ней, а не заливается заново,
+        // чтобы не сбрасывать выделение и прокрутку
+        boolean refresh = searchHits == null && directory.equals(currentDirectory) && !fileItems.isEmpty();
+
         runTask(
+                TaskClass.INTERACTIVE,
                 "Загрузка директории...",
                 () -> {
-                    List<FileInfo> files = backendService.listFiles(directory);
+                    // иначе первая пачка заменяет содержимое таблицы, остальные дописываются по мере разбора ответа
+                    boolean[] first = {true};
+                    FileInfoList refreshed = new FileInfoList();
+                    DirectoryEntries entries;
+                    try {
+                        entries = backendService.listEntries(
+                                directory, entriesDepth, LISTING_BATCH_SIZE, batch -> {
+                                    if (refresh) {
+                                        refreshed.addAll(batch);
+                                        return;
+                                    }
+                                    boolean replace = first[0];
+                                    first[0] = false;
+                                    Platform.runLater(() -> showFiles(directory, batch, replace, token));
+                                }, token);
+                    } catch (ApiException e) {
+                        // без токена ответ 401 означает, что backend снова доступен
+                        boolean unauthorized = offline && e.getStatusCode() == 401;
+                        if (!showingCached || !(isNetworkError(e) || unauthorized)) {
+                            throw e;
+                        }
+                        if (unauthorized) {
+                            Platform.runLater(this::offerRelogin);
+                        }
+                        // без связи остаёмся на показанных данных: просмотр работает офлайн
+                        Platform.runLater(() -> {
+                            if (!token.isCancelled()) {
+                                showStale(offlineNotice());
+                            }
+                        });
+                        return null;
+                    }
                     Platform.runLater(() -> {
-                        fileTable.getItems().setAll(files);
-                        pathField.setText(directory);
-                        currentDirectory = directory;
+                        if (refresh) {
+                            if (!token.isCancelled()) {
+                                fileItems.update(refreshed);
+                            }
+                        } else if (first[0]) {
+                            showFiles(directory, List.of(), true, token);
+                        }
+                        if (!token.isCancelled()) {
+                            TreeItem<DirectoryInfo> item = findTreeItem(directory);
+                            if (item != null) {
+                                fillTree(item, entries);
+                            }
+                            showStale(null);
+                            if (prefetcher != null) {
+                                prefetcher.onDirectoryLoaded(entries.getDirectories());
+                            }
+                        }
                     });
                     return null;
                 },
@@ -187,6 +1013,69 @@ public class MainController {
         );
     }
 
+    /**
+     * Показывает содержимое директории, известное без запроса к backend-у, с пометкой о том, что оно
+     * может быть устаревшим.
+     *
+     * @return {@code false}, если о директории ничего не известно
+     */
+    private boolean showCached(String directory, CancellationToken token) {
+        DirectoryEntries cached = backendService.peekEntries(directory, entriesDepth);
+        if (cached == null) {
+            return false;
+        }
+        showFiles(directory, cached.getFiles() != null ? cached.getFiles() : List.of(), true, token);
+        TreeItem<DirectoryInfo> item = findTreeItem(directory);
+        if (item != null) {
+            fillTree(item, cached);
+        }
+        showStale("Показаны сохранённые данные, обновление...");
+        return true;
+    }
+
+    private String offlineNotice() {
+        String notice = "Нет связи с backend-ом, показаны сохранённые данные";
+        if (snapshotSavedAt >= 0) {
+            notice += " (снимок от " + STALE_TIME_FORMAT.format(Instant.ofEpochMilli(snapshotSavedAt)) + ")";
+        }
+        return notice;
+    }
+
+    /**
+     * {@code null} снимает пометку устаревших данных.
+     */
+    private void showStale(String text) {
+        boolean stale = text != null;
+        staleLabel.setText(stale ? text : "");
+        staleLabel.setVisible(stale);
+        staleLabel.setManaged(stale);
+        fileTable.setOpacity(stale ? 0.7 : 1.0);
+    }
+
+    /**
+     * Ошибка соединения (а не ответ backend-а с кодом ошибки).
+     */
+    private static boolean isNetworkError(ApiException e) {
+        return e.getStatusCode() < 0 && !(e instanceof RequestCancelledException);
+    }
+
+    private void showFiles(String directory, List<FileInfo> files, boolean replace, CancellationToken token) {
+        if (token.isCancelled()) {
+            // пока ответ шёл, пользователь ушёл в другую директорию
+            return;
+        }
+        if (replace) {
+            if (searchHits != null) {
+                closeSearch();
+            }
+            fileItems.replace(files);
+            pathField.setText(directory);
+            currentDirectory = directory;
+        } else {
+            fileItems.append(files);
+        }
+    }
+
     private TreeItem<DirectoryInfo> createDirectoryItem(DirectoryInfo directoryInfo) {
         TreeItem<DirectoryInfo> item = new TreeItem<>(directoryInfo);
         // добавляем "пустышку", чтобы у элемента был маркер разворачиваемости
@@ -206,13 +1095,13 @@ public class MainController {
         }
 
         // если дети уже были загружены (не "пустышка"), не перезагружаем
-        if (!parentItem.getChildren().isEmpty()
-                && parentItem.getChildren().get(0).getValue() != null) {
+        if (isChildrenLoaded(parentItem)) {
             return;
         }
 
         String path = dir.getPath();
         runTask(
+                TaskClass.INTERACTIVE,
                 "Загрузка поддиректорий...",
                 () -> {
                     List<DirectoryInfo> dirs = backendService.listDirectories(path);
@@ -229,16 +1118,99 @@ public class MainController {
         );
     }
 
-    private <T> void runTask(String status,
+    private static boolean isChildrenLoaded(TreeItem<DirectoryInfo> item) {
+        return !item.getChildren().isEmpty() && item.getChildren().get(0).getValue() != null;
+    }
+
+    /**
+     * Приводит поддиректории узла (и вложенных уровней из ответа {@code /entries}) к полученным.
+     * Уже существующие узлы сохраняются, чтобы не сворачивать раскрытые пользователем ветки.
+     */
+    private void fillTree(TreeItem<DirectoryInfo> item, DirectoryEntries entries) {
+        Map<String, TreeItem<DirectoryInfo>> byPath = new HashMap<>();
+        for (TreeItem<DirectoryInfo> child : item.getChildren()) {
+            if (child.getValue() != null) {
+                byPath.put(child.getValue().getPath(), child);
+            }
+        }
+        if (entries.getDirectories() != null) {
+            List<TreeItem<DirectoryInfo>> children = new ArrayList<>();
+            for (DirectoryInfo child : entries.getDirectories()) {
+                TreeItem<DirectoryInfo> existing = byPath.get(child.getPath());
+                children.add(existing != null ? existing : createDirectoryItem(child));
+            }
+            if (!children.equals(item.getChildren())) {
+                item.getChildren().setAll(children);
+            }
+            byPath.clear();
+            for (TreeItem<DirectoryInfo> child : children) {
+                byPath.put(child.getValue().getPath(), child);
+            }
+        }
+        if (entries.getChildren() == null || entries.getChildren().isEmpty()) {
+            return;
+        }
+        for (DirectoryEntries childEntries : entries.getChildren()) {
+            TreeItem<DirectoryInfo> child = byPath.get(childEntries.getPath());
+            if (child != null) {
+                fillTree(child, childEntries);
+            }
+        }
+    }
+
+    /**
+     * Ищет узел директории среди уже загруженных узлов дерева.
+     */
+    private TreeItem<DirectoryInfo> findTreeItem(String path) {
+        Deque<TreeItem<DirectoryInfo>> stack = new ArrayDeque<>();
+        if (directoryTree.getRoot() != null) {
+            stack.push(directoryTree.getRoot());
+        }
+        while (!stack.isEmpty()) {
+            TreeItem<DirectoryInfo> item = stack.pop();
+            if (item.getValue() == null) {
+                continue;
+            }
+            if (path.equals(item.getValue().getPath())) {
+                return item;
+            }
+            String prefix = ".".equals(item.getValue().getPath()) ? "" : item.getValue().getPath() + "/";
+            if (path.startsWith(prefix)) {
+                item.getChildren().forEach(stack::push);
+            }
+        }
+        return null;
+    }
+
+    private <T> void runTask(TaskClass taskClass,
+                             String status,
                              Callable<T> callable,
                              Consumer<T> onSuccess) {
+        runTransferTask(taskClass, status, listener -> callable.call(), onSuccess);
+    }
+
+    /**
+     * Как {@link #runTask}, но операция получает {@link TransferListener}: прогресс-бар показывает
+     * долю переданных байт, статус — скорость и оставшееся время. Слушатель вызывается не чаще
+     * раза в 100 мс, а {@link Task} сам схлопывает обновления до одного {@code Platform.runLater}.
+     */
+    private <T> void runTransferTask(TaskClass taskClass,
+                                     String status,
+                                     TransferCallable<T> callable,
+                                     Consumer<T> onSuccess) {
         Task<T> task = new Task<>() {
             @Override
             protected T call() throws Exception {
                 updateMessage(status);
                 updateProgress(-1, 1); // индикатор "indeterminate"
+                TransferListener listener = progress -> {
+                    if (progress.getTotalBytes() > 0) {
+                        updateProgress(progress.getBytesDone(), progress.getTotalBytes());
+                    }
+                    updateMessage(status + " " + formatProgress(progress));
+                };
                 try {
-                    return callable.call();
+                    return callable.call(listener);
                 } catch (ApiException e) {
                     throw e;
                 } catch (Exception e) {
@@ -248,28 +1220,79 @@ public class MainController {
         };
 
         task.setOnSucceeded(e -> {
-            progressBar.progressProperty().unbind();
-            progressBar.setProgress(0);
-            statusLabel.textProperty().unbind();
-            statusLabel.setText("Готово");
+            releaseStatus(task, "Готово");
             onSuccess.accept(task.getValue());
         });
 
         task.setOnFailed(e -> {
-            progressBar.progressProperty().unbind();
-            progressBar.setProgress(0);
-            statusLabel.textProperty().unbind();
-            statusLabel.setText("Ошибка");
             Throwable ex = task.getException();
+            if (ex instanceof RequestCancelledException) {
+                // запрос вытеснен более новым — это не ошибка
+                releaseStatus(task, "Готово");
+                return;
+            }
+            releaseStatus(task, "Ошибка");
             showErrorDialog("Ошибка операции", ex != null ? ex.getMessage() : "Неизвестная ошибка");
         });
 
+        boundTask = task;
         progressBar.progressProperty().bind(task.progressProperty());
         statusLabel.textProperty().bind(task.messageProperty());
 
-        Thread thread = new Thread(task, "backend-task");
-        thread.setDaemon(true);
-        thread.start();
+        taskScheduler.submit(taskClass, task);
+    }
+
+    /**
+     * Отвязывает прогресс-бар и статус, если они всё ещё показывают эту задачу,
+     * а не запущенную позже.
+     */
+    private void releaseStatus(Task<?> task, String status) {
+        if (boundTask != task) {
+            return;
+        }
+        boundTask = null;
+        progressBar.progressProperty().unbind();
+        progressBar.setProgress(0);
+        statusLabel.textProperty().unbind();
+        statusLabel.setText(status);
+    }
+
+    private static String formatProgress(TransferProgress progress) {
+        return formatProgress(progress.getBytesDone(), progress.getTotalBytes(), progress.getBytesPerSecond(),
+                progress.getEtaSeconds());
+    }
+
+    private static String formatProgress(long bytesDone, long totalBytes, double bytesPerSecond, long eta) {
+        StringBuilder text = new StringBuilder(formatBytes(bytesDone));
+        if (totalBytes >= 0) {
+            text.append(" из ").append(formatBytes(totalBytes));
+        }
+        text.append(", ").append(formatBytes((long) bytesPerSecond)).append("/с");
+        if (eta >= 0) {
+            text.append(String.format(Locale.ROOT, ", осталось %d:%02d", eta / 60, eta % 60));
+        }
+        return text.toString();
+    }
+
+    private static String formatDirectorySize(DirectorySize size) {
+        if (size == null) {
+            return "";
+        }
+        return "  (" + formatBytes(size.getTotalBytes()) + ", файлов: " + size.getFileCount() + ")";
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " Б";
+        }
+        String[] units = {"КБ", "МБ", "ГБ", "ТБ"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
     }
 
     private void showErrorDialog(String title, String message) {
@@ -279,5 +1302,9 @@ public class MainController {
         alert.setContentText(message);
         alert.showAndWait();
     }
-}
 
+    @FunctionalInterface
+    private interface TransferCallable<T> {
+        T call(TransferListener listener) throws Exception;
+    }
+}
@@ -0,0 +1,1097 @@
+package com.diskdesktop.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Локальный mock backend, реализующий контракт {@code openapi.yml} поверх каталога на диске.
+ * Нужен, чтобы проверять клиент без настоящего backend-а:
+ * <pre>
+ * ./gradlew runMockBackend
+ * </pre>
+ * Аргументы: порт (по умолчанию 8080) и каталог хранилища (по умолчанию временный).
+ * Логин принимает любые учётные данные.
+ */
+public class MockBackendServer {
+
+    private static final String CONTEXT = "/api/";
+    private static final String UPLOADS_DIR_NAME = ".uploads";
+    private static final String BLOBS_DIR_NAME = ".blobs";
+    private static final long MIN_CHUNK_SIZE = 256 * 1024;
+    private static final long MAX_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TAR_BLOCK = 512;
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 10_000;
+    private static final int MAX_ENTRIES_DEPTH = 5;
+    private static final int MAX_RETAINED_CHANGES = 10_000;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 15_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path root;
+    private final Path uploadsRoot;
+    /**
+     * Загруженное содержимое по SHA-256 (жёсткие ссылки на файлы либо копии) для {@code /blobs/lookup}.
+     */
+    private final Path blobsRoot;
+    /**
+     * Последние изменения для {@code /changes}; номер события — его позиция в ленте.
+     */
+    private final ArrayDeque<Map<String, Object>> changes = new ArrayDeque<>();
+    private long lastChangeId;
+
+    public MockBackendServer(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.uploadsRoot = this.root.resolve(UPLOADS_DIR_NAME);
+        this.blobsRoot = this.root.resolve(BLOBS_DIR_NAME);
+        Files.createDirectories(uploadsRoot);
+        Files.createDirectories(blobsRoot);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path root = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("disk-mock");
+        MockBackendServer backend = new MockBackendServer(root);
+        HttpServer server = backend.start(port);
+        System.out.println("Mock backend: http://localhost:" + server.getAddress().getPort()
+                + "/api, storage " + backend.root);
+    }
+
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(CONTEXT, this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String rawPath = exchange.getRequestURI().getRawPath().substring(CONTEXT.length());
+            List<String> segments = new ArrayList<>();
+            for (String segment : rawPath.split("/")) {
+                if (!segment.isEmpty()) {
+                    segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+                }
+            }
+            try {
+                route(exchange, exchange.getRequestMethod(), segments);
+            } catch (MockException e) {
+                sendError(exchange, e.status, e.code, e.getMessage());
+            } catch (RuntimeException | IOException e) {
+                sendError(exchange, 500, "INTERNAL", String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange, String method, List<String> s) throws IOException {
+        String resource = s.isEmpty() ? "" : s.get(0);
+        int size = s.size();
+        switch (resource) {
+            case "auth":
+                if ("POST".equals(method) && size == 2 && "login".equals(s.get(1))) {
+                    sendJson(exchange, 200, Map.of("token", "mock-token"));
+                    return;
+                }
+                break;
+            case "files":
+                if ("GET".equals(method) && size == 2) {
+                    listFiles(exchange, s.get(1));
+                    return;
+                }
+                if ("POST".equals(method) && size == 2) {
+                    uploadMultipart(exchange, s.get(1));
+                    return;
+                }
+                if ("POST".equals(method) && size == 3 && "from-blob".equals(s.get(2))) {
+                    createFromBlob(exchange, s.get(1));
+                    return;
+                }
+                if ("POST".equals(method) && size == 3 && "archive".equals(s.get(2))) {
+                    uploadArchive(exchange, s.get(1));
+                    return;
+                }
+                if (("GET".equals(method) || "HEAD".equals(method)) && size == 3) {
+                    download(exchange, s.get(1), s.get(2));
+                    return;
+                }
+                break;
+            case "changes":
+                if ("GET".equals(method) && size == 1) {
+                    streamChanges(exchange);
+                    return;
+                }
+                break;
+            case "blobs":
+                if ("POST".equals(method) && size == 2 && "lookup".equals(s.get(1))) {
+                    lookupBlobs(exchange);
+                    return;
+                }
+                break;
+            case "entries":
+                if ("GET".equals(method) && size == 2) {
+                    listEntries(exchange, s.get(1));
+                    return;
+                }
+                break;
+            case "directories":
+                if ("GET".equals(method) && size == 1) {
+                    listManyDirectories(exchange);
+                    return;
+                }
+                if ("POST".equals(method) && size == 1) {
+                    createDirectories(exchange);
+                    return;
+                }
+                if ("GET".equals(method) && size == 2) {
+                    listDirectories(exchange, s.get(1));
+                    return;
+                }
+                if ("POST".equals(method) && size == 2) {
+                    createDirectory(exchange, s.get(1));
+                    return;
+                }
+                break;
+            case "uploads":
+                if ("POST".equals(method) && size == 1) {
+                    createUploadSession(exchange);
+                    return;
+                }
+                if ("GET".equals(method) && size == 2) {
+                    sendJson(exchange, 200, sessionView(s.get(1)));
+                    return;
+                }
+                if ("PUT".equals(method) && size == 4 && "chunks".equals(s.get(2))) {
+                    uploadChunk(exchange, s.get(1), s.get(3));
+                    return;
+                }
+                if ("POST".equals(method) && size == 3 && "commit".equals(s.get(2))) {
+                    commitUpload(exchange, s.get(1));
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        throw new MockException(404, "NOT_FOUND", "No route for " + method + " /" + String.join("/", s));
+    }
+
+    // --- файлы и директории ---
+
+    private void listFiles(HttpExchange exchange, String directory) throws IOException {
+        Path dir = resolveDirectory(directory);
+        Map<String, String> query = queryParams(exchange);
+        if (!query.containsKey("limit") && !query.containsKey("cursor")) {
+            sendListing(exchange, files(dir, directory));
+            return;
+        }
+
+        // ETag у страниц — всего листинга, тот же, что у ответа без пагинации; проверяется только первой страницей
+        String etag = listingEtag(files(dir, directory));
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (query.get("cursor") == null && listingNotModified(exchange, etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        sendJson(exchange, 200, filesPage(dir, directory, query.get("cursor"), parseLimit(query)));
+    }
+
+    private List<Map<String, Object>> files(Path dir, String directory) throws IOException {
+        List<Map<String, Object>> files = new ArrayList<>();
+        for (Path file : sortedChildren(dir)) {
+            if (Files.isRegularFile(file)) {
+                files.add(fileInfo(directory, file));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Страница файлов; курсор — имя последнего отданного файла, поэтому вставки между страницами не сдвигают выдачу.
+     */
+    private Map<String, Object> filesPage(Path dir, String directory, String cursor, int limit) throws IOException {
+        List<Map<String, Object>> items = new ArrayList<>();
+        String nextCursor = null;
+        for (Path file : sortedChildren(dir)) {
+            String name = file.getFileName().toString();
+            if (!Files.isRegularFile(file) || (cursor != null && name.compareTo(cursor) <= 0)) {
+                continue;
+            }
+            if (items.size() == limit) {
+                nextCursor = (String) items.get(items.size() - 1).get("name");
+                break;
+            }
+            items.add(fileInfo(directory, file));
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("items", items);
+        page.put("nextCursor", nextCursor);
+        return page;
+    }
+
+    private static int parseLimit(Map<String, String> query) {
+        int limit;
+        try {
+            limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+        } catch (NumberFormatException e) {
+            throw new MockException(400, "BAD_REQUEST", "Invalid limit");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new MockException(400, "BAD_REQUEST", "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private void listEntries(HttpExchange exchange, String directory) throws IOException {
+        Path dir = resolveDirectory(directory);
+        Map<String, String> query = queryParams(exchange);
+        int depth;
+        try {
+            depth = Integer.parseInt(query.getOrDefault("depth", "1"));
+        } catch (NumberFormatException e) {
+            throw new MockException(400, "BAD_REQUEST", "Invalid depth");
+        }
+        if (depth < 1 || depth > MAX_ENTRIES_DEPTH) {
+            throw new MockException(400, "BAD_REQUEST", "depth must be between 1 and " + MAX_ENTRIES_DEPTH);
+        }
+
+        Map<String, Object> entries = subtree(dir, depth);
+        Map<String, Object> page = filesPage(dir, directory, null, parseLimit(query));
+        entries.put("filesEtag", listingEtag(files(dir, directory)));
+        entries.put("files", page.get("items"));
+        entries.put("nextCursor", page.get("nextCursor"));
+        sendJson(exchange, 200, entries);
+    }
+
+    private Map<String, Object> subtree(Path dir, int depth) throws IOException {
+        List<Map<String, Object>> directories = new ArrayList<>();
+        List<Map<String, Object>> children = new ArrayList<>();
+        for (Path child : sortedChildren(dir)) {
+            if (Files.isDirectory(child)) {
+                directories.add(directoryInfo(child));
+                if (depth > 1) {
+                    children.add(subtree(child, depth - 1));
+                }
+            }
+        }
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("path", relativePath(dir));
+        entries.put("directories", directories);
+        entries.put("directoriesEtag", listingEtag(directories));
+        entries.put("children", children);
+        return entries;
+    }
+
+    private void listDirectories(HttpExchange exchange, String directory) throws IOException {
+        sendListing(exchange, subdirectories(resolveDirectory(directory)));
+    }
+
+    /**
+     * Пакетный листинг: {@code ?path=a&path=b}; несуществующие директории пропускаются.
+     */
+    private void listManyDirectories(HttpExchange exchange) throws IOException {
+        List<Map<String, Object>> listings = new ArrayList<>();
+        for (String directory : queryValues(exchange, "path")) {
+            Path dir;
+            try {
+                dir = resolveDirectory(directory);
+            } catch (MockException e) {
+                if (e.status == 404) {
+                    continue;
+                }
+                throw e;
+            }
+            List<Map<String, Object>> directories = subdirectories(dir);
+            Map<String, Object> listing = new LinkedHashMap<>();
+            listing.put("path", relativePath(dir));
+            listing.put("directories", directories);
+            listing.put("directoriesEtag", listingEtag(directories));
+            listings.add(listing);
+        }
+        sendJson(exchange, 200, listings);
+    }
+
+    private List<Map<String, Object>> subdirectories(Path dir) throws IOException {
+        List<Map<String, Object>> dirs = new ArrayList<>();
+        for (Path child : sortedChildren(dir)) {
+            if (Files.isDirectory(child)) {
+                dirs.add(directoryInfo(child));
+            }
+        }
+        return dirs;
+    }
+
+    private void createDirectory(HttpExchange exchange, String parent) throws IOException {
+        Path dir = resolveDirectory(parent);
+        Map<?, ?> body = mapper.readValue(exchange.getRequestBody(), Map.class);
+        Object name = body.get("name");
+        if (!(name instanceof String) || !isValidName((String) name)) {
+            throw new MockException(400, "BAD_REQUEST", "Invalid directory name");
+        }
+        Path created = dir.resolve((String) name);
+        if (Files.exists(created)) {
+            throw new MockException(409, "CONFLICT", "Already exists: " + name);
+        }
+        Files.createDirectory(created);
+        recordDirectoryCreated(created);
+        sendJson(exchange, 201, directoryInfo(created));
+    }
+
+    /**
+     * {@code mkdir -p} для каждого пути из {@code {"paths": [...]}}.
+     */
+    private void createDirectories(HttpExchange exchange) throws IOException {
+        Map<?, ?> body = mapper.readValue(exchange.getRequestBody(), Map.class);
+        if (!(body.get("paths") instanceof List)) {
+            throw new MockException(400, "BAD_REQUEST", "Field 'paths' is required");
+        }
+        List<Map<String, Object>> created = new ArrayList<>();
+        for (Object path : (List<?>) body.get("paths")) {
+            if (!(path instanceof String)) {
+                throw new MockException(400, "BAD_REQUEST", "Invalid path: " + path);
+            }
+            Path dir = root;
+            for (String part : ((String) path).split("/")) {
+                if (part.isEmpty() || ".".equals(part)) {
+                    continue;
+                }
+                if (!isValidName(part)) {
+                    throw new MockException(400, "BAD_REQUEST", "Invalid path: " + path);
+                }
+                dir = dir.resolve(part);
+                if (Files.exists(dir) && !Files.isDirectory(dir)) {
+                    throw new MockException(409, "CONFLICT", "Not a directory: " + relativePath(dir));
+                }
+                if (!Files.exists(dir)) {
+                    Files.createDirectory(dir);
+                    recordDirectoryCreated(dir);
+                }
+            }
+            if (dir.equals(root)) {
+                throw new MockException(400, "BAD_REQUEST", "Invalid path: " + path);
+            }
+            created.add(directoryInfo(dir));
+        }
+        sendJson(exchange, 201, created);
+    }
+
+    private void uploadMultipart(HttpExchange exchange, String directory) throws IOException {
+        Path dir = resolveDirectory(directory);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        int boundaryIdx = contentType == null ? -1 : contentType.indexOf("boundary=");
+        if (boundaryIdx < 0) {
+            throw new MockException(400, "BAD_REQUEST", "multipart/form-data expected");
+        }
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        byte[] delimiter = ("--" + contentType.substring(boundaryIdx + "boundary=".length()).replace("\"", ""))
+                .getBytes(StandardCharsets.ISO_8859_1);
+
+        int partStart = indexOf(body, delimiter, 0);
+        while (partStart >= 0) {
+            int headersStart = partStart + delimiter.length + 2;
+            int headersEnd = indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1), headersStart);
+            int next = indexOf(body, delimiter, headersStart);
+            if (headersEnd < 0 || next < 0) {
+                break;
+            }
+            String headers = new String(body, headersStart, headersEnd - headersStart, StandardCharsets.UTF_8);
+            int filenameIdx = headers.indexOf("filename=\"");
+            if (filenameIdx >= 0) {
+                String filename = headers.substring(filenameIdx + "filename=\"".length(),
+                        headers.indexOf('"', filenameIdx + "filename=\"".length()));
+                if (!isValidName(filename)) {
+                    throw new MockException(400, "BAD_REQUEST", "Invalid file name");
+                }
+                int dataStart = headersEnd + 4;
+                int dataEnd = next - 2; // CRLF перед разделителем
+                Path target = dir.resolve(filename);
+                Path tmp = Files.createTempFile(uploadsRoot, "multipart", ".tmp");
+                Files.write(tmp, Arrays.copyOfRange(body, dataStart, dataEnd));
+                boolean existed = Files.exists(target);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                rememberBlob(target);
+                recordFileChange(existed, directory, target);
+                sendJson(exchange, 201, fileInfo(directory, target));
+                return;
+            }
+            partStart = next;
+        }
+        throw new MockException(400, "BAD_REQUEST", "Part 'file' is missing");
+    }
+
+    /**
+     * Распаковывает tar (ustar, имена из PAX-заголовков {@code path}) в директорию по мере чтения тела.
+     */
+    private void uploadArchive(HttpExchange exchange, String directory) throws IOException {
+        Path dir = resolveDirectory(directory);
+        DataInputStream in = new DataInputStream(exchange.getRequestBody());
+        byte[] header = new byte[TAR_BLOCK];
+        List<Map<String, Object>> created = new ArrayList<>();
+        String paxPath = null;
+        while (true) {
+            try {
+                in.readFully(header);
+            } catch (EOFException e) {
+                throw new MockException(400, "BAD_REQUEST", "Truncated archive");
+            }
+            if (header[0] == 0) {
+                break; // нулевой блок — конец архива
+            }
+            long size = tarNumber(header, 124, 12);
+            byte type = header[156];
+            if (type == 'x') {
+                byte[] record = new byte[(int) size];
+                in.readFully(record);
+                skipPadding(in, size);
+                paxPath = paxPath(new String(record, StandardCharsets.UTF_8));
+                continue;
+            }
+            String name = paxPath != null ? paxPath : tarField(header, 0, 100);
+            paxPath = null;
+            if ((type != '0' && type != 0) || !isValidName(name)) {
+                throw new MockException(400, "BAD_REQUEST", "Invalid archive entry: " + name);
+            }
+            Path target = dir.resolve(name);
+            Path tmp = Files.createTempFile(uploadsRoot, "archive", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long remaining = size;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new MockException(400, "BAD_REQUEST", "Truncated archive");
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+            skipPadding(in, size);
+            long mtime = tarNumber(header, 136, 12);
+            Files.setLastModifiedTime(tmp, FileTime.from(mtime, TimeUnit.SECONDS));
+            boolean existed = Files.exists(target);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            rememberBlob(target);
+            recordFileChange(existed, directory, target);
+            created.add(fileInfo(directory, target));
+        }
+        sendJson(exchange, 201, created);
+    }
+
+    private static String tarField(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.US_ASCII);
+    }
+
+    private static long tarNumber(byte[] header, int offset, int length) {
+        try {
+            return Long.parseLong(tarField(header, offset, length).trim(), 8);
+        } catch (NumberFormatException e) {
+            throw new MockException(400, "BAD_REQUEST", "Malformed tar header");
+        }
+    }
+
+    private static String paxPath(String records) {
+        for (String record : records.split("\n")) {
+            int start = record.indexOf(" path=");
+            if (start >= 0) {
+                return record.substring(start + " path=".length());
+            }
+        }
+        return null;
+    }
+
+    private static void skipPadding(DataInputStream in, long size) throws IOException {
+        int remainder = (int) (size % TAR_BLOCK);
+        if (remainder != 0) {
+            in.readFully(new byte[TAR_BLOCK - remainder]);
+        }
+    }
+
+    private void download(HttpExchange exchange, String directory, String filename) throws IOException {
+        Path file = resolveDirectory(directory).resolve(filename);
+        if (!isValidName(filename) || !Files.isRegularFile(file)) {
+            throw new MockException(404, "NOT_FOUND", "File not found: " + filename);
+        }
+        long size = Files.size(file);
+        String etag = etag(file);
+        String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Files.getLastModifiedTime(file).toInstant().atOffset(ZoneOffset.UTC));
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Last-Modified", lastModified);
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        if (notModified(exchange, etag, file)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        boolean rangeApplies = range != null && range.startsWith("bytes=") && !range.contains(",")
+                && (ifRange == null || ifRange.equals(etag) || ifRange.equals(lastModified));
+
+        long start = 0;
+        long end = size - 1;
+        int status = 200;
+        if (rangeApplies) {
+            String spec = range.substring("bytes=".length());
+            int dash = spec.indexOf('-');
+            start = Long.parseLong(spec.substring(0, dash));
+            if (dash + 1 < spec.length()) {
+                end = Math.min(end, Long.parseLong(spec.substring(dash + 1)));
+            }
+            if (start >= size || start > end) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + size);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            status = 206;
+        }
+
+        long length = end - start + 1;
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r");
+             OutputStream out = exchange.getResponseBody()) {
+            in.seek(start);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    // --- поблочная загрузка ---
+
+    /**
+     * Условный GET: {@code If-None-Match} важнее {@code If-Modified-Since}, как в RFC 9110.
+     */
+    private static boolean notModified(HttpExchange exchange, String etag, Path file) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.equals(etag) || "*".equals(ifNoneMatch);
+        }
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince == null) {
+            return false;
+        }
+        try {
+            long since = DateTimeFormatter.RFC_1123_DATE_TIME.parse(ifModifiedSince, Instant::from).getEpochSecond();
+            return Files.getLastModifiedTime(file).toInstant().getEpochSecond() <= since;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private void createUploadSession(HttpExchange exchange) throws IOException {
+        Map<?, ?> body = mapper.readValue(exchange.getRequestBody(), Map.class);
+        String directory = String.valueOf(body.get("directory"));
+        String filename = String.valueOf(body.get("filename"));
+        resolveDirectory(directory);
+        if (!isValidName(filename)) {
+            throw new MockException(400, "BAD_REQUEST", "Invalid file name");
+        }
+        long size = ((Number) body.get("size")).longValue();
+        long chunkSize = body.get("chunkSize") instanceof Number
+                ? ((Number) body.get("chunkSize")).longValue()
+                : MAX_CHUNK_SIZE;
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+
+        String uploadId = UUID.randomUUID().toString();
+        Path sessionDir = uploadsRoot.resolve(uploadId);
+        Files.createDirectories(sessionDir);
+        Map<String, Object> session = new LinkedHashMap<>();
+        session.put("uploadId", uploadId);
+        session.put("directory", directory);
+        session.put("filename", filename);
+        session.put("size", size);
+        session.put("chunkSize", chunkSize);
+        mapper.writeValue(sessionDir.resolve("session.json").toFile(), session);
+        sendJson(exchange, 201, sessionView(uploadId));
+    }
+
+    private void uploadChunk(HttpExchange exchange, String uploadId, String indexValue) throws IOException {
+        Map<String, Object> session = sessionView(uploadId);
+        int index = Integer.parseInt(indexValue);
+        if (index < 0 || index >= chunkCount(session)) {
+            throw new MockException(400, "BAD_REQUEST", "Chunk index out of range: " + index);
+        }
+        Path sessionDir = uploadsRoot.resolve(uploadId);
+        Path tmp = Files.createTempFile(sessionDir, "chunk", ".tmp");
+        try (InputStream in = exchange.getRequestBody()) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(tmp, sessionDir.resolve(chunkFileName(index)), StandardCopyOption.REPLACE_EXISTING);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private void commitUpload(HttpExchange exchange, String uploadId) throws IOException {
+        Map<String, Object> session = sessionView(uploadId);
+        @SuppressWarnings("unchecked")
+        List<Integer> received = (List<Integer>) session.get("receivedChunks");
+        int chunkCount = chunkCount(session);
+        if (received.size() != chunkCount) {
+            throw new MockException(409, "INCOMPLETE",
+                    "Received " + received.size() + " of " + chunkCount + " chunks");
+        }
+        String directory = (String) session.get("directory");
+        Path sessionDir = uploadsRoot.resolve(uploadId);
+        Path assembled = Files.createTempFile(uploadsRoot, "assembled", ".tmp");
+        try (OutputStream out = Files.newOutputStream(assembled)) {
+            for (int i = 0; i < chunkCount; i++) {
+                Files.copy(sessionDir.resolve(chunkFileName(i)), out);
+            }
+        }
+        if (Files.size(assembled) != ((Number) session.get("size")).longValue()) {
+            Files.delete(assembled);
+            throw new MockException(409, "SIZE_MISMATCH", "Assembled file size differs from declared size");
+        }
+        Path target = resolveDirectory(directory).resolve((String) session.get("filename"));
+        boolean existed = Files.exists(target);
+        Files.move(assembled, target, StandardCopyOption.REPLACE_EXISTING);
+        rememberBlob(target);
+        recordFileChange(existed, directory, target);
+        deleteRecursively(sessionDir);
+        sendJson(exchange, 201, fileInfo(directory, target));
+    }
+
+    private Map<String, Object> sessionView(String uploadId) throws IOException {
+        Path sessionDir = uploadsRoot.resolve(uploadId).normalize();
+        Path sessionFile = sessionDir.resolve("session.json");
+        if (!sessionDir.startsWith(uploadsRoot) || !Files.isRegularFile(sessionFile)) {
+            throw new MockException(404, "NOT_FOUND", "Unknown upload session: " + uploadId);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> session = mapper.readValue(sessionFile.toFile(), Map.class);
+        List<Integer> received = new ArrayList<>();
+        int chunkCount = chunkCount(session);
+        for (int i = 0; i < chunkCount; i++) {
+            if (Files.exists(sessionDir.resolve(chunkFileName(i)))) {
+                received.add(i);
+            }
+        }
+        session.put("receivedChunks", received);
+        return session;
+    }
+
+    private static int chunkCount(Map<String, Object> session) {
+        long size = ((Number) session.get("size")).longValue();
+        long chunkSize = ((Number) session.get("chunkSize")).longValue();
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    private static String chunkFileName(int index) {
+        return "chunk-" + index;
+    }
+
+    // --- дедупликация ---
+
+    private void lookupBlobs(HttpExchange exchange) throws IOException {
+        Map<?, ?> body = mapper.readValue(exchange.getRequestBody(), Map.class);
+        if (!(body.get("hashes") instanceof List)) {
+            throw new MockException(400, "BAD_REQUEST", "Field 'hashes' is required");
+        }
+        List<String> known = new ArrayList<>();
+        for (Object hash : (List<?>) body.get("hashes")) {
+            if (hash instanceof String && isSha256((String) hash)
+                    && Files.isRegularFile(blobsRoot.resolve((String) hash))) {
+                known.add((String) hash);
+            }
+        }
+        sendJson(exchange, 200, Map.of("known", known));
+    }
+
+    private void createFromBlob(HttpExchange exchange, String directory) throws IOException {
+        Path dir = resolveDirectory(directory);
+        Map<?, ?> body = mapper.readValue(exchange.getRequestBody(), Map.class);
+        Object name = body.get("name");
+        Object hash = body.get("sha256");
+        if (!(name instanceof String) || !isValidName((String) name)
+                || !(hash instanceof String) || !isSha256((String) hash)) {
+            throw new MockException(400, "BAD_REQUEST", "Fields 'name' and 'sha256' are required");
+        }
+        Path blob = blobsRoot.resolve((String) hash);
+        if (!Files.isRegularFile(blob)) {
+            throw new MockException(404, "NOT_FOUND", "Unknown content: " + hash);
+        }
+        if (body.get("size") instanceof Number && ((Number) body.get("size")).longValue() != Files.size(blob)) {
+            throw new MockException(409, "SIZE_MISMATCH", "Stored content size differs from declared size");
+        }
+        Path tmp = Files.createTempFile(uploadsRoot, "blob", ".tmp");
+        Files.copy(blob, tmp, StandardCopyOption.REPLACE_EXISTING);
+        Path target = dir.resolve((String) name);
+        boolean existed = Files.exists(target);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        recordFileChange(existed, directory, target);
+        sendJson(exchange, 201, fileInfo(directory, target));
+    }
+
+    /**
+     * Запоминает содержимое загруженного файла. Жёсткая ссылка переживает перезапись файла
+     * новой загрузкой (та заменяет запись каталога, а не данные); без их поддержки хранится копия.
+     */
+    private void rememberBlob(Path file) throws IOException {
+        Path blob = blobsRoot.resolve(sha256(file));
+        if (Files.exists(blob)) {
+            return;
+        }
+        try {
+            Files.createLink(blob, file);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(file, blob, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static boolean isSha256(String hash) {
+        return hash.matches("[0-9a-f]{64}");
+    }
+
+    // --- лента изменений ---
+
+    /**
+     * Server-Sent Events: сначала {@code id} текущей позиции ленты (или пропущенные события после
+     * {@code Last-Event-ID}), затем новые события по мере появления и комментарий-пульс в паузах.
+     * Если переданная позиция уже вытеснена из ленты, клиент получает {@code RESET}.
+     */
+    private void streamChanges(HttpExchange exchange) throws IOException {
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        long cursor;
+        try {
+            cursor = lastEventId == null ? -1 : Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            throw new MockException(400, "BAD_REQUEST", "Invalid Last-Event-ID: " + lastEventId);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            StringBuilder events = new StringBuilder();
+            while (true) {
+                synchronized (changes) {
+                    if (cursor < 0) {
+                        cursor = lastChangeId;
+                        events.append("id: ").append(cursor).append("\n\n");
+                    } else if (cursor > lastChangeId || cursor < lastChangeId - changes.size()) {
+                        cursor = lastChangeId;
+                        Map<String, Object> reset = new LinkedHashMap<>();
+                        reset.put("type", "RESET");
+                        reset.put("cursor", String.valueOf(cursor));
+                        appendEvent(events, cursor, reset);
+                    } else {
+                        if (cursor == lastChangeId) {
+                            changes.wait(HEARTBEAT_INTERVAL_MILLIS);
+                        }
+                        for (Map<String, Object> change : changes) {
+                            long id = Long.parseLong((String) change.get("cursor"));
+                            if (id > cursor) {
+                                appendEvent(events, id, change);
+                                cursor = id;
+                            }
+                        }
+                    }
+                }
+                out.write((events.length() > 0 ? events.toString() : ": ping\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                events.setLength(0);
+            }
+        } catch (IOException e) {
+            // клиент отключился
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void appendEvent(StringBuilder events, long id, Map<String, Object> change) throws IOException {
+        events.append("id: ").append(id).append('\n')
+                .append("data: ").append(mapper.writeValueAsString(change)).append("\n\n");
+    }
+
+    private void recordFileChange(boolean existed, String directory, Path file) throws IOException {
+        recordChange(existed ? "FILE_UPDATED" : "FILE_CREATED", file, fileInfo(directory, file));
+    }
+
+    private void recordDirectoryCreated(Path dir) {
+        recordChange("DIRECTORY_CREATED", dir, null);
+    }
+
+    private void recordChange(String type, Path path, Map<String, Object> file) {
+        Map<String, Object> change = new LinkedHashMap<>();
+        change.put("type", type);
+        change.put("directory", relativePath(path.getParent()));
+        change.put("name", path.getFileName().toString());
+        if (file != null) {
+            change.put("file", file);
+        }
+        synchronized (changes) {
+            lastChangeId++;
+            change.put("cursor", String.valueOf(lastChangeId));
+            changes.addLast(change);
+            if (changes.size() > MAX_RETAINED_CHANGES) {
+                changes.removeFirst();
+            }
+            changes.notifyAll();
+        }
+    }
+
+    // --- вспомогательное ---
+
+    private Path resolveDirectory(String directory) {
+        Path dir = root;
+        if (directory != null && !directory.isEmpty() && !".".equals(directory)) {
+            for (String part : directory.split("/")) {
+                if (part.isEmpty() || ".".equals(part)) {
+                    continue;
+                }
+                if (!isValidName(part)) {
+                    throw new MockException(400, "BAD_REQUEST", "Invalid path: " + directory);
+                }
+                dir = dir.resolve(part);
+            }
+        }
+        if (!Files.isDirectory(dir)) {
+            throw new MockException(404, "NOT_FOUND", "Directory not found: " + directory);
+        }
+        return dir;
+    }
+
+    private static boolean isValidName(String name) {
+        return !name.isEmpty() && !"..".equals(name) && !".".equals(name)
+                && !name.startsWith(".") && name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+    }
+
+    private List<Path> sortedChildren(Path dir) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (var stream = Files.list(dir)) {
+            stream.filter(p -> !p.getFileName().toString().startsWith("."))
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .forEach(children::add);
+        }
+        return children;
+    }
+
+    private Map<String, Object> fileInfo(String directory, Path file) throws IOException {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", file.getFileName().toString());
+        info.put("size", Files.size(file));
+        info.put("lastModified", Instant.ofEpochMilli(Files.getLastModifiedTime(file).toMillis()).toString());
+        info.put("directory", directory == null || directory.isEmpty() ? "." : directory);
+        return info;
+    }
+
+    private Map<String, Object> directoryInfo(Path dir) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", dir.getFileName().toString());
+        info.put("path", relativePath(dir));
+        return info;
+    }
+
+    private String relativePath(Path path) {
+        String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+        return relative.isEmpty() ? "." : relative;
+    }
+
+    private static String etag(Path file) throws IOException {
+        return "\"" + Files.size(file) + "-" + Files.getLastModifiedTime(file).toMillis() + "\"";
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Листинг с ETag от его содержимого; на совпавший {@code If-None-Match} — 304 без тела.
+     */
+    private void sendListing(HttpExchange exchange, Object body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        String etag = etagOf(bytes);
+        exchange.getResponseHeaders().set("ETag", etag);
+
+        if (listingNotModified(exchange, etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * ETag листинга, как его отдал бы {@link #sendListing}: {@code /entries} и страницы {@code /files}
+     * сообщают тот же ETag, что и отдельные листинги файлов и поддиректорий.
+     */
+    private String listingEtag(Object listing) throws IOException {
+        return etagOf(mapper.writeValueAsBytes(listing));
+    }
+
+    private static String etagOf(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + bytes.length + "\"";
+    }
+
+    private static boolean listingNotModified(HttpExchange exchange, String etag) {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals(etag) || value.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", code);
+        error.put("message", message);
+        sendJson(exchange, status, error);
+    }
+
+    private static List<String> queryValues(HttpExchange exchange, String name) {
+        List<String> values = new ArrayList<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery == null) {
+            return values;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq >= 0 && name.equals(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8))) {
+                values.add(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return values;
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new LinkedHashMap<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = Math.max(0, from); i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (var walk = Files.walk(path)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /**
+     * Ошибка, которую mock возвращает клиенту как {@code ErrorResponse} с заданным HTTP-статусом.
+     */
+    static final class MockException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        final String code;
+
+        MockException(int status, String code, String message) {
+            super(message);
+            this.status = status;
+            this.code = code;
+        }
+    }
+}
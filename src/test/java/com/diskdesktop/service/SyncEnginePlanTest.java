@@ -0,0 +1,200 @@
+package com.diskdesktop.service;
+
+import com.diskdesktop.model.FileInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyncEnginePlanTest {
+
+    private static final byte[] HASH = {1, 2, 3};
+    private static final long LOCAL_MTIME = 1_700_000_000_000L;
+    /**
+     * Backend отдаёт время загрузки, а не правки: оно не совпадает с локальным.
+     */
+    private static final long UPLOADED_AT = 1_700_000_500_000L;
+
+    private final Map<String, SyncIndex.Entry> index = new HashMap<>();
+    private final Map<String, SyncEngine.LocalFile> local = new HashMap<>();
+    private final SyncEngine.RemoteTree remote = new SyncEngine.RemoteTree();
+
+    @Test
+    void firstSyncComparesContentOfSameSizedFiles() {
+        local("same.txt", 10, LOCAL_MTIME);
+        remote("same.txt", 10, UPLOADED_AT);
+
+        SyncEngine.Plan plan = plan();
+
+        assertOnlyAction(plan, SyncEngine.ActionType.COMPARE, "same.txt");
+        assertNull(plan.newEntries.get("same.txt"));
+    }
+
+    @Test
+    void firstSyncKeepsFilesWithSameSizeAndTime() {
+        local("copied.txt", 10, LOCAL_MTIME);
+        remote("copied.txt", 10, LOCAL_MTIME + 500);
+
+        SyncEngine.Plan plan = plan();
+
+        assertTrue(plan.actions.isEmpty());
+        assertEquals(1, plan.unchanged.get());
+        assertEquals(10, plan.newEntries.get("copied.txt").remoteSize);
+    }
+
+    @Test
+    void firstSyncTreatsDifferentSizesAsConflict() {
+        local("edited.txt", 10, LOCAL_MTIME);
+        remote("edited.txt", 11, UPLOADED_AT);
+
+        assertOnlyAction(plan(), SyncEngine.ActionType.CONFLICT, "edited.txt");
+    }
+
+    @Test
+    void firstSyncTransfersOneSidedFiles() {
+        local("new-local.txt", 5, LOCAL_MTIME);
+        remote("new-remote.txt", 7, UPLOADED_AT);
+
+        SyncEngine.Plan plan = plan();
+
+        assertEquals(2, plan.actions.size());
+        assertEquals(SyncEngine.ActionType.UPLOAD, action(plan, "new-local.txt").type);
+        assertEquals(SyncEngine.ActionType.DOWNLOAD, action(plan, "new-remote.txt").type);
+        assertEquals(12, plan.transferBytes);
+    }
+
+    @Test
+    void unchangedFileKeepsIndexEntry() {
+        SyncIndex.Entry base = synced("a.txt");
+        local("a.txt", 10, LOCAL_MTIME);
+        remote("a.txt", 10, UPLOADED_AT);
+
+        SyncEngine.Plan plan = plan();
+
+        assertTrue(plan.actions.isEmpty());
+        assertSame(base, plan.newEntries.get("a.txt"));
+    }
+
+    @Test
+    void localDeleteIsRememberedAndNotDownloadedAgain() {
+        synced("gone.txt");
+        remote("gone.txt", 10, UPLOADED_AT);
+
+        SyncEngine.Plan plan = plan();
+
+        assertTrue(plan.actions.isEmpty());
+        SyncIndex.Entry entry = plan.newEntries.get("gone.txt");
+        assertTrue(entry.isDeletedLocally());
+        assertEquals(10, entry.remoteSize);
+        assertEquals(UPLOADED_AT, entry.remoteLastModified);
+
+        // следующий проход: файл на backend-е тот же — по-прежнему не скачивается
+        index.put("gone.txt", entry);
+        assertTrue(plan().actions.isEmpty());
+    }
+
+    @Test
+    void locallyDeletedFileIsDownloadedWhenRemoteChanges() {
+        index.put("gone.txt", new SyncIndex.Entry(-1, 0, null, 10, UPLOADED_AT));
+        remote("gone.txt", 12, UPLOADED_AT + 1000);
+
+        assertOnlyAction(plan(), SyncEngine.ActionType.DOWNLOAD, "gone.txt");
+    }
+
+    @Test
+    void remoteDeleteRemovesUnchangedLocalFile() {
+        synced("removed.txt");
+        local("removed.txt", 10, LOCAL_MTIME);
+
+        assertOnlyAction(plan(), SyncEngine.ActionType.DELETE_LOCAL, "removed.txt");
+    }
+
+    @Test
+    void remoteDeleteKeepsLocallyEditedFile() {
+        synced("removed.txt");
+        local("removed.txt", 15, LOCAL_MTIME + 60_000);
+
+        assertOnlyAction(plan(), SyncEngine.ActionType.UPLOAD, "removed.txt");
+    }
+
+    @Test
+    void deletedOnBothSidesLeavesIndex() {
+        synced("both.txt");
+
+        SyncEngine.Plan plan = plan();
+
+        assertTrue(plan.actions.isEmpty());
+        assertNull(plan.newEntries.get("both.txt"));
+    }
+
+    @Test
+    void oneSidedChangesAreTransferred() {
+        synced("local-edit.txt");
+        local("local-edit.txt", 11, LOCAL_MTIME + 60_000);
+        remote("local-edit.txt", 10, UPLOADED_AT);
+        synced("remote-edit.txt");
+        local("remote-edit.txt", 10, LOCAL_MTIME);
+        remote("remote-edit.txt", 12, UPLOADED_AT + 60_000);
+
+        SyncEngine.Plan plan = plan();
+
+        assertEquals(2, plan.actions.size());
+        assertEquals(SyncEngine.ActionType.UPLOAD, action(plan, "local-edit.txt").type);
+        assertEquals(SyncEngine.ActionType.DOWNLOAD, action(plan, "remote-edit.txt").type);
+    }
+
+    @Test
+    void changesOnBothSidesAreConflict() {
+        SyncIndex.Entry base = synced("both-edited.txt");
+        local("both-edited.txt", 11, LOCAL_MTIME + 60_000);
+        remote("both-edited.txt", 12, UPLOADED_AT + 60_000);
+
+        SyncEngine.Plan plan = plan();
+
+        SyncEngine.Action action = assertOnlyAction(plan, SyncEngine.ActionType.CONFLICT, "both-edited.txt");
+        assertSame(base, action.base);
+        // пока конфликт не разрешён, в индексе остаётся прежнее состояние
+        assertArrayEquals(HASH, plan.newEntries.get("both-edited.txt").hash);
+        assertEquals(23, plan.transferBytes);
+    }
+
+    private SyncEngine.Plan plan() {
+        return SyncEngine.plan(index, local, remote);
+    }
+
+    private SyncIndex.Entry synced(String path) {
+        SyncIndex.Entry entry = new SyncIndex.Entry(10, LOCAL_MTIME, HASH, 10, UPLOADED_AT);
+        index.put(path, entry);
+        return entry;
+    }
+
+    private void local(String path, long size, long mtime) {
+        local.put(path, new SyncEngine.LocalFile(size, mtime));
+    }
+
+    private void remote(String path, long size, long lastModified) {
+        remote.files.put(path, new FileInfo(path, size, lastModified, "."));
+    }
+
+    private static SyncEngine.Action assertOnlyAction(SyncEngine.Plan plan, SyncEngine.ActionType type,
+                                                      String path) {
+        assertEquals(1, plan.actions.size());
+        SyncEngine.Action action = plan.actions.get(0);
+        assertEquals(type, action.type);
+        assertEquals(path, action.path);
+        return action;
+    }
+
+    private static SyncEngine.Action action(SyncEngine.Plan plan, String path) {
+        return plan.actions.stream()
+                .filter(action -> action.path.equals(path))
+                .findFirst()
+                .orElseThrow();
+    }
+}
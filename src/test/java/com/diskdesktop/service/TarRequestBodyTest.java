@@ -0,0 +1,210 @@
+package com.diskdesktop.service;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TarRequestBodyTest {
+
+    private static final int BLOCK = 512;
+    private static final long MTIME_SECONDS = 1_700_000_000L;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void roundTripsSizesAroundBlockBoundaries() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int size : new int[]{0, 1, 511, 512, 513, 1024, 5000}) {
+            files.add(file("file-" + size + ".bin", size));
+        }
+
+        List<Entry> entries = roundTrip(files);
+
+        assertEquals(files.size(), entries.size());
+        for (int i = 0; i < files.size(); i++) {
+            assertEntry(files.get(i), entries.get(i));
+            assertNull(entries.get(i).paxPath);
+        }
+    }
+
+    @Test
+    void longNameIsCarriedByPaxHeader() throws IOException {
+        String name = "a".repeat(150) + ".txt";
+        File file = file(name, 700);
+
+        Entry entry = roundTrip(List.of(file)).get(0);
+
+        assertEntry(file, entry);
+        assertEquals(name, entry.paxPath);
+        // читатель без PAX получит хотя бы первые 100 символов
+        assertEquals(name.substring(0, 100), entry.ustarName);
+    }
+
+    @Test
+    void nameOfExactlyHundredBytesFitsUstarHeader() throws IOException {
+        String name = "b".repeat(96) + ".txt";
+        File file = file(name, 10);
+
+        Entry entry = roundTrip(List.of(file)).get(0);
+
+        assertEntry(file, entry);
+        assertNull(entry.paxPath);
+        assertEquals(name, entry.ustarName);
+    }
+
+    @Test
+    void nonAsciiNamesAreCarriedByPaxHeader() throws IOException {
+        File cyrillic = file("отчёт за 2024.txt", 1000);
+        File japanese = file("日本語.bin", 512);
+
+        List<Entry> entries = roundTrip(List.of(cyrillic, japanese));
+
+        assertEntry(cyrillic, entries.get(0));
+        assertEquals("отчёт за 2024.txt", entries.get(0).paxPath);
+        assertEquals("_____ __ 2024.txt", entries.get(0).ustarName);
+        assertEntry(japanese, entries.get(1));
+        assertEquals("日本語.bin", entries.get(1).paxPath);
+    }
+
+    @Test
+    void paxRecordLengthCountsItsOwnDigits() throws IOException {
+        // " path=" + имя + "\n" — 98 байт: с двумя цифрами длины запись была бы 100 байт, поэтому цифр три
+        String name = "é" + "c".repeat(89);
+        assertEquals(91, name.getBytes(StandardCharsets.UTF_8).length);
+        File file = file(name, 3);
+
+        Entry entry = roundTrip(List.of(file)).get(0);
+
+        assertEquals(name, entry.paxPath);
+        assertEntry(file, entry);
+    }
+
+    private File file(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = new File(dir, name);
+        Files.write(file.toPath(), content);
+        assertTrue(file.setLastModified(MTIME_SECONDS * 1000));
+        return file;
+    }
+
+    private static List<Entry> roundTrip(List<File> files) throws IOException {
+        TarRequestBody body = new TarRequestBody(files);
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        byte[] tar = buffer.readByteArray();
+        assertEquals(body.contentLength(), tar.length);
+        return read(tar);
+    }
+
+    private static void assertEntry(File expected, Entry actual) throws IOException {
+        assertEquals(expected.getName(), actual.name());
+        assertArrayEquals(Files.readAllBytes(expected.toPath()), actual.content);
+        assertEquals(MTIME_SECONDS, actual.mtime);
+    }
+
+    /**
+     * Разбирает архив так же строго, как tar: проверяет контрольные суммы, выравнивание и два нулевых блока в конце.
+     */
+    private static List<Entry> read(byte[] tar) {
+        assertEquals(0, tar.length % BLOCK);
+        List<Entry> entries = new ArrayList<>();
+        String paxPath = null;
+        int offset = 0;
+        while (true) {
+            byte[] header = Arrays.copyOfRange(tar, offset, offset + BLOCK);
+            if (isZero(header)) {
+                assertTrue(isZero(Arrays.copyOfRange(tar, offset + BLOCK, offset + 2 * BLOCK)));
+                assertEquals(tar.length, offset + 2 * BLOCK);
+                return entries;
+            }
+            assertEquals(checksum(header), octal(header, 148, 8));
+            assertEquals("ustar", string(header, 257, 6));
+            int size = (int) octal(header, 124, 12);
+            byte[] content = Arrays.copyOfRange(tar, offset + BLOCK, offset + BLOCK + size);
+            offset += BLOCK + (size + BLOCK - 1) / BLOCK * BLOCK;
+            if (header[156] == 'x') {
+                paxPath = paxPath(content);
+                continue;
+            }
+            assertEquals('0', header[156]);
+            entries.add(new Entry(string(header, 0, 100), paxPath, content, octal(header, 136, 12)));
+            paxPath = null;
+        }
+    }
+
+    private static String paxPath(byte[] records) {
+        String text = new String(records, StandardCharsets.UTF_8);
+        int space = text.indexOf(' ');
+        int length = Integer.parseInt(text.substring(0, space));
+        // длина записи — в байтах, вместе с собственными цифрами и переводом строки
+        assertEquals(records.length, length);
+        assertEquals('\n', text.charAt(text.length() - 1));
+        String record = text.substring(space + 1, text.length() - 1);
+        assertTrue(record.startsWith("path="));
+        return record.substring("path=".length());
+    }
+
+    private static long checksum(byte[] header) {
+        long sum = 0;
+        for (int i = 0; i < header.length; i++) {
+            sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+        }
+        return sum;
+    }
+
+    private static long octal(byte[] header, int offset, int length) {
+        return Long.parseLong(string(header, offset, length).trim(), 8);
+    }
+
+    private static String string(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+
+        final String ustarName;
+        final String paxPath;
+        final byte[] content;
+        final long mtime;
+
+        Entry(String ustarName, String paxPath, byte[] content, long mtime) {
+            this.ustarName = ustarName;
+            this.paxPath = paxPath;
+            this.content = content;
+            this.mtime = mtime;
+        }
+
+        String name() {
+            return paxPath != null ? paxPath : ustarName;
+        }
+    }
+}
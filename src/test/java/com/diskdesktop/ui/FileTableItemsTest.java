@@ -0,0 +1,127 @@
+package com.diskdesktop.ui;
+
+import com.diskdesktop.model.FileInfo;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FileTableItemsTest {
+
+    private static final long MTIME = 1_700_000_000_000L;
+
+    /**
+     * Небольшие списки сверяются прямо в вызывающем потоке, поэтому фоновый исполнитель не нужен.
+     */
+    private final FileTableItems items = new FileTableItems(Runnable::run);
+    private int removed;
+    private int added;
+
+    FileTableItemsTest() {
+        items.addListener((ListChangeListener<FileInfo>) change -> {
+            while (change.next()) {
+                removed += change.getRemovedSize();
+                added += change.getAddedSize();
+            }
+        });
+    }
+
+    @Test
+    void replaceRebuildsWholeTable() {
+        items.replace(files("a", "b", "c", "d", "e"));
+        resetCounters();
+
+        items.replace(files("a", "b", "c", "d", "f"));
+
+        assertEquals(5, removed);
+        assertEquals(5, added);
+    }
+
+    @Test
+    void updateTouchesOnlyChangedRows() {
+        items.replace(files("a", "b", "c", "d", "e"));
+        resetCounters();
+
+        List<FileInfo> listing = files("a", "c", "d", "e", "f");
+        listing.set(1, file("c", 99));
+        items.update(listing);
+
+        // удалён b, добавлен f, строка c заменена на месте; a, d и e не затронуты
+        assertEquals(2, removed);
+        assertEquals(2, added);
+        assertEquals(listing, new ArrayList<>(items));
+    }
+
+    @Test
+    void updateWithSameListingChangesNothing() {
+        items.replace(files("a", "b", "c"));
+        resetCounters();
+
+        items.update(files("a", "b", "c"));
+
+        assertEquals(0, removed);
+        assertEquals(0, added);
+    }
+
+    @Test
+    void updateMovesOnlyDisplacedRow() {
+        items.replace(files("a", "b", "c", "d"));
+        resetCounters();
+
+        items.update(files("b", "c", "d", "a"));
+
+        assertEquals(1, removed);
+        assertEquals(1, added);
+        assertEquals(files("b", "c", "d", "a"), new ArrayList<>(items));
+    }
+
+    @Test
+    void updateKeepsTableSorted() {
+        items.sortBy(List.of(new FileTableItems.SortKey(FileTableItems.SortColumn.SIZE, true)));
+        items.replace(List.of(file("small", 1), file("large", 3)));
+        resetCounters();
+
+        items.update(List.of(file("small", 1), file("medium", 2), file("large", 3)));
+
+        assertEquals(0, removed);
+        assertEquals(1, added);
+        assertEquals(List.of(file("large", 3), file("medium", 2), file("small", 1)), new ArrayList<>(items));
+    }
+
+    @Test
+    void applyChangesTouchesOnlyChangedRows() {
+        items.replace(files("a", "b", "c"));
+        resetCounters();
+
+        Map<String, FileInfo> changes = new LinkedHashMap<>();
+        changes.put("b", null);
+        changes.put("d", file("d", 1));
+        items.applyChanges(changes);
+
+        assertEquals(1, removed);
+        assertEquals(1, added);
+        assertEquals(files("a", "c", "d"), new ArrayList<>(items));
+    }
+
+    private void resetCounters() {
+        removed = 0;
+        added = 0;
+    }
+
+    private static List<FileInfo> files(String... names) {
+        List<FileInfo> files = new ArrayList<>();
+        for (String name : names) {
+            files.add(file(name, 1));
+        }
+        return files;
+    }
+
+    private static FileInfo file(String name, long size) {
+        return new FileInfo(name, size, MTIME, ".");
+    }
+}